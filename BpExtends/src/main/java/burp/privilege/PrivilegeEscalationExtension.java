@@ -37,6 +37,9 @@ public class PrivilegeEscalationExtension implements BurpExtension {
             MainTab mainTab = new MainTab(api);
             api.userInterface().registerSuiteTab("越权扫描", mainTab);
 
+            // 卸载插件时停止所有扫描目标的扫描，注销Proxy处理器并释放线程
+            api.extension().registerUnloadingHandler(mainTab::shutdown);
+
             api.logging().logToOutput("插件加载成功!");
             api.logging().logToOutput("请配置目标域名和Cookie后开始扫描。");
 
@@ -0,0 +1,96 @@
+package burp.privilege.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * 协调进程与工作进程之间的消息格式
+ * 每条消息：类型(1字节) + 长度(4字节) + 内容，内容中的请求、响应和结果按{@link burp.privilege.scanner.BinaryCodec}编码
+ *
+ * 工作进程 -> 协调进程：HELLO（协议版本、令牌、名称、并发数）、UNIT_DONE（分片、单元序号、是否完成、发现的结果）、HEARTBEAT（统计）
+ * 协调进程 -> 工作进程：CONFIG（扫描配置JSON）、SHARD（分片号、单元列表）、CANCEL（放弃所有分片）、SHUTDOWN
+ */
+final class ClusterProtocol {
+
+    /** 协议版本，不一致的工作进程被拒绝 */
+    static final int VERSION = 3;
+
+    static final byte HELLO = 1;
+    static final byte CONFIG = 2;
+    static final byte SHARD = 3;
+    static final byte UNIT_DONE = 4;
+    static final byte HEARTBEAT = 5;
+    static final byte CANCEL = 6;
+    static final byte SHUTDOWN = 7;
+
+    /** 工作进程发送心跳的间隔 */
+    static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+
+    /** 超过该时间没有收到任何消息的工作进程视为已失联 */
+    static final long HEARTBEAT_TIMEOUT_MILLIS = 10_000;
+
+    /** 单条消息的大小上限 */
+    private static final int MAX_MESSAGE_BYTES = 256 * 1024 * 1024;
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * 消息内容的编码
+     */
+    @FunctionalInterface
+    interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 一条收到的消息
+     */
+    static final class Message {
+        final byte type;
+        final DataInputStream body;
+
+        private Message(byte type, DataInputStream body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 写一条消息（调用方负责同一连接上的写入互斥）
+     */
+    static void write(DataOutputStream out, byte type, Payload payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        if (payload != null) {
+            try (DataOutputStream body = new DataOutputStream(buffer)) {
+                payload.write(body);
+            }
+        }
+        out.writeByte(type);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * 读一条消息
+     *
+     * @throws EOFException 连接已关闭
+     */
+    static Message read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_MESSAGE_BYTES) {
+            throw new IOException("消息长度无效: " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new Message(type, new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,609 @@
+package burp.privilege.cluster;
+
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResult;
+import burp.privilege.scanner.BinaryCodec;
+import burp.privilege.scanner.ScanControl;
+import burp.privilege.scanner.ScanLogger;
+import burp.privilege.scanner.ScanPlan;
+import com.google.gson.Gson;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分布式扫描的协调进程
+ * 在本机端口上等待工作进程（{@link ScanWorker}）连接，把扫描计划中的请求按主机或端点模板分成分片，
+ * 分给空闲的工作进程检测；工作进程每完成一个请求就把结果发回，由调用方写入结果列表或输出文件
+ *
+ * 工作进程断开或超过{@value ClusterProtocol#HEARTBEAT_TIMEOUT_MILLIS}ms没有心跳时，
+ * 它手上未完成的请求重新分片，分给其他工作进程；已完成的请求不会重复检测，结果也不会重复
+ *
+ * 只监听回环地址，工作进程握手时需要带上本协调进程随机生成的令牌（{@link #getToken}），
+ * 没有令牌的本机进程拿不到配置中的凭证。线程安全，同一时间执行一个计划
+ */
+public class ScanCoordinator implements AutoCloseable {
+
+    /**
+     * 分片方式
+     */
+    public enum Partition {
+        /** 同一主机的请求在同一分片（连接复用，便于控制单主机压力） */
+        HOST,
+        /** 同一端点模板的请求在同一分片 */
+        TEMPLATE
+    }
+
+    /** 默认每个分片的请求数 */
+    public static final int DEFAULT_SHARD_SIZE = 50;
+
+    /** 每个工作进程同时持有的分片数（正在检测的和下一个，避免等待分配） */
+    private static final int SHARDS_PER_WORKER = 2;
+
+    /** 没有任何工作进程时，最多等待多久后放弃剩余的请求 */
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private final ScanConfig config;
+    private final ScanLogger logger;
+    private final Gson gson = new Gson();
+    /** 工作进程握手令牌，每个协调进程随机生成 */
+    private final String token = newToken();
+
+    private final List<WorkerLink> workers = new ArrayList<>();
+    private final Deque<Shard> pending = new ArrayDeque<>();
+    private final Map<Integer, Shard> active = new HashMap<>();
+
+    private ServerSocket server;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private int nextShardId = 1;
+    private int shardSize = DEFAULT_SHARD_SIZE;
+    private Partition partition = Partition.HOST;
+
+    private boolean executing;
+    private Listener listener;
+    private int totalUnits;
+    private int completedUnits;
+    private int reassignedShards;
+    private boolean closed;
+
+    /**
+     * @param config 扫描配置，工作进程连接时发给它（工作进程不读取本地配置）
+     */
+    public ScanCoordinator(ScanConfig config, ScanLogger logger) {
+        this.config = config;
+        this.logger = logger;
+    }
+
+    /**
+     * 工作进程连接时需要提供的令牌（启动工作进程时通过 --token 或环境变量{@value ScanWorker#TOKEN_ENV}传入）
+     */
+    public String getToken() {
+        return token;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * 单元完成的回调（在连接线程中调用，需要线程安全）
+     */
+    public interface Listener {
+        /**
+         * 一个请求检测完成
+         *
+         * @param item     计划中的请求
+         * @param results  发现的结果
+         * @param complete 是否完成（请求失败时为false，调用方不应记为已测试）
+         */
+        void onUnitDone(ScanPlan.Item item, List<ScanResult> results, boolean complete);
+    }
+
+    /**
+     * 开始监听
+     *
+     * @param port 端口，0表示任选一个空闲端口
+     * @return 实际监听的端口
+     */
+    public synchronized int start(int port) throws IOException {
+        if (server != null) {
+            return server.getLocalPort();
+        }
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("分布式扫描协调进程已监听 127.0.0.1:" + server.getLocalPort());
+        return server.getLocalPort();
+    }
+
+    /**
+     * 没有任何工作进程时，最多等待多久后放弃剩余的请求
+     */
+    public synchronized void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = Math.max(0, idleTimeoutMillis);
+    }
+
+    /**
+     * 执行扫描计划中的请求，阻塞到全部完成、扫描被停止或长时间没有工作进程
+     * 暂停期间不再分配新的分片（工作进程手上的分片照常完成）
+     *
+     * @param items     要检测的请求（按优先级从高到低）
+     * @param partition 分片方式
+     * @param shardSize 每个分片的请求数
+     * @param control   暂停开关和取消令牌
+     * @param listener  单元完成的回调
+     * @return 未完成的请求数
+     */
+    public int execute(List<ScanPlan.Item> items, Partition partition, int shardSize, ScanControl control,
+                       Listener listener) throws InterruptedException {
+        synchronized (this) {
+            if (executing) {
+                throw new IllegalStateException("分布式扫描已在运行中");
+            }
+            if (server == null) {
+                throw new IllegalStateException("协调进程未开始监听");
+            }
+            this.executing = true;
+            this.listener = listener;
+            this.partition = partition;
+            this.shardSize = Math.max(1, shardSize);
+            this.totalUnits = 0;
+            this.completedUnits = 0;
+            this.reassignedShards = 0;
+        }
+        control.onCancel(this::cancelAll);
+        submit(items);
+
+        int unfinished;
+        try {
+            long idleSince = System.currentTimeMillis();
+            while (true) {
+                List<Assignment> assignments;
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    expireSilentWorkers(now);
+                    if (completedUnits >= totalUnits || control.isCancelled() || closed) {
+                        break;
+                    }
+                    if (!workers.isEmpty()) {
+                        idleSince = now;
+                    } else if (now - idleSince > idleTimeoutMillis) {
+                        logger.error("超过 " + idleTimeoutMillis / 1000 + " 秒没有工作进程，放弃剩余的 "
+                                + (totalUnits - completedUnits) + " 个请求");
+                        break;
+                    }
+                    assignments = control.isPaused() ? List.of() : assign();
+                    if (assignments.isEmpty()) {
+                        wait(500);
+                    }
+                }
+                // 在锁外发送，工作进程读得慢时不阻塞结果的接收
+                for (Assignment assignment : assignments) {
+                    sendShard(assignment.link, assignment.shard);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                unfinished = totalUnits - completedUnits;
+                executing = false;
+                this.listener = null;
+                pending.clear();
+                active.clear();
+                for (WorkerLink link : workers) {
+                    link.shards.clear();
+                }
+            }
+        }
+        if (control.isCancelled()) {
+            cancelAll();
+        }
+        return unfinished;
+    }
+
+    /**
+     * 执行中追加请求（如样本发现漏洞后扩展的同模板请求）
+     */
+    public void submit(List<ScanPlan.Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (!executing) {
+                return;
+            }
+            // 按分片键分组，保持原有的优先级顺序；分组内再按分片大小切分
+            Map<String, List<ScanPlan.Item>> groups = new LinkedHashMap<>();
+            for (ScanPlan.Item item : items) {
+                groups.computeIfAbsent(partitionKey(item), key -> new ArrayList<>()).add(item);
+            }
+            List<Shard> shards = new ArrayList<>();
+            for (List<ScanPlan.Item> group : groups.values()) {
+                for (int start = 0; start < group.size(); start += shardSize) {
+                    shards.add(new Shard(nextShardId++, group.subList(start, Math.min(group.size(), start + shardSize))));
+                }
+            }
+            // 分片之间按首个请求的优先级排序，高价值端点所在的分片先分配
+            shards.sort((a, b) -> Integer.compare(b.items.get(0).getPriority(), a.items.get(0).getPriority()));
+            pending.addAll(shards);
+            totalUnits += items.size();
+            notifyAll();
+        }
+    }
+
+    private String partitionKey(ScanPlan.Item item) {
+        if (partition == Partition.TEMPLATE) {
+            return item.getTemplateKey();
+        }
+        ScanRequest request = item.getRequest();
+        return request.host() + ":" + request.port();
+    }
+
+    /**
+     * 把排队的分片分给有空位的工作进程（调用时持有锁）
+     */
+    private List<Assignment> assign() {
+        List<Assignment> assignments = new ArrayList<>();
+        boolean assigned = true;
+        while (assigned && !pending.isEmpty()) {
+            assigned = false;
+            // 每轮给每个有空位的工作进程一个分片，持有分片少的先分
+            List<WorkerLink> order = new ArrayList<>(workers);
+            order.sort((a, b) -> Integer.compare(a.shards.size(), b.shards.size()));
+            for (WorkerLink link : order) {
+                if (pending.isEmpty()) {
+                    break;
+                }
+                if (link.ready && link.shards.size() < SHARDS_PER_WORKER) {
+                    Shard shard = pending.poll();
+                    shard.owner = link;
+                    link.shards.add(shard);
+                    active.put(shard.id, shard);
+                    assignments.add(new Assignment(link, shard));
+                    assigned = true;
+                }
+            }
+        }
+        return assignments;
+    }
+
+    private void sendShard(WorkerLink link, Shard shard) {
+        try {
+            link.send(ClusterProtocol.SHARD, out -> {
+                out.writeInt(shard.id);
+                out.writeInt(shard.items.size());
+                for (int i = 0; i < shard.items.size(); i++) {
+                    ScanPlan.Item item = shard.items.get(i);
+                    out.writeInt(i);
+                    BinaryCodec.writeRequest(out, item.getRequest());
+                    BinaryCodec.writeColumns(out, item.getColumns());
+                    out.writeBoolean(item.getBaseline() != null);
+                    if (item.getBaseline() != null) {
+                        BinaryCodec.writeResponse(out, item.getBaseline());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            drop(link, "发送分片失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止扫描：放弃排队的分片，通知所有工作进程放弃手上的分片
+     */
+    private void cancelAll() {
+        List<WorkerLink> links;
+        synchronized (this) {
+            pending.clear();
+            links = new ArrayList<>(workers);
+            notifyAll();
+        }
+        for (WorkerLink link : links) {
+            try {
+                link.send(ClusterProtocol.CANCEL, null);
+            } catch (IOException e) {
+                drop(link, "连接断开");
+            }
+        }
+    }
+
+    /**
+     * 断开超时没有心跳的工作进程（调用时持有锁）
+     */
+    private void expireSilentWorkers(long now) {
+        for (WorkerLink link : new ArrayList<>(workers)) {
+            if (now - link.lastSeen > ClusterProtocol.HEARTBEAT_TIMEOUT_MILLIS) {
+                drop(link, "心跳超时");
+            }
+        }
+    }
+
+    /**
+     * 移除工作进程，它手上未完成的请求重新分片并排在最前面
+     */
+    private synchronized void drop(WorkerLink link, String reason) {
+        if (!workers.remove(link)) {
+            return;
+        }
+        link.close();
+        int requeued = 0;
+        for (Shard shard : link.shards) {
+            active.remove(shard.id);
+            List<ScanPlan.Item> remaining = new ArrayList<>();
+            for (int i = 0; i < shard.items.size(); i++) {
+                if (!shard.done[i]) {
+                    remaining.add(shard.items.get(i));
+                }
+            }
+            if (!remaining.isEmpty()) {
+                pending.addFirst(new Shard(nextShardId++, remaining));
+                requeued += remaining.size();
+                reassignedShards++;
+            }
+        }
+        link.shards.clear();
+        logger.error("工作进程 " + link.name + " 已断开（" + reason + "）"
+                + (requeued > 0 ? "，重新分配 " + requeued + " 个未完成的请求" : ""));
+        notifyAll();
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return;  // 已关闭
+            }
+            Thread reader = new Thread(() -> serve(socket), "cluster-worker");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    /**
+     * 一个工作进程连接：握手、发送配置，之后接收完成的单元和心跳
+     */
+    private void serve(Socket socket) {
+        WorkerLink link;
+        try {
+            socket.setTcpNoDelay(true);
+            link = new WorkerLink(socket);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            return;
+        }
+
+        try {
+            ClusterProtocol.Message hello = ClusterProtocol.read(link.in);
+            if (hello.type != ClusterProtocol.HELLO || hello.body.readInt() != ClusterProtocol.VERSION) {
+                logger.error("拒绝协议不匹配的工作进程: " + socket.getRemoteSocketAddress());
+                link.close();
+                return;
+            }
+            byte[] presented = BinaryCodec.readString(hello.body).getBytes(StandardCharsets.UTF_8);
+            if (!MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.UTF_8))) {
+                logger.error("拒绝令牌不正确的工作进程: " + socket.getRemoteSocketAddress());
+                link.close();
+                return;
+            }
+            link.name = BinaryCodec.readString(hello.body);
+            link.concurrency = hello.body.readInt();
+
+            String json;
+            synchronized (config) {
+                json = gson.toJson(config);
+            }
+            link.send(ClusterProtocol.CONFIG, out -> BinaryCodec.writeString(out, json));
+            synchronized (this) {
+                if (closed) {
+                    link.close();
+                    return;
+                }
+                link.lastSeen = System.currentTimeMillis();
+                link.ready = true;
+                workers.add(link);
+                notifyAll();
+            }
+            logger.info("工作进程 " + link.name + " 已连接（并发 "
+                    + (link.concurrency > 0 ? String.valueOf(link.concurrency) : "按配置") + "）");
+
+            while (true) {
+                ClusterProtocol.Message message = ClusterProtocol.read(link.in);
+                link.lastSeen = System.currentTimeMillis();
+                if (message.type == ClusterProtocol.UNIT_DONE) {
+                    unitDone(link, message.body);
+                } else if (message.type == ClusterProtocol.HEARTBEAT) {
+                    link.sentRequests = message.body.readLong();
+                    link.completedUnits = message.body.readLong();
+                    link.queuedUnits = message.body.readInt();
+                }
+            }
+        } catch (IOException e) {
+            drop(link, "连接断开");
+        }
+    }
+
+    /**
+     * 处理完成的单元：同一单元只接受一次（已重新分配的分片发来的迟到消息忽略）
+     */
+    private void unitDone(WorkerLink link, DataInputStream in) throws IOException {
+        int shardId = in.readInt();
+        int index = in.readInt();
+        boolean complete = in.readBoolean();
+        int count = in.readInt();
+        List<ScanResult> results = new ArrayList<>(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            results.add(BinaryCodec.readResult(in));
+        }
+
+        ScanPlan.Item item;
+        Listener current;
+        synchronized (this) {
+            Shard shard = active.get(shardId);
+            if (shard == null || shard.owner != link || index < 0 || index >= shard.items.size() || shard.done[index]) {
+                return;
+            }
+            shard.done[index] = true;
+            if (--shard.remaining == 0) {
+                active.remove(shardId);
+                link.shards.remove(shard);
+            }
+            item = shard.items.get(index);
+            current = listener;
+        }
+
+        // 先交给调用方再计入完成数，execute返回时所有结果都已处理
+        try {
+            if (current != null) {
+                current.onUnitDone(item, results, complete);
+            }
+        } finally {
+            synchronized (this) {
+                completedUnits++;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 已连接的工作进程数
+     */
+    public synchronized int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * 运行状态（用于界面和日志）
+     */
+    public synchronized String getStatus() {
+        long sent = 0;
+        for (WorkerLink link : workers) {
+            sent += link.sentRequests;
+        }
+        return String.format("工作进程: %d | 已完成: %d/%d | 排队分片: %d | 已发送请求: %d | 重新分配: %d",
+                workers.size(), completedUnits, totalUnits, pending.size(), sent, reassignedShards);
+    }
+
+    /**
+     * 停止监听并通知所有工作进程退出
+     */
+    @Override
+    public void close() {
+        List<WorkerLink> links;
+        synchronized (this) {
+            closed = true;
+            links = new ArrayList<>(workers);
+            workers.clear();
+            notifyAll();
+            if (server != null) {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+            }
+        }
+        for (WorkerLink link : links) {
+            try {
+                link.send(ClusterProtocol.SHUTDOWN, null);
+            } catch (IOException e) {
+                // 已断开
+            }
+            link.close();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 一个分片：同一主机或模板的一组请求
+     */
+    private static final class Shard {
+        private final int id;
+        private final List<ScanPlan.Item> items;
+        private final boolean[] done;
+        private int remaining;
+        private WorkerLink owner;
+
+        private Shard(int id, List<ScanPlan.Item> items) {
+            this.id = id;
+            this.items = new ArrayList<>(items);
+            this.done = new boolean[items.size()];
+            this.remaining = items.size();
+        }
+    }
+
+    private static final class Assignment {
+        private final WorkerLink link;
+        private final Shard shard;
+
+        private Assignment(WorkerLink link, Shard shard) {
+            this.link = link;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * 一个工作进程的连接
+     */
+    private static final class WorkerLink {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        /** 分给它、尚未完成的分片（由协调进程的锁保护） */
+        private final Set<Shard> shards = new HashSet<>();
+        private String name = "?";
+        private int concurrency;
+        private boolean ready;
+        private volatile long lastSeen;
+        private volatile long sentRequests;
+        private volatile long completedUnits;
+        private volatile int queuedUnits;
+
+        private WorkerLink(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        private void send(byte type, ClusterProtocol.Payload payload) throws IOException {
+            synchronized (out) {
+                ClusterProtocol.write(out, type, payload);
+            }
+        }
+
+        private void close() {
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package burp.privilege.cluster;
+
+import burp.privilege.headless.ScanConfigLoader;
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+import burp.privilege.scanner.BinaryCodec;
+import burp.privilege.scanner.JdkHttpTransport;
+import burp.privilege.scanner.RequestScanner;
+import burp.privilege.scanner.RetargetTransport;
+import burp.privilege.scanner.ScanLogger;
+import burp.privilege.scanner.ScanTransport;
+import burp.privilege.scanner.SingleFlightTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分布式扫描的工作进程
+ * 连接协调进程（{@link ScanCoordinator}），使用协调进程发来的配置检测分到的请求，
+ * 每完成一个请求就把结果发回，并定时发送心跳（已发送请求数、已完成数、排队数）。
+ * 与协调进程断开后退出
+ *
+ * 用法：
+ * java -cp privilege-escalation-scanner-1.0.0-headless.jar burp.privilege.cluster.ScanWorker --connect 127.0.0.1:PORT --token TOKEN [选项]
+ *
+ * 选项：
+ * --connect HOST:PORT 协调进程地址
+ * --token TOKEN       协调进程的握手令牌（见协调进程的启动日志），也可以通过环境变量 {@value #TOKEN_ENV} 传入
+ * --name NAME         名称（用于日志），默认取进程号
+ * --concurrency N     同时检测的请求数，默认取配置中的threadCount
+ * --target URL        把所有请求改发到指定目标，用于本地测试
+ * --insecure          信任所有TLS证书
+ */
+public class ScanWorker {
+
+    /** 传入握手令牌的环境变量（不出现在进程列表中，启动本机工作进程时使用） */
+    public static final String TOKEN_ENV = "PRIVILEGE_SCANNER_TOKEN";
+
+    /** 协调进程尚未启动时，连接重试的最长时间 */
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final String token;
+    private final String name;
+    private final Integer concurrency;
+    private final URI target;
+    private final boolean insecure;
+
+    /** 每次收到CANCEL加一，之前分到的请求不再检测、结果不再发回 */
+    private final AtomicInteger epoch = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    private final ScanLogger logger = new ScanLogger() {
+        @Override
+        public void info(String message) {
+            System.err.println("[" + name + "] " + message);
+        }
+
+        @Override
+        public void error(String message) {
+            System.err.println("[" + name + "][错误] " + message);
+        }
+    };
+
+    private DataOutputStream out;
+
+    /**
+     * @param concurrency 同时检测的请求数，为null时取配置中的threadCount
+     * @param target      发送目标，为null时按请求原来的主机发送
+     */
+    public ScanWorker(String host, int port, String token, String name, Integer concurrency, URI target,
+                      boolean insecure) {
+        this.host = host;
+        this.port = port;
+        this.token = token;
+        this.name = name;
+        this.concurrency = concurrency;
+        this.target = target;
+        this.insecure = insecure;
+    }
+
+    public static void main(String[] args) {
+        String address = null;
+        String token = System.getenv(TOKEN_ENV);
+        String name = "worker-" + ProcessHandle.current().pid();
+        Integer concurrency = null;
+        URI target = null;
+        boolean insecure = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--connect" -> address = args[++i];
+                    case "--token" -> token = args[++i];
+                    case "--name" -> name = args[++i];
+                    case "--concurrency" -> concurrency = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--target" -> target = URI.create(args[++i]);
+                    case "--insecure" -> insecure = true;
+                    default -> throw new IllegalArgumentException("未知参数 " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("参数错误: " + e.getMessage());
+            address = null;
+        }
+
+        int separator = address != null ? address.lastIndexOf(':') : -1;
+        if (separator <= 0 || token == null || token.isEmpty()) {
+            System.err.println("用法: java -cp privilege-escalation-scanner-headless.jar burp.privilege.cluster.ScanWorker"
+                    + " --connect 127.0.0.1:PORT --token TOKEN [--name NAME] [--concurrency N] [--target URL] [--insecure]");
+            System.exit(2);
+        }
+
+        try {
+            new ScanWorker(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)),
+                    token, name, concurrency, target, insecure).run();
+        } catch (IOException e) {
+            System.err.println("[" + name + "] 工作进程退出: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(130);
+        }
+    }
+
+    /**
+     * 连接协调进程并检测分到的请求，直到协调进程要求退出或断开
+     */
+    public void run() throws IOException, InterruptedException {
+        try (Socket socket = connect()) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int threads = concurrency != null ? concurrency : 0;
+            send(ClusterProtocol.HELLO, body -> {
+                body.writeInt(ClusterProtocol.VERSION);
+                BinaryCodec.writeString(body, token);
+                BinaryCodec.writeString(body, name);
+                body.writeInt(threads);
+            });
+
+            ClusterProtocol.Message message;
+            try {
+                message = ClusterProtocol.read(in);
+            } catch (EOFException e) {
+                throw new IOException("协调进程拒绝连接（协议版本或令牌不匹配）");
+            }
+            if (message.type != ClusterProtocol.CONFIG) {
+                throw new IOException("协调进程未发送配置");
+            }
+            ScanConfig config = ScanConfigLoader.fromJson(BinaryCodec.readString(message.body));
+            int poolSize = concurrency != null ? concurrency : config.getThreadCount();
+
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+            ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "worker-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ScanTransport http = new JdkHttpTransport(config.getTimeout(), insecure);
+            try (SingleFlightTransport transport = new SingleFlightTransport(
+                    target != null ? new RetargetTransport(http, target) : http)) {
+                RequestScanner scanner = new RequestScanner(config, transport, logger);
+                heartbeat.scheduleAtFixedRate(() -> sendHeartbeat(transport), 0,
+                        ClusterProtocol.HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                logger.info("已连接协调进程 " + host + ":" + port + "，并发 " + poolSize);
+
+                while (true) {
+                    try {
+                        message = ClusterProtocol.read(in);
+                    } catch (EOFException e) {
+                        logger.info("协调进程已断开");
+                        break;
+                    }
+                    if (message.type == ClusterProtocol.SHARD) {
+                        acceptShard(message.body, scanner, pool);
+                    } else if (message.type == ClusterProtocol.CANCEL) {
+                        epoch.incrementAndGet();
+                    } else if (message.type == ClusterProtocol.SHUTDOWN) {
+                        break;
+                    }
+                }
+            } finally {
+                epoch.incrementAndGet();
+                heartbeat.shutdownNow();
+                pool.shutdownNow();
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            }
+            logger.info("工作进程退出，共完成 " + completed.get() + " 个请求");
+        }
+    }
+
+    /**
+     * 连接协调进程，协调进程尚未监听时重试
+     */
+    private Socket connect() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(500);
+            }
+        }
+    }
+
+    /**
+     * 收到分片：每个请求一个任务，交给线程池
+     */
+    private void acceptShard(DataInputStream in, RequestScanner scanner, ExecutorService pool) throws IOException {
+        int shardId = in.readInt();
+        int count = in.readInt();
+        int current = epoch.get();
+        for (int i = 0; i < count; i++) {
+            int index = in.readInt();
+            ScanRequest request = BinaryCodec.readRequest(in);
+            long[] columns = BinaryCodec.readColumns(in);
+            ScanResponse baseline = in.readBoolean() ? BinaryCodec.readResponse(in) : null;
+            queued.incrementAndGet();
+            pool.execute(() -> {
+                queued.decrementAndGet();
+                if (epoch.get() != current) {
+                    return;
+                }
+                scanUnit(shardId, index, request, columns, baseline, scanner, current);
+            });
+        }
+    }
+
+    private void scanUnit(int shardId, int index, ScanRequest request, long[] columns, ScanResponse baseline,
+                          RequestScanner scanner, int current) {
+        List<ScanResult> results = Collections.synchronizedList(new ArrayList<>());
+        boolean complete = false;
+        try {
+            if (baseline != null) {
+                complete = scanner.scan(request, baseline, columns, () -> epoch.get() == current, results::add);
+            } else {
+                complete = scanner.scan(request, columns, () -> epoch.get() == current, results::add);
+            }
+        } catch (RuntimeException e) {
+            logger.error("扫描请求失败: " + e.getMessage());
+        }
+        if (epoch.get() != current) {
+            return;
+        }
+
+        List<ScanResult> found = new ArrayList<>(results);
+        boolean finished = complete;
+        try {
+            send(ClusterProtocol.UNIT_DONE, body -> {
+                body.writeInt(shardId);
+                body.writeInt(index);
+                body.writeBoolean(finished);
+                body.writeInt(found.size());
+                for (ScanResult result : found) {
+                    BinaryCodec.writeResult(body, result);
+                }
+            });
+            completed.incrementAndGet();
+        } catch (IOException e) {
+            // 连接已断开，协调进程会把未完成的请求分给其他工作进程
+            epoch.incrementAndGet();
+        }
+    }
+
+    private void sendHeartbeat(SingleFlightTransport transport) {
+        try {
+            send(ClusterProtocol.HEARTBEAT, body -> {
+                body.writeLong(transport.getSentCount());
+                body.writeLong(completed.get());
+                body.writeInt(queued.get());
+            });
+        } catch (IOException e) {
+            // 连接断开由读取线程处理
+        }
+    }
+
+    private void send(byte type, ClusterProtocol.Payload payload) throws IOException {
+        synchronized (out) {
+            ClusterProtocol.write(out, type, payload);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package burp.privilege.headless;
+
+import burp.privilege.cluster.ScanCoordinator;
+import burp.privilege.cluster.ScanWorker;
+import burp.privilege.importer.HistoryImporter;
+import burp.privilege.model.ClassifiedRequest;
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+import burp.privilege.scanner.BaselineStore;
+import burp.privilege.scanner.EndpointScorer;
+import burp.privilege.scanner.HostLatencyTracker;
+import burp.privilege.scanner.JdkHttpTransport;
+import burp.privilege.scanner.RequestFilter;
+import burp.privilege.scanner.RequestScanner;
+import burp.privilege.scanner.RetargetTransport;
+import burp.privilege.scanner.ScanControl;
+import burp.privilege.scanner.ScanPlan;
+import burp.privilege.scanner.ScanLogger;
+import burp.privilege.scanner.ScanTransport;
+import burp.privilege.scanner.SingleFlightTransport;
+import burp.privilege.scanner.TemplateSampler;
+import burp.privilege.scanner.TestedEndpointIndex;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 独立运行的越权扫描器（无需Burp）
+ *
+ * 从HAR / Burp XML导出文件读取流量，复用插件的过滤、检测和分析逻辑，
+ * 通过JDK HttpClient发送请求，结果以JSONL格式输出
+ *
+ * 用法：
+ * java -jar privilege-escalation-scanner-1.0.0-headless.jar --config config.json [选项] 文件...
+ *
+ * 选项：
+ * --config FILE       扫描配置（JSON，字段同ScanConfig）
+ * --output FILE       结果输出文件（JSONL），默认输出到标准输出
+ * --concurrency N     同时检测的请求数，默认取配置中的threadCount
+ * --parse-threads N   同时解析的文件数，默认取CPU核数
+ * --target URL        把所有请求改发到指定目标（如 http://127.0.0.1:8080），用于本地测试
+ * --index FILE        已测试端点索引文件，存在时跳过其中已测试的端点，结束时写回
+ * --baselines FILE    差异重扫：基准响应指纹文件，只对基准响应变化、新增或上次发现漏洞的端点执行完整检测，结束时写回
+ * --dry-run           只生成扫描计划（各主机请求数、预计耗时、成本最高的模板），不发送请求，不写回索引
+ * --insecure          信任所有TLS证书
+ * --workers N         分布式扫描：启动N个本机工作进程（{@link burp.privilege.cluster.ScanWorker}），按分片分发扫描计划
+ * --listen PORT       分布式扫描：在指定端口等待工作进程连接（可与--workers同时使用，也可手动启动工作进程）
+ * --partition MODE    分布式扫描的分片方式：host（按主机，默认）或 template（按端点模板）
+ */
+public class HeadlessScanner {
+
+    private final ScanConfig config;
+    private final int concurrency;
+    private final int parseThreads;
+    private final URI target;
+    private final boolean insecure;
+    private final Path indexFile;
+    private final Path baselinesFile;
+    private boolean dryRun;
+    private int workerCount;
+    private Integer listenPort;
+    private ScanCoordinator.Partition partition = ScanCoordinator.Partition.HOST;
+
+    private final ScanLogger logger = new ScanLogger() {
+        @Override
+        public void info(String message) {
+            System.err.println(message);
+        }
+
+        @Override
+        public void error(String message) {
+            System.err.println("[错误] " + message);
+        }
+    };
+
+    public HeadlessScanner(ScanConfig config, int concurrency, int parseThreads, URI target, boolean insecure) {
+        this(config, concurrency, parseThreads, target, insecure, null);
+    }
+
+    public HeadlessScanner(ScanConfig config, int concurrency, int parseThreads, URI target, boolean insecure,
+                           Path indexFile) {
+        this(config, concurrency, parseThreads, target, insecure, indexFile, null);
+    }
+
+    /**
+     * @param indexFile     已测试端点索引文件，为null时不保存
+     * @param baselinesFile 基准响应指纹文件，不为null时执行差异重扫
+     */
+    public HeadlessScanner(ScanConfig config, int concurrency, int parseThreads, URI target, boolean insecure,
+                           Path indexFile, Path baselinesFile) {
+        this.config = config;
+        this.concurrency = concurrency;
+        this.parseThreads = parseThreads;
+        this.target = target;
+        this.insecure = insecure;
+        this.indexFile = indexFile;
+        this.baselinesFile = baselinesFile;
+    }
+
+    /**
+     * 只生成扫描计划，不发送请求（计划输出到日志）
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * 分布式扫描：先生成扫描计划，再分片交给工作进程执行
+     *
+     * @param workerCount 启动的本机工作进程数，0表示不启动（由用户手动启动）
+     * @param listenPort  等待工作进程连接的端口，为null时任选空闲端口
+     * @param partition   分片方式
+     */
+    public void setDistributed(int workerCount, Integer listenPort, ScanCoordinator.Partition partition) {
+        this.workerCount = Math.max(0, workerCount);
+        this.listenPort = listenPort;
+        this.partition = partition;
+    }
+
+    private boolean isDistributed() {
+        return workerCount > 0 || listenPort != null;
+    }
+
+    public static void main(String[] args) {
+        Path configFile = null;
+        Path outputFile = null;
+        Integer concurrency = null;
+        int parseThreads = Runtime.getRuntime().availableProcessors();
+        URI target = null;
+        boolean insecure = false;
+        Path indexFile = null;
+        Path baselinesFile = null;
+        boolean dryRun = false;
+        int workers = 0;
+        Integer listenPort = null;
+        ScanCoordinator.Partition partition = ScanCoordinator.Partition.HOST;
+        List<Path> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--config" -> configFile = Path.of(args[++i]);
+                    case "--output" -> outputFile = Path.of(args[++i]);
+                    case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "--parse-threads" -> parseThreads = Integer.parseInt(args[++i]);
+                    case "--target" -> target = URI.create(args[++i]);
+                    case "--insecure" -> insecure = true;
+                    case "--index" -> indexFile = Path.of(args[++i]);
+                    case "--baselines" -> baselinesFile = Path.of(args[++i]);
+                    case "--dry-run" -> dryRun = true;
+                    case "--workers" -> workers = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--listen" -> listenPort = Integer.parseInt(args[++i]);
+                    case "--partition" -> partition = ScanCoordinator.Partition.valueOf(args[++i].toUpperCase());
+                    case "--help", "-h" -> {
+                        printUsage();
+                        return;
+                    }
+                    default -> inputs.add(Path.of(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("参数错误: " + e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+
+        if (configFile == null || inputs.isEmpty()) {
+            printUsage();
+            System.exit(2);
+        }
+
+        try {
+            ScanConfig config = ScanConfigLoader.load(configFile);
+            HeadlessScanner scanner = new HeadlessScanner(config,
+                    concurrency != null ? Math.max(1, concurrency) : config.getThreadCount(),
+                    Math.max(1, parseThreads), target, insecure, indexFile, baselinesFile);
+            scanner.setDryRun(dryRun);
+            scanner.setDistributed(workers, listenPort, partition);
+
+            try (JsonlResultWriter writer = new JsonlResultWriter(outputFile)) {
+                scanner.run(inputs, writer);
+            }
+        } catch (IOException e) {
+            System.err.println("扫描失败: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(130);
+        }
+    }
+
+    /**
+     * 扫描所有输入文件
+     *
+     * @param inputs 导出文件
+     * @param writer 结果输出
+     */
+    public void run(List<Path> inputs, JsonlResultWriter writer) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        boolean distributed = isDistributed() && !dryRun;
+        if (distributed && baselinesFile != null) {
+            throw new IOException("分布式扫描不支持 --baselines");
+        }
+        TestedEndpointIndex testedIndex = new TestedEndpointIndex(() -> readFile(indexFile, "索引"), true);
+        // 差异重扫不受已测试记录影响，过滤时使用本次独立的去重索引
+        boolean differential = baselinesFile != null;
+        BaselineStore baselineStore = differential ? new BaselineStore(() -> readFile(baselinesFile, "基准响应指纹")) : null;
+        RequestFilter requestFilter = new RequestFilter(config, differential ? new TestedEndpointIndex() : testedIndex);
+        TemplateSampler templateSampler = new TemplateSampler(config);
+        for (String error : requestFilter.getInvalidPathPatterns()) {
+            logger.error("无效的路径正则，已忽略: " + error);
+        }
+        ScanPlan plan = dryRun || distributed ? new ScanPlan(concurrency, TestedEndpointIndex.columns(config)) : null;
+        EndpointScorer endpointScorer = new EndpointScorer();
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicLong submitted = new AtomicLong();
+        AtomicLong completed = new AtomicLong();
+        long read;
+        long skippedNoOp;
+        long shared;
+
+        try (SingleFlightTransport transport = new SingleFlightTransport(newTransport())) {
+            RequestScanner requestScanner = new RequestScanner(config, transport, logger, baselineStore);
+            ExecutorService workers = newWorkerExecutor(concurrency);
+
+            try {
+                // 每个文件一个解析线程，解析线程负责过滤；信号量限制在途任务数，
+                // 工作线程跟不上时解析会阻塞，内存占用不随文件大小增长
+                read = HistoryImporter.importAll(inputs, parseThreads, entry -> {
+                    ScanRequest request = entry.getRequest();
+                    ClassifiedRequest classified = requestFilter.classify(request, templateSampler);
+                    if (classified == null) {
+                        return;
+                    }
+                    if (plan != null) {
+                        ScanResponse recorded = entry.hasResponse() ? entry.getResponse() : null;
+                        plan.add(new ScanPlan.Item(request, classified.getCredentialColumns(), classified.getSampleKey(),
+                                classified.getTemplateKey(),
+                                endpointScorer.score(request, classified.getTemplateKey(), recorded != null ? recorded.body().length : -1),
+                                requestScanner.estimateRequests(request, classified.getCredentialColumns())));
+                        return;
+                    }
+
+                    permits.acquireUninterruptibly();
+                    submitted.incrementAndGet();
+                    workers.execute(() -> {
+                        try {
+                            // 样本发现漏洞时，同模板暂缓的请求在当前线程中依次补充扫描
+                            Deque<ScanRequest> pending = new ArrayDeque<>();
+                            Consumer<ScanResult> onResult = result -> {
+                                writer.write(result);
+                                pending.addAll(templateSampler.expand(classified.getSampleKey()));
+                            };
+                            boolean complete;
+                            if (differential) {
+                                complete = requestScanner.rescan(request, () -> true, onResult) != null;
+                                if (complete) {
+                                    testedIndex.markTested(TestedEndpointIndex.endpointKey(request), classified.getCredentialColumns());
+                                }
+                            } else {
+                                complete = requestScanner.scan(request, classified.getCredentialColumns(), () -> true, onResult);
+                            }
+                            // 请求失败的不记为已测试，写回索引后下次重新检测
+                            if (!complete) {
+                                requestFilter.release(request, classified.getCredentialColumns());
+                                templateSampler.release(classified.getSampleKey());
+                            }
+                            while (!pending.isEmpty()) {
+                                // 暂缓时未领取，扫描前领取
+                                ScanRequest deferred = pending.poll();
+                                long[] columns = requestFilter.claimDeferred(deferred, classified.getCredentialColumns());
+                                if (columns.length > 0
+                                        && !requestScanner.scan(deferred, columns, () -> true, onResult)) {
+                                    requestFilter.release(deferred, columns);
+                                }
+                            }
+                        } catch (RuntimeException e) {
+                            logger.error("扫描请求失败: " + e.getMessage());
+                        } finally {
+                            permits.release();
+                            long done = completed.incrementAndGet();
+                            if (done % 1000 == 0) {
+                                logger.info("已完成 " + done + " 个请求，发现 " + writer.getCount() + " 个结果");
+                            }
+                        }
+                    });
+                });
+            } finally {
+                workers.shutdown();
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            skippedNoOp = requestScanner.getSkippedNoOpCount();
+            shared = transport.getSharedCount();
+        }
+
+        if (plan != null) {
+            // 独立运行时没有历史延迟记录，按默认延迟估算
+            plan.finish(templateSampler.getDeferredCount(), requestFilter.getUnauthenticatedCount(),
+                    host -> HostLatencyTracker.DEFAULT_LATENCY_MILLIS, host -> false);
+            logger.info("读取 " + read + " 条\n" + plan.getSummary());
+            if (!distributed) {
+                return;
+            }
+            submitted.set(plan.getEndpointCount());
+            runDistributed(plan, requestFilter, templateSampler, writer);
+        }
+
+        if (indexFile != null) {
+            Files.write(indexFile, testedIndex.toBytes());
+        }
+        if (differential) {
+            Files.write(baselinesFile, baselineStore.toBytes());
+            logger.info("差异重扫: " + baselineStore.getSummary());
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (!distributed) {
+            logger.info(String.format("跳过不带认证信息的请求 %d 条，替换凭证后不变的测试请求 %d 个，合并相同请求 %d 个",
+                    requestFilter.getUnauthenticatedCount(), skippedNoOp, shared));
+        }
+        logger.info(String.format("扫描完成: 读取 %d 条，扫描 %d 条，同模板暂缓 %d 条，发现 %d 个结果，耗时 %.1f 秒",
+                read, submitted.get(), templateSampler.getDeferredCount(), writer.getCount(), elapsed / 1000.0));
+    }
+
+    /**
+     * 分布式扫描：启动本机工作进程，把计划分片交给它们执行
+     * 样本发现漏洞时，同模板暂缓的请求作为新的分片追加；未完成的请求（如工作进程全部退出）放回索引，下次重新测试
+     */
+    private void runDistributed(ScanPlan plan, RequestFilter requestFilter, TemplateSampler templateSampler,
+                                JsonlResultWriter writer) throws IOException, InterruptedException {
+        List<Process> processes = new ArrayList<>();
+        Set<ScanPlan.Item> done = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        List<ScanPlan.Item> submittedItems = Collections.synchronizedList(new ArrayList<>(plan.getItems()));
+
+        try (ScanCoordinator coordinator = new ScanCoordinator(config, logger)) {
+            int port = coordinator.start(listenPort != null ? listenPort : 0);
+            if (listenPort != null) {
+                logger.info("手动启动工作进程: java -cp " + System.getProperty("java.class.path") + " "
+                        + ScanWorker.class.getName() + " --connect 127.0.0.1:" + port + " --token " + coordinator.getToken());
+            }
+            for (int i = 1; i <= workerCount; i++) {
+                processes.add(startWorker(port, coordinator.getToken(), i));
+            }
+
+            AtomicLong finished = new AtomicLong();
+            int unfinished = coordinator.execute(plan.getItems(), partition, ScanCoordinator.DEFAULT_SHARD_SIZE,
+                    new ScanControl(), (item, results, complete) -> {
+                        List<ScanPlan.Item> expanded = new ArrayList<>();
+                        for (ScanResult result : results) {
+                            writer.write(result);
+                            for (ScanRequest request : templateSampler.expand(item.getSampleKey())) {
+                                long[] columns = requestFilter.claimDeferred(request, item.getColumns());
+                                if (columns.length > 0) {
+                                    expanded.add(new ScanPlan.Item(request, columns, item.getSampleKey(),
+                                            item.getTemplateKey(), item.getPriority(), item.getRequestCount()));
+                                }
+                            }
+                        }
+                        done.add(item);
+                        if (!complete) {
+                            // 请求失败的不记为已测试，写回索引后下次重新检测
+                            requestFilter.release(item.getRequest(), item.getColumns());
+                            templateSampler.release(item.getSampleKey());
+                        }
+                        if (!expanded.isEmpty()) {
+                            submittedItems.addAll(expanded);
+                            coordinator.submit(expanded);
+                        }
+                        if (finished.incrementAndGet() % 1000 == 0) {
+                            logger.info(coordinator.getStatus() + "，发现 " + writer.getCount() + " 个结果");
+                        }
+                    });
+            logger.info(coordinator.getStatus());
+
+            if (unfinished > 0) {
+                logger.error("有 " + unfinished + " 个请求未完成，已放回索引，下次重新测试");
+                synchronized (submittedItems) {
+                    for (ScanPlan.Item item : submittedItems) {
+                        if (!done.contains(item)) {
+                            requestFilter.release(item.getRequest(), item.getColumns());
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动一个本机工作进程（与当前进程使用同一个JVM和类路径），握手令牌通过环境变量传入
+     */
+    private Process startWorker(int port, String token, int number) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScanWorker.class.getName());
+        command.add("--connect");
+        command.add("127.0.0.1:" + port);
+        command.add("--name");
+        command.add("worker-" + number);
+        command.add("--concurrency");
+        command.add(String.valueOf(Math.max(1, concurrency / workerCount)));
+        if (target != null) {
+            command.add("--target");
+            command.add(target.toString());
+        }
+        if (insecure) {
+            command.add("--insecure");
+        }
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().put(ScanWorker.TOKEN_ENV, token);
+        return builder
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * 读取 --index / --baselines 指定的文件，文件不存在时返回null
+     */
+    private byte[] readFile(Path file, String name) {
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.error("读取" + name + "文件失败，将重新测试所有端点: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 创建传输层，指定了 --target 时只在发送时改发到该目标
+     */
+    private ScanTransport newTransport() {
+        ScanTransport transport = new JdkHttpTransport(config.getTimeout(), insecure);
+        return target != null ? new RetargetTransport(transport, target) : transport;
+    }
+
+    /**
+     * 创建工作线程池
+     * 运行在JDK 21+时使用虚拟线程（并发度由信号量控制），否则使用固定大小线程池
+     */
+    private static ExecutorService newWorkerExecutor(int concurrency) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("用法: java -jar privilege-escalation-scanner-headless.jar --config config.json [选项] 文件...");
+        System.err.println();
+        System.err.println("  --config FILE       扫描配置（JSON，字段同ScanConfig）");
+        System.err.println("  --output FILE       结果输出文件（JSONL），默认输出到标准输出");
+        System.err.println("  --concurrency N     同时检测的请求数，默认取配置中的threadCount");
+        System.err.println("  --parse-threads N   同时解析的文件数，默认取CPU核数");
+        System.err.println("  --target URL        把所有请求改发到指定目标（如 http://127.0.0.1:8080）");
+        System.err.println("  --insecure          信任所有TLS证书");
+        System.err.println("  --index FILE        已测试端点索引文件，跳过其中已测试的端点，结束时写回");
+        System.err.println("  --baselines FILE    差异重扫：只对基准响应变化、新增或上次发现漏洞的端点执行完整检测，结束时写回");
+        System.err.println("  --dry-run           只生成扫描计划（各主机请求数、预计耗时、成本最高的模板），不发送请求");
+        System.err.println("  --workers N         分布式扫描：启动N个本机工作进程，按分片分发扫描计划");
+        System.err.println("  --listen PORT       分布式扫描：在指定端口等待工作进程连接（工作进程可手动启动）");
+        System.err.println("  --partition MODE    分布式扫描的分片方式：host（按主机，默认）或 template（按端点模板）");
+        System.err.println();
+        System.err.println("  支持的输入格式: .har（HAR 1.2）、.xml（Burp导出）");
+    }
+}
@@ -0,0 +1,84 @@
+package burp.privilege.headless;
+
+import burp.privilege.model.ScanResult;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JSONL结果输出
+ * 每发现一个结果写一行JSON并立即刷新，任务中断时已写出的结果不会丢失
+ */
+public class JsonlResultWriter implements Closeable {
+
+    private final Writer writer;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param file 输出文件，为null时输出到标准输出
+     */
+    public JsonlResultWriter(Path file) throws IOException {
+        this.writer = file != null
+                ? Files.newBufferedWriter(file, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写出一个结果（线程安全）
+     */
+    public void write(ScanResult result) {
+        String line = gson.toJson(toJson(result));
+        synchronized (writer) {
+            try {
+                writer.write(line);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * 已写出的结果数量
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    private static JsonObject toJson(ScanResult result) {
+        JsonObject json = new JsonObject();
+        json.addProperty("scanTime", result.getScanTime().toString());
+        json.addProperty("vulnType", result.getVulnType() != null ? result.getVulnType().name() : null);
+        json.addProperty("riskLevel", result.getRiskLevel().name());
+        json.addProperty("method", result.getMethod());
+        json.addProperty("url", result.getUrl());
+        json.addProperty("originalStatusCode", result.getOriginalStatusCode());
+        json.addProperty("testStatusCode", result.getTestStatusCode());
+        json.addProperty("similarity", Math.round(result.getSimilarity() * 10) / 10.0);
+        json.addProperty("originalCredential", result.getOriginalCredentialName());
+        json.addProperty("testCredential", result.getTestCredentialName());
+        return json;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.flush();
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package burp.privilege.headless;
+
+import burp.privilege.model.ScanConfig;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 扫描配置加载器
+ * 从JSON文件读取ScanConfig，字段名与ScanConfig的属性一致，未出现的字段保持默认值
+ */
+public final class ScanConfigLoader {
+
+    private ScanConfigLoader() {
+    }
+
+    /**
+     * 加载配置文件
+     *
+     * @param file JSON配置文件
+     * @return 扫描配置
+     * @throws IOException 读取或解析失败
+     */
+    public static ScanConfig load(Path file) throws IOException {
+        ScanConfig config;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            config = new Gson().fromJson(reader, ScanConfig.class);
+        } catch (JsonParseException e) {
+            throw new IOException("配置文件解析失败: " + file, e);
+        }
+
+        if (config == null) {
+            throw new IOException("配置文件为空: " + file);
+        }
+        return clamp(config);
+    }
+
+    /**
+     * 从JSON文本读取配置（如分布式扫描时协调进程发来的配置）
+     *
+     * @throws IOException 解析失败
+     */
+    public static ScanConfig fromJson(String json) throws IOException {
+        ScanConfig config;
+        try {
+            config = new Gson().fromJson(json, ScanConfig.class);
+        } catch (JsonParseException e) {
+            throw new IOException("配置解析失败", e);
+        }
+        if (config == null) {
+            throw new IOException("配置为空");
+        }
+        return clamp(config);
+    }
+
+    /**
+     * Gson直接写字段，这里重新走一遍setter以应用取值范围限制
+     */
+    private static ScanConfig clamp(ScanConfig config) {
+        config.setSimilarityThreshold(config.getSimilarityThreshold());
+        config.setThreadCount(config.getThreadCount());
+        config.setTimeout(config.getTimeout());
+        config.setRetryCount(config.getRetryCount());
+        config.setTemplateSampleSize(config.getTemplateSampleSize());
+        return config;
+    }
+}
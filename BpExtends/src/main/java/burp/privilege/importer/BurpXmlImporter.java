@@ -0,0 +1,151 @@
+package burp.privilege.importer;
+
+import burp.privilege.model.MessageBody;
+import burp.privilege.model.ScanRequest;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Burp XML导入器
+ * 支持Proxy历史 / 站点地图中"Save items"导出的XML格式
+ *
+ * 使用StAX流式解析，每次只在内存中保留一个item；响应报文保持原始文本，需要时才解码
+ */
+public class BurpXmlImporter implements HistoryImporter {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    @Override
+    public long importFrom(Path file, Consumer<HistoryEntry> consumer) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader xml = FACTORY.createXMLStreamReader(in);
+            try {
+                long count = 0;
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && "item".equals(xml.getLocalName())) {
+                        HistoryEntry entry = readItem(xml);
+                        if (entry != null) {
+                            consumer.accept(entry);
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("XML解析失败: " + file, e);
+        }
+    }
+
+    /**
+     * 读取一个item（调用时位于item起始标签，返回时位于item结束标签）
+     */
+    private static HistoryEntry readItem(XMLStreamReader xml) throws XMLStreamException {
+        String host = null;
+        String port = null;
+        String protocol = null;
+        String status = null;
+        String request = null;
+        boolean requestBase64 = false;
+        String response = null;
+        boolean responseBase64 = false;
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "item".equals(xml.getLocalName())) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            switch (xml.getLocalName()) {
+                case "host" -> host = xml.getElementText().trim();
+                case "port" -> port = xml.getElementText().trim();
+                case "protocol" -> protocol = xml.getElementText().trim();
+                case "status" -> status = xml.getElementText().trim();
+                case "request" -> {
+                    requestBase64 = "true".equalsIgnoreCase(xml.getAttributeValue(null, "base64"));
+                    request = xml.getElementText();
+                }
+                case "response" -> {
+                    responseBase64 = "true".equalsIgnoreCase(xml.getAttributeValue(null, "base64"));
+                    response = xml.getElementText();
+                }
+                default -> skipElement(xml);
+            }
+        }
+
+        if (host == null || request == null || request.isEmpty()) {
+            return null;
+        }
+
+        boolean secure = "https".equalsIgnoreCase(protocol);
+        ScanRequest scanRequest;
+        try {
+            // 请求头用于过滤，必须立即解析
+            byte[] raw = requestBase64
+                    ? Base64.getMimeDecoder().decode(request)
+                    : request.getBytes(StandardCharsets.ISO_8859_1);
+            scanRequest = HttpMessageParser.parseRequest(host,
+                    port != null && !port.isEmpty() ? Integer.parseInt(port) : (secure ? 443 : 80),
+                    secure, raw);
+        } catch (IllegalArgumentException e) {
+            return null;  // 报文无法解析，跳过
+        }
+
+        MessageBody rawResponse = null;
+        if (response != null && !response.isEmpty()) {
+            rawResponse = responseBase64
+                    ? MessageBody.base64(response)
+                    : MessageBody.text(response, StandardCharsets.ISO_8859_1);
+        }
+
+        int statusCode = 0;
+        if (status != null && !status.isEmpty()) {
+            try {
+                statusCode = Integer.parseInt(status);
+            } catch (NumberFormatException e) {
+                // 状态码未知
+            }
+        }
+
+        return new HistoryEntry(scanRequest, statusCode, rawResponse);
+    }
+
+    /**
+     * 跳过当前元素及其子元素
+     */
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Burp导出文件带有内联DTD，不需要也不允许解析外部实体
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,213 @@
+package burp.privilege.importer;
+
+import burp.privilege.model.MessageBody;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * HAR导入器
+ * 支持浏览器开发者工具、Burp等导出的HAR 1.2格式
+ *
+ * 使用JsonReader流式解析，每次只在内存中保留一个条目，内存占用与文件大小无关；
+ * 报文体保持原始文本，需要时才解码
+ */
+public class HarImporter implements HistoryImporter {
+
+    @Override
+    public long importFrom(Path file, Consumer<HistoryEntry> consumer) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader json = new JsonReader(reader)) {
+            json.setLenient(true);
+
+            long count = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!"log".equals(json.nextName())) {
+                    json.skipValue();
+                    continue;
+                }
+
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (!"entries".equals(json.nextName())) {
+                        json.skipValue();
+                        continue;
+                    }
+
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        HistoryEntry entry = readEntry(json);
+                        if (entry != null) {
+                            consumer.accept(entry);
+                            count++;
+                        }
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+            }
+            json.endObject();
+            return count;
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("HAR解析失败: " + file, e);
+        }
+    }
+
+    /**
+     * 读取一个条目，请求无法识别时返回null
+     */
+    private static HistoryEntry readEntry(JsonReader json) throws IOException {
+        ScanRequest request = null;
+        ScanResponse response = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "request" -> request = readRequest(json);
+                case "response" -> response = readResponse(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return request != null ? new HistoryEntry(request, response) : null;
+    }
+
+    private static ScanRequest readRequest(JsonReader json) throws IOException {
+        String method = null;
+        String url = null;
+        String httpVersion = null;
+        List<ScanRequest.Header> headers = new ArrayList<>();
+        MessageBody body = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "method" -> method = nextString(json);
+                case "url" -> url = nextString(json);
+                case "httpVersion" -> httpVersion = nextString(json);
+                case "headers" -> readHeaders(json, headers);
+                case "postData" -> body = readContent(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (method == null || url == null) {
+            return null;
+        }
+
+        try {
+            return HttpMessageParser.requestFromUrl(method, url, normalizeVersion(httpVersion), headers, body);
+        } catch (IllegalArgumentException e) {
+            return null;  // 无法识别的URL，跳过
+        }
+    }
+
+    private static ScanResponse readResponse(JsonReader json) throws IOException {
+        int status = 0;
+        List<ScanRequest.Header> headers = new ArrayList<>();
+        MessageBody body = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "status" -> status = json.peek() == JsonToken.NUMBER ? json.nextInt() : skip(json);
+                case "headers" -> readHeaders(json, headers);
+                case "content" -> body = readContent(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return new ScanResponse(status, headers, body, 0);
+    }
+
+    private static void readHeaders(JsonReader json, List<ScanRequest.Header> headers) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+
+        json.beginArray();
+        while (json.hasNext()) {
+            String name = null;
+            String value = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name" -> name = nextString(json);
+                    case "value" -> value = nextString(json);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (name != null && value != null) {
+                headers.add(new ScanRequest.Header(name, value));
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * 读取postData / content，只保存原始文本，不解码
+     */
+    private static MessageBody readContent(JsonReader json) throws IOException {
+        String text = null;
+        String encoding = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "text" -> text = nextString(json);
+                case "encoding" -> encoding = nextString(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return "base64".equalsIgnoreCase(encoding)
+                ? MessageBody.base64(text)
+                : MessageBody.text(text, StandardCharsets.UTF_8);
+    }
+
+    private static String nextString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    private static int skip(JsonReader json) throws IOException {
+        json.skipValue();
+        return 0;
+    }
+
+    /**
+     * HAR中的版本号写法不统一（HTTP/1.1、http/2.0、h2等），统一为请求行格式
+     */
+    private static String normalizeVersion(String httpVersion) {
+        if (httpVersion == null) {
+            return "HTTP/1.1";
+        }
+        String upper = httpVersion.toUpperCase();
+        if (upper.equals("H2") || upper.startsWith("HTTP/2")) {
+            return "HTTP/2";
+        }
+        return upper.startsWith("HTTP/") ? upper : "HTTP/1.1";
+    }
+}
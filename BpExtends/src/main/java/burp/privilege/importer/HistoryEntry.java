@@ -0,0 +1,81 @@
+package burp.privilege.importer;
+
+import burp.privilege.model.MessageBody;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+/**
+ * 历史记录条目
+ * 从HAR或Burp XML导出文件中读取的一条请求/响应
+ *
+ * 响应按需解析：导出文件中的原始响应报文只在调用{@link #getResponse()}时才解码，
+ * 大多数条目在过滤阶段就被丢弃，不会产生解码开销
+ */
+public class HistoryEntry {
+
+    private final ScanRequest request;
+    private final int statusCode;
+
+    /** 未解析的原始响应报文（Burp XML） */
+    private final MessageBody rawResponse;
+
+    private volatile ScanResponse response;
+
+    /**
+     * @param request  请求
+     * @param response 已解析的响应（报文体可延迟解码），没有响应时为null
+     */
+    public HistoryEntry(ScanRequest request, ScanResponse response) {
+        this.request = request;
+        this.response = response;
+        this.statusCode = response != null ? response.statusCode() : 0;
+        this.rawResponse = null;
+    }
+
+    /**
+     * @param request     请求
+     * @param statusCode  导出文件中记录的状态码，未知时为0
+     * @param rawResponse 原始响应报文，没有响应时为null
+     */
+    public HistoryEntry(ScanRequest request, int statusCode, MessageBody rawResponse) {
+        this.request = request;
+        this.statusCode = statusCode;
+        this.rawResponse = rawResponse;
+    }
+
+    public ScanRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * 记录的状态码（无需解析响应），未知时返回0
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 记录的响应，导出文件中没有响应或响应无法解析时返回null
+     */
+    public ScanResponse getResponse() {
+        ScanResponse r = response;
+        if (r == null && rawResponse != null) {
+            synchronized (this) {
+                r = response;
+                if (r == null) {
+                    try {
+                        r = HttpMessageParser.parseResponse(rawResponse.bytes());
+                        response = r;
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    public boolean hasResponse() {
+        return response != null || rawResponse != null;
+    }
+}
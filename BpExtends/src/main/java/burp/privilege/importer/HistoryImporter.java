@@ -0,0 +1,85 @@
+package burp.privilege.importer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 历史记录导入器
+ * 流式读取流量导出文件，逐条交给消费者处理
+ */
+public interface HistoryImporter {
+
+    /**
+     * 导入文件中的所有条目
+     *
+     * @param file     导出文件
+     * @param consumer 条目回调（在调用线程中执行，阻塞时导入随之暂停）
+     * @return 导入的条目数量
+     * @throws IOException 读取或解析失败
+     */
+    long importFrom(Path file, Consumer<HistoryEntry> consumer) throws IOException;
+
+    /**
+     * 根据文件扩展名选择导入器
+     * .har -> HAR，.xml -> Burp XML
+     */
+    static HistoryImporter forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".har") || name.endsWith(".json")) {
+            return new HarImporter();
+        }
+        if (name.endsWith(".xml")) {
+            return new BurpXmlImporter();
+        }
+        throw new IllegalArgumentException("不支持的文件格式: " + file);
+    }
+
+    /**
+     * 并行导入多个文件，每个文件由一个线程解析
+     *
+     * @param files       导出文件
+     * @param parallelism 同时解析的文件数
+     * @param consumer    条目回调（会被多个线程同时调用，必须线程安全）
+     * @return 导入的条目总数
+     * @throws IOException 任一文件读取或解析失败
+     * @throws InterruptedException 等待时被中断
+     */
+    static long importAll(List<Path> files, int parallelism, Consumer<HistoryEntry> consumer)
+            throws IOException, InterruptedException {
+        for (Path file : files) {
+            forFile(file);  // 提前校验格式，避免解析到一半才失败
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())));
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(executor.submit(() -> forFile(file).importFrom(file, consumer)));
+            }
+
+            long total = 0;
+            for (Future<Long> future : futures) {
+                try {
+                    total += future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package burp.privilege.importer;
+
+import burp.privilege.model.MessageBody;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 原始HTTP报文解析工具
+ */
+final class HttpMessageParser {
+
+    private HttpMessageParser() {
+    }
+
+    /**
+     * 根据URL构造请求
+     *
+     * @param method  HTTP方法
+     * @param url     完整URL
+     * @param httpVersion HTTP版本
+     * @param headers 请求头（HTTP/2伪头部会被忽略）
+     * @param body    请求体（可延迟解码），可为null
+     * @return 扫描请求
+     */
+    static ScanRequest requestFromUrl(String method, String url, String httpVersion,
+                                      List<ScanRequest.Header> headers, MessageBody body) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            throw new IllegalArgumentException("无效URL: " + url);
+        }
+
+        boolean secure = url.substring(0, schemeEnd).equalsIgnoreCase("https");
+        int authorityStart = schemeEnd + 3;
+        int pathStart = indexOfAny(url, authorityStart, '/', '?', '#');
+        String authority = url.substring(authorityStart, pathStart < 0 ? url.length() : pathStart);
+        String path = pathStart < 0 ? "/" : url.substring(pathStart);
+
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) {
+            path = path.substring(0, fragment);
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+
+        int at = authority.lastIndexOf('@');
+        if (at >= 0) {
+            authority = authority.substring(at + 1);
+        }
+
+        String host = authority;
+        int port = secure ? 443 : 80;
+        int colon = authority.lastIndexOf(':');
+        if (colon > authority.lastIndexOf(']')) {
+            host = authority.substring(0, colon);
+            port = Integer.parseInt(authority.substring(colon + 1));
+        }
+
+        List<ScanRequest.Header> filtered = new ArrayList<>(headers.size());
+        for (ScanRequest.Header header : headers) {
+            if (!header.getName().startsWith(":")) {
+                filtered.add(header);
+            }
+        }
+
+        return new ScanRequest(method, host, port, secure, path, httpVersion, filtered, body);
+    }
+
+    /**
+     * 解析原始HTTP请求报文
+     */
+    static ScanRequest parseRequest(String host, int port, boolean secure, byte[] raw) {
+        int headerEnd = findHeaderEnd(raw);
+        String head = new String(raw, 0, headerEnd < 0 ? raw.length : headerEnd, StandardCharsets.ISO_8859_1);
+        String[] lines = head.split("\r?\n");
+
+        String[] requestLine = lines[0].split(" ", 3);
+        if (requestLine.length < 2) {
+            throw new IllegalArgumentException("无效请求行: " + lines[0]);
+        }
+        String httpVersion = requestLine.length > 2 ? requestLine[2].trim() : "HTTP/1.1";
+
+        return new ScanRequest(requestLine[0], host, port, secure, requestLine[1], httpVersion,
+                parseHeaders(lines), bodyOf(raw, headerEnd));
+    }
+
+    /**
+     * 解析原始HTTP响应报文
+     */
+    static ScanResponse parseResponse(byte[] raw) {
+        int headerEnd = findHeaderEnd(raw);
+        String head = new String(raw, 0, headerEnd < 0 ? raw.length : headerEnd, StandardCharsets.ISO_8859_1);
+        String[] lines = head.split("\r?\n");
+
+        String[] statusLine = lines[0].split(" ", 3);
+        int statusCode = statusLine.length > 1 ? Integer.parseInt(statusLine[1].trim()) : 0;
+
+        return new ScanResponse(statusCode, parseHeaders(lines), bodyOf(raw, headerEnd), 0);
+    }
+
+    private static List<ScanRequest.Header> parseHeaders(String[] lines) {
+        List<ScanRequest.Header> headers = new ArrayList<>(lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.add(new ScanRequest.Header(lines[i].substring(0, colon).trim(),
+                        lines[i].substring(colon + 1).trim()));
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] bodyOf(byte[] raw, int headerEnd) {
+        if (headerEnd < 0) {
+            return new byte[0];
+        }
+        int bodyStart = headerEnd + (raw[headerEnd] == '\r' ? 4 : 2);
+        return bodyStart >= raw.length ? new byte[0] : Arrays.copyOfRange(raw, bodyStart, raw.length);
+    }
+
+    /**
+     * 查找头部结束位置（空行起始下标），未找到时返回-1
+     */
+    private static int findHeaderEnd(byte[] raw) {
+        for (int i = 0; i + 1 < raw.length; i++) {
+            if (raw[i] == '\n' && raw[i + 1] == '\n') {
+                return i;
+            }
+            if (i + 3 < raw.length && raw[i] == '\r' && raw[i + 1] == '\n' && raw[i + 2] == '\r' && raw[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfAny(String s, int from, char... chars) {
+        for (int i = from; i < s.length(); i++) {
+            for (char c : chars) {
+                if (s.charAt(i) == c) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -1,9 +1,5 @@
 package burp.privilege.model;
 
-import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.http.message.HttpHeader;
-
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +9,20 @@ import java.util.Map;
  * 用于存储用户的认证信息（Cookie、Token等）
  */
 public class AuthCredential {
+
+    /** 携带认证信息的请求头（未授权检测时全部移除） */
+    public static final List<String> AUTH_HEADERS = List.of(
+            "Cookie",
+            "Authorization",
+            "X-Auth-Token",
+            "X-CSRF-Token",
+            "X-Token",
+            "Auth-Token",
+            "X-Access-Token",
+            "X-Session-Token",
+            "Authentication"
+    );
+
     private String name;  // 凭证名称，如"用户A"、"管理员"
 
     // Cookie
@@ -42,8 +52,8 @@ public class AuthCredential {
      * @param request 原始请求
      * @return 修改后的请求
      */
-    public HttpRequest applyTo(HttpRequest request) {
-        HttpRequest modified = request;
+    public ScanRequest applyTo(ScanRequest request) {
+        ScanRequest modified = request;
 
         // 替换Cookie
         if (cookie != null && !cookie.isEmpty()) {
@@ -69,21 +79,9 @@ public class AuthCredential {
      * @param request 原始请求
      * @return 移除认证信息后的请求
      */
-    public static HttpRequest removeAuth(HttpRequest request) {
-        List<String> authHeaders = List.of(
-                "Cookie",
-                "Authorization",
-                "X-Auth-Token",
-                "X-CSRF-Token",
-                "X-Token",
-                "Auth-Token",
-                "X-Access-Token",
-                "X-Session-Token",
-                "Authentication"
-        );
-
-        HttpRequest modified = request;
-        for (String header : authHeaders) {
+    public static ScanRequest removeAuth(ScanRequest request) {
+        ScanRequest modified = request;
+        for (String header : AUTH_HEADERS) {
             if (modified.hasHeader(header)) {
                 modified = modified.withRemovedHeader(header);
             }
@@ -92,13 +90,46 @@ public class AuthCredential {
         return modified;
     }
 
+    /**
+     * 请求是否携带认证信息（不携带时未授权检测发送的请求与原请求相同）
+     */
+    public static boolean hasAuth(ScanRequest request) {
+        for (String header : AUTH_HEADERS) {
+            if (request.hasHeader(header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 应用此凭证后请求是否不变（凭证为空，或与请求中的认证信息相同），此时测试没有意义
+     *
+     * @param request 原始请求
+     */
+    public boolean isNoOpFor(ScanRequest request) {
+        if (cookie != null && !cookie.isEmpty() && !cookie.equals(request.headerValue("Cookie"))) {
+            return false;
+        }
+        if (authorizationHeader != null && !authorizationHeader.isEmpty()
+                && !authorizationHeader.equals(request.headerValue("Authorization"))) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : customHeaders.entrySet()) {
+            if (!entry.getValue().equals(request.headerValue(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 获取请求中现有的认证信息作为凭证
      *
      * @param request HTTP请求
      * @return 提取的认证凭证
      */
-    public static AuthCredential extractFrom(HttpRequest request, String name) {
+    public static AuthCredential extractFrom(ScanRequest request, String name) {
         AuthCredential credential = new AuthCredential(name);
 
         // 提取Cookie
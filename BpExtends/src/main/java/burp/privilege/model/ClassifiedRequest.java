@@ -0,0 +1,105 @@
+package burp.privilege.model;
+
+/**
+ * 通过过滤的请求及其预先计算的元数据
+ * 在过滤阶段一次性计算，后续检测阶段直接使用，避免重复解析
+ */
+public class ClassifiedRequest {
+
+    private final ScanRequest request;
+
+    /** 端点标识（方法 + URL），用于去重 */
+    private final String endpointKey;
+
+    /** 端点模板标识（ID类片段替换为占位符），用于抽样 */
+    private final String templateKey;
+
+    /** 主机分片标识（host:port） */
+    private final String hostKey;
+
+    /** 请求体类型（不含参数，小写），无请求体时为空字符串 */
+    private final String contentType;
+
+    /** 认证指纹（认证头取值的哈希），请求不带认证信息时为0 */
+    private final long authFingerprint;
+
+    /** 需要测试的凭证列（见TestedEndpointIndex），null表示全部列 */
+    private final long[] credentialColumns;
+
+    /** 是否只需要测试部分凭证列 */
+    private final boolean partial;
+
+    public ClassifiedRequest(ScanRequest request, String endpointKey, String templateKey, String hostKey,
+                             String contentType, long authFingerprint) {
+        this(request, endpointKey, templateKey, hostKey, contentType, authFingerprint, null, false);
+    }
+
+    /**
+     * @param credentialColumns 过滤时领取或查询到的具体凭证列
+     * @param partial           是否少于配置的全部列
+     */
+    public ClassifiedRequest(ScanRequest request, String endpointKey, String templateKey, String hostKey,
+                             String contentType, long authFingerprint, long[] credentialColumns, boolean partial) {
+        this.request = request;
+        this.endpointKey = endpointKey;
+        this.templateKey = templateKey;
+        this.hostKey = hostKey;
+        this.contentType = contentType;
+        this.authFingerprint = authFingerprint;
+        this.credentialColumns = credentialColumns;
+        this.partial = partial;
+    }
+
+    public ScanRequest getRequest() {
+        return request;
+    }
+
+    public String getEndpointKey() {
+        return endpointKey;
+    }
+
+    public String getTemplateKey() {
+        return templateKey;
+    }
+
+    public String getHostKey() {
+        return hostKey;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getAuthFingerprint() {
+        return authFingerprint;
+    }
+
+    public boolean hasAuth() {
+        return authFingerprint != 0;
+    }
+
+    public long[] getCredentialColumns() {
+        return credentialColumns;
+    }
+
+    /**
+     * 是否只需要测试部分凭证（如新增的测试凭证）
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * 抽样标识：只测试部分凭证时按"模板 + 列"单独抽样，新增凭证不会因模板已抽满而被暂缓
+     */
+    public String getSampleKey() {
+        if (!partial) {
+            return templateKey;
+        }
+        long hash = 0;
+        for (long column : credentialColumns) {
+            hash += column * 0x9e3779b97f4a7c15L;
+        }
+        return templateKey + " #" + Long.toHexString(hash);
+    }
+}
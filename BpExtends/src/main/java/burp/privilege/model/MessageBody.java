@@ -0,0 +1,78 @@
+package burp.privilege.model;
+
+import java.nio.charset.Charset;
+import java.util.Base64;
+
+/**
+ * 报文体
+ * 支持延迟解码：从导出文件读取时只保存原始文本（如base64），第一次读取字节时才解码，
+ * 过滤阶段被丢弃的条目不会产生解码开销
+ */
+public final class MessageBody {
+
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final MessageBody EMPTY = new MessageBody(NO_BYTES, null, null);
+
+    private volatile byte[] bytes;
+
+    /** 未解码的原始文本，解码后释放 */
+    private String encoded;
+
+    /** 原始文本的字符集，为null表示base64 */
+    private final Charset charset;
+
+    private MessageBody(byte[] bytes, String encoded, Charset charset) {
+        this.bytes = bytes;
+        this.encoded = encoded;
+        this.charset = charset;
+    }
+
+    public static MessageBody empty() {
+        return EMPTY;
+    }
+
+    public static MessageBody of(byte[] bytes) {
+        return bytes == null || bytes.length == 0 ? EMPTY : new MessageBody(bytes, null, null);
+    }
+
+    /**
+     * base64编码的报文体，读取时解码
+     */
+    public static MessageBody base64(String encoded) {
+        return encoded == null || encoded.isEmpty() ? EMPTY : new MessageBody(null, encoded, null);
+    }
+
+    /**
+     * 文本报文体，读取时按字符集编码为字节
+     */
+    public static MessageBody text(String text, Charset charset) {
+        return text == null || text.isEmpty() ? EMPTY : new MessageBody(null, text, charset);
+    }
+
+    /**
+     * 获取字节（首次调用时解码）
+     */
+    public byte[] bytes() {
+        byte[] b = bytes;
+        if (b == null) {
+            synchronized (this) {
+                b = bytes;
+                if (b == null) {
+                    b = charset == null
+                            ? Base64.getMimeDecoder().decode(encoded)
+                            : encoded.getBytes(charset);
+                    bytes = b;
+                    encoded = null;
+                }
+            }
+        }
+        return b;
+    }
+
+    /**
+     * 是否已解码
+     */
+    public boolean isDecoded() {
+        return bytes != null;
+    }
+}
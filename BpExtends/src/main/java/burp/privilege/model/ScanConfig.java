@@ -2,7 +2,10 @@ package burp.privilege.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 扫描配置类
@@ -50,18 +53,54 @@ public class ScanConfig {
     /** 重试次数 */
     private int retryCount = 1;
 
+    /** 批量扫描时间预算（分钟），用完后不再检测剩余的低优先级请求，0表示不限 */
+    private int scanBudgetMinutes = 0;
+
+    /** 批量扫描请求预算（检测的请求数），0表示不限 */
+    private int scanBudgetRequests = 0;
+
+    /** 批量扫描时是否写检查点日志（中断后可以恢复未完成的部分） */
+    private boolean checkpointEnabled = true;
+
+    /** 实时扫描队列容量（队列满时丢弃最早的请求） */
+    private int liveQueueCapacity = 1000;
+
+    /** 扫描时是否复用缓存的响应（只用于GET、HEAD、OPTIONS；结果详情始终使用缓存） */
+    private boolean useResponseCache = false;
+
+    /** 响应缓存上限（MB，按压缩后的大小计算） */
+    private int responseCacheMb = 64;
+
+    /** 响应缓存有效期（秒） */
+    private int responseCacheTtlSeconds = 300;
+
+    /** 按主机设置的响应缓存有效期（秒），0表示该主机不缓存 */
+    private Map<String, Integer> hostCacheTtlSeconds = new HashMap<>();
+
     // ========== 过滤配置 ==========
     /** 是否排除静态资源 */
     private boolean excludeStaticResources = true;
 
+    /** 是否同时扫描站点地图（包含Repeater、Intruder、爬虫等不经过Proxy的请求） */
+    private boolean includeSiteMap = true;
+
     /** 静态资源扩展名 */
     private List<String> staticExtensions = Arrays.asList(
             "js", "css", "png", "jpg", "jpeg", "gif", "ico", "woff", "woff2", "ttf", "svg", "mp4", "mp3"
     );
 
+    /** 是否跳过不带认证信息的请求（公开接口，替换或移除凭证后请求不变） */
+    private boolean skipUnauthenticated = true;
+
     /** 是否排除已测试的请求 */
     private boolean excludeTested = true;
 
+    /** 每个端点模板扫描的样本数（如 /api/orders/{num}），0表示不合并 */
+    private int templateSampleSize = 3;
+
+    /** 样本发现漏洞时是否继续扫描同模板的其余请求 */
+    private boolean expandOnFinding = false;
+
     /** 包含的HTTP方法（空表示全部） */
     private List<String> includeMethods = new ArrayList<>();
 
@@ -81,6 +120,9 @@ public class ScanConfig {
             "/login", "/signin", "/auth/login", "/auth/signin", "/sso/login"
     );
 
+    /** 配置版本，每次修改加一，扫描组件据此判断编译结果是否过期（不保存） */
+    private final transient AtomicLong version = new AtomicLong();
+
     public ScanConfig() {
         // 默认配置
     }
@@ -89,6 +131,26 @@ public class ScanConfig {
         this.targetDomains.add(domain);
     }
 
+    /**
+     * 配置版本（每次通过setter修改后变化）
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void changed() {
+        // 多个线程同时修改时每次都要生效，不能用volatile自增
+        version.incrementAndGet();
+    }
+
+    /**
+     * 批量修改配置：修改期间扫描组件继续使用旧的编译快照，结束后一次取到全部修改
+     * （快照在同一把锁内编译，不会编入一半的修改）
+     */
+    public synchronized void edit(Runnable edits) {
+        edits.run();
+    }
+
     // ========== Getters and Setters ==========
 
     public List<String> getTargetDomains() {
@@ -97,10 +159,27 @@ public class ScanConfig {
 
     public void setTargetDomains(List<String> targetDomains) {
         this.targetDomains = targetDomains;
+        changed();
     }
 
+    /**
+     * 添加目标域名（替换为新列表而不是原地修改，过滤器据此判断是否需要重新编译）
+     */
     public void addTargetDomain(String domain) {
-        this.targetDomains.add(domain);
+        List<String> domains = new ArrayList<>(targetDomains);
+        domains.add(domain);
+        this.targetDomains = domains;
+        changed();
+    }
+
+    /**
+     * 删除目标域名
+     */
+    public void removeTargetDomain(int index) {
+        List<String> domains = new ArrayList<>(targetDomains);
+        domains.remove(index);
+        this.targetDomains = domains;
+        changed();
     }
 
     public boolean isUseScopeOnly() {
@@ -109,6 +188,7 @@ public class ScanConfig {
 
     public void setUseScopeOnly(boolean useScopeOnly) {
         this.useScopeOnly = useScopeOnly;
+        changed();
     }
 
     public List<String> getPathIncludePatterns() {
@@ -117,6 +197,7 @@ public class ScanConfig {
 
     public void setPathIncludePatterns(List<String> pathIncludePatterns) {
         this.pathIncludePatterns = pathIncludePatterns;
+        changed();
     }
 
     public List<String> getPathExcludePatterns() {
@@ -125,6 +206,7 @@ public class ScanConfig {
 
     public void setPathExcludePatterns(List<String> pathExcludePatterns) {
         this.pathExcludePatterns = pathExcludePatterns;
+        changed();
     }
 
     public AuthCredential getOriginalCredential() {
@@ -133,6 +215,7 @@ public class ScanConfig {
 
     public void setOriginalCredential(AuthCredential originalCredential) {
         this.originalCredential = originalCredential;
+        changed();
     }
 
     public List<AuthCredential> getTestCredentials() {
@@ -141,10 +224,27 @@ public class ScanConfig {
 
     public void setTestCredentials(List<AuthCredential> testCredentials) {
         this.testCredentials = testCredentials;
+        changed();
     }
 
+    /**
+     * 添加测试凭证（替换为新列表而不是原地修改，扫描线程可能正在遍历旧列表）
+     */
     public void addTestCredential(AuthCredential credential) {
-        this.testCredentials.add(credential);
+        List<AuthCredential> credentials = new ArrayList<>(testCredentials);
+        credentials.add(credential);
+        this.testCredentials = credentials;
+        changed();
+    }
+
+    /**
+     * 删除测试凭证
+     */
+    public void removeTestCredential(int index) {
+        List<AuthCredential> credentials = new ArrayList<>(testCredentials);
+        credentials.remove(index);
+        this.testCredentials = credentials;
+        changed();
     }
 
     public boolean isTestUnauthorizedAccess() {
@@ -153,6 +253,7 @@ public class ScanConfig {
 
     public void setTestUnauthorizedAccess(boolean testUnauthorizedAccess) {
         this.testUnauthorizedAccess = testUnauthorizedAccess;
+        changed();
     }
 
     public List<String> getAuthHeadersToRemove() {
@@ -161,6 +262,7 @@ public class ScanConfig {
 
     public void setAuthHeadersToRemove(List<String> authHeadersToRemove) {
         this.authHeadersToRemove = authHeadersToRemove;
+        changed();
     }
 
     public int getSimilarityThreshold() {
@@ -169,6 +271,7 @@ public class ScanConfig {
 
     public void setSimilarityThreshold(int similarityThreshold) {
         this.similarityThreshold = Math.max(0, Math.min(100, similarityThreshold));
+        changed();
     }
 
     public int getThreadCount() {
@@ -177,6 +280,7 @@ public class ScanConfig {
 
     public void setThreadCount(int threadCount) {
         this.threadCount = Math.max(1, Math.min(50, threadCount));
+        changed();
     }
 
     public int getTimeout() {
@@ -185,6 +289,7 @@ public class ScanConfig {
 
     public void setTimeout(int timeout) {
         this.timeout = Math.max(1, Math.min(300, timeout));
+        changed();
     }
 
     public int getRetryCount() {
@@ -193,6 +298,79 @@ public class ScanConfig {
 
     public void setRetryCount(int retryCount) {
         this.retryCount = Math.max(0, Math.min(5, retryCount));
+        changed();
+    }
+
+    public int getLiveQueueCapacity() {
+        return liveQueueCapacity;
+    }
+
+    public void setLiveQueueCapacity(int liveQueueCapacity) {
+        this.liveQueueCapacity = Math.max(10, Math.min(100000, liveQueueCapacity));
+        changed();
+    }
+
+    public int getScanBudgetMinutes() {
+        return scanBudgetMinutes;
+    }
+
+    public void setScanBudgetMinutes(int scanBudgetMinutes) {
+        this.scanBudgetMinutes = Math.max(0, scanBudgetMinutes);
+        changed();
+    }
+
+    public int getScanBudgetRequests() {
+        return scanBudgetRequests;
+    }
+
+    public void setScanBudgetRequests(int scanBudgetRequests) {
+        this.scanBudgetRequests = Math.max(0, scanBudgetRequests);
+        changed();
+    }
+
+    public boolean isCheckpointEnabled() {
+        return checkpointEnabled;
+    }
+
+    public void setCheckpointEnabled(boolean checkpointEnabled) {
+        this.checkpointEnabled = checkpointEnabled;
+        changed();
+    }
+
+    public boolean isUseResponseCache() {
+        return useResponseCache;
+    }
+
+    public void setUseResponseCache(boolean useResponseCache) {
+        this.useResponseCache = useResponseCache;
+        changed();
+    }
+
+    public int getResponseCacheMb() {
+        return responseCacheMb;
+    }
+
+    public void setResponseCacheMb(int responseCacheMb) {
+        this.responseCacheMb = Math.max(1, Math.min(4096, responseCacheMb));
+        changed();
+    }
+
+    public int getResponseCacheTtlSeconds() {
+        return responseCacheTtlSeconds;
+    }
+
+    public void setResponseCacheTtlSeconds(int responseCacheTtlSeconds) {
+        this.responseCacheTtlSeconds = Math.max(0, responseCacheTtlSeconds);
+        changed();
+    }
+
+    public Map<String, Integer> getHostCacheTtlSeconds() {
+        return hostCacheTtlSeconds;
+    }
+
+    public void setHostCacheTtlSeconds(Map<String, Integer> hostCacheTtlSeconds) {
+        this.hostCacheTtlSeconds = hostCacheTtlSeconds != null ? hostCacheTtlSeconds : new HashMap<>();
+        changed();
     }
 
     public boolean isExcludeStaticResources() {
@@ -201,6 +379,16 @@ public class ScanConfig {
 
     public void setExcludeStaticResources(boolean excludeStaticResources) {
         this.excludeStaticResources = excludeStaticResources;
+        changed();
+    }
+
+    public boolean isIncludeSiteMap() {
+        return includeSiteMap;
+    }
+
+    public void setIncludeSiteMap(boolean includeSiteMap) {
+        this.includeSiteMap = includeSiteMap;
+        changed();
     }
 
     public List<String> getStaticExtensions() {
@@ -209,6 +397,16 @@ public class ScanConfig {
 
     public void setStaticExtensions(List<String> staticExtensions) {
         this.staticExtensions = staticExtensions;
+        changed();
+    }
+
+    public boolean isSkipUnauthenticated() {
+        return skipUnauthenticated;
+    }
+
+    public void setSkipUnauthenticated(boolean skipUnauthenticated) {
+        this.skipUnauthenticated = skipUnauthenticated;
+        changed();
     }
 
     public boolean isExcludeTested() {
@@ -217,6 +415,25 @@ public class ScanConfig {
 
     public void setExcludeTested(boolean excludeTested) {
         this.excludeTested = excludeTested;
+        changed();
+    }
+
+    public int getTemplateSampleSize() {
+        return templateSampleSize;
+    }
+
+    public void setTemplateSampleSize(int templateSampleSize) {
+        this.templateSampleSize = Math.max(0, templateSampleSize);
+        changed();
+    }
+
+    public boolean isExpandOnFinding() {
+        return expandOnFinding;
+    }
+
+    public void setExpandOnFinding(boolean expandOnFinding) {
+        this.expandOnFinding = expandOnFinding;
+        changed();
     }
 
     public List<String> getIncludeMethods() {
@@ -225,6 +442,7 @@ public class ScanConfig {
 
     public void setIncludeMethods(List<String> includeMethods) {
         this.includeMethods = includeMethods;
+        changed();
     }
 
     public List<String> getExcludeMethods() {
@@ -233,6 +451,7 @@ public class ScanConfig {
 
     public void setExcludeMethods(List<String> excludeMethods) {
         this.excludeMethods = excludeMethods;
+        changed();
     }
 
     public List<String> getDenyKeywords() {
@@ -241,6 +460,7 @@ public class ScanConfig {
 
     public void setDenyKeywords(List<String> denyKeywords) {
         this.denyKeywords = denyKeywords;
+        changed();
     }
 
     public List<String> getLoginRedirectPaths() {
@@ -249,5 +469,6 @@ public class ScanConfig {
 
     public void setLoginRedirectPaths(List<String> loginRedirectPaths) {
         this.loginRedirectPaths = loginRedirectPaths;
+        changed();
     }
 }
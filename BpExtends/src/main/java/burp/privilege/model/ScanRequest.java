@@ -0,0 +1,250 @@
+package burp.privilege.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 扫描请求模型
+ * 与Burp无关的内部HTTP请求表示，可在Montoya和独立HTTP客户端之间转换
+ *
+ * 对象不可变，所有修改方法都返回新的副本（与Montoya HttpRequest的用法保持一致）
+ */
+public class ScanRequest {
+
+    private final String method;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+    private final String path;
+    private final String httpVersion;
+    private final List<Header> headers;
+    private final MessageBody body;
+
+    public ScanRequest(String method, String host, int port, boolean secure,
+                       String path, List<Header> headers, byte[] body) {
+        this(method, host, port, secure, path, "HTTP/1.1", headers, body);
+    }
+
+    public ScanRequest(String method, String host, int port, boolean secure,
+                       String path, String httpVersion, List<Header> headers, byte[] body) {
+        this(method, host, port, secure, path, httpVersion, headers, MessageBody.of(body));
+    }
+
+    /**
+     * @param body 报文体，可延迟解码（见{@link MessageBody}）
+     */
+    public ScanRequest(String method, String host, int port, boolean secure,
+                       String path, String httpVersion, List<Header> headers, MessageBody body) {
+        this.method = method;
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+        this.path = (path == null || path.isEmpty()) ? "/" : path;
+        this.httpVersion = httpVersion != null ? httpVersion : "HTTP/1.1";
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        this.body = body != null ? body : MessageBody.empty();
+    }
+
+    // ========== 基本信息 ==========
+
+    public String method() {
+        return method;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public boolean secure() {
+        return secure;
+    }
+
+    /**
+     * 请求路径（包含查询字符串）
+     */
+    public String path() {
+        return path;
+    }
+
+    public String httpVersion() {
+        return httpVersion;
+    }
+
+    /**
+     * 不含查询字符串的路径
+     */
+    public String pathWithoutQuery() {
+        int index = path.indexOf('?');
+        return index >= 0 ? path.substring(0, index) : path;
+    }
+
+    /**
+     * 查询字符串（不含"?"，无查询时返回空字符串）
+     */
+    public String query() {
+        int index = path.indexOf('?');
+        return index >= 0 ? path.substring(index + 1) : "";
+    }
+
+    /**
+     * 完整URL，默认端口不显示
+     */
+    public String url() {
+        return origin() + path;
+    }
+
+    /**
+     * 协议 + 主机 + 端口（默认端口不显示），如 https://example.com
+     */
+    public String origin() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(secure ? "https://" : "http://").append(host);
+        if ((secure && port != 443) || (!secure && port != 80)) {
+            sb.append(':').append(port);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 文件扩展名（无扩展名时返回空字符串）
+     */
+    public String fileExtension() {
+        String p = pathWithoutQuery();
+        int slash = p.lastIndexOf('/');
+        int dot = p.lastIndexOf('.');
+        if (dot <= slash || dot == p.length() - 1) {
+            return "";
+        }
+        return p.substring(dot + 1);
+    }
+
+    /**
+     * 改变目标服务（主机、端口、协议），路径、请求头和请求体不变
+     */
+    public ScanRequest withService(String host, int port, boolean secure) {
+        return new ScanRequest(method, host, port, secure, path, httpVersion, headers, body);
+    }
+
+    // ========== 请求头 ==========
+
+    public List<Header> headers() {
+        return headers;
+    }
+
+    public boolean hasHeader(String name) {
+        return headerValue(name) != null;
+    }
+
+    /**
+     * 获取请求头的值（名称不区分大小写），不存在时返回null
+     */
+    public String headerValue(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 更新请求头，不存在时追加
+     */
+    public ScanRequest withUpdatedHeader(String name, String value) {
+        List<Header> updated = new ArrayList<>(headers.size() + 1);
+        boolean replaced = false;
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                if (!replaced) {
+                    updated.add(new Header(header.getName(), value));
+                    replaced = true;
+                }
+            } else {
+                updated.add(header);
+            }
+        }
+        if (!replaced) {
+            updated.add(new Header(name, value));
+        }
+        return new ScanRequest(method, host, port, secure, path, httpVersion, updated, body);
+    }
+
+    /**
+     * 删除请求头（名称不区分大小写）
+     */
+    public ScanRequest withRemovedHeader(String name) {
+        List<Header> updated = new ArrayList<>(headers.size());
+        for (Header header : headers) {
+            if (!header.getName().equalsIgnoreCase(name)) {
+                updated.add(header);
+            }
+        }
+        return new ScanRequest(method, host, port, secure, path, httpVersion, updated, body);
+    }
+
+    // ========== 请求体 ==========
+
+    public byte[] body() {
+        return body.bytes();
+    }
+
+    public String bodyToString() {
+        return new String(body.bytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 序列化为原始HTTP/1.x报文
+     */
+    public byte[] toByteArray() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(method).append(' ').append(path).append(' ').append(httpVersion).append("\r\n");
+        for (Header header : headers) {
+            sb.append(header.getName()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        sb.append("\r\n");
+
+        byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = this.body.bytes();
+        byte[] raw = new byte[head.length + body.length];
+        System.arraycopy(head, 0, raw, 0, head.length);
+        System.arraycopy(body, 0, raw, head.length, body.length);
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url();
+    }
+
+    /**
+     * HTTP头（名称 + 值）
+     */
+    public static class Header {
+        private final String name;
+        private final String value;
+
+        public Header(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + value;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package burp.privilege.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 扫描响应模型
+ * 与Burp无关的内部HTTP响应表示
+ */
+public class ScanResponse {
+
+    private final int statusCode;
+    private final List<ScanRequest.Header> headers;
+    private final MessageBody body;
+
+    /** 响应耗时（毫秒） */
+    private final long elapsedMillis;
+
+    /** 响应体字符串缓存（分析器会多次读取） */
+    private String bodyString;
+
+    public ScanResponse(int statusCode, List<ScanRequest.Header> headers, byte[] body, long elapsedMillis) {
+        this(statusCode, headers, MessageBody.of(body), elapsedMillis);
+    }
+
+    /**
+     * @param body 报文体，可延迟解码（见{@link MessageBody}）
+     */
+    public ScanResponse(int statusCode, List<ScanRequest.Header> headers, MessageBody body, long elapsedMillis) {
+        this.statusCode = statusCode;
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        this.body = body != null ? body : MessageBody.empty();
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public List<ScanRequest.Header> headers() {
+        return headers;
+    }
+
+    public boolean hasHeader(String name) {
+        return headerValue(name) != null;
+    }
+
+    /**
+     * 获取响应头的值（名称不区分大小写），不存在时返回null
+     */
+    public String headerValue(String name) {
+        for (ScanRequest.Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    public byte[] body() {
+        return body.bytes();
+    }
+
+    public String bodyToString() {
+        String s = bodyString;
+        if (s == null) {
+            s = new String(body.bytes(), StandardCharsets.UTF_8);
+            bodyString = s;
+        }
+        return s;
+    }
+
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanResponse{" +
+                "statusCode=" + statusCode +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
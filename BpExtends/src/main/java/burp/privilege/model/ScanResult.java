@@ -1,7 +1,5 @@
 package burp.privilege.model;
 
-import burp.api.montoya.http.message.requests.HttpRequest;
-
 import java.time.LocalDateTime;
 
 /**
@@ -100,10 +98,10 @@ public class ScanResult {
 
     // ========== 完整请求对象（用于发送到Repeater） ==========
     /** 原始请求对象 */
-    private HttpRequest originalHttpRequest;
+    private ScanRequest originalHttpRequest;
 
     /** 测试请求对象 */
-    private HttpRequest testHttpRequest;
+    private ScanRequest testHttpRequest;
 
     public ScanResult() {
         this.scanTime = LocalDateTime.now();
@@ -271,19 +269,19 @@ public class ScanResult {
         this.notes = notes;
     }
 
-    public HttpRequest getOriginalHttpRequest() {
+    public ScanRequest getOriginalHttpRequest() {
         return originalHttpRequest;
     }
 
-    public void setOriginalHttpRequest(HttpRequest originalHttpRequest) {
+    public void setOriginalHttpRequest(ScanRequest originalHttpRequest) {
         this.originalHttpRequest = originalHttpRequest;
     }
 
-    public HttpRequest getTestHttpRequest() {
+    public ScanRequest getTestHttpRequest() {
         return testHttpRequest;
     }
 
-    public void setTestHttpRequest(HttpRequest testHttpRequest) {
+    public void setTestHttpRequest(ScanRequest testHttpRequest) {
         this.testHttpRequest = testHttpRequest;
     }
 
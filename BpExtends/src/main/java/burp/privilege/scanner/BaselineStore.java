@@ -0,0 +1,217 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 基准响应指纹库
+ * 按端点（见{@link TestedEndpointIndex#endpointKey}）记录上次扫描时基准响应的状态码、
+ * 内容指纹以及是否发现过漏洞，差异重扫时据此判断端点是否需要重新执行完整检测；
+ * 基准响应只与原始凭证有关，增删测试凭证不会使记录失效
+ *
+ * 线程安全
+ */
+public class BaselineStore {
+
+    private static final int MAGIC = 0x50424c31;  // "PBL1"
+
+    /**
+     * 与上次记录比较的结果
+     */
+    public enum Change {
+        NEW("新端点"),
+        STATUS_CHANGED("状态码变化"),
+        CONTENT_CHANGED("内容变化"),
+        PREVIOUS_FINDING("上次发现漏洞"),
+        UNCHANGED("基准响应未变化，已跳过");
+
+        private final String description;
+
+        Change(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /** 是否需要重新执行完整检测 */
+        public boolean needsRescan() {
+            return this != UNCHANGED;
+        }
+    }
+
+    private final Supplier<byte[]> loader;
+    private Map<Long, Record> records;
+    private final Map<Change, Integer> stats = new EnumMap<>(Change.class);
+    private boolean dirty;
+
+    /**
+     * @param loader 首次使用时加载已保存的数据（返回null表示没有），可以为null
+     */
+    public BaselineStore(Supplier<byte[]> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 比较基准响应与上次记录，并计入本轮统计
+     */
+    public synchronized Change compare(long key, ScanResponse baseline) {
+        ensureLoaded();
+        Record record = records.get(key);
+
+        Change change;
+        if (record == null) {
+            change = Change.NEW;
+        } else if (record.finding) {
+            change = Change.PREVIOUS_FINDING;
+        } else if (record.status != baseline.statusCode()) {
+            change = Change.STATUS_CHANGED;
+        } else if (record.fingerprint != fingerprint(baseline)) {
+            change = Change.CONTENT_CHANGED;
+        } else {
+            change = Change.UNCHANGED;
+        }
+
+        stats.merge(change, 1, Integer::sum);
+        return change;
+    }
+
+    /**
+     * 记录一次完整检测的基准响应
+     *
+     * @param finding 本次是否发现漏洞
+     */
+    public synchronized void record(long key, ScanResponse baseline, boolean finding) {
+        ensureLoaded();
+        records.put(key, new Record(baseline.statusCode(), fingerprint(baseline), finding));
+        dirty = true;
+    }
+
+    /**
+     * 本轮统计，如"跳过 120（基准响应未变化，已跳过） | 重新检测 8（内容变化 5，新端点 3）"
+     */
+    public synchronized String getSummary() {
+        int skipped = stats.getOrDefault(Change.UNCHANGED, 0);
+        int rescanned = 0;
+        StringBuilder reasons = new StringBuilder();
+        for (Map.Entry<Change, Integer> entry : stats.entrySet()) {
+            if (!entry.getKey().needsRescan()) {
+                continue;
+            }
+            rescanned += entry.getValue();
+            if (reasons.length() > 0) {
+                reasons.append("，");
+            }
+            reasons.append(entry.getKey().getDescription()).append(' ').append(entry.getValue());
+        }
+        return "跳过 " + skipped + "（" + Change.UNCHANGED.getDescription() + "） | 重新检测 " + rescanned
+                + (reasons.length() > 0 ? "（" + reasons + "）" : "");
+    }
+
+    /**
+     * 清空本轮统计
+     */
+    public synchronized void resetStats() {
+        stats.clear();
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        records.clear();
+        dirty = true;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 序列化（并清除变化标记）
+     */
+    public synchronized byte[] toBytes() {
+        ensureLoaded();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + records.size() * 21);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(records.size());
+            for (Map.Entry<Long, Record> entry : records.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().status);
+                out.writeLong(entry.getValue().fingerprint);
+                out.writeBoolean(entry.getValue().finding);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // 内存流不会出现IO异常
+        }
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    private void ensureLoaded() {
+        if (records != null) {
+            return;
+        }
+        records = new HashMap<>();
+        byte[] data = loader != null ? loader.get() : null;
+        if (data == null || data.length < 8) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                records.put(in.readLong(), new Record(in.readInt(), in.readLong(), in.readBoolean()));
+            }
+        } catch (IOException e) {
+            records.clear();  // 数据损坏，当作没有记录
+        }
+    }
+
+    /**
+     * 响应内容指纹：连续数字折叠为一个0后计算64位哈希，忽略时间戳、随机ID等变化
+     */
+    static long fingerprint(ScanResponse response) {
+        String body = response.bodyToString();
+        long hash = 0xcbf29ce484222325L;
+        boolean inDigits = false;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (inDigits) {
+                    continue;
+                }
+                inDigits = true;
+                c = '0';
+            } else {
+                inDigits = false;
+            }
+            hash ^= c;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static class Record {
+        private final int status;
+        private final long fingerprint;
+        private final boolean finding;
+
+        private Record(int status, long fingerprint, boolean finding) {
+            this.status = status;
+            this.fingerprint = fingerprint;
+            this.finding = finding;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+import burp.privilege.model.VulnerabilityType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 请求、响应和扫描结果的二进制编码
+ * 检查点日志（{@link ScanJournal}）和分布式扫描的工作进程协议共用
+ */
+public final class BinaryCodec {
+
+    private BinaryCodec() {
+    }
+
+    /** 字符串（UTF-8，null写为长度-1） */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    /** 字节数组（长度 + 内容） */
+    public static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    /** 凭证列（null写为长度-1，表示全部） */
+    public static void writeColumns(DataOutputStream out, long[] columns) throws IOException {
+        if (columns == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(columns.length);
+        for (long column : columns) {
+            out.writeLong(column);
+        }
+    }
+
+    public static long[] readColumns(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        long[] columns = new long[length];
+        for (int i = 0; i < length; i++) {
+            columns[i] = in.readLong();
+        }
+        return columns;
+    }
+
+    private static void writeHeaders(DataOutputStream out, List<ScanRequest.Header> headers) throws IOException {
+        out.writeInt(headers.size());
+        for (ScanRequest.Header header : headers) {
+            writeString(out, header.getName());
+            writeString(out, header.getValue());
+        }
+    }
+
+    private static List<ScanRequest.Header> readHeaders(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<ScanRequest.Header> headers = new ArrayList<>(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            headers.add(new ScanRequest.Header(readString(in), readString(in)));
+        }
+        return headers;
+    }
+
+    /** 请求（可以为null） */
+    public static void writeRequest(DataOutputStream out, ScanRequest request) throws IOException {
+        out.writeBoolean(request != null);
+        if (request == null) {
+            return;
+        }
+        writeString(out, request.method());
+        writeString(out, request.host());
+        out.writeInt(request.port());
+        out.writeBoolean(request.secure());
+        writeString(out, request.path());
+        writeString(out, request.httpVersion());
+        writeHeaders(out, request.headers());
+        writeBytes(out, request.body());
+    }
+
+    public static ScanRequest readRequest(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String method = readString(in);
+        String host = readString(in);
+        int port = in.readInt();
+        boolean secure = in.readBoolean();
+        String path = readString(in);
+        String httpVersion = readString(in);
+        List<ScanRequest.Header> headers = readHeaders(in);
+        return new ScanRequest(method, host, port, secure, path, httpVersion, headers, readBytes(in));
+    }
+
+    /** 响应 */
+    public static void writeResponse(DataOutputStream out, ScanResponse response) throws IOException {
+        out.writeInt(response.statusCode());
+        writeHeaders(out, response.headers());
+        writeBytes(out, response.body());
+        out.writeLong(response.elapsedMillis());
+    }
+
+    public static ScanResponse readResponse(DataInputStream in) throws IOException {
+        int status = in.readInt();
+        List<ScanRequest.Header> headers = readHeaders(in);
+        byte[] body = readBytes(in);
+        return new ScanResponse(status, headers, body, in.readLong());
+    }
+
+    /** 扫描结果（含完整请求） */
+    public static void writeResult(DataOutputStream out, ScanResult result) throws IOException {
+        writeString(out, result.getVulnType() != null ? result.getVulnType().name() : null);
+        writeString(out, result.getRiskLevel() != null ? result.getRiskLevel().name() : null);
+        writeString(out, result.getScanTime() != null ? result.getScanTime().toString() : null);
+        out.writeBoolean(result.isConfirmed());
+        out.writeBoolean(result.isFalsePositive());
+        writeString(out, result.getUrl());
+        writeString(out, result.getMethod());
+        writeString(out, result.getPath());
+        writeString(out, result.getOriginalRequest());
+        writeString(out, result.getTestRequest());
+        out.writeInt(result.getOriginalStatusCode());
+        out.writeInt(result.getTestStatusCode());
+        writeString(out, result.getOriginalResponse());
+        writeString(out, result.getTestResponse());
+        out.writeDouble(result.getSimilarity());
+        writeString(out, result.getOriginalCredentialName());
+        writeString(out, result.getTestCredentialName());
+        writeString(out, result.getDiffHighlight());
+        writeString(out, result.getNotes());
+        writeRequest(out, result.getOriginalHttpRequest());
+        writeRequest(out, result.getTestHttpRequest());
+    }
+
+    public static ScanResult readResult(DataInputStream in) throws IOException {
+        ScanResult result = new ScanResult();
+        String vulnType = readString(in);
+        result.setVulnType(vulnType != null ? VulnerabilityType.valueOf(vulnType) : null);
+        String riskLevel = readString(in);
+        if (riskLevel != null) {
+            result.setRiskLevel(ScanResult.RiskLevel.valueOf(riskLevel));
+        }
+        String scanTime = readString(in);
+        if (scanTime != null) {
+            result.setScanTime(LocalDateTime.parse(scanTime));
+        }
+        result.setConfirmed(in.readBoolean());
+        result.setFalsePositive(in.readBoolean());
+        result.setUrl(readString(in));
+        result.setMethod(readString(in));
+        result.setPath(readString(in));
+        result.setOriginalRequest(readString(in));
+        result.setTestRequest(readString(in));
+        result.setOriginalStatusCode(in.readInt());
+        result.setTestStatusCode(in.readInt());
+        result.setOriginalResponse(readString(in));
+        result.setTestResponse(readString(in));
+        result.setSimilarity(in.readDouble());
+        result.setOriginalCredentialName(readString(in));
+        result.setTestCredentialName(readString(in));
+        result.setDiffHighlight(readString(in));
+        result.setNotes(readString(in));
+        result.setOriginalHttpRequest(readRequest(in));
+        result.setTestHttpRequest(readRequest(in));
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 响应缓存传输层装饰器
+ * 所有响应都写入缓存（供结果详情查看完整响应）；开启复用时，GET、HEAD、OPTIONS请求先查缓存，命中时不发送
+ */
+public class CachingTransport implements ScanTransport {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ScanTransport delegate;
+    private final ResponseCache cache;
+    private final BooleanSupplier readEnabled;
+
+    /**
+     * @param delegate    实际发送请求的传输层
+     * @param cache       响应缓存
+     * @param readEnabled 是否复用缓存的响应（每次发送时判断）
+     */
+    public CachingTransport(ScanTransport delegate, ResponseCache cache, BooleanSupplier readEnabled) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.readEnabled = readEnabled;
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        ScanResponse cached = lookup(request);
+        if (cached != null) {
+            return cached;
+        }
+        ScanResponse response = delegate.send(request);
+        cache.put(request, response);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        ScanResponse cached = lookup(request);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return delegate.sendAsync(request, executor).thenApply(response -> {
+            cache.put(request, response);
+            return response;
+        });
+    }
+
+    private ScanResponse lookup(ScanRequest request) {
+        if (!SAFE_METHODS.contains(request.method()) || !readEnabled.getAsBoolean()) {
+            return null;
+        }
+        return cache.get(request);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
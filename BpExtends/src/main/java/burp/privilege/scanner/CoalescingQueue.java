@@ -0,0 +1,163 @@
+package burp.privilege.scanner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 有界合并队列
+ *
+ * - 合并：相同key的元素尚未被取走时，用新元素替换旧元素（保留原排队位置）
+ * - 丢弃：队列已满时丢弃最早入队的元素，保证新流量能尽快被处理
+ *
+ * 没有被取走就离开队列的元素（被合并替换、队列已满丢弃、清空、关闭后入队）交给丢弃回调，
+ * 用于放回元素占用的资源
+ *
+ * @param <T> 元素类型
+ */
+public class CoalescingQueue<T> {
+
+    private final int capacity;
+    private final Consumer<? super T> onDiscard;
+    private final LinkedHashMap<String, T> pending = new LinkedHashMap<>();
+
+    private long accepted;
+    private long coalesced;
+    private long dropped;
+    private boolean closed;
+
+    public CoalescingQueue(int capacity) {
+        this(capacity, element -> { });
+    }
+
+    /**
+     * @param onDiscard 丢弃回调（在入队、清空或关闭的线程中执行，不持有队列的锁）
+     */
+    public CoalescingQueue(int capacity, Consumer<? super T> onDiscard) {
+        this.capacity = Math.max(1, capacity);
+        this.onDiscard = onDiscard;
+    }
+
+    /**
+     * 入队，队列已关闭时直接丢弃
+     *
+     * @param key     合并键
+     * @param element 元素
+     * @return 是否新加入了一个键（合并到已排队的键或被丢弃时为false）
+     */
+    public boolean offer(String key, T element) {
+        T discarded;
+        boolean added;
+        synchronized (this) {
+            added = !closed && !pending.containsKey(key);
+            discarded = enqueue(key, element);
+        }
+        if (discarded != null) {
+            onDiscard.accept(discarded);
+        }
+        return added;
+    }
+
+    /**
+     * 入队（调用时持有锁）
+     *
+     * @return 离开队列的元素，没有时为null
+     */
+    private T enqueue(String key, T element) {
+        if (closed) {
+            return element;
+        }
+        if (pending.containsKey(key)) {
+            coalesced++;
+            return pending.put(key, element);
+        }
+
+        T discarded = null;
+        if (pending.size() >= capacity) {
+            Iterator<Map.Entry<String, T>> it = pending.entrySet().iterator();
+            discarded = it.next().getValue();
+            it.remove();
+            dropped++;
+        }
+
+        pending.put(key, element);
+        accepted++;
+        notifyAll();
+        return discarded;
+    }
+
+    /**
+     * 取出指定键排队的元素（不等待）
+     *
+     * @return 排队的元素，已被取走、丢弃或队列已关闭时返回null
+     */
+    public synchronized T take(String key) {
+        return pending.remove(key);
+    }
+
+    /**
+     * 出队，队列为空时最多等待指定时间
+     *
+     * @return 队首元素，超时返回null
+     */
+    public synchronized T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        Iterator<Map.Entry<String, T>> it = pending.entrySet().iterator();
+        T element = it.next().getValue();
+        it.remove();
+        return element;
+    }
+
+    /**
+     * 清空队列，排队的元素交给丢弃回调
+     */
+    public void clear() {
+        List<T> discarded;
+        synchronized (this) {
+            discarded = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        discarded.forEach(onDiscard);
+    }
+
+    /**
+     * 清空并关闭队列，之后入队的元素直接丢弃
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        clear();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /** 累计入队数量（不含合并） */
+    public synchronized long getAcceptedCount() {
+        return accepted;
+    }
+
+    /** 累计合并数量 */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /** 累计因队列已满而丢弃的数量 */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
@@ -0,0 +1,236 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.AuthCredential;
+import burp.privilege.model.ScanConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 一个配置版本的不可变快照：域名树、路径正则、方法和扩展名集合、拒绝关键词自动机，
+ * 以及扫描中用到的开关、阈值、测试凭证和凭证列
+ * 按配置版本缓存（见{@link ScanConfig#getVersion}），配置不变时各扫描、各过滤器共用同一份，
+ * 不再每次扫描重新编译
+ *
+ * 扫描线程只读快照，不再遍历配置中的可变列表；界面修改配置后版本变化，
+ * 各组件在处理下一个请求时取到新快照，正在检测的请求仍使用旧快照，扫描不需要重启
+ *
+ * 编译后只读，线程安全
+ */
+public final class CompiledConfig {
+
+    /** 每个配置对象最近一次的编译结果 */
+    private static final Map<ScanConfig, CompiledConfig> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final long version;
+    private final DomainMatcher domains;
+    private final PathMatcher include;
+    private final PathMatcher exclude;
+    private final Set<String> includeMethods;
+    private final Set<String> excludeMethods;
+    private final Set<String> staticExtensions;
+    private final KeywordMatcher denyKeywords;
+    private final KeywordMatcher loginRedirects;
+
+    private final boolean hasIncludePatterns;
+    private final boolean hasExcludePatterns;
+    private final boolean useScopeOnly;
+    private final boolean excludeTested;
+    private final boolean excludeStaticResources;
+    private final boolean skipUnauthenticated;
+    private final boolean testUnauthorizedAccess;
+    private final int similarityThreshold;
+    private final int threadCount;
+    private final boolean useResponseCache;
+    private final List<AuthCredential> testCredentials;
+    private final String originalCredentialName;
+    private final List<String> authHeaders;
+    private final long[] columns;
+
+    private CompiledConfig(ScanConfig config, long version) {
+        this.version = version;
+        this.domains = DomainMatcher.compile(config.getTargetDomains());
+        this.include = PathMatcher.compile(config.getPathIncludePatterns());
+        this.exclude = PathMatcher.compile(config.getPathExcludePatterns());
+        this.includeMethods = toSet(config.getIncludeMethods(), false);
+        this.excludeMethods = toSet(config.getExcludeMethods(), false);
+        this.staticExtensions = toSet(config.getStaticExtensions(), true);
+        this.denyKeywords = KeywordMatcher.compile(config.getDenyKeywords());
+        this.loginRedirects = KeywordMatcher.compile(config.getLoginRedirectPaths());
+
+        this.hasIncludePatterns = !isEmpty(config.getPathIncludePatterns());
+        this.hasExcludePatterns = !isEmpty(config.getPathExcludePatterns());
+        this.useScopeOnly = config.isUseScopeOnly();
+        this.excludeTested = config.isExcludeTested();
+        this.excludeStaticResources = config.isExcludeStaticResources();
+        this.skipUnauthenticated = config.isSkipUnauthenticated();
+        this.testUnauthorizedAccess = config.isTestUnauthorizedAccess();
+        this.similarityThreshold = config.getSimilarityThreshold();
+        this.threadCount = config.getThreadCount();
+        this.useResponseCache = config.isUseResponseCache();
+        this.testCredentials = copyOf(config.getTestCredentials());
+        AuthCredential original = config.getOriginalCredential();
+        this.originalCredentialName = original != null ? original.getName() : "原始用户";
+        this.authHeaders = copyOf(config.getAuthHeadersToRemove());
+        this.columns = TestedEndpointIndex.columns(testCredentials, testUnauthorizedAccess);
+    }
+
+    /**
+     * 获取配置当前版本的编译结果，版本变化时重新编译
+     */
+    public static CompiledConfig of(ScanConfig config) {
+        CompiledConfig compiled = CACHE.get(config);
+        if (compiled != null && compiled.version == config.getVersion()) {
+            return compiled;
+        }
+        // 与ScanConfig#edit互斥，批量修改的中间状态不会编入快照
+        synchronized (config) {
+            compiled = CACHE.get(config);
+            long version = config.getVersion();
+            if (compiled == null || compiled.version != version) {
+                // 先读版本再编译，编译期间配置再次变化时下次调用会重新编译
+                compiled = new CompiledConfig(config, version);
+                CACHE.put(config, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    /** 编译时的配置版本 */
+    public long getVersion() {
+        return version;
+    }
+
+    public DomainMatcher getDomains() {
+        return domains;
+    }
+
+    public PathMatcher getInclude() {
+        return include;
+    }
+
+    public PathMatcher getExclude() {
+        return exclude;
+    }
+
+    /** HTTP方法是否通过包含和排除规则 */
+    public boolean matchesMethod(String method) {
+        if (excludeMethods.contains(method)) {
+            return false;
+        }
+        return includeMethods.isEmpty() || includeMethods.contains(method);
+    }
+
+    /** 扩展名（小写）是否为静态资源 */
+    public boolean isStaticExtension(String extension) {
+        return staticExtensions.contains(extension);
+    }
+
+    /** 响应中的权限错误或登录提示 */
+    public KeywordMatcher getDenyKeywords() {
+        return denyKeywords;
+    }
+
+    /** 登录页重定向路径 */
+    public KeywordMatcher getLoginRedirects() {
+        return loginRedirects;
+    }
+
+    /** 是否配置了路径包含模式（含无效的正则） */
+    public boolean hasIncludePatterns() {
+        return hasIncludePatterns;
+    }
+
+    /** 是否配置了路径排除模式（含无效的正则） */
+    public boolean hasExcludePatterns() {
+        return hasExcludePatterns;
+    }
+
+    public boolean isUseScopeOnly() {
+        return useScopeOnly;
+    }
+
+    public boolean isExcludeTested() {
+        return excludeTested;
+    }
+
+    public boolean isExcludeStaticResources() {
+        return excludeStaticResources;
+    }
+
+    public boolean isSkipUnauthenticated() {
+        return skipUnauthenticated;
+    }
+
+    public boolean isTestUnauthorizedAccess() {
+        return testUnauthorizedAccess;
+    }
+
+    /** 相似度阈值（0-100） */
+    public int getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    /** 扫描线程数 */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public boolean isUseResponseCache() {
+        return useResponseCache;
+    }
+
+    /** 测试凭证（不可修改） */
+    public List<AuthCredential> getTestCredentials() {
+        return testCredentials;
+    }
+
+    /** 原始凭证名称，未设置时为"原始用户" */
+    public String getOriginalCredentialName() {
+        return originalCredentialName;
+    }
+
+    /** 计算认证指纹的认证头（不可修改） */
+    public List<String> getAuthHeaders() {
+        return authHeaders;
+    }
+
+    /** 全部凭证列（见{@link TestedEndpointIndex#columns}），各线程共用，调用方不能修改 */
+    public long[] getColumns() {
+        return columns;
+    }
+
+    private static boolean isEmpty(List<String> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private static <T> List<T> copyOf(List<T> values) {
+        List<T> copy = new ArrayList<>();
+        if (values != null) {
+            for (T value : values) {
+                if (value != null) {
+                    copy.add(value);
+                }
+            }
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    private static Set<String> toSet(List<String> values, boolean lowerCase) {
+        Set<String> set = new HashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    set.add(lowerCase ? value.toLowerCase(Locale.ROOT) : value);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+}
@@ -0,0 +1,112 @@
+package burp.privilege.scanner;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 预编译的目标域名匹配器
+ * 域名按标签倒序（com -> example -> api）存入树中，查找耗时只与主机名的标签数有关
+ *
+ * 支持的写法（不区分大小写）：
+ * - example.com    匹配 example.com 及其所有子域名
+ * - *.example.com  只匹配子域名，不匹配 example.com 本身
+ *
+ * 未配置任何域名时全部匹配
+ */
+public final class DomainMatcher {
+
+    private final Node root = new Node();
+    private final boolean matchAll;
+
+    private DomainMatcher(List<String> domains) {
+        boolean any = false;
+        if (domains != null) {
+            for (String domain : domains) {
+                if (domain != null && add(domain)) {
+                    any = true;
+                }
+            }
+        }
+        this.matchAll = !any;
+    }
+
+    /**
+     * 编译域名列表
+     */
+    public static DomainMatcher compile(List<String> domains) {
+        return new DomainMatcher(domains);
+    }
+
+    /**
+     * 主机名是否匹配
+     */
+    public boolean matches(String host) {
+        if (matchAll) {
+            return true;
+        }
+        if (host == null || host.isEmpty()) {
+            return false;
+        }
+
+        String h = normalize(host);
+        Node node = root;
+        int end = h.length();
+        while (end > 0) {
+            int dot = h.lastIndexOf('.', end - 1);
+            node = node.children.get(h.substring(dot + 1, end));
+            if (node == null) {
+                return false;
+            }
+            end = dot;
+
+            if (node.self) {
+                return true;  // 域名本身或其子域名
+            }
+            if (node.wildcard && end > 0) {
+                return true;  // 还有更深的标签，说明是子域名
+            }
+        }
+        return false;
+    }
+
+    private boolean add(String domain) {
+        String d = normalize(domain);
+        boolean wildcard = false;
+        if (d.startsWith("*.")) {
+            wildcard = true;
+            d = d.substring(2);
+        } else if (d.startsWith(".")) {
+            d = d.substring(1);
+        }
+        if (d.isEmpty()) {
+            return false;
+        }
+
+        Node node = root;
+        String[] labels = d.split("\\.");
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.children.computeIfAbsent(labels[i], k -> new Node());
+        }
+        if (wildcard) {
+            node.wildcard = true;
+        } else {
+            node.self = true;
+        }
+        return true;
+    }
+
+    private static String normalize(String host) {
+        String h = host.trim().toLowerCase(Locale.ROOT);
+        return h.endsWith(".") ? h.substring(0, h.length() - 1) : h;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        /** 匹配该域名本身及子域名 */
+        private boolean self;
+        /** 只匹配子域名 */
+        private boolean wildcard;
+    }
+}
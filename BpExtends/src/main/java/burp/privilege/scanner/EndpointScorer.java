@@ -0,0 +1,113 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 端点价值评分
+ * 按请求本身的廉价特征估算越权风险，批量扫描时分数高的先检测：
+ * - 同模板发现过漏洞        +40
+ * - 管理类路径片段          +30
+ * - 路径或参数中带对象ID     +25
+ * - JSON接口               +20
+ * - 修改状态的方法          +15
+ * - 响应较大（按大小0~15）
+ *
+ * 只影响检测顺序，不影响是否检测。线程安全
+ */
+public class EndpointScorer {
+
+    private static final Set<String> ADMIN_SEGMENTS = Set.of(
+            "admin", "administrator", "manage", "management", "manager", "console", "backend", "internal",
+            "system", "sys", "config", "settings", "setting", "role", "roles", "permission", "permissions",
+            "privilege", "privileges", "user", "users", "account", "accounts", "member", "members",
+            "tenant", "tenants", "audit", "export", "import", "debug");
+
+    private static final Set<String> STATE_CHANGING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    /** 发现过漏洞的模板（见{@link EndpointTemplate}） */
+    private final Set<String> findingTemplates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 计算请求的分数
+     *
+     * @param request      请求
+     * @param templateKey  模板标识
+     * @param responseSize 历史记录中的响应体大小，没有响应时为-1
+     */
+    public int score(ScanRequest request, String templateKey, int responseSize) {
+        int score = 0;
+        if (findingTemplates.contains(templateKey)) {
+            score += 40;
+        }
+        if (hasAdminSegment(request.pathWithoutQuery())) {
+            score += 30;
+        }
+        if (templateKey.indexOf('{') >= 0 || hasIdParameter(request.query())) {
+            score += 25;
+        }
+        if (isJson(request.headerValue("Content-Type")) || isJson(request.headerValue("Accept"))) {
+            score += 20;
+        }
+        if (STATE_CHANGING_METHODS.contains(request.method())) {
+            score += 15;
+        }
+        if (responseSize >= 64 * 1024) {
+            score += 15;
+        } else if (responseSize >= 8 * 1024) {
+            score += 10;
+        } else if (responseSize >= 1024) {
+            score += 5;
+        }
+        return score;
+    }
+
+    /**
+     * 记录发现漏洞的请求，同模板的其他请求之后优先检测
+     */
+    public void recordFinding(ScanRequest request) {
+        findingTemplates.add(EndpointTemplate.key(request));
+    }
+
+    public void clear() {
+        findingTemplates.clear();
+    }
+
+    private static boolean hasAdminSegment(String path) {
+        int start = 0;
+        while (start < path.length()) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? path.length() : slash;
+            if (end > start && ADMIN_SEGMENTS.contains(path.substring(start, end).toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 查询参数中是否有ID类参数（id、user_id、orderId等）
+     */
+    private static boolean hasIdParameter(String query) {
+        if (query.isEmpty()) {
+            return false;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            String name = eq >= 0 ? param.substring(0, eq) : param;
+            if (name.equalsIgnoreCase("id") || name.endsWith("Id") || name.endsWith("ID")
+                    || name.toLowerCase(Locale.ROOT).endsWith("_id")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJson(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains("json");
+    }
+}
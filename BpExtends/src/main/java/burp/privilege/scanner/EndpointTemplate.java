@@ -0,0 +1,175 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * 端点模板推断
+ * 把路径中的ID类片段替换为占位符、查询参数只保留排序后的名称，
+ * 使 /api/orders/1001 与 /api/orders/1002、?page=1 与 ?page=2 归为同一模板
+ *
+ * 识别的片段类型：
+ * - {num}  纯数字
+ * - {uuid} UUID
+ * - {hash} 16位以上的十六进制串（MD5、SHA1等）
+ * - {b64}  20位以上、同时包含大写、小写字母和数字的Base64/Base64URL串，且字符类别频繁交替（随机串）；
+ *           由单词组成的片段（如 how-to-install-java-17、deleteAccount2FA-settings、exportUsersV2CsvReport）不算
+ */
+public final class EndpointTemplate {
+
+    private static final Pattern NUMERIC = Pattern.compile("\\d+");
+    private static final Pattern UUID = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HASH = Pattern.compile("[0-9a-fA-F]{16,128}");
+    private static final Pattern BASE64 = Pattern.compile("[A-Za-z0-9+_-]{20,}={0,2}");
+
+    private EndpointTemplate() {
+    }
+
+    /**
+     * 请求所属模板的标识
+     * 格式：方法 + 空格 + 协议://主机[:端口] + 模板路径 [+ ?参数名&参数名]
+     */
+    public static String key(ScanRequest request) {
+        String path = request.pathWithoutQuery();
+
+        StringBuilder sb = new StringBuilder(request.path().length() + 32);
+        sb.append(request.method()).append(' ').append(request.origin());
+
+        int start = 0;
+        while (start < path.length()) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? path.length() : slash;
+            sb.append(segment(path.substring(start, end)));
+            if (slash < 0) {
+                break;
+            }
+            sb.append('/');
+            start = slash + 1;
+        }
+
+        String query = request.query();
+        if (!query.isEmpty()) {
+            String[] params = query.split("&");
+            for (int i = 0; i < params.length; i++) {
+                int eq = params[i].indexOf('=');
+                params[i] = eq >= 0 ? params[i].substring(0, eq) : params[i];
+            }
+            Arrays.sort(params);
+            sb.append('?').append(String.join("&", params));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 路径片段 -> 占位符（不是ID类片段时原样返回）
+     */
+    static String segment(String segment) {
+        if (segment.isEmpty()) {
+            return segment;
+        }
+        if (NUMERIC.matcher(segment).matches()) {
+            return "{num}";
+        }
+        if (segment.length() == 36 && UUID.matcher(segment).matches()) {
+            return "{uuid}";
+        }
+        if (HASH.matcher(segment).matches() && hasDigit(segment)) {
+            return "{hash}";
+        }
+        if (BASE64.matcher(segment).matches() && isRandomToken(segment)) {
+            return "{b64}";
+        }
+        return segment;
+    }
+
+    /**
+     * 是否像随机生成的令牌：
+     * 同时包含大写、小写字母和数字；以-或_分隔时没有全小写的单词；
+     * 相邻字符的类别（大写/小写/数字/符号）变化次数不少于长度的1/3（随机串约2/3）；
+     * 3个以上连续小写字母（驼峰命名中的单词）合计不到长度的一半（随机串通常不到1/5）
+     */
+    static boolean isRandomToken(String segment) {
+        boolean upper = false;
+        boolean lower = false;
+        boolean digit = false;
+        int transitions = 0;
+        int wordChars = 0;
+        int lowerRun = 0;
+        int previous = -1;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            int type = charClass(c);
+            upper |= type == 0;
+            lower |= type == 1;
+            digit |= type == 2;
+            if (previous >= 0 && type != previous) {
+                transitions++;
+            }
+            previous = type;
+            lowerRun = type == 1 ? lowerRun + 1 : 0;
+            if (lowerRun == 3) {
+                wordChars += 3;
+            } else if (lowerRun > 3) {
+                wordChars++;
+            }
+        }
+        if (!upper || !lower || !digit || transitions * 3 < segment.length() || wordChars * 2 >= segment.length()) {
+            return false;
+        }
+
+        // 以-或_分隔的片段逐段检查，有全小写单词的是可读的名称
+        if (segment.indexOf('-') < 0 && segment.indexOf('_') < 0) {
+            return true;
+        }
+        int start = 0;
+        for (int i = 0; i <= segment.length(); i++) {
+            if (i == segment.length() || segment.charAt(i) == '-' || segment.charAt(i) == '_') {
+                if (isLowercaseWord(segment, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+        return true;
+    }
+
+    /** 0大写 1小写 2数字 3符号 */
+    private static int charClass(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return 0;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static boolean isLowercaseWord(String s, int start, int end) {
+        if (end - start < 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasDigit(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isDigit(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
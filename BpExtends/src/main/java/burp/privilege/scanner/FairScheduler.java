@@ -0,0 +1,502 @@
+package burp.privilege.scanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多个扫描目标共用的公平调度器
+ * 每个扫描目标一条队列（{@link Lane}），所有队列共用一组工作线程：
+ * 队列之间按权重分配线程（步幅调度，权重2的队列得到的执行次数是权重1的两倍），
+ * 队列内按优先级从高到低、优先级相同时按提交顺序执行
+ *
+ * 限制：全局线程数；每个主机同时执行的任务数（所有队列合计）；每个队列同时执行的任务数。
+ * 某个主机达到上限时跳过它的任务，先执行其他主机的（只查看队列最前面的{@value #LOOKAHEAD}个任务）
+ *
+ * 权重、暂停和各项限制可以在运行中修改，从下一次分配起生效。线程安全
+ */
+public class FairScheduler implements AutoCloseable {
+
+    /** 权重为1的队列每执行一个任务前进的步幅 */
+    private static final long STRIDE = 1L << 20;
+
+    /** 查找主机未达上限的任务时，每个队列最多查看的任务数 */
+    private static final int LOOKAHEAD = 64;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ThreadFactory threadFactory;
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final Map<String, Integer> runningByHost = new HashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private int threads;
+    private int hostLimit;
+    /** 虚拟时间：最近一次分配的队列进度，空闲后重新提交任务的队列从这里开始，不会补偿空闲期间的份额 */
+    private long virtualTime;
+    private int running;
+    private boolean closed;
+
+    /**
+     * @param threads       工作线程数
+     * @param hostLimit     每个主机同时执行的任务数，0表示不限
+     * @param threadFactory 工作线程工厂
+     */
+    public FairScheduler(int threads, int hostLimit, ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        this.hostLimit = Math.max(0, hostLimit);
+        setThreads(threads);
+    }
+
+    /**
+     * 新建一条队列
+     *
+     * @param name   名称（用于显示）
+     * @param weight 权重，至少为1
+     */
+    public Lane lane(String name, int weight) {
+        Lane lane = new Lane(name, weight);
+        lock.lock();
+        try {
+            checkOpen();
+            lane.pass = virtualTime;
+            lanes.add(lane);
+        } finally {
+            lock.unlock();
+        }
+        return lane;
+    }
+
+    /**
+     * 调整工作线程数（多余的线程执行完当前任务后退出）
+     */
+    public void setThreads(int threads) {
+        lock.lock();
+        try {
+            checkOpen();
+            this.threads = Math.max(1, threads);
+            workers.removeIf(worker -> !worker.isAlive());
+            while (workers.size() < this.threads) {
+                Thread worker = threadFactory.newThread(this::work);
+                workers.add(worker);
+                worker.start();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getThreads() {
+        lock.lock();
+        try {
+            return threads;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 设置每个主机同时执行的任务数
+     *
+     * @param hostLimit 0表示不限
+     */
+    public void setHostLimit(int hostLimit) {
+        lock.lock();
+        try {
+            this.hostLimit = Math.max(0, hostLimit);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getHostLimit() {
+        lock.lock();
+        try {
+            return hostLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 正在执行的任务数 */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭调度器：取消所有排队的任务，中断工作线程
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Lane lane : lanes) {
+                lane.cancelQueued();
+            }
+            lanes.clear();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            workers.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("调度器已关闭");
+        }
+    }
+
+    /**
+     * 工作线程：取出下一个可执行的任务并执行，线程数减少或调度器关闭时退出
+     */
+    private void work() {
+        while (true) {
+            Task task = take();
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                finish(task);
+            }
+        }
+    }
+
+    /**
+     * 等待下一个可执行的任务
+     *
+     * @return null表示当前线程应退出
+     */
+    private Task take() {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed || retire()) {
+                    return null;
+                }
+                Task task = next();
+                if (task != null) {
+                    return task;
+                }
+                changed.await();
+            }
+        } catch (InterruptedException e) {
+            workers.remove(Thread.currentThread());
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 线程数超过设置值时让当前线程退出
+     */
+    private boolean retire() {
+        if (workers.size() <= threads) {
+            return false;
+        }
+        workers.remove(Thread.currentThread());
+        return true;
+    }
+
+    /**
+     * 选择进度最落后的队列，取出其中主机未达上限的最高优先级任务（调用时持有锁）
+     */
+    private Task next() {
+        Lane best = null;
+        Task bestTask = null;
+        for (Lane lane : lanes) {
+            if (lane.paused || lane.running >= lane.maxRunning) {
+                continue;
+            }
+            Task task = lane.peekRunnable();
+            if (task != null && (best == null || lane.pass < best.pass)) {
+                best = lane;
+                bestTask = task;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        best.queue.remove(bestTask);
+        virtualTime = Math.max(virtualTime, best.pass);
+        best.pass += STRIDE / best.weight;
+        best.running++;
+        running++;
+        if (bestTask.host != null) {
+            runningByHost.merge(bestTask.host, 1, Integer::sum);
+        }
+        return bestTask;
+    }
+
+    private void finish(Task task) {
+        lock.lock();
+        try {
+            task.lane.running--;
+            running--;
+            if (task.host != null) {
+                runningByHost.computeIfPresent(task.host, (host, count) -> count > 1 ? count - 1 : null);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hostAvailable(String host) {
+        return hostLimit <= 0 || host == null || runningByHost.getOrDefault(host, 0) < hostLimit;
+    }
+
+    /**
+     * 一个扫描目标的任务队列
+     */
+    public final class Lane {
+        private final TreeSet<Task> queue = new TreeSet<>();
+        private volatile String name;
+        private int weight;
+        private int maxRunning = Integer.MAX_VALUE;
+        private boolean paused;
+        private int running;
+        private long pass;
+        private boolean removed;
+
+        private Lane(String name, int weight) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+        }
+
+        /**
+         * 提交任务
+         *
+         * @param priority 优先级，越大越先执行（只在本队列内比较）
+         * @param host     任务访问的主机（host:port），用于主机并发限制，null表示不限制
+         */
+        public Future<?> submit(Runnable runnable, int priority, String host) {
+            return submit(runnable, null, priority, host);
+        }
+
+        /**
+         * 提交任务，任务开始执行前被取消（清空队列、移除队列或关闭调度器）时调用onDiscard
+         * onDiscard与任务二者只执行一个，在取消的线程中执行
+         *
+         * @param onDiscard 任务被丢弃时的回调（如放回任务领取的资源），null表示不需要
+         */
+        public Future<?> submit(Runnable runnable, Runnable onDiscard, int priority, String host) {
+            Task task = new Task(this, runnable, onDiscard, new AtomicBoolean(), priority, host, sequence.getAndIncrement());
+            lock.lock();
+            try {
+                if (closed || removed) {
+                    task.cancel(false);
+                    return task;
+                }
+                if (queue.isEmpty() && running == 0) {
+                    // 空闲后重新开始的队列从当前虚拟时间起算
+                    pass = Math.max(pass, virtualTime);
+                }
+                queue.add(task);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            return task;
+        }
+
+        /**
+         * 调整权重（运行中修改从下一次分配起生效）
+         */
+        public void setWeight(int weight) {
+            lock.lock();
+            try {
+                this.weight = Math.max(1, weight);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int getWeight() {
+            lock.lock();
+            try {
+                return weight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 本队列同时执行的任务数上限
+         */
+        public void setMaxRunning(int maxRunning) {
+            lock.lock();
+            try {
+                this.maxRunning = Math.max(1, maxRunning);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 暂停时不再分配本队列的任务，线程留给其他队列（正在执行的任务不受影响）
+         */
+        public void setPaused(boolean paused) {
+            lock.lock();
+            try {
+                this.paused = paused;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /** 排队的任务数（含已取消但未清除的） */
+        public int getQueued() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** 正在执行的任务数 */
+        public int getRunning() {
+            lock.lock();
+            try {
+                return running;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 取消本队列所有排队的任务（正在执行的不受影响）
+         */
+        public void clear() {
+            lock.lock();
+            try {
+                cancelQueued();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 移除本队列：取消排队的任务，之后提交的任务直接取消
+         */
+        public void remove() {
+            lock.lock();
+            try {
+                cancelQueued();
+                removed = true;
+                lanes.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancelQueued() {
+            for (Task task : queue) {
+                task.cancel(false);
+            }
+            queue.clear();
+        }
+
+        /**
+         * 排在最前面、主机未达上限的任务，顺便清除已取消的任务（调用时持有锁）
+         */
+        private Task peekRunnable() {
+            int checked = 0;
+            Iterator<Task> iterator = queue.iterator();
+            while (iterator.hasNext() && checked < LOOKAHEAD) {
+                Task task = iterator.next();
+                if (task.isCancelled()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (hostAvailable(task.host)) {
+                    return task;
+                }
+                checked++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 排队的任务
+     */
+    private static final class Task extends FutureTask<Void> implements Comparable<Task> {
+        private final Lane lane;
+        private final Runnable onDiscard;
+        /** 任务已开始执行或已丢弃 */
+        private final AtomicBoolean taken;
+        private final int priority;
+        private final String host;
+        private final long sequence;
+
+        private Task(Lane lane, Runnable runnable, Runnable onDiscard, AtomicBoolean taken, int priority, String host,
+                     long sequence) {
+            super(() -> {
+                if (taken.compareAndSet(false, true)) {
+                    runnable.run();
+                }
+            }, null);
+            this.lane = lane;
+            this.onDiscard = onDiscard;
+            this.taken = taken;
+            this.priority = priority;
+            this.host = host;
+            this.sequence = sequence;
+        }
+
+        @Override
+        protected void done() {
+            // 执行中被取消时任务照常结束，不算丢弃
+            if (onDiscard != null && isCancelled() && taken.compareAndSet(false, true)) {
+                onDiscard.run();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
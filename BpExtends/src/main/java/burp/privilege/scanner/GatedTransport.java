@@ -0,0 +1,34 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+
+/**
+ * 受扫描开关控制的传输层装饰器
+ * 每次发送前经过{@link ScanControl#await}（暂停时挂起，停止后不再发送），并统计正在等待响应的请求数
+ *
+ * 每次批量扫描包装一次共享的传输层，关闭时不关闭被包装的传输层
+ */
+public class GatedTransport implements ScanTransport {
+
+    private final ScanTransport delegate;
+    private final ScanControl control;
+
+    public GatedTransport(ScanTransport delegate, ScanControl control) {
+        this.delegate = delegate;
+        this.control = control;
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        control.await();
+        control.requestStarted();
+        try {
+            return delegate.send(request);
+        } finally {
+            control.requestFinished();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package burp.privilege.scanner;
+
+import burp.api.montoya.persistence.PersistedObject;
+import burp.api.montoya.proxy.ProxyHistoryFilter;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import burp.privilege.model.ScanConfig;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Proxy历史记录游标
+ * 记录上次扫描处理到的位置（消息ID、时间、历史条数），再次扫描时只处理新增的记录
+ *
+ * 游标保存在项目文件中（extensionData），重新加载插件后依然有效；
+ * 过滤相关的配置改变、或Proxy历史被清空时自动从头开始
+ */
+public class HistoryCursor {
+
+    private static final String KEY_LAST_ID = "historyCursor.lastId";
+    private static final String KEY_LAST_TIME = "historyCursor.lastTime";
+    private static final String KEY_SIZE = "historyCursor.size";
+    private static final String KEY_CONFIG = "historyCursor.config";
+
+    private final PersistedObject store;
+
+    private int lastId = -1;
+    private long lastTime = -1;
+    private int size = 0;
+    private String configKey = "";
+
+    // 旧版Burp的ProxyHttpRequestResponse没有id()，此时改用时间比较
+    private boolean idSupported = true;
+
+    public HistoryCursor(PersistedObject store) {
+        this.store = store;
+        load();
+    }
+
+    /**
+     * 创建只匹配新增记录的历史过滤器（交给Montoya执行，未匹配的记录不会被复制出来）
+     *
+     * @param config 当前配置，过滤相关配置与上次不同时从头开始
+     * @param extra  附加过滤条件（如目标域名），为null时不附加
+     */
+    public synchronized Scan begin(ScanConfig config, ProxyHistoryFilter extra) {
+        String key = configKey(config);
+        if (!key.equals(configKey)) {
+            lastId = -1;
+            lastTime = -1;
+            size = 0;
+        }
+        return new Scan(key, lastId, lastTime, extra);
+    }
+
+    /**
+     * 创建匹配全部记录的历史过滤器（不改变已保存的游标，用于差异重扫）
+     */
+    public synchronized Scan beginFull(ScanConfig config, ProxyHistoryFilter extra) {
+        return new Scan(configKey(config), -1, -1, extra);
+    }
+
+    /**
+     * 扫描完成后推进游标
+     */
+    public synchronized void commit(Scan scan) {
+        if (scan.seen < size || (scan.maxId >= 0 && scan.maxId < lastId)) {
+            // 历史记录变少了，说明被清空过，下次从头开始
+            lastId = -1;
+            lastTime = -1;
+        } else {
+            lastId = Math.max(lastId, scan.maxId);
+            lastTime = Math.max(lastTime, scan.maxTime);
+        }
+        size = scan.seen;
+        configKey = scan.configKey;
+        save();
+    }
+
+    /**
+     * 重置游标，下次扫描处理全部历史记录
+     */
+    public synchronized void reset() {
+        lastId = -1;
+        lastTime = -1;
+        size = 0;
+        configKey = "";
+        save();
+    }
+
+    public synchronized boolean isEmpty() {
+        return lastId < 0 && lastTime < 0;
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    private void load() {
+        if (store == null) {
+            return;
+        }
+        Integer id = store.getInteger(KEY_LAST_ID);
+        Long time = store.getLong(KEY_LAST_TIME);
+        Integer count = store.getInteger(KEY_SIZE);
+        String key = store.getString(KEY_CONFIG);
+        lastId = id != null ? id : -1;
+        lastTime = time != null ? time : -1;
+        size = count != null ? count : 0;
+        configKey = key != null ? key : "";
+    }
+
+    private void save() {
+        if (store == null) {
+            return;
+        }
+        store.setInteger(KEY_LAST_ID, lastId);
+        store.setLong(KEY_LAST_TIME, lastTime);
+        store.setInteger(KEY_SIZE, size);
+        store.setString(KEY_CONFIG, configKey);
+    }
+
+    /**
+     * 影响过滤结果的配置
+     */
+    private static String configKey(ScanConfig config) {
+        return String.join("|",
+                join(config.getTargetDomains()),
+                String.valueOf(config.isUseScopeOnly()),
+                join(config.getPathIncludePatterns()),
+                join(config.getPathExcludePatterns()),
+                String.valueOf(config.isExcludeStaticResources()),
+                String.valueOf(config.isSkipUnauthenticated()),
+                String.valueOf(config.isIncludeSiteMap()),
+                join(config.getStaticExtensions()),
+                join(config.getIncludeMethods()),
+                join(config.getExcludeMethods()),
+                // 测试凭证变化时重新遍历历史，由已测试索引只补测新增的凭证
+                Long.toHexString(TestedEndpointIndex.columnSetKey(TestedEndpointIndex.columns(config))));
+    }
+
+    private static String join(List<String> values) {
+        return values == null ? "" : String.join(",", values);
+    }
+
+    /**
+     * 一次扫描的历史过滤器，同时统计本次看到的记录数和最大ID/时间
+     * Montoya在调用线程中逐条调用matches，不需要同步
+     */
+    public class Scan implements ProxyHistoryFilter {
+        private final String configKey;
+        private final int fromId;
+        private final long fromTime;
+        private final ProxyHistoryFilter extra;
+
+        private int seen = 0;
+        private int maxId = -1;
+        private long maxTime = -1;
+        private int matched = 0;
+
+        private Scan(String configKey, int fromId, long fromTime, ProxyHistoryFilter extra) {
+            this.configKey = configKey;
+            this.fromId = fromId;
+            this.fromTime = fromTime;
+            this.extra = extra;
+        }
+
+        @Override
+        public boolean matches(ProxyHttpRequestResponse item) {
+            seen++;
+
+            boolean isNew;
+            if (idSupported) {
+                try {
+                    int id = item.id();
+                    maxId = Math.max(maxId, id);
+                    isNew = id > fromId;
+                } catch (NoSuchMethodError e) {
+                    idSupported = false;
+                    isNew = isNewByTime(item);
+                }
+            } else {
+                isNew = isNewByTime(item);
+            }
+
+            if (!isNew || (extra != null && !extra.matches(item))) {
+                return false;
+            }
+            matched++;
+            return true;
+        }
+
+        private boolean isNewByTime(ProxyHttpRequestResponse item) {
+            ZonedDateTime time = item.time();
+            if (time == null) {
+                return true;
+            }
+            long millis = time.toInstant().toEpochMilli();
+            maxTime = Math.max(maxTime, millis);
+            return millis > fromTime;
+        }
+
+        /** 本次看到的历史记录总数 */
+        public int getSeen() {
+            return seen;
+        }
+
+        /** 本次新增且通过附加条件的记录数 */
+        public int getMatched() {
+            return matched;
+        }
+
+        /** 本次是否只处理新增记录 */
+        public boolean isIncremental() {
+            return fromId >= 0 || fromTime >= 0;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 记录各主机响应延迟的传输层装饰器
+ * 按主机统计实际发送的请求耗时（前10次取平均，之后按指数加权平均跟随变化），
+ * 用于估算扫描计划的耗时；可序列化后保存到项目文件，跨会话累积
+ */
+public class HostLatencyTracker implements ScanTransport {
+
+    private static final int MAGIC = 0x50484c31;  // "PHL1"
+
+    /** 没有任何记录时假定的延迟 */
+    public static final long DEFAULT_LATENCY_MILLIS = 500;
+
+    /** 指数加权平均的权重 */
+    private static final double ALPHA = 0.1;
+
+    private final ScanTransport delegate;
+    private final Supplier<byte[]> loader;
+    private volatile Map<String, Latency> hosts;
+    private volatile boolean dirty;
+
+    /**
+     * @param delegate 实际发送请求的传输层
+     * @param loader   首次使用时加载已保存的数据（返回null表示没有），可以为null
+     */
+    public HostLatencyTracker(ScanTransport delegate, Supplier<byte[]> loader) {
+        this.delegate = delegate;
+        this.loader = loader;
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        ScanResponse response = delegate.send(request);
+        record(request.host(), response.elapsedMillis());
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        return delegate.sendAsync(request, executor).thenApply(response -> {
+            record(request.host(), response.elapsedMillis());
+            return response;
+        });
+    }
+
+    /**
+     * 记录一次请求耗时
+     */
+    public void record(String host, long millis) {
+        if (host == null || millis < 0) {
+            return;
+        }
+        hosts().computeIfAbsent(host, h -> new Latency()).add(millis);
+        dirty = true;
+    }
+
+    /**
+     * 主机的平均延迟（毫秒）；没有该主机的记录时取所有主机的平均值，都没有时取默认值
+     */
+    public long estimateMillis(String host) {
+        Map<String, Latency> map = hosts();
+        Latency latency = host != null ? map.get(host) : null;
+        if (latency != null) {
+            return latency.average();
+        }
+        if (map.isEmpty()) {
+            return DEFAULT_LATENCY_MILLIS;
+        }
+        long sum = 0;
+        for (Latency l : map.values()) {
+            sum += l.average();
+        }
+        return sum / map.size();
+    }
+
+    /** 是否有该主机的记录 */
+    public boolean isKnown(String host) {
+        return host != null && hosts().containsKey(host);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 序列化（并清除变化标记）
+     */
+    public byte[] toBytes() {
+        Map<String, Latency> map = hosts();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + map.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(map.size());
+            for (Map.Entry<String, Latency> entry : map.entrySet()) {
+                synchronized (entry.getValue()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeDouble(entry.getValue().average);
+                    out.writeLong(entry.getValue().count);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // 内存流不会出现IO异常
+        }
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    private Map<String, Latency> hosts() {
+        Map<String, Latency> map = hosts;
+        if (map != null) {
+            return map;
+        }
+        synchronized (this) {
+            if (hosts == null) {
+                hosts = read(loader != null ? loader.get() : null);
+            }
+            return hosts;
+        }
+    }
+
+    /**
+     * 反序列化，数据无效时返回空表
+     */
+    private static Map<String, Latency> read(byte[] data) {
+        Map<String, Latency> map = new ConcurrentHashMap<>();
+        if (data == null || data.length < 8) {
+            return map;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                return map;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Latency latency = new Latency();
+                String host = in.readUTF();
+                latency.average = in.readDouble();
+                latency.count = in.readLong();
+                map.put(host, latency);
+            }
+        } catch (IOException e) {
+            map.clear();  // 数据损坏，当作没有记录
+        }
+        return map;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * 单个主机的延迟统计
+     */
+    private static class Latency {
+        private double average;
+        private long count;
+
+        private synchronized void add(long millis) {
+            count++;
+            // 样本少时取算术平均，之后按指数加权平均
+            double weight = count <= 10 ? 1.0 / count : ALPHA;
+            average += (millis - average) * weight;
+        }
+
+        private synchronized long average() {
+            return Math.round(average);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 基于JDK HttpClient的独立传输层
+ * 不依赖Burp，支持HTTP/2、连接复用和原生异步发送，用于独立运行和性能测试
+ */
+public class JdkHttpTransport implements ScanTransport {
+
+    /** HttpClient不允许或不应手动设置的请求头 */
+    private static final Set<String> SKIPPED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        SKIPPED_HEADERS.addAll(List.of(
+                "Host", "Connection", "Content-Length", "Expect", "Upgrade",
+                "Keep-Alive", "Proxy-Connection", "Transfer-Encoding", "TE"
+        ));
+    }
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    /**
+     * @param timeoutSeconds 请求超时时间（秒）
+     * @param trustAllCertificates 是否信任所有证书（测试环境常用自签名证书）
+     */
+    public JdkHttpTransport(int timeoutSeconds, boolean trustAllCertificates) {
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(timeout);
+
+        if (trustAllCertificates) {
+            builder.sslContext(createTrustAllContext());
+        }
+
+        this.client = builder.build();
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        try {
+            return sendAsync(request, Runnable::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断: " + request, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("请求失败: " + request, cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("无效请求: " + request, e));
+        }
+
+        long start = System.nanoTime();
+        return client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> toScanResponse(response, (System.nanoTime() - start) / 1_000_000))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    throw new CompletionException(cause instanceof IOException ? cause : new IOException(cause));
+                });
+    }
+
+    /**
+     * 扫描请求 -> JDK请求
+     */
+    private HttpRequest toHttpRequest(ScanRequest request) {
+        HttpRequest.BodyPublisher body = request.body().length > 0
+                ? HttpRequest.BodyPublishers.ofByteArray(request.body())
+                : HttpRequest.BodyPublishers.noBody();
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(toUri(request))
+                .timeout(timeout)
+                .method(request.method(), body);
+
+        for (ScanRequest.Header header : request.headers()) {
+            if (!SKIPPED_HEADERS.contains(header.getName())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * 扫描响应 <- JDK响应
+     */
+    private static ScanResponse toScanResponse(HttpResponse<byte[]> response, long elapsedMillis) {
+        List<ScanRequest.Header> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+            for (String value : entry.getValue()) {
+                headers.add(new ScanRequest.Header(entry.getKey(), value));
+            }
+        }
+        return new ScanResponse(response.statusCode(), headers, response.body(), elapsedMillis);
+    }
+
+    /**
+     * 构造URI，历史记录中的路径可能含有未编码的非法字符，此时逐字符编码后重试
+     */
+    private static URI toUri(ScanRequest request) {
+        String url = request.url();
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+                int c = b & 0xff;
+                if (c > 0x20 && c < 0x7f && "\"<>\\^`{|}".indexOf(c) < 0) {
+                    sb.append((char) c);
+                } else {
+                    sb.append('%').append(String.format("%02X", c));
+                }
+            }
+            return URI.create(sb.toString());
+        }
+    }
+
+    /**
+     * 创建信任所有证书的SSLContext（同时跳过主机名校验）
+     */
+    private static SSLContext createTrustAllContext() {
+        TrustManager trustAll = new X509ExtendedTrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{trustAll}, new SecureRandom());
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("无法初始化TLS上下文", e);
+        }
+    }
+}
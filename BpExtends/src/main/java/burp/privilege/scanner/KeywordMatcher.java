@@ -0,0 +1,127 @@
+package burp.privilege.scanner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * 预编译的关键词匹配器（Aho-Corasick自动机，不区分大小写）
+ * 一次扫描文本即可判断是否包含任一关键词，耗时只与文本长度有关，不随关键词数增加，
+ * 也不需要先把整个响应体转成小写
+ *
+ * 未配置任何关键词时都不匹配。编译后只读，线程安全
+ */
+public final class KeywordMatcher {
+
+    private static final KeywordMatcher EMPTY = new KeywordMatcher(List.of());
+
+    /** 每个状态的转移：按字符排序，二分查找 */
+    private final char[][] labels;
+    private final int[][] targets;
+    /** 失败转移 */
+    private final int[] fail;
+    /** 到达该状态时是否已匹配某个关键词 */
+    private final boolean[] output;
+
+    private KeywordMatcher(List<String> keywords) {
+        // 1. 建立字典树
+        List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        edges.add(new TreeMap<>());
+        terminal.add(false);
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (char c : keyword.toLowerCase(Locale.ROOT).toCharArray()) {
+                Integer next = edges.get(state).get(c);
+                if (next == null) {
+                    next = edges.size();
+                    edges.add(new TreeMap<>());
+                    terminal.add(false);
+                    edges.get(state).put(c, next);
+                }
+                state = next;
+            }
+            terminal.set(state, true);
+        }
+
+        int size = edges.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        fail = new int[size];
+        output = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            TreeMap<Character, Integer> map = edges.get(i);
+            labels[i] = new char[map.size()];
+            targets[i] = new int[map.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> entry : map.entrySet()) {
+                labels[i][j] = entry.getKey();
+                targets[i][j] = entry.getValue();
+                j++;
+            }
+            output[i] = terminal.get(i);
+        }
+
+        // 2. 按层计算失败转移，后缀是关键词的状态也标记为匹配
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int j = 0; j < labels[state].length; j++) {
+                int child = targets[state][j];
+                int f = fail[state];
+                int next;
+                while ((next = next(f, labels[state][j])) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                output[child] |= output[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 编译关键词列表
+     */
+    public static KeywordMatcher compile(List<String> keywords) {
+        return keywords == null || keywords.isEmpty() ? EMPTY : new KeywordMatcher(keywords);
+    }
+
+    /**
+     * 文本中是否包含任一关键词
+     */
+    public boolean containsAny(CharSequence text) {
+        if (labels[0].length == 0 || text == null) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            if (output[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(labels[state], c);
+        return index >= 0 ? targets[state][index] : -1;
+    }
+}
@@ -0,0 +1,96 @@
+package burp.privilege.scanner;
+
+import burp.api.montoya.proxy.http.InterceptedResponse;
+import burp.api.montoya.proxy.http.ProxyResponseHandler;
+import burp.api.montoya.proxy.http.ProxyResponseReceivedAction;
+import burp.api.montoya.proxy.http.ProxyResponseToBeSentAction;
+import burp.privilege.model.ClassifiedRequest;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 实时扫描处理器
+ * 注册到Burp Proxy，每收到一个响应就把通过过滤的请求放入扫描队列；
+ * Proxy收到的响应直接作为基准响应，不需要重新发送原始请求
+ *
+ * 处理器只做过滤和入队，不阻塞Proxy
+ */
+public class LiveScanHandler implements ProxyResponseHandler {
+
+    private final RequestFilter requestFilter;
+    private final TemplateSampler templateSampler;
+    private final BiConsumer<String, PendingRequest> queue;
+
+    /**
+     * @param queue 入队（参数为端点标识和待扫描请求，不能阻塞）
+     */
+    public LiveScanHandler(RequestFilter requestFilter, TemplateSampler templateSampler,
+                           BiConsumer<String, PendingRequest> queue) {
+        this.requestFilter = requestFilter;
+        this.templateSampler = templateSampler;
+        this.queue = queue;
+    }
+
+    @Override
+    public ProxyResponseReceivedAction handleResponseReceived(InterceptedResponse interceptedResponse) {
+        try {
+            // 原始请求失败的无法比较，直接跳过
+            if (interceptedResponse.statusCode() < 400) {
+                ScanRequest request = MontoyaTransport.toScanRequest(interceptedResponse.initiatingRequest());
+                ClassifiedRequest classified = requestFilter.classify(request, templateSampler);
+
+                if (classified != null) {
+                    ScanResponse baseline = MontoyaTransport.toScanResponse(interceptedResponse, 0);
+                    queue.accept(classified.getEndpointKey(), new PendingRequest(request, baseline,
+                            classified.getCredentialColumns(), classified.getSampleKey()));
+                }
+            }
+        } catch (Exception e) {
+            // 不影响Proxy正常转发
+        }
+
+        return ProxyResponseReceivedAction.continueWith(interceptedResponse);
+    }
+
+    @Override
+    public ProxyResponseToBeSentAction handleResponseToBeSent(InterceptedResponse interceptedResponse) {
+        return ProxyResponseToBeSentAction.continueWith(interceptedResponse);
+    }
+
+    /**
+     * 待扫描请求（请求 + Proxy记录的基准响应，没有时为null）
+     */
+    public static class PendingRequest {
+        private final ScanRequest request;
+        private final ScanResponse baseline;
+        /** 领取到的凭证列（没有检测完时放回） */
+        private final long[] columns;
+        /** 模板抽样标识，发现漏洞时用于扩展 */
+        private final String sampleKey;
+
+        public PendingRequest(ScanRequest request, ScanResponse baseline, long[] columns, String sampleKey) {
+            this.request = request;
+            this.baseline = baseline;
+            this.columns = columns;
+            this.sampleKey = sampleKey;
+        }
+
+        public ScanRequest getRequest() {
+            return request;
+        }
+
+        public ScanResponse getBaseline() {
+            return baseline;
+        }
+
+        public long[] getColumns() {
+            return columns;
+        }
+
+        public String getSampleKey() {
+            return sampleKey;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package burp.privilege.scanner;
+
+import java.util.function.LongConsumer;
+
+/**
+ * long集合（开放寻址、线性探测），每个元素占8字节，不装箱
+ * 非线程安全，由调用方同步
+ */
+final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /** 0表示空槽，元素0单独记录 */
+    private long[] table;
+    private boolean hasZero;
+    private int size;
+
+    LongHashSet(int expectedSize) {
+        table = new long[capacityFor(expectedSize)];
+    }
+
+    boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+
+        if ((size + 1) * 4L > table.length * 3L) {
+            resize(table.length * 2);
+        }
+        if (insert(table, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除元素（后移删除，不留墓碑）
+     *
+     * @return true表示删除成功，false表示不存在
+     */
+    boolean remove(long value) {
+        if (value == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+
+        long[] t = table;
+        int mask = t.length - 1;
+        int i = mix(value) & mask;
+        while (t[i] != value) {
+            if (t[i] == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // 把后面探测链上的元素前移填补空位，保证查找不会提前遇到空槽
+        int gap = i;
+        for (int j = (i + 1) & mask; t[j] != 0; j = (j + 1) & mask) {
+            int home = mix(t[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                t[gap] = t[j];
+                gap = j;
+            }
+        }
+        t[gap] = 0;
+        size--;
+        return true;
+    }
+
+    boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        long[] t = table;
+        int mask = t.length - 1;
+        int i = mix(value) & mask;
+        while (t[i] != 0) {
+            if (t[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    void clear() {
+        table = new long[MIN_CAPACITY];
+        hasZero = false;
+        size = 0;
+    }
+
+    void forEach(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0);
+        }
+        for (long value : table) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] newTable = new long[capacity];
+        for (long value : table) {
+            if (value != 0) {
+                insert(newTable, value);
+            }
+        }
+        table = newTable;
+    }
+
+    private static boolean insert(long[] t, long value) {
+        int mask = t.length - 1;
+        int i = mix(value) & mask;
+        while (t[i] != 0) {
+            if (t[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        t[i] = value;
+        return true;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, expectedSize * 4L / 3 + 1);
+        int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+
+    /** 打散高位，避免哈希值低位相近时聚集 */
+    static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,85 @@
+package burp.privilege.scanner;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.Http;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于Montoya API的传输层
+ * 请求经由Burp的HTTP栈发送，遵循Burp的上游代理、TLS等设置
+ */
+public class MontoyaTransport implements ScanTransport {
+
+    private final Http http;
+
+    public MontoyaTransport(Http http) {
+        this.http = http;
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        long start = System.nanoTime();
+        HttpRequestResponse requestResponse = http.sendRequest(toHttpRequest(request));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        HttpResponse response = requestResponse.response();
+        if (response == null) {
+            throw new IOException("无响应: " + request);
+        }
+
+        return toScanResponse(response, elapsedMillis);
+    }
+
+    /**
+     * Montoya请求 -> 扫描请求
+     */
+    public static ScanRequest toScanRequest(HttpRequest request) {
+        HttpService service = request.httpService();
+
+        List<ScanRequest.Header> headers = new ArrayList<>();
+        for (HttpHeader header : request.headers()) {
+            headers.add(new ScanRequest.Header(header.name(), header.value()));
+        }
+
+        return new ScanRequest(
+                request.method(),
+                service.host(),
+                service.port(),
+                service.secure(),
+                request.path(),
+                request.httpVersion(),
+                headers,
+                request.body().getBytes()
+        );
+    }
+
+    /**
+     * 扫描请求 -> Montoya请求
+     */
+    public static HttpRequest toHttpRequest(ScanRequest request) {
+        HttpService service = HttpService.httpService(request.host(), request.port(), request.secure());
+        return HttpRequest.httpRequest(service, ByteArray.byteArray(request.toByteArray()));
+    }
+
+    /**
+     * Montoya响应 -> 扫描响应
+     */
+    public static ScanResponse toScanResponse(HttpResponse response, long elapsedMillis) {
+        List<ScanRequest.Header> headers = new ArrayList<>();
+        for (HttpHeader header : response.headers()) {
+            headers.add(new ScanRequest.Header(header.name(), header.value()));
+        }
+
+        return new ScanResponse(response.statusCode(), headers, response.body().getBytes(), elapsedMillis);
+    }
+}
@@ -0,0 +1,226 @@
+package burp.privilege.scanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 预编译的路径匹配器
+ * 把一组路径正则（整体匹配，语义同Pattern.matches）一次性编译：
+ * - 纯文本（如 /logout）和"文本 + .*"（如 /api/admin/.*）放入前缀树，按路径逐字符查找
+ * - 其余正则合并为一个Pattern；含反向引用（\1、\k&lt;name&gt;）或命名分组的单独编译，
+ *   合并后分组重新编号，反向引用会指向别的分组，同名分组也会冲突
+ *
+ * 匹配耗时只与路径长度有关，与规则数量无关（单独编译的正则逐个匹配）；无效的正则在编译时收集，匹配时忽略
+ */
+public final class PathMatcher {
+
+    private static final PathMatcher EMPTY =
+            new PathMatcher(new Node(), null, Collections.emptyList(), Collections.emptyList(), true);
+
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+    private final Node trie;
+    private final Pattern combined;
+    private final List<Pattern> separate;
+    private final List<String> errors;
+    private final boolean empty;
+
+    private PathMatcher(Node trie, Pattern combined, List<Pattern> separate, List<String> errors, boolean empty) {
+        this.trie = trie;
+        this.combined = combined;
+        this.separate = separate;
+        this.errors = errors;
+        this.empty = empty;
+    }
+
+    /**
+     * 编译一组路径正则
+     *
+     * @param patterns 正则列表，可以为null
+     */
+    public static PathMatcher compile(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return EMPTY;
+        }
+
+        Node trie = new Node();
+        List<String> regexes = new ArrayList<>();
+        List<Pattern> separate = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        boolean any = false;
+
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.trim().isEmpty()) {
+                continue;
+            }
+            pattern = pattern.trim();
+
+            try {
+                Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                errors.add(pattern + " : " + e.getDescription());
+                continue;
+            }
+            any = true;
+
+            String body = pattern;
+            if (body.startsWith("^")) {
+                body = body.substring(1);
+            }
+            if (body.endsWith("$") && !body.endsWith("\\$")) {
+                body = body.substring(0, body.length() - 1);
+            }
+
+            boolean prefix = body.endsWith(".*") && !body.endsWith("\\.*");
+            String literal = unescapeLiteral(prefix ? body.substring(0, body.length() - 2) : body);
+            if (literal != null) {
+                trie.insert(literal, prefix);
+            } else if (hasGroupReference(pattern)) {
+                separate.add(Pattern.compile(pattern));
+            } else {
+                regexes.add(pattern);
+            }
+        }
+
+        Pattern combined = null;
+        if (!regexes.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (String regex : regexes) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append("(?:").append(regex).append(')');
+            }
+            try {
+                combined = Pattern.compile(sb.toString());
+            } catch (PatternSyntaxException e) {
+                // 合并后无法编译的极少见情况，退回逐个匹配
+                for (String regex : regexes) {
+                    separate.add(Pattern.compile(regex));
+                }
+            }
+        }
+
+        return new PathMatcher(trie, combined, separate, Collections.unmodifiableList(errors), !any);
+    }
+
+    /**
+     * 路径是否匹配任一规则
+     */
+    public boolean matches(String path) {
+        if (empty) {
+            return false;
+        }
+        if (trie.matches(path)) {
+            return true;
+        }
+        if (combined != null && combined.matcher(path).matches()) {
+            return true;
+        }
+        for (Pattern pattern : separate) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否没有有效规则
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * 无效的正则及错误说明
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * 正则是否含有反向引用（\1等编号引用、\k&lt;name&gt;）或命名分组（?&lt;name&gt;），这类正则不能合并
+     */
+    static boolean hasGroupReference(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if ((next >= '1' && next <= '9') || next == 'k') {
+                    return true;
+                }
+                i++;  // 跳过被转义的字符
+            } else if (c == '(' && next == '?' && i + 3 < regex.length() && regex.charAt(i + 2) == '<'
+                    && Character.isLetter(regex.charAt(i + 3))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把只含普通字符和转义字符的正则还原为文本，含其他元字符时返回null
+     */
+    private static String unescapeLiteral(String regex) {
+        StringBuilder sb = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char next = regex.charAt(++i);
+                if (Character.isLetterOrDigit(next)) {
+                    return null;  // \d、\w等字符类
+                }
+                sb.append(next);
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private boolean exact;
+        private boolean prefix;
+
+        void insert(String literal, boolean asPrefix) {
+            Node node = this;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.children.computeIfAbsent(literal.charAt(i), k -> new Node());
+            }
+            if (asPrefix) {
+                node.prefix = true;
+            } else {
+                node.exact = true;
+            }
+        }
+
+        boolean matches(String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                if (node.prefix) {
+                    return true;
+                }
+                node = node.children.get(path.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.prefix || node.exact;
+        }
+    }
+}
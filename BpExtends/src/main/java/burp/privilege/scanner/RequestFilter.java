@@ -1,25 +1,55 @@
 package burp.privilege.scanner;
 
-import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.privilege.model.AuthCredential;
+import burp.privilege.model.ClassifiedRequest;
 import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * 请求过滤器
  * 根据配置筛选需要扫描的请求
+ *
+ * 线程安全：每个请求只读一份配置快照（见{@link CompiledConfig}），已测试URL使用并发集合原子去重，
+ * 可在多个线程中同时调用；配置修改后从下一个请求起生效
  */
 public class RequestFilter {
 
     private final ScanConfig config;
-    private final Set<String> testedUrls;
+    private final TestedEndpointIndex testedIndex;
+
+    /** 当前配置版本编译后的规则（多个线程可能同时取到新版本，结果相同，不需要加锁） */
+    private volatile CompiledConfig compiled;
+
+    /** Burp范围查询（参数为URL），独立运行时为null */
+    private volatile Predicate<String> scopeLookup;
+
+    /** 范围查询缓存的最大条目数，超过时清空重建 */
+    private static final int MAX_SCOPE_CACHE = 16384;
+
+    /** 范围查询结果缓存，按不带查询字符串的URL缓存 */
+    private final Map<String, Boolean> scopeCache = new ConcurrentHashMap<>();
+
+    /** 因不带认证信息而跳过的请求数 */
+    private final AtomicInteger unauthenticatedCount = new AtomicInteger(0);
 
     public RequestFilter(ScanConfig config) {
+        this(config, new TestedEndpointIndex());
+    }
+
+    /**
+     * @param testedIndex 已测试端点索引（可使用持久化的索引跨会话去重）
+     */
+    public RequestFilter(ScanConfig config, TestedEndpointIndex testedIndex) {
         this.config = config;
-        this.testedUrls = new HashSet<>();
+        this.testedIndex = testedIndex;
     }
 
     /**
@@ -28,155 +58,296 @@ public class RequestFilter {
      * @param request HTTP请求
      * @return true表示应该扫描，false表示跳过
      */
-    public boolean shouldScan(HttpRequest request) {
-        try {
-            // 1. 检查URL是否已测试
-            if (config.isExcludeTested()) {
-                String urlKey = getUrlKey(request);
-                if (testedUrls.contains(urlKey)) {
-                    return false;
-                }
-            }
+    public boolean shouldScan(ScanRequest request) {
+        return accept(request, compiled(), true) != null;
+    }
 
-            // 2. 检查域名
-            if (!matchesTargetDomain(request)) {
-                return false;
-            }
+    /**
+     * 过滤、模板抽样，再领取凭证列
+     * 先只查询已测试记录，通过抽样的请求才领取；暂缓的请求不记为已测试，扩展时由{@link #claimDeferred}领取
+     *
+     * @param request HTTP请求
+     * @param sampler 模板抽样
+     * @return 领取后的请求及元数据，跳过、暂缓或已被其他线程领取时返回null
+     */
+    public ClassifiedRequest classify(ScanRequest request, TemplateSampler sampler) {
+        ClassifiedRequest planned = classify(request, false);
+        if (planned == null || !sampler.admit(planned.getSampleKey(), request)) {
+            return null;
+        }
+        long[] columns = claimDeferred(request, planned.getCredentialColumns());
+        if (columns.length == 0) {
+            // 同一端点已被其他请求领取，放回样本名额
+            sampler.release(planned.getSampleKey());
+            return null;
+        }
+        return new ClassifiedRequest(request, planned.getEndpointKey(), planned.getTemplateKey(),
+                planned.getHostKey(), planned.getContentType(), planned.getAuthFingerprint(), columns,
+                planned.isPartial() || columns.length < planned.getCredentialColumns().length);
+    }
 
-            // 3. 检查HTTP方法
-            if (!matchesMethod(request)) {
-                return false;
-            }
+    /**
+     * 过滤并预先计算请求元数据，只查询已测试记录、不领取（用于生成扫描计划，执行计划时再用{@link #claim}领取）
+     *
+     * @return 通过过滤的请求及元数据，跳过时返回null
+     */
+    public ClassifiedRequest plan(ScanRequest request) {
+        return classify(request, false);
+    }
 
-            // 4. 检查静态资源
-            if (config.isExcludeStaticResources() && isStaticResource(request)) {
-                return false;
-            }
+    private ClassifiedRequest classify(ScanRequest request, boolean claim) {
+        CompiledConfig rules = compiled();
+        long[] pending = accept(request, rules, claim);
+        if (pending == null) {
+            return null;
+        }
+        return new ClassifiedRequest(request, urlKey(request),
+                EndpointTemplate.key(request),
+                request.host() + ":" + request.port(),
+                contentType(request),
+                authFingerprint(request, rules),
+                pending, pending.length < rules.getColumns().length);
+    }
 
-            // 5. 检查路径包含模式
-            if (!matchesPathIncludePattern(request)) {
-                return false;
+    /**
+     * @param rules 当前配置快照（整个判断过程使用同一份，中途修改配置不会前后不一致）
+     * @param claim 是否领取未完成的列（false时只查询）
+     * @return 需要测试的凭证列，跳过时返回null
+     */
+    private long[] accept(ScanRequest request, CompiledConfig rules, boolean claim) {
+        long[] columns = rules.getColumns();
+        try {
+            // 1. 检查端点是否已用当前所有测试凭证测试过（快速路径，最终以第7步的原子领取为准）
+            long endpoint = rules.isExcludeTested() ? TestedEndpointIndex.endpointKey(request) : 0;
+            if (rules.isExcludeTested() && testedIndex.mightContainAll(endpoint, columns)) {
+                return null;
             }
 
-            // 6. 检查路径排除模式
-            if (matchesPathExcludePattern(request)) {
-                return false;
+            // 2-6. 检查域名和Burp范围、HTTP方法、静态资源、路径包含和排除模式
+            if (!matchesRules(rules, request)) {
+                return null;
             }
 
-            // 7. 记录已测试URL
-            if (config.isExcludeTested()) {
-                testedUrls.add(getUrlKey(request));
+            // 7. 检查认证信息：不带认证信息的公开接口替换或移除凭证后请求不变，测试只会产生误报
+            //    （不记录为已测试，之后带认证信息的同一端点请求仍会扫描）
+            if (rules.isSkipUnauthenticated() && !AuthCredential.hasAuth(request)) {
+                unauthenticatedCount.incrementAndGet();
+                return null;
             }
 
-            return true;
+            // 8. 领取未完成的凭证列，多个线程同时遇到同一端点时每列只分给一个线程
+            if (!rules.isExcludeTested()) {
+                return columns;
+            }
+            long[] pending = claim ? testedIndex.claim(endpoint, columns) : testedIndex.pending(endpoint, columns);
+            return pending.length > 0 ? pending : null;
 
         } catch (Exception e) {
             // 解析错误时跳过该请求
+            return null;
+        }
+    }
+
+    /**
+     * 请求是否通过过滤规则且携带认证信息（不查询已测试记录、不计数），用于合并重复流量时挑选条目
+     */
+    public boolean passes(ScanRequest request) {
+        CompiledConfig rules = compiled();
+        try {
+            return matchesRules(rules, request)
+                    && (!rules.isSkipUnauthenticated() || AuthCredential.hasAuth(request));
+        } catch (Exception e) {
             return false;
         }
     }
 
+    private boolean matchesRules(CompiledConfig rules, ScanRequest request) {
+        // 域名和Burp范围
+        if (!matchesTarget(rules, request.host(), request.origin(), request.path())) {
+            return false;
+        }
+
+        // HTTP方法
+        if (!rules.matchesMethod(request.method())) {
+            return false;
+        }
+
+        // 静态资源
+        if (rules.isExcludeStaticResources() && isStaticResource(rules, request)) {
+            return false;
+        }
+
+        // 路径包含模式（无配置则全部匹配）
+        if (rules.hasIncludePatterns() && !rules.getInclude().matches(request.path())) {
+            return false;
+        }
+
+        // 路径排除模式
+        return !rules.hasExcludePatterns() || !rules.getExclude().matches(request.path());
+    }
+
     /**
-     * 检查是否匹配目标域名
+     * 领取请求尚未完成的凭证列（执行扫描计划时调用），未开启"排除已测试"时全部返回
+     *
+     * @param columns 计划测试的列
+     * @return 领取到的列（未能测试时原样交给{@link #release}），全部已被其他扫描完成时返回空数组
      */
-    private boolean matchesTargetDomain(HttpRequest request) {
-        if (config.getTargetDomains().isEmpty()) {
-            return true;  // 未配置域名则全部匹配
+    public long[] claim(ScanRequest request, long[] columns) {
+        if (!compiled().isExcludeTested()) {
+            return columns;
         }
+        return testedIndex.claim(TestedEndpointIndex.endpointKey(request), columns);
+    }
 
-        String host = request.httpService().host();
-        for (String domain : config.getTargetDomains()) {
-            if (host.equals(domain) || host.endsWith("." + domain)) {
-                return true;
-            }
+    /**
+     * 领取模板扩展时取回的暂缓请求（暂缓时未领取），与{@link #claim}相同
+     *
+     * @param columns 需要测试的列（样本领取到的列）
+     * @return 领取到的列，全部已被测试时返回空数组
+     */
+    public long[] claimDeferred(ScanRequest request, long[] columns) {
+        return claim(request, columns);
+    }
+
+    /**
+     * 放回请求领取的凭证列（请求未能测试时调用）
+     * 放回的就是领取时返回的列，不看当前的"排除已测试"开关，领取后修改配置也不会漏放或多放其他列；
+     * 领取时未开启"排除已测试"的列没有记录，放回只会让之后的扫描多检测一次
+     *
+     * @param columns 领取时返回的列
+     */
+    public void release(ScanRequest request, long[] columns) {
+        if (columns.length > 0) {
+            testedIndex.release(TestedEndpointIndex.endpointKey(request), columns);
         }
+    }
 
-        return false;
+    /**
+     * 检查是否匹配目标域名（未配置域名则全部匹配）
+     */
+    public boolean matchesTargetDomain(String host) {
+        return compiled().getDomains().matches(host);
     }
 
     /**
-     * 检查是否匹配HTTP方法
+     * 检查是否匹配目标域名，开启"仅扫描范围内"时同时检查Burp范围
+     * 范围按不带查询字符串的完整URL查询并缓存，范围中排除的路径不会被扫描
+     *
+     * @param host   主机名
+     * @param origin 协议://主机[:端口]
+     * @param path   路径（可以带查询字符串）
      */
-    private boolean matchesMethod(HttpRequest request) {
-        String method = request.method();
+    public boolean matchesTarget(String host, String origin, String path) {
+        return matchesTarget(compiled(), host, origin, path);
+    }
 
-        // 检查排除方法
-        if (config.getExcludeMethods().contains(method)) {
+    private boolean matchesTarget(CompiledConfig rules, String host, String origin, String path) {
+        if (!rules.getDomains().matches(host)) {
             return false;
         }
 
-        // 检查包含方法（如果配置了）
-        if (!config.getIncludeMethods().isEmpty() &&
-            !config.getIncludeMethods().contains(method)) {
-            return false;
+        Predicate<String> lookup = scopeLookup;
+        if (!rules.isUseScopeOnly() || lookup == null) {
+            return true;
         }
+        int query = path.indexOf('?');
+        String url = origin + (query >= 0 ? path.substring(0, query) : path);
+        if (scopeCache.size() > MAX_SCOPE_CACHE) {
+            scopeCache.clear();
+        }
+        return scopeCache.computeIfAbsent(url, lookup::test);
+    }
+
+    /**
+     * 设置Burp范围查询（参数为URL）
+     */
+    public void setScopeLookup(Predicate<String> scopeLookup) {
+        this.scopeLookup = scopeLookup;
+        scopeCache.clear();
+    }
 
-        return true;
+    /**
+     * Burp范围变化时清除缓存
+     */
+    public void clearScopeCache() {
+        scopeCache.clear();
     }
 
     /**
      * 检查是否为静态资源
      */
-    private boolean isStaticResource(HttpRequest request) {
+    private static boolean isStaticResource(CompiledConfig rules, ScanRequest request) {
         String extension = request.fileExtension().toLowerCase();
 
         if (extension.isEmpty()) {
             return false;
         }
 
-        return config.getStaticExtensions().contains(extension);
+        return rules.isStaticExtension(extension);
     }
 
     /**
-     * 检查是否匹配路径包含模式
+     * 获取当前配置快照，配置版本变化时取新版本（同一版本所有过滤器共用，见{@link CompiledConfig#of}）
      */
-    private boolean matchesPathIncludePattern(HttpRequest request) {
-        if (config.getPathIncludePatterns().isEmpty()) {
-            return true;  // 无配置则全部匹配
+    private CompiledConfig compiled() {
+        CompiledConfig current = compiled;
+        if (current == null || current.getVersion() != config.getVersion()) {
+            current = CompiledConfig.of(config);
+            compiled = current;
         }
+        return current;
+    }
 
-        String path = request.path();
+    /**
+     * 配置中无效的路径正则
+     */
+    public List<String> getInvalidPathPatterns() {
+        CompiledConfig current = compiled();
+        List<String> errors = new ArrayList<>(current.getInclude().getErrors());
+        errors.addAll(current.getExclude().getErrors());
+        return errors;
+    }
 
-        for (String pattern : config.getPathIncludePatterns()) {
-            try {
-                if (Pattern.matches(pattern, path)) {
-                    return true;
-                }
-            } catch (Exception e) {
-                // 正则表达式无效，忽略
-            }
+    /**
+     * 请求体类型（去掉charset等参数）
+     */
+    private static String contentType(ScanRequest request) {
+        String value = request.headerValue("Content-Type");
+        if (value == null) {
+            return "";
         }
-
-        return false;
+        int semicolon = value.indexOf(';');
+        return (semicolon >= 0 ? value.substring(0, semicolon) : value).trim().toLowerCase(Locale.ROOT);
     }
 
     /**
-     * 检查是否匹配路径排除模式
+     * 认证指纹：按配置的认证头逐个哈希，不带任何认证头时为0
      */
-    private boolean matchesPathExcludePattern(HttpRequest request) {
-        if (config.getPathExcludePatterns().isEmpty()) {
-            return false;
+    private static long authFingerprint(ScanRequest request, CompiledConfig rules) {
+        long hash = 0;
+        boolean found = false;
+        for (String name : rules.getAuthHeaders()) {
+            String value = request.headerValue(name);
+            hash = hash * 31 + (value != null ? value.hashCode() : 0);
+            found |= value != null;
         }
-
-        String path = request.path();
-
-        for (String pattern : config.getPathExcludePatterns()) {
-            try {
-                if (Pattern.matches(pattern, path)) {
-                    return true;
-                }
-            } catch (Exception e) {
-                // 正则表达式无效，忽略
-            }
+        if (!found) {
+            return 0;
         }
+        return hash != 0 ? hash : 1;
+    }
 
-        return false;
+    /**
+     * 因不带认证信息而跳过的请求数
+     */
+    public int getUnauthenticatedCount() {
+        return unauthenticatedCount.get();
     }
 
     /**
-     * 获取URL的唯一标识（用于去重）
+     * 获取URL的唯一标识（用于实时扫描队列合并等）
      */
-    private String getUrlKey(HttpRequest request) {
+    static String urlKey(ScanRequest request) {
         return request.method() + ":" + request.url();
     }
 
@@ -184,13 +355,13 @@ public class RequestFilter {
      * 清除已测试URL记录
      */
     public void clearTestedUrls() {
-        testedUrls.clear();
+        testedIndex.clear();
     }
 
     /**
      * 获取已测试URL数量
      */
     public int getTestedUrlCount() {
-        return testedUrls.size();
+        return testedIndex.size();
     }
 }
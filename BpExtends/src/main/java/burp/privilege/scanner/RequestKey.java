@@ -0,0 +1,81 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 规范化请求的128位哈希：方法、协议、主机、端口、路径、请求头（名称不区分大小写，按名称排序）、请求体
+ * 用于合并相同请求和响应缓存；认证头也参与计算，不同凭证的请求不会互相命中
+ */
+final class RequestKey {
+    private final long h1;
+    private final long h2;
+
+    private RequestKey(long h1, long h2) {
+        this.h1 = h1;
+        this.h2 = h2;
+    }
+
+    static RequestKey of(ScanRequest request) {
+        Hasher hasher = new Hasher();
+        hasher.put(request.method()).put(request.secure() ? "https" : "http")
+                .put(request.host().toLowerCase(Locale.ROOT)).put(Integer.toString(request.port()))
+                .put(request.path());
+
+        List<ScanRequest.Header> headers = new ArrayList<>(request.headers());
+        headers.sort(Comparator.comparing((ScanRequest.Header h) -> h.getName().toLowerCase(Locale.ROOT))
+                .thenComparing(ScanRequest.Header::getValue));
+        for (ScanRequest.Header header : headers) {
+            hasher.put(header.getName().toLowerCase(Locale.ROOT)).put(header.getValue());
+        }
+
+        hasher.put(request.body());
+        return new RequestKey(hasher.h1, hasher.h2);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey other = (RequestKey) o;
+        return h1 == other.h1 && h2 == other.h2;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(h1);
+    }
+
+    /**
+     * 两路独立的64位哈希（FNV-1a和乘法混合），每个字段后追加分隔符
+     */
+    private static final class Hasher {
+        private long h1 = 0xcbf29ce484222325L;
+        private long h2 = 0x9e3779b97f4a7c15L;
+
+        Hasher put(String value) {
+            return put(value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        }
+
+        Hasher put(byte[] bytes) {
+            for (byte b : bytes) {
+                h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+                h2 = (h2 + (b & 0xff)) * 0xff51afd7ed558ccdL;
+                h2 ^= h2 >>> 29;
+            }
+            h1 = (h1 ^ 0x1f) * 0x100000001b3L;
+            h2 = (h2 + bytes.length) * 0xc4ceb9fe1a85ec53L;
+            h2 ^= h2 >>> 32;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.AuthCredential;
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+import burp.privilege.model.VulnerabilityType;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 单请求检测器
+ * 对一个原始请求执行越权和未授权检测，不依赖Burp，插件模式和独立运行模式共用
+ *
+ * 每个请求开始检测时取一份配置快照（见{@link CompiledConfig}），该请求的全部测试都按这份快照进行
+ */
+public class RequestScanner {
+
+    private final ScanConfig config;
+    private final ScanTransport transport;
+    private final ResponseAnalyzer responseAnalyzer;
+    private final ScanLogger logger;
+    private final BaselineStore baselineStore;
+
+    /** 因请求不变而跳过的测试数（测试凭证与原请求认证信息相同，或原请求不带认证信息） */
+    private final AtomicLong skippedNoOpCount;
+
+    public RequestScanner(ScanConfig config, ScanTransport transport, ScanLogger logger) {
+        this(config, transport, logger, null);
+    }
+
+    /**
+     * @param baselineStore 基准响应指纹库，用于差异重扫，可以为null
+     */
+    public RequestScanner(ScanConfig config, ScanTransport transport, ScanLogger logger, BaselineStore baselineStore) {
+        this.config = config;
+        this.transport = transport;
+        this.responseAnalyzer = new ResponseAnalyzer(config);
+        this.logger = logger;
+        this.baselineStore = baselineStore;
+        this.skippedNoOpCount = new AtomicLong(0);
+    }
+
+    private RequestScanner(RequestScanner base, ScanTransport transport) {
+        this.config = base.config;
+        this.transport = transport;
+        this.responseAnalyzer = base.responseAnalyzer;
+        this.logger = base.logger;
+        this.baselineStore = base.baselineStore;
+        this.skippedNoOpCount = base.skippedNoOpCount;
+    }
+
+    /**
+     * 使用另一个传输层的检测器（如受扫描开关控制的{@link GatedTransport}），共享统计和基准指纹库
+     */
+    public RequestScanner withTransport(ScanTransport transport) {
+        return new RequestScanner(this, transport);
+    }
+
+    /**
+     * 扫描单个请求
+     *
+     * @param originalRequest 原始请求
+     * @param running         是否继续执行（返回false时中止剩余的凭证测试）
+     * @param resultConsumer  发现结果时的回调
+     * @return 是否完成（基准请求和各测试请求都收到了响应；请求失败或中途停止时为false，调用方不应记为已测试）
+     */
+    public boolean scan(ScanRequest originalRequest, BooleanSupplier running, Consumer<ScanResult> resultConsumer) {
+        return scan(originalRequest, (long[]) null, running, resultConsumer);
+    }
+
+    /**
+     * 只用部分测试凭证扫描单个请求（如新增的测试凭证）
+     *
+     * @param columns 需要测试的凭证列（见{@link TestedEndpointIndex#columns}），null表示全部
+     * @return 是否完成
+     */
+    public boolean scan(ScanRequest originalRequest, long[] columns, BooleanSupplier running,
+                        Consumer<ScanResult> resultConsumer) {
+        ScanResponse originalResp;
+        try {
+            // 1. 获取原始请求的响应
+            originalResp = transport.send(originalRequest);
+        } catch (ScanCancelledException e) {
+            return false;
+        } catch (Exception e) {
+            logger.error("扫描请求异常: " + e.getMessage());
+            return false;
+        }
+
+        return scan(originalRequest, originalResp, columns, running, resultConsumer);
+    }
+
+    /**
+     * 差异重扫单个请求
+     * 先获取基准响应，与上次记录的指纹比较，只有状态码或内容变化、新端点、上次发现过漏洞时才执行完整检测
+     *
+     * @return 比较结果（请求失败或中途停止、检测未完成时返回null）
+     */
+    public BaselineStore.Change rescan(ScanRequest originalRequest, BooleanSupplier running,
+                                       Consumer<ScanResult> resultConsumer) {
+        ScanResponse originalResp;
+        try {
+            originalResp = transport.send(originalRequest);
+        } catch (ScanCancelledException e) {
+            return null;
+        } catch (Exception e) {
+            logger.error("扫描请求异常: " + e.getMessage());
+            return null;
+        }
+
+        if (baselineStore == null) {
+            return scan(originalRequest, originalResp, running, resultConsumer) ? BaselineStore.Change.NEW : null;
+        }
+
+        BaselineStore.Change change = baselineStore.compare(
+                TestedEndpointIndex.endpointKey(originalRequest), originalResp);
+        if (change.needsRescan() && !scan(originalRequest, originalResp, running, resultConsumer)) {
+            return null;
+        }
+        return change;
+    }
+
+    /**
+     * 使用已有的基准响应扫描单个请求（如实时扫描时Proxy收到的响应）
+     *
+     * @param originalRequest 原始请求
+     * @param originalResp    原始请求的响应
+     * @param running         是否继续执行（返回false时中止剩余的凭证测试）
+     * @param resultConsumer  发现结果时的回调
+     * @return 是否完成
+     */
+    public boolean scan(ScanRequest originalRequest, ScanResponse originalResp,
+                        BooleanSupplier running, Consumer<ScanResult> resultConsumer) {
+        return scan(originalRequest, originalResp, null, running, resultConsumer);
+    }
+
+    /**
+     * 使用已有的基准响应，只用部分测试凭证扫描单个请求
+     *
+     * @param columns 需要测试的凭证列，null表示全部
+     * @return 是否完成
+     */
+    public boolean scan(ScanRequest originalRequest, ScanResponse originalResp, long[] columns,
+                        BooleanSupplier running, Consumer<ScanResult> resultConsumer) {
+        boolean[] found = new boolean[1];
+        boolean complete = scanAll(originalRequest, originalResp, columns, running, result -> {
+            found[0] = true;
+            resultConsumer.accept(result);
+        }) && running.getAsBoolean();
+
+        // 完整检测结束后记录基准指纹，供差异重扫比较（中途停止或请求失败的不记录；
+        // 只测部分凭证时其余凭证的结论未知，只在发现漏洞时记录）
+        if (baselineStore != null && complete
+                && (found[0] || TestedEndpointIndex.hasAllColumns(columns, CompiledConfig.of(config).getColumns()))) {
+            baselineStore.record(TestedEndpointIndex.endpointKey(originalRequest), originalResp, found[0]);
+        }
+        return complete;
+    }
+
+    /**
+     * @return 需要的测试请求是否都收到了响应（基准响应失败时不测试，算作完成）
+     */
+    private boolean scanAll(ScanRequest originalRequest, ScanResponse originalResp, long[] columns,
+                            BooleanSupplier running, Consumer<ScanResult> resultConsumer) {
+        CompiledConfig rules = CompiledConfig.of(config);
+        boolean complete = true;
+        try {
+            // 如果原始请求失败，跳过
+            if (originalResp.statusCode() >= 400) {
+                return true;
+            }
+
+            // 2. 执行越权测试（使用其他用户凭证）
+            for (AuthCredential testCredential : rules.getTestCredentials()) {
+                if (!running.getAsBoolean()) {
+                    return false;
+                }
+                if (!TestedEndpointIndex.hasColumn(columns, TestedEndpointIndex.columnKey(testCredential))) {
+                    continue;
+                }
+                // 替换凭证后请求不变，发送只会重新获取基准响应并误报
+                if (testCredential.isNoOpFor(originalRequest)) {
+                    skippedNoOpCount.incrementAndGet();
+                    continue;
+                }
+
+                ScanResult result;
+                try {
+                    result = testPrivilegeEscalation(originalRequest, originalResp, testCredential, rules);
+                } catch (ScanCancelledException e) {
+                    return false;
+                } catch (Exception e) {
+                    // 其他凭证继续测试，这个请求不记为已测试
+                    logger.error("越权测试失败: " + e.getMessage());
+                    complete = false;
+                    continue;
+                }
+
+                if (result != null) {
+                    resultConsumer.accept(result);
+                }
+            }
+
+            // 3. 执行未授权访问测试
+            if (rules.isTestUnauthorizedAccess()
+                    && TestedEndpointIndex.hasColumn(columns, TestedEndpointIndex.UNAUTHORIZED_COLUMN)) {
+                if (!AuthCredential.hasAuth(originalRequest)) {
+                    // 原请求不带认证信息，移除后请求不变
+                    skippedNoOpCount.incrementAndGet();
+                } else if (!running.getAsBoolean()) {
+                    return false;
+                } else {
+                    ScanResult result;
+                    try {
+                        result = testUnauthorizedAccess(originalRequest, originalResp, rules);
+                    } catch (ScanCancelledException e) {
+                        return false;
+                    } catch (Exception e) {
+                        logger.error("未授权测试失败: " + e.getMessage());
+                        return false;
+                    }
+
+                    if (result != null) {
+                        resultConsumer.accept(result);
+                    }
+                }
+            }
+
+        } catch (Exception e) {
+            logger.error("扫描请求异常: " + e.getMessage());
+            return false;
+        }
+        return complete;
+    }
+
+    /**
+     * 估算检测一个请求要发送的请求数：基准请求 + 每个需要测试且不会跳过的凭证（跳过规则与实际检测相同），
+     * 不含重试，也不考虑基准响应失败时省去的测试
+     *
+     * @param columns 需要测试的凭证列，null表示全部
+     */
+    public int estimateRequests(ScanRequest originalRequest, long[] columns) {
+        CompiledConfig rules = CompiledConfig.of(config);
+        int count = 1;
+        for (AuthCredential testCredential : rules.getTestCredentials()) {
+            if (TestedEndpointIndex.hasColumn(columns, TestedEndpointIndex.columnKey(testCredential))
+                    && !testCredential.isNoOpFor(originalRequest)) {
+                count++;
+            }
+        }
+        if (rules.isTestUnauthorizedAccess()
+                && TestedEndpointIndex.hasColumn(columns, TestedEndpointIndex.UNAUTHORIZED_COLUMN)
+                && AuthCredential.hasAuth(originalRequest)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 因请求不变而跳过的测试数
+     */
+    public long getSkippedNoOpCount() {
+        return skippedNoOpCount.get();
+    }
+
+    /**
+     * 测试越权访问
+     *
+     * @throws IOException 测试请求失败或扫描已停止
+     */
+    private ScanResult testPrivilegeEscalation(
+            ScanRequest originalRequest,
+            ScanResponse originalResponse,
+            AuthCredential testCredential,
+            CompiledConfig rules) throws IOException {
+
+        // 1. 应用测试凭证到请求
+        ScanRequest modifiedRequest = testCredential.applyTo(originalRequest);
+
+        // 2. 发送修改后的请求
+        ScanResponse testResp = transport.send(modifiedRequest);
+
+        // 3. 分析响应
+        ResponseAnalyzer.AnalysisResult analysisResult =
+                responseAnalyzer.analyzePrivilegeEscalation(originalResponse, testResp, rules);
+
+        // 4. 根据分析结果创建ScanResult
+        if (analysisResult == ResponseAnalyzer.AnalysisResult.VULNERABLE) {
+            ScanResult result = new ScanResult(VulnerabilityType.PRIVILEGE_ESCALATION,
+                    originalRequest.url(), originalRequest.method());
+
+            result.setOriginalStatusCode(originalResponse.statusCode());
+            result.setTestStatusCode(testResp.statusCode());
+
+            double similarity = SimilarityCalculator.calculate(
+                    originalResponse.bodyToString(),
+                    testResp.bodyToString()
+            );
+            result.setSimilarity(similarity);
+
+            result.setOriginalCredentialName(rules.getOriginalCredentialName());
+            result.setTestCredentialName(testCredential.getName());
+
+            result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
+            result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
+
+            // 保存完整请求对象（用于发送到Repeater）
+            result.setOriginalHttpRequest(originalRequest);
+            result.setTestHttpRequest(modifiedRequest);
+
+            // 根据相似度设置风险等级
+            if (similarity >= 95) {
+                result.setRiskLevel(ScanResult.RiskLevel.HIGH);
+            } else if (similarity >= 85) {
+                result.setRiskLevel(ScanResult.RiskLevel.MEDIUM);
+            } else {
+                result.setRiskLevel(ScanResult.RiskLevel.LOW);
+            }
+
+            return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * 测试未授权访问
+     *
+     * @throws IOException 测试请求失败或扫描已停止
+     */
+    private ScanResult testUnauthorizedAccess(
+            ScanRequest originalRequest,
+            ScanResponse originalResponse,
+            CompiledConfig rules) throws IOException {
+
+        // 1. 移除所有认证信息
+        ScanRequest modifiedRequest = AuthCredential.removeAuth(originalRequest);
+
+        // 2. 发送修改后的请求
+        ScanResponse testResp = transport.send(modifiedRequest);
+
+        // 3. 分析响应
+        ResponseAnalyzer.AnalysisResult analysisResult =
+                responseAnalyzer.analyzeUnauthorizedAccess(originalResponse, testResp, rules);
+
+        // 4. 根据分析结果创建ScanResult
+        if (analysisResult == ResponseAnalyzer.AnalysisResult.VULNERABLE) {
+            ScanResult result = new ScanResult(VulnerabilityType.UNAUTHORIZED_ACCESS,
+                    originalRequest.url(), originalRequest.method());
+
+            result.setOriginalStatusCode(originalResponse.statusCode());
+            result.setTestStatusCode(testResp.statusCode());
+
+            double similarity = SimilarityCalculator.calculate(
+                    originalResponse.bodyToString(),
+                    testResp.bodyToString()
+            );
+            result.setSimilarity(similarity);
+
+            result.setOriginalCredentialName(rules.getOriginalCredentialName());
+            result.setTestCredentialName("无认证");
+
+            result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
+            result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
+
+            // 保存完整请求对象（用于发送到Repeater）
+            result.setOriginalHttpRequest(originalRequest);
+            result.setTestHttpRequest(modifiedRequest);
+
+            result.setRiskLevel(ScanResult.RiskLevel.HIGH);
+
+            return result;
+        } else if (analysisResult == ResponseAnalyzer.AnalysisResult.SUSPICIOUS) {
+            // 可疑结果
+            ScanResult result = new ScanResult(VulnerabilityType.UNAUTHORIZED_ACCESS,
+                    originalRequest.url(), originalRequest.method());
+
+            result.setOriginalStatusCode(originalResponse.statusCode());
+            result.setTestStatusCode(testResp.statusCode());
+
+            double similarity = SimilarityCalculator.calculate(
+                    originalResponse.bodyToString(),
+                    testResp.bodyToString()
+            );
+            result.setSimilarity(similarity);
+
+            result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
+            result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
+
+            // 保存完整请求对象（用于发送到Repeater）
+            result.setOriginalHttpRequest(originalRequest);
+            result.setTestHttpRequest(modifiedRequest);
+
+            result.setRiskLevel(ScanResult.RiskLevel.INFO);
+
+            return result;
+        }
+
+        return null;
+    }
+}
@@ -1,11 +1,11 @@
 package burp.privilege.scanner;
 
-import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanResponse;
 import burp.privilege.model.ScanResult;
 import burp.privilege.model.VulnerabilityType;
 
-import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * 响应分析器
@@ -13,12 +13,34 @@ import java.util.List;
  */
 public class ResponseAnalyzer {
 
+    private static final Pattern FORM_TAG = Pattern.compile("<form[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PASSWORD_INPUT = Pattern.compile("type\\s*=\\s*[\"']?password[\"']?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern JSON_OBJECT = Pattern.compile(".*\\{.*:.*\\}.*");
+
+    /** 常见的业务数据字段（带引号） */
+    private static final String[] DATA_INDICATORS = {
+            "\"data\"", "\"result\"", "\"items\"", "\"list\"", "\"user\"", "\"id\"", "\"name\""
+    };
+
     private final ScanConfig config;
 
+    /** 当前配置快照（见{@link CompiledConfig#of}） */
+    private volatile CompiledConfig compiled;
+
     public ResponseAnalyzer(ScanConfig config) {
         this.config = config;
     }
 
+    private CompiledConfig compiled() {
+        CompiledConfig current = compiled;
+        if (current == null || current.getVersion() != config.getVersion()) {
+            current = CompiledConfig.of(config);
+            compiled = current;
+        }
+        return current;
+    }
+
     /**
      * 分析越权测试响应
      *
@@ -27,8 +49,18 @@ public class ResponseAnalyzer {
      * @return 分析结果
      */
     public AnalysisResult analyzePrivilegeEscalation(
-            HttpResponse originalResponse,
-            HttpResponse testResponse) {
+            ScanResponse originalResponse,
+            ScanResponse testResponse) {
+        return analyzePrivilegeEscalation(originalResponse, testResponse, compiled());
+    }
+
+    /**
+     * 按给定的配置快照分析越权测试响应（同一请求的各项测试使用同一份快照）
+     */
+    public AnalysisResult analyzePrivilegeEscalation(
+            ScanResponse originalResponse,
+            ScanResponse testResponse,
+            CompiledConfig rules) {
 
         int originalStatus = originalResponse.statusCode();
         int testStatus = testResponse.statusCode();
@@ -50,28 +82,19 @@ public class ResponseAnalyzer {
                 testResponse.bodyToString()
         );
 
-        if (!SimilarityCalculator.meetsThreshold(similarity, config.getSimilarityThreshold())) {
+        if (!SimilarityCalculator.meetsThreshold(similarity, rules.getSimilarityThreshold())) {
             return AnalysisResult.NOT_VULNERABLE;
         }
 
         // 3. 检查响应中是否包含权限错误提示
-        String testBody = testResponse.bodyToString().toLowerCase();
-        for (String keyword : config.getDenyKeywords()) {
-            if (testBody.contains(keyword.toLowerCase())) {
-                return AnalysisResult.NOT_VULNERABLE;
-            }
+        if (rules.getDenyKeywords().containsAny(testResponse.bodyToString())) {
+            return AnalysisResult.NOT_VULNERABLE;
         }
 
         // 4. 检查重定向
         if (testStatus == 302 || testStatus == 301) {
-            String location = testResponse.headerValue("Location");
-            if (location != null) {
-                String lowerLocation = location.toLowerCase();
-                for (String path : config.getLoginRedirectPaths()) {
-                    if (lowerLocation.contains(path.toLowerCase())) {
-                        return AnalysisResult.NOT_VULNERABLE;
-                    }
-                }
+            if (rules.getLoginRedirects().containsAny(testResponse.headerValue("Location"))) {
+                return AnalysisResult.NOT_VULNERABLE;
             }
         }
 
@@ -87,8 +110,18 @@ public class ResponseAnalyzer {
      * @return 分析结果
      */
     public AnalysisResult analyzeUnauthorizedAccess(
-            HttpResponse originalResponse,
-            HttpResponse testResponse) {
+            ScanResponse originalResponse,
+            ScanResponse testResponse) {
+        return analyzeUnauthorizedAccess(originalResponse, testResponse, compiled());
+    }
+
+    /**
+     * 按给定的配置快照分析未授权访问测试响应
+     */
+    public AnalysisResult analyzeUnauthorizedAccess(
+            ScanResponse originalResponse,
+            ScanResponse testResponse,
+            CompiledConfig rules) {
 
         int originalStatus = originalResponse.statusCode();
         int testStatus = testResponse.statusCode();
@@ -105,24 +138,17 @@ public class ResponseAnalyzer {
 
         // 3. 检查重定向到登录页
         if (testStatus == 302 || testStatus == 301) {
-            String location = testResponse.headerValue("Location");
-            if (location != null) {
-                String lowerLocation = location.toLowerCase();
-                for (String path : config.getLoginRedirectPaths()) {
-                    if (lowerLocation.contains(path.toLowerCase())) {
-                        return AnalysisResult.NOT_VULNERABLE;
-                    }
-                }
+            if (rules.getLoginRedirects().containsAny(testResponse.headerValue("Location"))) {
+                return AnalysisResult.NOT_VULNERABLE;
             }
         }
 
         // 4. 检查响应体中的登录提示
-        String testBody = testResponse.bodyToString().toLowerCase();
-        for (String keyword : config.getDenyKeywords()) {
-            if (testBody.contains(keyword.toLowerCase())) {
-                return AnalysisResult.NOT_VULNERABLE;
-            }
+        String testBody = testResponse.bodyToString();
+        if (rules.getDenyKeywords().containsAny(testBody)) {
+            return AnalysisResult.NOT_VULNERABLE;
         }
+        testBody = testBody.toLowerCase();
 
         // 5. 检查是否包含登录表单
         if (containsLoginForm(testBody)) {
@@ -142,7 +168,7 @@ public class ResponseAnalyzer {
                 testResponse.bodyToString()
         );
 
-        if (SimilarityCalculator.meetsThreshold(similarity, config.getSimilarityThreshold())) {
+        if (SimilarityCalculator.meetsThreshold(similarity, rules.getSimilarityThreshold())) {
             return AnalysisResult.VULNERABLE;
         }
 
@@ -154,8 +180,7 @@ public class ResponseAnalyzer {
      */
     private boolean containsLoginForm(String html) {
         // 简单检测：包含form和password输入框
-        return html.matches("(?si).*<form[^>]*>.*") &&
-               html.matches("(?si).*type\\s*=\\s*[\"']?password[\"']?.*");
+        return FORM_TAG.matcher(html).find() && PASSWORD_INPUT.matcher(html).find();
     }
 
     /**
@@ -163,18 +188,14 @@ public class ResponseAnalyzer {
      */
     private boolean hasBusinessData(String body) {
         // 简单判断：包含JSON数据结构
-        if (body.matches(".*\\{.*:.*\\}.*")) {
+        if (JSON_OBJECT.matcher(body).matches()) {
             return true;
         }
 
         // 包含常见的业务数据标识
-        List<String> dataIndicators = List.of(
-                "data", "result", "items", "list", "user", "id", "name"
-        );
-
         String lowerBody = body.toLowerCase();
-        for (String indicator : dataIndicators) {
-            if (lowerBody.contains("\"" + indicator + "\"")) {
+        for (String indicator : DATA_INDICATORS) {
+            if (lowerBody.contains(indicator)) {
                 return true;
             }
         }
@@ -185,7 +206,7 @@ public class ResponseAnalyzer {
     /**
      * 获取响应摘要（用于显示）
      */
-    public static String getResponseSummary(HttpResponse response, int maxLength) {
+    public static String getResponseSummary(ScanResponse response, int maxLength) {
         if (response == null) {
             return "无响应";
         }
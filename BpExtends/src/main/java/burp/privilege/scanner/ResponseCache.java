@@ -0,0 +1,259 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 响应缓存
+ * 按规范化请求哈希（见{@link RequestKey}，包含认证头，不同凭证互不命中）保存响应，响应体压缩后存储；
+ * 按LRU淘汰，总大小不超过配置的字节上限（按压缩后的大小估算，不按条目数）；有效期可按主机单独设置
+ *
+ * 上限、有效期每次写入时从配置读取，修改配置后立即生效。线程安全
+ */
+public class ResponseCache {
+
+    /** 每个条目除响应体外的固定开销估算（对象头、键、引用等） */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /** 小于该大小的响应体不压缩 */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    private final ScanConfig config;
+
+    /** 按访问顺序排列，最久未访问的在最前 */
+    private final LinkedHashMap<RequestKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public ResponseCache(ScanConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 查找未过期的缓存响应
+     *
+     * @return 缓存的响应，没有时返回null
+     */
+    public ScanResponse get(ScanRequest request) {
+        RequestKey key = RequestKey.of(request);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+                remove(key, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        return entry.toResponse();
+    }
+
+    /**
+     * 查找缓存响应，忽略有效期（用于查看结果详情，不计入命中统计）
+     *
+     * @return 缓存的响应，没有或已被淘汰时返回null
+     */
+    public ScanResponse peek(ScanRequest request) {
+        RequestKey key = RequestKey.of(request);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        return entry != null ? entry.toResponse() : null;
+    }
+
+    /**
+     * 保存响应（该主机有效期为0或响应超过缓存上限时不保存）
+     */
+    public void put(ScanRequest request, ScanResponse response) {
+        long ttlSeconds = ttlSeconds(request.host());
+        long budget = config.getResponseCacheMb() * 1024L * 1024L;
+        if (ttlSeconds <= 0 || response == null) {
+            return;
+        }
+
+        // 压缩在锁外进行
+        Entry entry = new Entry(response, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+        if (entry.weight > budget) {
+            return;
+        }
+
+        RequestKey key = RequestKey.of(request);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.weight;
+            }
+            bytes += entry.weight;
+            evict(budget);
+        }
+    }
+
+    /**
+     * 淘汰最久未访问的条目直到不超过上限
+     * 过期的条目在查看结果详情时仍可使用，也在这里按访问顺序清除
+     */
+    private void evict(long budget) {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && bytes > budget) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            bytes -= entry.weight;
+            if (now - entry.expiresAt < 0) {
+                evictionCount++;
+            }
+        }
+    }
+
+    private void remove(RequestKey key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            bytes -= entry.weight;
+        }
+    }
+
+    /**
+     * 主机的缓存有效期（秒），未单独设置时使用默认值
+     */
+    private long ttlSeconds(String host) {
+        Map<String, Integer> hostTtls = config.getHostCacheTtlSeconds();
+        if (hostTtls != null && !hostTtls.isEmpty() && host != null) {
+            Integer ttl = hostTtls.get(host);
+            if (ttl == null) {
+                ttl = hostTtls.get(host.toLowerCase(Locale.ROOT));
+            }
+            if (ttl != null) {
+                return ttl;
+            }
+        }
+        return config.getResponseCacheTtlSeconds();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** 当前占用（字节，估算） */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** 因超出上限被淘汰的条目数（不含过期的） */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 统计信息，如"缓存 120 条 / 3.2 MB，命中 45，未命中 300，淘汰 0"
+     */
+    public synchronized String getStats() {
+        return String.format("缓存 %d 条 / %.1f MB，命中 %d，未命中 %d，淘汰 %d",
+                entries.size(), bytes / 1024.0 / 1024.0, hitCount, missCount, evictionCount);
+    }
+
+    /**
+     * 缓存条目，响应体压缩保存
+     */
+    private static final class Entry {
+        private final int statusCode;
+        private final List<ScanRequest.Header> headers;
+        private final byte[] body;
+        private final int bodyLength;
+        private final boolean compressed;
+        private final long elapsedMillis;
+        private final long expiresAt;
+        private final long weight;
+
+        private Entry(ScanResponse response, long expiresAt) {
+            byte[] raw = response.body();
+            this.statusCode = response.statusCode();
+            this.headers = response.headers();
+            this.bodyLength = raw.length;
+            this.elapsedMillis = response.elapsedMillis();
+            this.expiresAt = expiresAt;
+
+            byte[] packed = raw.length >= MIN_COMPRESS_SIZE ? deflate(raw) : null;
+            this.compressed = packed != null && packed.length < raw.length;
+            this.body = compressed ? packed : raw;
+
+            long size = ENTRY_OVERHEAD + body.length;
+            for (ScanRequest.Header header : headers) {
+                size += 2L * (header.getName().length() + header.getValue().length()) + 32;
+            }
+            this.weight = size;
+        }
+
+        private ScanResponse toResponse() {
+            return new ScanResponse(statusCode, headers, compressed ? inflate(body, bodyLength) : body, elapsedMillis);
+        }
+
+        private static byte[] deflate(byte[] data) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private static byte[] inflate(byte[] data, int length) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                byte[] result = new byte[length];
+                int offset = 0;
+                while (offset < length && !inflater.finished()) {
+                    int n = inflater.inflate(result, offset, length - offset);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    offset += n;
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException(e);  // 数据由本类压缩，不会损坏
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package burp.privilege.scanner;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 只追加的无锁结果日志
+ * 结果存放在按倍数增长的分段数组中（第k段容量为 {@value #FIRST_SEGMENT} * 2^k），
+ * 追加时用原子计数领取位置，分段按需用CAS创建，扩容不复制已有元素，写入方之间不互相等待
+ *
+ * 读取只看已写入的连续前缀：某个位置已领取但还未写入时，读取到它之前为止，
+ * 因此按游标读取（{@link #since}）不会跳过或重复结果。已写入的位置不再变化，
+ * 快照（{@link #snapshot}）是固定长度的只读视图，不复制元素
+ *
+ * 线程安全。不支持删除，清空时换一个新的日志
+ *
+ * @param <T> 元素类型
+ */
+public final class ResultLog<T> {
+
+    /** 第一段的容量 */
+    private static final int FIRST_SEGMENT = 32;
+
+    /** 分段数：容量合计超过int上限 */
+    private static final int SEGMENTS = 27;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> segments = new AtomicReferenceArray<>(SEGMENTS);
+    /** 已领取的位置数 */
+    private final AtomicInteger reserved = new AtomicInteger();
+    /** 已知的连续前缀长度（只增不减，读取时从这里继续向后确认） */
+    private final AtomicInteger published = new AtomicInteger();
+
+    /**
+     * 追加一个元素
+     *
+     * @return 元素的位置
+     */
+    public int append(T value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int index = reserved.getAndIncrement();
+        if (index < 0) {
+            reserved.decrementAndGet();
+            throw new IllegalStateException("结果日志已满");
+        }
+        int segment = segmentOf(index);
+        segment(segment).set(index - segmentStart(segment), value);
+        return index;
+    }
+
+    /**
+     * 已写入的连续元素数
+     */
+    public int size() {
+        int size = published.get();
+        int limit = reserved.get();
+        if (limit < 0) {
+            limit = Integer.MAX_VALUE;  // 已满时领取计数短暂溢出
+        }
+        while (size < limit && get(size) != null) {
+            size++;
+        }
+        // 多个读取方同时推进时取较大值
+        return published.accumulateAndGet(size, Math::max);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 当前所有元素的只读快照
+     */
+    public List<T> snapshot() {
+        return since(0);
+    }
+
+    /**
+     * 从指定位置起的元素（只读快照），下次从 {@code cursor + 返回的元素数} 继续读取
+     *
+     * @param cursor 起始位置，大于当前长度时返回空列表
+     */
+    public List<T> since(int cursor) {
+        int end = size();
+        int start = Math.max(0, Math.min(cursor, end));
+        return new View(start, end);
+    }
+
+    /**
+     * 已写入的位置返回元素，领取但未写入的返回null
+     */
+    private T get(int index) {
+        int segment = segmentOf(index);
+        AtomicReferenceArray<T> array = segments.get(segment);
+        return array != null ? array.get(index - segmentStart(segment)) : null;
+    }
+
+    private AtomicReferenceArray<T> segment(int segment) {
+        AtomicReferenceArray<T> array = segments.get(segment);
+        if (array == null) {
+            AtomicReferenceArray<T> created = new AtomicReferenceArray<>(FIRST_SEGMENT << segment);
+            // 同时创建时只保留一个
+            array = segments.compareAndSet(segment, null, created) ? created : segments.get(segment);
+        }
+        return array;
+    }
+
+    /**
+     * 位置所在的分段：第k段从 FIRST_SEGMENT * (2^k - 1) 开始
+     */
+    private static int segmentOf(int index) {
+        long scaled = (long) index / FIRST_SEGMENT + 1;
+        return 63 - Long.numberOfLeadingZeros(scaled);
+    }
+
+    private static int segmentStart(int segment) {
+        return (int) ((long) FIRST_SEGMENT * ((1L << segment) - 1));
+    }
+
+    /**
+     * 固定范围的只读视图（范围内的元素已写入，不再变化）
+     */
+    private final class View extends AbstractList<T> implements RandomAccess {
+        private final int start;
+        private final int end;
+
+        private View(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (end - start));
+            }
+            return ResultLog.this.get(start + index);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 把请求改发到固定目标的传输层装饰器（独立运行的 --target，用于本地测试）
+ * 只改发送的目标，过滤、去重索引和结果仍使用原请求的主机
+ */
+public class RetargetTransport implements ScanTransport {
+
+    private final ScanTransport delegate;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+
+    /**
+     * @param target 目标地址，如 http://127.0.0.1:8080
+     */
+    public RetargetTransport(ScanTransport delegate, URI target) {
+        this.delegate = delegate;
+        this.secure = "https".equalsIgnoreCase(target.getScheme());
+        this.host = target.getHost();
+        this.port = target.getPort() > 0 ? target.getPort() : (secure ? 443 : 80);
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        return delegate.send(request.withService(host, port, secure));
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        return delegate.sendAsync(request.withService(host, port, secure), executor);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,14 @@
+package burp.privilege.scanner;
+
+import java.io.IOException;
+
+/**
+ * 扫描已停止，请求未发送
+ * 由{@link GatedTransport}在停止扫描后抛出，调用方不需要记录为请求失败
+ */
+public class ScanCancelledException extends IOException {
+
+    public ScanCancelledException() {
+        super("扫描已停止");
+    }
+}
@@ -0,0 +1,119 @@
+package burp.privilege.scanner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一次批量扫描的暂停开关和取消令牌
+ * 发送请求的线程每次发送前经过{@link #await}：暂停时挂起（不轮询），恢复时立即唤醒；
+ * 取消后挂起的线程立即返回，之后的发送直接失败。同时统计正在等待响应的请求数
+ *
+ * 取消不可撤销，每次扫描使用新的实例。线程安全
+ */
+public class ScanControl {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition resumed = lock.newCondition();
+    private volatile boolean paused = false;
+    private volatile boolean cancelled = false;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 暂停：正在等待响应的请求照常完成，之后的发送挂起
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * 恢复，唤醒所有挂起的线程
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取消：唤醒所有挂起的线程，并通知取消监听器
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Runnable listener : cancelListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 添加取消监听器（在调用cancel的线程中执行），已取消时立即执行
+     */
+    public void onCancel(Runnable listener) {
+        cancelListeners.add(listener);
+        if (cancelled && cancelListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 发送前检查：暂停时挂起直到恢复或取消
+     *
+     * @throws ScanCancelledException 已取消（或等待时线程被中断）
+     */
+    public void await() throws ScanCancelledException {
+        if (paused && !cancelled) {
+            lock.lock();
+            try {
+                while (paused && !cancelled) {
+                    resumed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ScanCancelledException();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (cancelled) {
+            throw new ScanCancelledException();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** 正在等待响应的请求数 */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+}
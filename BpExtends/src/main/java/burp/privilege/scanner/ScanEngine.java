@@ -1,48 +1,179 @@
 package burp.privilege.scanner;
 
 import burp.api.montoya.MontoyaApi;
-import burp.api.montoya.http.Http;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.Registration;
+import burp.api.montoya.http.HttpService;
 import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.http.message.responses.HttpResponse;
-import burp.api.montoya.logging.Logging;
+import burp.api.montoya.persistence.PersistedObject;
 import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import burp.privilege.cluster.ScanCoordinator;
+import burp.privilege.cluster.ScanWorker;
 import burp.privilege.model.AuthCredential;
+import burp.privilege.model.ClassifiedRequest;
 import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
 import burp.privilege.model.ScanResult;
-import burp.privilege.model.VulnerabilityType;
 import burp.privilege.util.HttpUtils;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * 扫描引擎
- * 负责执行实际的扫描工作
+ * 负责执行一个扫描目标的实际扫描工作：每个扫描目标有自己的配置、凭证、结果和已测试记录，
+ * 多个扫描目标可以共用一个{@link ScanRuntime}同时扫描
  */
 public class ScanEngine {
 
+    /** 已测试端点索引在项目文件中的键 */
+    private static final String TESTED_INDEX_KEY = "testedEndpointIndex";
+    /** 基准响应指纹库在项目文件中的键 */
+    private static final String BASELINE_STORE_KEY = "baselineStore";
+    /** 各主机响应延迟在项目文件中的键 */
+    private static final String HOST_LATENCY_KEY = "hostLatency";
+    /** 检查点日志文件标识在项目文件中的键（每个项目一个日志文件） */
+    private static final String JOURNAL_ID_KEY = "journalId";
+
+    /** 扫描目标名称在项目数据中的键 */
+    private static final String TARGET_NAME_KEY = "targetName";
+
     private final MontoyaApi api;
     private final ScanConfig config;
+    /** 本扫描目标在项目文件中的数据（已测试索引、游标、检查点日志标识等） */
+    private final PersistedObject extensionData;
+    private final SingleFlightTransport transport;
+    private final HostLatencyTracker latencyTracker;
     private final RequestFilter requestFilter;
-    private final ResponseAnalyzer responseAnalyzer;
+    private final RequestScanner requestScanner;
+    private final HistoryCursor historyCursor;
+    private final TestedEndpointIndex testedIndex;
+    private final TemplateSampler templateSampler;
+    private final BaselineStore baselineStore;
+    private final ResponseCache responseCache;
+    private final EndpointScorer endpointScorer = new EndpointScorer();
+    private final Path journalFile;
+
+    /** 扫描结果（清除时换新的日志，之前取得的快照不受影响） */
+    private volatile ResultLog<ScanResult> results = new ResultLog<>();
+    /** 进度监听器（写时复制，通知时不加锁） */
+    private final List<ScanProgressListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** 正在执行的批量扫描会话，执行结束（包括停止后退出）时清空；开始扫描时用CAS占用，同时只有一个会话 */
+    private final AtomicReference<ScanSession> running = new AtomicReference<>();
+    /** 最近一次批量扫描会话（扫描结束后保留，用于统计仍在等待响应的请求） */
+    private volatile ScanSession session;
+    private volatile boolean isPlanning = false;
+    /** 常驻的运行环境（跨扫描复用，可以由多个扫描目标共用） */
+    private final ScanRuntime runtime;
+    /** 运行环境是否由本引擎创建（关闭引擎时一并关闭） */
+    private final boolean ownsRuntime;
+    /** 本扫描目标在共用调度器中的队列，首次扫描时创建 */
+    private FairScheduler.Lane lane;
+    private volatile int schedulingWeight = 1;
+    private volatile String name;
+    /** 分布式扫描的协调进程，首次分发计划时启动 */
+    private ScanCoordinator coordinator;
+
+    // ========== 实时扫描 ==========
+    private volatile boolean isLive = false;
+    private volatile CoalescingQueue<LiveScanHandler.PendingRequest> liveQueue;
+    /** 本扫描目标实时扫描在共用调度器中的队列（与批量扫描分开，停止或暂停批量扫描不影响实时扫描），首次实时扫描时创建 */
+    private FairScheduler.Lane liveLane;
+    private Registration liveRegistration;
+    private final AtomicInteger liveCompletedCount = new AtomicInteger(0);
+
+    /** Burp范围变化时清空范围查询缓存，关闭引擎时注销 */
+    private final Registration scopeRegistration;
 
-    private final List<ScanResult> results;
-    private final List<ScanProgressListener> listeners;
+    public ScanEngine(MontoyaApi api, ScanConfig config) {
+        this(api, config, new MontoyaTransport(api.http()));
+    }
 
-    private volatile boolean isRunning = false;
-    private volatile boolean isPaused = false;
-    private ExecutorService executorService;
+    public ScanEngine(MontoyaApi api, ScanConfig config, ScanTransport transport) {
+        this(api, config, transport, new ScanRuntime(), true, api.persistence().extensionData(), "默认目标");
+    }
 
-    public ScanEngine(MontoyaApi api, ScanConfig config) {
+    /**
+     * 共用运行环境的扫描目标
+     *
+     * @param runtime       共用的运行环境（由调用方关闭）
+     * @param extensionData 本扫描目标在项目文件中的数据
+     * @param name          扫描目标名称（项目数据中保存的名称优先）
+     */
+    public ScanEngine(MontoyaApi api, ScanConfig config, ScanRuntime runtime,
+                      PersistedObject extensionData, String name) {
+        this(api, config, new MontoyaTransport(api.http()), runtime, false, extensionData, name);
+    }
+
+    private ScanEngine(MontoyaApi api, ScanConfig config, ScanTransport transport, ScanRuntime runtime,
+                       boolean ownsRuntime, PersistedObject extensionData, String name) {
         this.api = api;
         this.config = config;
-        this.requestFilter = new RequestFilter(config);
-        this.responseAnalyzer = new ResponseAnalyzer(config);
-        this.results = new ArrayList<>();
-        this.listeners = new ArrayList<>();
+        this.runtime = runtime;
+        this.ownsRuntime = ownsRuntime;
+        this.extensionData = extensionData;
+        String savedName = extensionData.getString(TARGET_NAME_KEY);
+        this.name = savedName != null && !savedName.isEmpty() ? savedName : name;
+        this.responseCache = new ResponseCache(config);
+        this.latencyTracker = new HostLatencyTracker(transport, () -> {
+            ByteArray saved = extensionData.getByteArray(HOST_LATENCY_KEY);
+            return saved != null ? saved.getBytes() : null;
+        });
+        this.transport = new SingleFlightTransport(
+                new CachingTransport(latencyTracker, responseCache,
+                        () -> CompiledConfig.of(config).isUseResponseCache()));
+        this.testedIndex = new TestedEndpointIndex(() -> {
+            ByteArray saved = extensionData.getByteArray(TESTED_INDEX_KEY);
+            return saved != null ? saved.getBytes() : null;
+        }, true);
+        this.requestFilter = new RequestFilter(config, testedIndex);
+        this.requestFilter.setScopeLookup(url -> api.scope().isInScope(url));
+        this.scopeRegistration = api.scope().registerScopeChangeHandler(change -> requestFilter.clearScopeCache());
+        this.historyCursor = new HistoryCursor(extensionData);
+        this.templateSampler = new TemplateSampler(config);
+        this.baselineStore = new BaselineStore(() -> {
+            ByteArray saved = extensionData.getByteArray(BASELINE_STORE_KEY);
+            return saved != null ? saved.getBytes() : null;
+        });
+        this.requestScanner = new RequestScanner(config, this.transport, new ScanLogger() {
+            @Override
+            public void info(String message) {
+                api.logging().logToOutput(message);
+            }
+
+            @Override
+            public void error(String message) {
+                api.logging().logToError(message);
+            }
+        }, baselineStore);
+        this.journalFile = journalFile(extensionData);
+    }
+
+    /**
+     * 检查点日志位置：用户目录下按项目区分（项目文件只能整体保存，不适合频繁追加）
+     */
+    private static Path journalFile(PersistedObject extensionData) {
+        String id = extensionData.getString(JOURNAL_ID_KEY);
+        if (id == null || id.isEmpty()) {
+            id = UUID.randomUUID().toString();
+            extensionData.setString(JOURNAL_ID_KEY, id);
+        }
+        return Path.of(System.getProperty("user.home"), ".privilege-scanner", "journal-" + id + ".bin");
     }
 
     /**
@@ -52,6 +183,13 @@ public class ScanEngine {
         listeners.add(listener);
     }
 
+    /**
+     * 移除进度监听器
+     */
+    public void removeProgressListener(ScanProgressListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * 清除监听器
      */
@@ -61,30 +199,331 @@ public class ScanEngine {
 
     /**
      * 开始扫描
+     *
+     * @return 是否已开始（上一次扫描还在运行或正在结束时为false）
      */
-    public void startScan() {
-        if (isRunning) {
-            api.logging().logToError("扫描已在运行中");
-            return;
+    public boolean startScan() {
+        return start(new ScanSession(ScanSession.Kind.SCAN, null, false));
+    }
+
+    /**
+     * 开始差异重扫
+     * 重新处理全部历史记录，先获取基准响应与上次记录比较，
+     * 只对状态码或内容变化、新端点、上次发现过漏洞的端点执行完整检测
+     *
+     * @return 是否已开始
+     */
+    public boolean startDifferentialScan() {
+        return start(new ScanSession(ScanSession.Kind.DIFFERENTIAL, null, true));
+    }
+
+    /**
+     * 生成扫描计划（预演）
+     * 执行与开始扫描相同的历史读取、过滤、模板抽样和凭证矩阵规划，但不发送任何请求、不记录为已测试；
+     * 在调用线程中执行，界面中应在后台线程调用
+     *
+     * @return 扫描计划，可以交给{@link #executePlan}原样执行
+     * @throws IllegalStateException 扫描正在运行或正在结束（见{@link #canStart}）
+     */
+    public ScanPlan planScan() {
+        if (!canStart()) {
+            throw new IllegalStateException(busyMessage());
+        }
+
+        isPlanning = true;
+        try {
+            if (config.getOriginalCredential() == null ||
+                config.getOriginalCredential().getCookie() == null ||
+                config.getOriginalCredential().getCookie().isEmpty()) {
+                extractOriginalCredential();
+            }
+
+            HistoryCursor.Scan cursorScan = historyCursor.begin(config, item -> matchesTarget(item.request()));
+            TrafficCollector<Traffic> collector = collectTraffic(cursorScan);
+
+            // 抽样在副本上进行，计划执行时再合并
+            TemplateSampler sampler = templateSampler.fork();
+            int unauthenticatedBefore = requestFilter.getUnauthenticatedCount();
+            ScanPlan plan = new ScanPlan(config.getThreadCount(), TestedEndpointIndex.columns(config), cursorScan, sampler);
+            collector.entries().parallelStream().forEach(traffic -> {
+                ClassifiedRequest classified = requestFilter.plan(traffic.request);
+                if (classified == null || !sampler.admit(classified.getSampleKey(), classified.getRequest())) {
+                    return;
+                }
+                ScanRequest request = classified.getRequest();
+                plan.add(new ScanPlan.Item(request, classified.getCredentialColumns(), classified.getSampleKey(),
+                        classified.getTemplateKey(),
+                        endpointScorer.score(request, classified.getTemplateKey(), traffic.responseSize),
+                        requestScanner.estimateRequests(request, classified.getCredentialColumns())));
+            });
+
+            plan.finish(sampler.getDeferredCount(), requestFilter.getUnauthenticatedCount() - unauthenticatedBefore,
+                    latencyTracker::estimateMillis, latencyTracker::isKnown);
+            api.logging().logToOutput(plan.getSummary());
+            return plan;
+        } finally {
+            isPlanning = false;
+        }
+    }
+
+    /**
+     * 原样执行扫描计划：按计划中的请求和凭证列检测，不再重新过滤；
+     * 规划之后已被其他扫描（如实时扫描）测试过的凭证列跳过
+     *
+     * @return 是否已开始
+     */
+    public boolean executePlan(ScanPlan plan) {
+        if (!plan.isExecutable()) {
+            api.logging().logToError("该扫描计划不能在插件中执行");
+            return false;
+        }
+        return start(new ScanSession(ScanSession.Kind.PLAN, plan, false));
+    }
+
+    /**
+     * 把扫描计划分发给工作进程执行（见{@link #startCoordinator}），结果和检查点与本地执行相同
+     * 暂停时不再分配新的分片；不受扫描预算限制
+     *
+     * @return 是否已开始
+     */
+    public boolean executePlanDistributed(ScanPlan plan) {
+        if (!plan.isExecutable()) {
+            api.logging().logToError("该扫描计划不能在插件中执行");
+            return false;
+        }
+        try {
+            startCoordinator();
+        } catch (IOException e) {
+            api.logging().logToError("启动分布式扫描协调进程失败: " + e.getMessage());
+            return false;
+        }
+        return start(new ScanSession(ScanSession.Kind.DISTRIBUTED, plan, false));
+    }
+
+    /**
+     * 启动分布式扫描的协调进程（已启动时直接返回），并在日志中输出启动工作进程的命令
+     *
+     * @return 监听的本机端口
+     */
+    public synchronized int startCoordinator() throws IOException {
+        if (coordinator == null) {
+            coordinator = new ScanCoordinator(config, new ScanLogger() {
+                @Override
+                public void info(String message) {
+                    api.logging().logToOutput("[" + name + "] " + message);
+                }
+
+                @Override
+                public void error(String message) {
+                    api.logging().logToError("[" + name + "] " + message);
+                }
+            });
+        }
+        int port = coordinator.start(0);
+        api.logging().logToOutput("启动工作进程: java -cp " + workerClassPath() + " "
+                + ScanWorker.class.getName() + " --connect 127.0.0.1:" + port + " --token " + coordinator.getToken());
+        return port;
+    }
+
+    /**
+     * 分布式扫描的运行状态，协调进程未启动时为null
+     */
+    public synchronized String getCoordinatorStatus() {
+        return coordinator != null ? coordinator.getStatus() : null;
+    }
+
+    /**
+     * 插件jar的路径（工作进程的类路径），取不到时返回占位符
+     */
+    private static String workerClassPath() {
+        try {
+            return Path.of(ScanWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (Exception e) {
+            return "<插件jar>";
+        }
+    }
+
+    /**
+     * 是否有中断的扫描可以恢复
+     */
+    public boolean hasResumableScan() {
+        return canStart() && Files.exists(journalFile);
+    }
+
+    /**
+     * 从检查点日志恢复中断的扫描
+     * 已完成的端点记为已测试，中断前发现的结果重新加入列表（结果列表为空时），
+     * 只检测未完成的单元；中断前已获取的基准响应直接使用，不再发送
+     *
+     * @return 是否已开始
+     */
+    public boolean resumeFromJournal() {
+        if (!canStart()) {
+            api.logging().logToError(busyMessage());
+            return false;
+        }
+
+        ScanJournal.Recovery recovery;
+        try {
+            recovery = ScanJournal.load(journalFile);
+        } catch (IOException e) {
+            api.logging().logToError("读取扫描检查点失败: " + e.getMessage());
+            return false;
+        }
+        if (recovery == null) {
+            api.logging().logToOutput("没有可以恢复的扫描");
+            return false;
         }
 
-        isRunning = true;
-        isPaused = false;
+        for (ScanJournal.TestedUnit tested : recovery.getTested()) {
+            testedIndex.markTested(tested.getEndpoint(), tested.getColumns());
+        }
+        if (getResults().isEmpty()) {
+            for (ScanResult result : recovery.getResults()) {
+                addResult(result);
+            }
+        }
 
-        // 创建线程池
-        executorService = Executors.newFixedThreadPool(config.getThreadCount());
+        ScanPlan plan = new ScanPlan(config.getThreadCount(), recovery);
+        for (ScanJournal.Unit unit : recovery.getOutstanding()) {
+            ScanRequest request = unit.getRequest();
+            plan.add(new ScanPlan.Item(request, unit.getColumns(), unit.getSampleKey(), EndpointTemplate.key(request),
+                    unit.getPriority(), requestScanner.estimateRequests(request, unit.getColumns()), unit.getBaseline()));
+        }
+        plan.finish(0, 0, latencyTracker::estimateMillis, latencyTracker::isKnown);
+        api.logging().logToOutput("恢复中断的扫描: 已完成 " + recovery.getTested().size() + " 个，已发现结果 "
+                + recovery.getResults().size() + " 个，剩余 " + plan.getEndpointCount() + " 个请求");
+        return start(new ScanSession(ScanSession.Kind.RESUME, plan, recovery.isDifferential()));
+    }
 
-        // 在新线程中执行扫描
-        new Thread(this::doScan).start();
+    /**
+     * 是否可以开始新的扫描：没有正在运行的会话，停止的会话也已退出
+     */
+    public boolean canStart() {
+        return running.get() == null;
+    }
 
-        api.logging().logToOutput("越权扫描已启动");
+    private String busyMessage() {
+        return isRunning() ? "扫描已在运行中" : "上一次扫描正在结束，请稍后再试";
+    }
+
+    /**
+     * 把扫描会话提交给常驻的会话线程执行（线程池已预热，不再为每次扫描创建线程）
+     *
+     * @return 是否已开始
+     */
+    private boolean start(ScanSession newSession) {
+        // 停止后上一个会话退出前（关闭检查点日志等）也不能开始，避免两个会话写同一个日志
+        if (!running.compareAndSet(null, newSession)) {
+            api.logging().logToError(busyMessage());
+            return false;
+        }
+        session = newSession;
+
+        // 共用调度器中本目标的队列（排队的任务按端点分数从高到低执行），同时检测的请求数随配置调整
+        FairScheduler.Lane current = lane();
+        current.setMaxRunning(config.getThreadCount());
+        current.setPaused(false);
+        runtime.submitSession(() -> doScan(newSession));
+
+        api.logging().logToOutput("[" + name + "] " + describe(newSession) + "已启动");
+        return true;
+    }
+
+    /**
+     * 会话在日志中的名称，如 "越权扫描 #3"
+     */
+    private static String describe(ScanSession session) {
+        return session.getKind().getDisplayName() + " #" + session.getId();
+    }
+
+    private synchronized FairScheduler.Lane lane() {
+        if (lane == null) {
+            lane = runtime.scheduler().lane(name, schedulingWeight);
+        }
+        return lane;
+    }
+
+    private synchronized FairScheduler.Lane liveLane() {
+        if (liveLane == null) {
+            liveLane = runtime.scheduler().lane(name + " (实时)", schedulingWeight);
+        }
+        return liveLane;
+    }
+
+    /** 本目标的调度队列，还没有扫描过时为null */
+    private synchronized FairScheduler.Lane currentLane() {
+        return lane;
+    }
+
+    /**
+     * 调整本扫描目标的调度权重（与其他扫描目标同时扫描时按权重分配线程，运行中修改立即生效）
+     */
+    public synchronized void setSchedulingWeight(int weight) {
+        schedulingWeight = Math.max(1, weight);
+        if (lane != null) {
+            lane.setWeight(schedulingWeight);
+        }
+        if (liveLane != null) {
+            liveLane.setWeight(schedulingWeight);
+        }
+    }
+
+    public int getSchedulingWeight() {
+        return schedulingWeight;
+    }
+
+    /**
+     * 扫描目标名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 重命名扫描目标（保存到项目文件）
+     */
+    public synchronized void setName(String name) {
+        this.name = name;
+        extensionData.setString(TARGET_NAME_KEY, name);
+        if (lane != null) {
+            lane.setName(name);
+        }
+        if (liveLane != null) {
+            liveLane.setName(name + " (实时)");
+        }
+    }
+
+    /**
+     * 批量扫描在共用调度器中排队和正在检测的请求数（用于界面显示），分布式扫描时为工作进程的状态
+     */
+    public String getSchedulerStatus() {
+        ScanSession currentSession = running.get();
+        if (currentSession != null && currentSession.getKind() == ScanSession.Kind.DISTRIBUTED) {
+            String status = getCoordinatorStatus();
+            return status != null ? status : "";
+        }
+        FairScheduler.Lane current = currentLane();
+        if (current == null) {
+            return "";
+        }
+        return String.format("排队: %d | 检测中: %d", current.getQueued(), current.getRunning());
     }
 
     /**
      * 暂停扫描
+     * 正在等待响应的请求照常完成，之后各线程在发送下一个请求前挂起
      */
     public void pauseScan() {
-        isPaused = true;
+        ScanSession current = session;
+        if (current != null) {
+            current.getControl().pause();
+        }
+        // 暂停期间调度器不再分配本目标的任务，线程留给其他扫描目标
+        FairScheduler.Lane queue = currentLane();
+        if (queue != null) {
+            queue.setPaused(true);
+        }
         api.logging().logToOutput("扫描已暂停");
     }
 
@@ -92,315 +531,676 @@ public class ScanEngine {
      * 恢复扫描
      */
     public void resumeScan() {
-        isPaused = false;
+        ScanSession current = session;
+        if (current != null) {
+            current.getControl().resume();
+        }
+        FairScheduler.Lane queue = currentLane();
+        if (queue != null) {
+            queue.setPaused(false);
+        }
         api.logging().logToOutput("扫描已恢复");
     }
 
     /**
      * 停止扫描
+     * 挂起和排队的任务立即结束，扫描线程不等待正在发送的请求；
+     * 这些请求的响应返回后不再发送后续请求（见{@link #getInFlightCount}）
      */
     public void stopScan() {
-        isRunning = false;
-        if (executorService != null) {
-            executorService.shutdownNow();
+        ScanSession current = session;
+        if (current != null) {
+            current.getControl().cancel();
+        }
+        // 清除本目标排队的任务，其他扫描目标不受影响
+        FairScheduler.Lane queue = currentLane();
+        if (queue != null) {
+            queue.clear();
         }
-        api.logging().logToOutput("扫描已停止");
+        api.logging().logToOutput("[" + name + "] " + (current != null ? describe(current) : "扫描") + "已停止");
     }
 
     /**
-     * 执行扫描
+     * 关闭扫描引擎（插件卸载或删除扫描目标时调用）：停止扫描、保存索引，
+     * 从共用调度器中移除本目标的队列；运行环境由本引擎创建时一并释放常驻线程
      */
-    private void doScan() {
-        try {
-            // 1. 获取Proxy历史记录
-            List<ProxyHttpRequestResponse> history = api.proxy().history();
-            api.logging().logToOutput("共获取 " + history.size() + " 条历史记录");
-
-            // 2. 自动提取原始凭证（如果未配置）
-            if (config.getOriginalCredential() == null ||
-                config.getOriginalCredential().getCookie() == null ||
-                config.getOriginalCredential().getCookie().isEmpty()) {
-                extractOriginalCredential(history);
+    public void shutdown() {
+        stopLiveScan();
+        stopScan();
+        scopeRegistration.deregister();
+        saveTestedIndex();
+        FairScheduler.Lane queue = currentLane();
+        if (queue != null) {
+            queue.remove();
+        }
+        synchronized (this) {
+            if (liveLane != null) {
+                liveLane.remove();
             }
+            if (coordinator != null) {
+                coordinator.close();
+                coordinator = null;
+            }
+        }
+        if (ownsRuntime) {
+            runtime.close();
+        }
+    }
+
+    /**
+     * 开始实时扫描
+     * 注册Proxy响应处理器，新流量通过过滤后立即进入扫描队列
+     */
+    public synchronized void startLiveScan() {
+        if (isLive) {
+            return;
+        }
 
-            // 3. 筛选需要扫描的请求
-            List<HttpRequest> requestsToScan = new ArrayList<>();
-            for (ProxyHttpRequestResponse item : history) {
-                if (!isRunning) break;
+        isLive = true;
+        liveCompletedCount.set(0);
+        CompiledConfig rules = CompiledConfig.of(config);
+        // 没有检测就被丢弃的请求放回领取的凭证列和样本名额，之后的流量可以重新检测
+        liveQueue = new CoalescingQueue<>(config.getLiveQueueCapacity(), this::releaseLive);
 
-                HttpRequest request = item.request();
-                if (requestFilter.shouldScan(request)) {
-                    requestsToScan.add(request);
+        // 检测任务在共用调度器中执行，与批量扫描一起受全局和单主机并发限制，同时检测的请求数随配置调整
+        CoalescingQueue<LiveScanHandler.PendingRequest> queue = liveQueue;
+        FairScheduler.Lane lane = liveLane();
+        lane.setMaxRunning(rules.getThreadCount());
+
+        liveRegistration = api.proxy().registerResponseHandler(new LiveScanHandler(requestFilter, templateSampler,
+                (key, pending) -> offerLive(queue, lane, key, pending)));
+        api.logging().logToOutput("实时扫描已启动");
+    }
+
+    /**
+     * 停止实时扫描，未处理的排队请求会被丢弃（放回领取的凭证列，之后的扫描重新检测）
+     */
+    public synchronized void stopLiveScan() {
+        if (!isLive) {
+            return;
+        }
+
+        isLive = false;
+        if (liveRegistration != null) {
+            liveRegistration.deregister();
+            liveRegistration = null;
+        }
+        liveQueue.close();
+        liveLane.clear();
+        saveTestedIndex();
+        api.logging().logToOutput("实时扫描已停止");
+    }
+
+    /**
+     * 实时扫描请求入队：新端点在调度队列中提交一个检测任务，任务执行时取出该端点最新的请求；
+     * 已排队的端点只替换请求，因队列已满被丢弃的请求，其任务执行时直接结束
+     */
+    private void offerLive(CoalescingQueue<LiveScanHandler.PendingRequest> queue, FairScheduler.Lane lane,
+                           String key, LiveScanHandler.PendingRequest pending) {
+        if (queue.offer(key, pending)) {
+            ScanRequest request = pending.getRequest();
+            lane.submit(() -> scanLive(queue, lane, key), () -> {
+                // 任务被清除（停止实时扫描、删除目标）时放回排队的请求
+                LiveScanHandler.PendingRequest discarded = queue.take(key);
+                if (discarded != null) {
+                    releaseLive(discarded);
                 }
-            }
+            }, 0, request.host() + ":" + request.port());
+        }
+    }
 
-            int totalRequests = requestsToScan.size();
-            api.logging().logToOutput("筛选后待扫描请求: " + totalRequests);
+    /**
+     * 实时扫描任务：取出端点排队的请求并检测，请求已被丢弃或实时扫描已停止（队列已关闭）时直接结束
+     */
+    private void scanLive(CoalescingQueue<LiveScanHandler.PendingRequest> queue, FairScheduler.Lane lane, String key) {
+        LiveScanHandler.PendingRequest pending = queue.take(key);
+        if (pending == null) {
+            return;
+        }
 
-            if (totalRequests == 0) {
-                notifyScanComplete();
-                return;
+        boolean complete = false;
+        try {
+            ScanRequest request = pending.getRequest();
+            String sampleKey = pending.getSampleKey();
+            long[] columns = pending.getColumns();
+            Consumer<ScanResult> onResult = result -> {
+                addResult(result);
+                endpointScorer.recordFinding(request);
+                // 同模板暂缓的请求领取后放回队列，没有基准响应，检测时重新获取
+                for (ScanRequest deferred : templateSampler.expand(sampleKey)) {
+                    long[] deferredColumns = requestFilter.claimDeferred(deferred, columns);
+                    if (deferredColumns.length > 0) {
+                        offerLive(queue, lane, RequestFilter.urlKey(deferred),
+                                new LiveScanHandler.PendingRequest(deferred, null, deferredColumns, sampleKey));
+                    }
+                }
+            };
+            if (pending.getBaseline() != null) {
+                responseCache.put(request, pending.getBaseline());  // 结果详情中可查看完整的基准响应
+                complete = requestScanner.scan(request, pending.getBaseline(), columns, () -> isLive, onResult);
+            } else {
+                complete = requestScanner.scan(request, columns, () -> isLive, onResult);
             }
+        } catch (Exception e) {
+            api.logging().logToError("实时扫描请求失败: " + e.getMessage());
+        }
+        // 停止时中途退出或请求失败的没有测完，之后的流量重新检测
+        if (!complete) {
+            releaseLive(pending);
+        }
 
-            // 3. 对每个请求执行检测
-            AtomicInteger completedCount = new AtomicInteger(0);
+        notifyProgress(liveCompletedCount.incrementAndGet(), (int) queue.getAcceptedCount());
+    }
 
-            List<Future<?>> futures = new ArrayList<>();
+    /**
+     * 放回实时扫描请求领取的凭证列和样本名额
+     */
+    private void releaseLive(LiveScanHandler.PendingRequest pending) {
+        requestFilter.release(pending.getRequest(), pending.getColumns());
+        templateSampler.release(pending.getSampleKey());
+    }
 
-            for (HttpRequest request : requestsToScan) {
-                if (!isRunning) break;
+    /**
+     * 实时扫描队列状态（用于界面显示）
+     */
+    public String getLiveQueueStatus() {
+        CoalescingQueue<LiveScanHandler.PendingRequest> queue = liveQueue;
+        if (queue == null) {
+            return "";
+        }
+        return String.format("排队: %d | 已合并: %d | 已丢弃: %d",
+                queue.size(), queue.getCoalescedCount(), queue.getDroppedCount());
+    }
 
-                // 检查暂停状态
-                while (isPaused && isRunning) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
+    /**
+     * 执行扫描会话
+     * 会话带计划时按计划提交，否则边过滤边检测
+     */
+    private void doScan(ScanSession session) {
+        ScanPlan plan = session.getPlan();
+        boolean differential = session.isDifferential();
+        String summary = null;
+        ScanJournal journal = openJournal(differential);
+        boolean finished = false;
+        boolean incomplete = false;
+        try {
+            HistoryCursor.Scan cursorScan;
+            BatchRun run;
+            long noOpBefore = requestScanner.getSkippedNoOpCount();
+            long sharedBefore = transport.getSharedCount();
+
+            if (plan != null && plan.resumed) {
+                // 1-4. 恢复中断的扫描：已完成的部分写入新日志，再提交未完成的单元
+                cursorScan = null;
+                run = newRun(session, journal);
+                if (differential) {
+                    baselineStore.resetStats();
+                }
+                if (journal != null) {
+                    plan.resumedTested.forEach(tested -> journal.tested(tested.getEndpoint(), tested.getColumns()));
+                    plan.resumedResults.forEach(journal::result);
+                }
+                submitPlan(plan, run);
+            } else if (plan != null && session.getKind() == ScanSession.Kind.DISTRIBUTED) {
+                // 1-4. 按计划领取凭证列后分片交给工作进程，阻塞到全部完成或停止
+                cursorScan = plan.cursorScan;
+                templateSampler.absorb(plan.sampler);
+                run = newRun(session, journal);
+                incomplete = !distributePlan(plan, run);
+            } else if (plan != null) {
+                // 1-4. 按计划提交，抽样进度合并到共享的模板抽样，样本发现漏洞时可以扩展
+                cursorScan = plan.cursorScan;
+                templateSampler.absorb(plan.sampler);
+                run = newRun(session, journal);
+                submitPlan(plan, run);
+            } else {
+                // 1. 自动提取原始凭证（如果未配置）
+                if (config.getOriginalCredential() == null ||
+                    config.getOriginalCredential().getCookie() == null ||
+                    config.getOriginalCredential().getCookie().isEmpty()) {
+                    extractOriginalCredential();
                 }
 
-                if (!isRunning) break;
+                // 2-3. 获取上次扫描之后新增的目标历史记录（差异重扫处理全部历史记录），与站点地图合并
+                cursorScan = differential
+                        ? historyCursor.beginFull(config, item -> matchesTarget(item.request()))
+                        : historyCursor.begin(config, item -> matchesTarget(item.request()));
+                TrafficCollector<Traffic> collector = collectTraffic(cursorScan);
+
+                // 4. 并行过滤和预分类，每通过一个请求立即按端点分数提交检测，不等全部过滤完成
+                //    差异重扫不受已测试记录影响，使用本轮独立的去重索引和模板抽样
+                run = newRun(session, journal);
+                int deferredBefore = run.sampler.getDeferredCount();
+                int unauthenticatedBefore = run.filter.getUnauthenticatedCount();
+                if (differential) {
+                    baselineStore.resetStats();
+                }
+
+                BatchRun batch = run;
+                collector.entries().parallelStream().forEach(traffic -> {
+                    if (batch.control.isCancelled()) {
+                        return;
+                    }
 
-                // 提交扫描任务
-                Future<?> future = executorService.submit(() -> {
-                    try {
-                        scanRequest(request);
-                    } catch (Exception e) {
-                        api.logging().logToError("扫描请求失败: " + e.getMessage());
+                    ClassifiedRequest classified = batch.filter.classify(traffic.request,
+                            batch.sampler);
+                    if (classified == null) {
+                        return;
                     }
 
-                    int completed = completedCount.incrementAndGet();
-                    notifyProgress(completed, totalRequests);
+                    if (classified.isPartial()) {
+                        batch.partial.incrementAndGet();
+                    }
+                    int priority = endpointScorer.score(classified.getRequest(), classified.getTemplateKey(), traffic.responseSize);
+                    submitBatch(classified.getRequest(), classified.getCredentialColumns(), classified.getSampleKey(),
+                            priority, null, batch);
                 });
 
-                futures.add(future);
+                api.logging().logToOutput("筛选后待扫描请求: " + run.submitted.get()
+                        + "（只测新增凭证: " + run.partial.get() + "）"
+                        + "，同模板暂缓: " + (run.sampler.getDeferredCount() - deferredBefore)
+                        + "，不带认证信息已跳过: " + (run.filter.getUnauthenticatedCount() - unauthenticatedBefore));
             }
 
-            // 4. 等待所有任务完成
-            for (Future<?> future : futures) {
+            // 5. 等待所有任务完成（扩展模板时会追加任务，逐个等待直到队列为空）
+            //    停止扫描时所有任务被取消，不等待正在发送的请求
+            Future<?> future;
+            while ((future = run.futures.peek()) != null) {
                 try {
                     future.get();
+                } catch (CancellationException e) {
+                    // 停止扫描时任务被取消
                 } catch (Exception e) {
                     api.logging().logToError("任务执行失败: " + e.getMessage());
                 }
+                run.futures.poll();
+            }
+
+            api.logging().logToOutput("合并相同请求 " + (transport.getSharedCount() - sharedBefore) + " 个，"
+                    + responseCache.getStats());
+
+            long noOp = requestScanner.getSkippedNoOpCount() - noOpBefore;
+            if (noOp > 0) {
+                api.logging().logToOutput("替换凭证后请求不变，跳过测试请求 " + noOp + " 个");
+            }
+
+            if (run.budgetExhausted) {
+                api.logging().logToOutput("扫描预算已用完，已检测 " + (run.completed.get() - run.skipped.get())
+                        + " 个，剩余 " + run.skipped.get() + " 个低优先级请求留到下次扫描");
+            }
+
+            // 6. 完整扫描结束才推进游标，中途停止或预算用完的下次重新处理（恢复的扫描没有游标）
+            if (!run.control.isCancelled() && !run.budgetExhausted && !incomplete && cursorScan != null) {
+                historyCursor.commit(cursorScan);
+            }
+
+            if (differential) {
+                summary = baselineStore.getSummary();
+                api.logging().logToOutput("差异重扫: " + summary);
             }
+            finished = !run.control.isCancelled() && !incomplete;
 
+        } catch (RuntimeException e) {
+            api.logging().logToError("扫描执行失败: " + e.getMessage());
         } finally {
-            isRunning = false;
-            if (executorService != null) {
-                executorService.shutdown();
+            // 正常结束（包括预算用完）后不再需要恢复，中途停止或出错的保留日志
+            if (journal != null) {
+                if (finished) {
+                    journal.delete();
+                } else {
+                    journal.close();
+                }
+                if (journal.getFailure() != null) {
+                    api.logging().logToError("写入扫描检查点失败: " + journal.getFailure().getMessage());
+                }
             }
+            running.compareAndSet(session, null);
+            api.logging().logToOutput(String.format("[%s] %s%s，耗时 %.1f 秒", name, describe(session),
+                    finished ? "已完成" : "已结束（未完成的请求下次继续）",
+                    (System.currentTimeMillis() - session.getStartedAt()) / 1000.0));
+            saveTestedIndex();
             notifyScanComplete();
+            if (summary != null) {
+                notifyScanSummary(summary);
+            }
         }
     }
 
     /**
-     * 扫描单个请求
+     * 新建一次批量扫描，本轮的请求都经过当前的暂停开关发送（差异重扫使用独立的过滤器和模板抽样）
      */
-    private void scanRequest(HttpRequest originalRequest) {
-        try {
-            // 1. 获取原始请求的响应
-            HttpRequestResponse originalResponse = api.http().sendRequest(originalRequest);
-            HttpResponse originalResp = originalResponse.response();
+    private BatchRun newRun(ScanSession session, ScanJournal journal) {
+        ScanControl runControl = session.getControl();
+        GatedTransport gate = new GatedTransport(transport, runControl);
+        RequestScanner scanner = requestScanner.withTransport(gate);
+        return session.isDifferential()
+                ? new BatchRun(differentialFilter(), new TemplateSampler(config), true, config, journal, runControl, gate,
+                        scanner, lane())
+                : new BatchRun(requestFilter, templateSampler, false, config, journal, runControl, gate, scanner, lane());
+    }
 
-            // 如果原始请求失败，跳过
-            if (originalResp.statusCode() >= 400) {
-                return;
+    /**
+     * 新建本次扫描的检查点日志（覆盖上次的），未开启或创建失败时返回null，扫描照常进行
+     */
+    private ScanJournal openJournal(boolean differential) {
+        try {
+            if (!config.isCheckpointEnabled()) {
+                // 上次中断的日志已过时
+                Files.deleteIfExists(journalFile);
+                return null;
             }
+            return ScanJournal.create(journalFile, differential, TestedEndpointIndex.columns(config));
+        } catch (IOException e) {
+            api.logging().logToError("创建扫描检查点失败: " + e.getMessage());
+            return null;
+        }
+    }
 
-            // 2. 执行越权测试（使用其他用户凭证）
-            for (AuthCredential testCredential : config.getTestCredentials()) {
-                if (!isRunning) break;
-
-                ScanResult result = testPrivilegeEscalation(
-                        originalRequest,
-                        originalResp,
-                        testCredential
-                );
+    /**
+     * 读取历史记录并与站点地图合并，同一端点只保留一条
+     * （优先通过过滤规则的，其次携带认证信息的、带响应的，都相同时保留历史记录中较早的）
+     *
+     * 站点地图没有增量游标，开启"包含站点地图"时每次扫描都会完整读取并参与合并，
+     * 增量扫描只对历史记录生效；站点地图中已测试的端点由已测试记录跳过
+     *
+     * @param cursorScan 历史过滤器（上次扫描之后新增的目标记录，或全部目标记录）
+     */
+    private TrafficCollector<Traffic> collectTraffic(HistoryCursor.Scan cursorScan) {
+        // 由Montoya过滤，不复制整个历史
+        List<ProxyHttpRequestResponse> history = api.proxy().history(cursorScan);
+        if (cursorScan.isIncremental()) {
+            api.logging().logToOutput("共 " + cursorScan.getSeen() + " 条历史记录，上次扫描后新增目标记录 " + history.size() + " 条");
+        } else {
+            api.logging().logToOutput("共 " + cursorScan.getSeen() + " 条历史记录，目标记录 " + history.size() + " 条");
+        }
 
-                if (result != null) {
-                    addResult(result);
-                }
+        // 按来源顺序依次加入，保证同一端点保留哪一条是确定的
+        TrafficCollector<Traffic> collector = new TrafficCollector<>();
+        for (ProxyHttpRequestResponse item : history) {
+            addTraffic(collector, item.request(), item.hasResponse() ? item.response().body().length() : -1);
+        }
+        if (config.isIncludeSiteMap()) {
+            List<HttpRequestResponse> siteMap = api.siteMap().requestResponses(
+                    node -> requestFilter.matchesTargetDomain(HttpUtils.getHostFromUrl(node.url())));
+            for (HttpRequestResponse item : siteMap) {
+                addTraffic(collector, item.request(), item.hasResponse() ? item.response().body().length() : -1);
             }
+            api.logging().logToOutput("站点地图目标记录 " + siteMap.size() + " 条（每次完整读取），合并后 "
+                    + collector.size() + " 条（去除重复 " + collector.getDuplicateCount() + " 条）");
+        }
+        return collector;
+    }
 
-            // 3. 执行未授权访问测试
-            if (config.isTestUnauthorizedAccess()) {
-                ScanResult result = testUnauthorizedAccess(
-                        originalRequest,
-                        originalResp
-                );
+    private void addTraffic(TrafficCollector<Traffic> collector, HttpRequest request, int responseSize) {
+        ScanRequest scanRequest = MontoyaTransport.toScanRequest(request);
+        collector.add(endpointKey(request), new Traffic(scanRequest, responseSize),
+                TrafficCollector.rank(requestFilter.passes(scanRequest), AuthCredential.hasAuth(scanRequest), responseSize >= 0));
+    }
 
-                if (result != null) {
-                    addResult(result);
+    /**
+     * 按分数顺序提交扫描计划中的请求，领取规划之后仍未完成的凭证列
+     * （恢复的扫描在中断前已领取，只补记为已测试，防止中断时索引未保存）
+     */
+    private void submitPlan(ScanPlan plan, BatchRun run) {
+        int alreadyTested = 0;
+        for (ScanPlan.Item item : plan.getItems()) {
+            if (run.control.isCancelled()) {
+                break;
+            }
+            long[] planned = item.getColumns() != null ? item.getColumns() : plan.getColumns();
+            if (plan.resumed) {
+                if (!run.differential) {
+                    testedIndex.markTested(TestedEndpointIndex.endpointKey(item.getRequest()), planned);
                 }
+                submitBatch(item.getRequest(), planned, item.getSampleKey(), item.getPriority(),
+                        item.getBaseline(), run);
+                continue;
             }
-
-        } catch (Exception e) {
-            api.logging().logToError("扫描请求异常: " + e.getMessage());
+            long[] claimed = requestFilter.claim(item.getRequest(), planned);
+            if (claimed.length == 0) {
+                alreadyTested++;
+                continue;
+            }
+            if (claimed.length < plan.getColumns().length) {
+                run.partial.incrementAndGet();
+            }
+            submitBatch(item.getRequest(), claimed, item.getSampleKey(), item.getPriority(), null, run);
         }
+        api.logging().logToOutput("按计划提交请求: " + run.submitted.get()
+                + "（只测部分凭证: " + run.partial.get() + "），规划后已被测试: " + alreadyTested);
     }
 
     /**
-     * 测试越权访问
+     * 分布式执行扫描计划：领取方式与{@link #submitPlan}相同，检测由工作进程完成，
+     * 结果、检查点和进度在收到每个完成的请求时记录；样本发现漏洞时同模板暂缓的请求追加为新的分片。
+     * 停止或工作进程全部断开后，未完成的请求放回领取的凭证列和样本名额，下次扫描继续
+     *
+     * @return 是否全部完成
      */
-    private ScanResult testPrivilegeEscalation(
-            HttpRequest originalRequest,
-            HttpResponse originalResponse,
-            AuthCredential testCredential) {
+    private boolean distributePlan(ScanPlan plan, BatchRun run) {
+        ScanCoordinator current;
+        synchronized (this) {
+            current = coordinator;
+        }
+        Map<ScanPlan.Item, Integer> units = Collections.synchronizedMap(new IdentityHashMap<>());
+        List<ScanPlan.Item> items = new ArrayList<>();
+        int alreadyTested = 0;
+        for (ScanPlan.Item item : plan.getItems()) {
+            long[] planned = item.getColumns() != null ? item.getColumns() : plan.getColumns();
+            long[] claimed = requestFilter.claim(item.getRequest(), planned);
+            if (claimed.length == 0) {
+                alreadyTested++;
+                continue;
+            }
+            if (claimed.length < plan.getColumns().length) {
+                run.partial.incrementAndGet();
+            }
+            ScanPlan.Item claimedItem = new ScanPlan.Item(item.getRequest(), claimed, item.getSampleKey(),
+                    item.getTemplateKey(), item.getPriority(), item.getRequestCount());
+            units.put(claimedItem, run.journal != null
+                    ? run.journal.unit(item.getRequest(), claimed, item.getSampleKey(), item.getPriority()) : -1);
+            items.add(claimedItem);
+        }
+        run.submitted.set(items.size());
+        api.logging().logToOutput("分发请求: " + items.size() + "（只测部分凭证: " + run.partial.get()
+                + "），规划后已被测试: " + alreadyTested);
 
         try {
-            // 1. 应用测试凭证到请求
-            HttpRequest modifiedRequest = testCredential.applyTo(originalRequest.copyToTempFile());
-
-            // 2. 发送修改后的请求
-            HttpRequestResponse testResponse = api.http().sendRequest(modifiedRequest);
-            HttpResponse testResp = testResponse.response();
-
-            // 3. 分析响应
-            ResponseAnalyzer.AnalysisResult analysisResult =
-                    responseAnalyzer.analyzePrivilegeEscalation(originalResponse, testResp);
-
-            // 4. 根据分析结果创建ScanResult
-            if (analysisResult == ResponseAnalyzer.AnalysisResult.VULNERABLE) {
-                ScanResult result = new ScanResult(VulnerabilityType.PRIVILEGE_ESCALATION,
-                        originalRequest.url(), originalRequest.method());
-
-                result.setOriginalStatusCode(originalResponse.statusCode());
-                result.setTestStatusCode(testResp.statusCode());
-
-                double similarity = SimilarityCalculator.calculate(
-                        originalResponse.bodyToString(),
-                        testResp.bodyToString()
-                );
-                result.setSimilarity(similarity);
-
-                result.setOriginalCredentialName(
-                        config.getOriginalCredential() != null ?
-                                config.getOriginalCredential().getName() : "原始用户"
-                );
-                result.setTestCredentialName(testCredential.getName());
-
-                result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
-                result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
-
-                // 保存完整请求对象（用于发送到Repeater）
-                result.setOriginalHttpRequest(originalRequest);
-                result.setTestHttpRequest(modifiedRequest);
-
-                // 根据相似度设置风险等级
-                if (similarity >= 95) {
-                    result.setRiskLevel(ScanResult.RiskLevel.HIGH);
-                } else if (similarity >= 85) {
-                    result.setRiskLevel(ScanResult.RiskLevel.MEDIUM);
-                } else {
-                    result.setRiskLevel(ScanResult.RiskLevel.LOW);
-                }
+            current.execute(items, ScanCoordinator.Partition.HOST, ScanCoordinator.DEFAULT_SHARD_SIZE, run.control,
+                    (item, found, complete) -> {
+                        List<ScanPlan.Item> expanded = new ArrayList<>();
+                        for (ScanResult result : found) {
+                            addResult(result);
+                            if (run.journal != null) {
+                                run.journal.result(result);
+                            }
+                            endpointScorer.recordFinding(item.getRequest());
+                            for (ScanRequest deferred : run.sampler.expand(item.getSampleKey())) {
+                                long[] columns = run.filter.claimDeferred(deferred, item.getColumns());
+                                if (columns.length == 0) {
+                                    continue;
+                                }
+                                ScanPlan.Item next = new ScanPlan.Item(deferred, columns, item.getSampleKey(),
+                                        EndpointTemplate.key(deferred),
+                                        endpointScorer.score(deferred, EndpointTemplate.key(deferred), -1),
+                                        item.getRequestCount());
+                                units.put(next, run.journal != null ? run.journal.unit(deferred, columns,
+                                        item.getSampleKey(), next.getPriority()) : -1);
+                                expanded.add(next);
+                            }
+                        }
+                        Integer unit = units.remove(item);
+                        if (run.journal != null && unit != null) {
+                            run.journal.done(unit, complete);
+                        }
+                        if (!complete) {
+                            // 请求失败的不记为已测试，下次扫描重新检测
+                            run.filter.release(item.getRequest(), item.getColumns());
+                            run.sampler.release(item.getSampleKey());
+                        }
+                        if (!expanded.isEmpty()) {
+                            run.submitted.addAndGet(expanded.size());
+                            current.submit(expanded);
+                        }
+                        notifyProgress(run.completed.incrementAndGet(), run.submitted.get());
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-                return result;
+        // 剩下的都是未完成的
+        synchronized (units) {
+            for (ScanPlan.Item item : units.keySet()) {
+                run.filter.release(item.getRequest(), item.getColumns());
+                run.sampler.release(item.getSampleKey());
+            }
+            if (!units.isEmpty()) {
+                api.logging().logToOutput("分布式扫描未完成的请求 " + units.size() + " 个，下次扫描继续");
             }
-
-        } catch (Exception e) {
-            api.logging().logToError("越权测试失败: " + e.getMessage());
         }
-
-        return null;
+        api.logging().logToOutput(current.getStatus());
+        return units.isEmpty();
     }
 
     /**
-     * 测试未授权访问
+     * 差异重扫使用的过滤器：过滤规则与批量扫描相同，去重索引只在本轮有效
      */
-    private ScanResult testUnauthorizedAccess(
-            HttpRequest originalRequest,
-            HttpResponse originalResponse) {
-
-        try {
-            // 1. 移除所有认证信息
-            HttpRequest modifiedRequest = AuthCredential.removeAuth(originalRequest.copyToTempFile());
-
-            // 2. 发送修改后的请求
-            HttpRequestResponse testResponse = api.http().sendRequest(modifiedRequest);
-            HttpResponse testResp = testResponse.response();
-
-            // 3. 分析响应
-            ResponseAnalyzer.AnalysisResult analysisResult =
-                    responseAnalyzer.analyzeUnauthorizedAccess(originalResponse, testResp);
-
-            // 4. 根据分析结果创建ScanResult
-            if (analysisResult == ResponseAnalyzer.AnalysisResult.VULNERABLE) {
-                ScanResult result = new ScanResult(VulnerabilityType.UNAUTHORIZED_ACCESS,
-                        originalRequest.url(), originalRequest.method());
-
-                result.setOriginalStatusCode(originalResponse.statusCode());
-                result.setTestStatusCode(testResp.statusCode());
-
-                double similarity = SimilarityCalculator.calculate(
-                        originalResponse.bodyToString(),
-                        testResp.bodyToString()
-                );
-                result.setSimilarity(similarity);
-
-                result.setOriginalCredentialName(
-                        config.getOriginalCredential() != null ?
-                                config.getOriginalCredential().getName() : "原始用户"
-                );
-                result.setTestCredentialName("无认证");
-
-                result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
-                result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
-
-                // 保存完整请求对象（用于发送到Repeater）
-                result.setOriginalHttpRequest(originalRequest);
-                result.setTestHttpRequest(modifiedRequest);
-
-                result.setRiskLevel(ScanResult.RiskLevel.HIGH);
-
-                return result;
-            } else if (analysisResult == ResponseAnalyzer.AnalysisResult.SUSPICIOUS) {
-                // 可疑结果
-                ScanResult result = new ScanResult(VulnerabilityType.UNAUTHORIZED_ACCESS,
-                        originalRequest.url(), originalRequest.method());
-
-                result.setOriginalStatusCode(originalResponse.statusCode());
-                result.setTestStatusCode(testResp.statusCode());
-
-                double similarity = SimilarityCalculator.calculate(
-                        originalResponse.bodyToString(),
-                        testResp.bodyToString()
-                );
-                result.setSimilarity(similarity);
-
-                result.setOriginalResponse(ResponseAnalyzer.getResponseSummary(originalResponse, 500));
-                result.setTestResponse(ResponseAnalyzer.getResponseSummary(testResp, 500));
+    private RequestFilter differentialFilter() {
+        RequestFilter filter = new RequestFilter(config, new TestedEndpointIndex());
+        filter.setScopeLookup(url -> api.scope().isInScope(url));
+        return filter;
+    }
 
-                // 保存完整请求对象（用于发送到Repeater）
-                result.setOriginalHttpRequest(originalRequest);
-                result.setTestHttpRequest(modifiedRequest);
+    /**
+     * 提交一个批量扫描任务
+     * 样本发现漏洞且开启了扩展时，把同模板暂缓的请求追加提交
+     *
+     * @param columns   领取到的凭证列（未检测完时原样放回）
+     * @param sampleKey 模板抽样标识
+     * @param priority  端点分数，排队时分数高的先执行
+     * @param baseline  已获取的基准响应（恢复的扫描），为null时发送基准请求
+     */
+    private void submitBatch(ScanRequest request, long[] columns, String sampleKey, int priority,
+                             ScanResponse baseline, BatchRun run) {
+        if (run.control.isCancelled()) {
+            return;
+        }
+        run.submitted.incrementAndGet();
+        int unit = run.journal != null ? run.journal.unit(request, columns, sampleKey, priority) : -1;
+        // 没有检测完的请求（停止时排队、挂起或中途退出，预算用完，请求失败）放回领取的凭证列和样本名额，下次扫描重新检测；
+        // 排队时被清除的任务不会执行，由调度器丢弃时回调
+        Runnable release = () -> {
+            run.filter.release(request, columns);
+            run.sampler.release(sampleKey);
+        };
+        run.futures.add(run.lane.submit(() -> {
+            // 暂停时挂起，停止后直接结束
+            try {
+                run.control.await();
+            } catch (ScanCancelledException e) {
+                release.run();
+                return;
+            }
 
-                result.setRiskLevel(ScanResult.RiskLevel.INFO);
+            // 预算用完后剩余的请求不检测，放回领取的凭证列和样本名额，下次扫描继续
+            if (!run.tryStart()) {
+                release.run();
+                if (run.journal != null) {
+                    run.journal.done(unit, false);
+                }
+                run.skipped.incrementAndGet();
+                notifyProgress(run.completed.incrementAndGet(), run.submitted.get());
+                return;
+            }
 
-                return result;
+            boolean complete = false;
+            try {
+                Consumer<ScanResult> onResult = result -> {
+                    addResult(result);
+                    if (run.journal != null) {
+                        run.journal.result(result);
+                    }
+                    endpointScorer.recordFinding(request);
+                    for (ScanRequest deferred : run.sampler.expand(sampleKey)) {
+                        // 同一抽样标识的请求需要测试的列相同（暂缓时未领取，这里领取）；模板已发现漏洞，分数较高
+                        long[] deferredColumns = run.filter.claimDeferred(deferred, columns);
+                        if (deferredColumns.length > 0) {
+                            submitBatch(deferred, deferredColumns, sampleKey,
+                                    endpointScorer.score(deferred, EndpointTemplate.key(deferred), -1), null, run);
+                        }
+                    }
+                };
+                if (run.differential) {
+                    complete = run.scanner.rescan(request, () -> !run.control.isCancelled(), onResult) != null;
+                    if (complete) {
+                        // 与领取时使用同一配置快照的列，重扫期间修改凭证不会记错
+                        testedIndex.markTested(TestedEndpointIndex.endpointKey(request), columns);
+                    }
+                } else {
+                    ScanResponse originalResp = baseline;
+                    if (originalResp == null) {
+                        originalResp = fetchBaseline(run, request);
+                    }
+                    if (originalResp != null) {
+                        if (run.journal != null) {
+                            run.journal.baseline(unit, originalResp);
+                        }
+                        complete = run.scanner.scan(request, originalResp, columns, () -> !run.control.isCancelled(), onResult);
+                    }
+                }
+            } catch (Exception e) {
+                api.logging().logToError("扫描请求失败: " + e.getMessage());
             }
+            if (run.control.isCancelled()) {
+                // 中途停止的单元不记为完成，恢复时重新检测
+                release.run();
+            } else if (!complete) {
+                // 基准请求或测试请求失败（如网络中断），不记为已测试，下次扫描重新检测
+                release.run();
+                if (run.journal != null) {
+                    run.journal.done(unit, false);
+                }
+            } else if (run.journal != null) {
+                run.journal.done(unit, true);
+            }
+
+            int completed = run.completed.incrementAndGet();
+            notifyProgress(completed, run.submitted.get());
+        }, release, priority, request.host() + ":" + request.port()));
+    }
 
+    /**
+     * 获取原始请求的基准响应，失败时返回null
+     */
+    private ScanResponse fetchBaseline(BatchRun run, ScanRequest request) {
+        try {
+            return run.gate.send(request);
+        } catch (ScanCancelledException e) {
+            return null;
         } catch (Exception e) {
-            api.logging().logToError("未授权测试失败: " + e.getMessage());
+            api.logging().logToError("扫描请求异常: " + e.getMessage());
+            return null;
         }
-
-        return null;
     }
 
     /**
      * 从Proxy历史记录中自动提取原始凭证
      * 从第一个包含Cookie的目标请求中提取认证信息
+     *
+     * 在历史过滤器中检查，所有记录都不匹配，不会复制历史列表
      */
-    private void extractOriginalCredential(List<ProxyHttpRequestResponse> history) {
-        for (ProxyHttpRequestResponse item : history) {
-            if (!isRunning) break;
+    private void extractOriginalCredential() {
+        AuthCredential[] found = new AuthCredential[1];
+        api.proxy().history(item -> {
+            if (found[0] != null || (!isRunning() && !isPlanning)) {
+                return false;
+            }
 
             HttpRequest request = item.request();
 
             // 检查是否是目标域名的请求
-            if (!matchesTargetDomain(request)) {
-                continue;
+            if (!matchesTarget(request)) {
+                return false;
             }
 
             // 检查是否包含Cookie
@@ -413,56 +1213,125 @@ public class ScanEngine {
                 if (auth != null && !auth.isEmpty()) {
                     originalCredential.setAuthorizationHeader(auth);
                 }
-
-                config.setOriginalCredential(originalCredential);
-                api.logging().logToOutput("自动提取原始凭证: " +
-                    HttpUtils.getCookieSummary(cookie));
-                return;
+                found[0] = originalCredential;
             }
+            return false;
+        });
+
+        if (found[0] != null) {
+            config.setOriginalCredential(found[0]);
+            api.logging().logToOutput("自动提取原始凭证: " +
+                HttpUtils.getCookieSummary(found[0].getCookie()));
+            return;
         }
 
         api.logging().logToOutput("警告: 未能从历史记录中提取到Cookie，请手动配置原始凭证");
     }
 
     /**
-     * 检查请求是否匹配目标域名
+     * 规范化端点哈希（用于多来源去重）
      */
-    private boolean matchesTargetDomain(HttpRequest request) {
-        if (config.getTargetDomains().isEmpty()) {
-            return true;
-        }
-
-        String host = request.httpService().host();
-        for (String domain : config.getTargetDomains()) {
-            if (host.equals(domain) || host.endsWith("." + domain)) {
-                return true;
-            }
-        }
+    private static long endpointKey(HttpRequest request) {
+        HttpService service = request.httpService();
+        return TrafficCollector.endpointKey(request.method(), service.secure(), service.host(), service.port(), request.path());
+    }
 
-        return false;
+    /**
+     * 检查请求是否匹配目标域名（开启"仅扫描范围内"时同时检查Burp范围）
+     */
+    private boolean matchesTarget(HttpRequest request) {
+        HttpService service = request.httpService();
+        String origin = (service.secure() ? "https://" : "http://") + service.host()
+                + (service.port() == (service.secure() ? 443 : 80) ? "" : ":" + service.port());
+        return requestFilter.matchesTarget(service.host(), origin, request.path());
     }
 
     /**
-     * 添加扫描结果
+     * 添加扫描结果（不加锁，各线程同时发现的结果按追加顺序排列）
      */
-    private synchronized void addResult(ScanResult result) {
-        results.add(result);
+    private void addResult(ScanResult result) {
+        results.append(result);
         notifyResultFound(result);
     }
 
     /**
-     * 获取所有扫描结果
+     * 获取所有扫描结果（只读快照）
      */
     public List<ScanResult> getResults() {
-        return new ArrayList<>(results);
+        return results.snapshot();
+    }
+
+    /**
+     * 当前的结果日志，用于按游标增量读取（{@link ResultLog#since}）；
+     * 清除结果后换为新的日志，调用方发现日志变化时应从0重新读取
+     */
+    public ResultLog<ScanResult> getResultLog() {
+        return results;
     }
 
     /**
      * 清除扫描结果
      */
     public void clearResults() {
-        results.clear();
+        results = new ResultLog<>();
+        responseCache.clear();
+        endpointScorer.clear();
         requestFilter.clearTestedUrls();
+        templateSampler.clear();
+        historyCursor.reset();
+        deleteJournal();
+        saveTestedIndex();
+    }
+
+    /**
+     * 删除中断扫描的检查点日志（删除扫描目标时在{@link #shutdown}之后调用，日志中含有认证信息）
+     */
+    public void deleteJournal() {
+        try {
+            Files.deleteIfExists(journalFile);
+        } catch (IOException e) {
+            api.logging().logToError("删除扫描检查点失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查找缓存的完整响应（用于结果详情，缓存中没有时返回null）
+     */
+    public ScanResponse getCachedResponse(ScanRequest request) {
+        return request != null ? responseCache.peek(request) : null;
+    }
+
+    /**
+     * 响应缓存统计
+     */
+    public String getResponseCacheStats() {
+        return responseCache.getStats();
+    }
+
+    /**
+     * 把已测试端点索引、基准响应指纹和各主机延迟保存到项目文件（没有变化时跳过）
+     */
+    public void saveTestedIndex() {
+        try {
+            if (testedIndex.isDirty()) {
+                extensionData.setByteArray(TESTED_INDEX_KEY, ByteArray.byteArray(testedIndex.toBytes()));
+            }
+            if (baselineStore.isDirty()) {
+                extensionData.setByteArray(BASELINE_STORE_KEY, ByteArray.byteArray(baselineStore.toBytes()));
+            }
+            if (latencyTracker.isDirty()) {
+                extensionData.setByteArray(HOST_LATENCY_KEY, ByteArray.byteArray(latencyTracker.toBytes()));
+            }
+        } catch (Exception e) {
+            api.logging().logToError("保存已测试端点索引失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重置历史游标，下次扫描重新处理全部历史记录
+     */
+    public void resetHistoryCursor() {
+        historyCursor.reset();
     }
 
     /**
@@ -483,6 +1352,15 @@ public class ScanEngine {
         }
     }
 
+    /**
+     * 通知扫描摘要
+     */
+    private void notifyScanSummary(String summary) {
+        for (ScanProgressListener listener : listeners) {
+            listener.onScanSummary(summary);
+        }
+    }
+
     /**
      * 通知扫描完成
      */
@@ -493,17 +1371,115 @@ public class ScanEngine {
     }
 
     /**
-     * 是否正在运行
+     * 是否正在运行（停止后立即返回false，会话线程可能还在退出）
      */
     public boolean isRunning() {
-        return isRunning;
+        ScanSession current = running.get();
+        return current != null && !current.getControl().isCancelled();
+    }
+
+    /**
+     * 是否正在实时扫描
+     */
+    public boolean isLiveScanning() {
+        return isLive;
     }
 
     /**
      * 是否暂停
      */
     public boolean isPaused() {
-        return isPaused;
+        ScanSession current = running.get();
+        return current != null && !current.getControl().isCancelled() && current.getControl().isPaused();
+    }
+
+    /**
+     * 批量扫描正在等待响应的请求数（停止后仍在返回的也计入）
+     */
+    public int getInFlightCount() {
+        ScanSession current = session;
+        return current != null ? current.getControl().getInFlight() : 0;
+    }
+
+    /**
+     * 合并前的流量条目：请求及历史记录中的响应体大小（没有响应时为-1）
+     */
+    private static class Traffic {
+        private final ScanRequest request;
+        private final int responseSize;
+
+        private Traffic(ScanRequest request, int responseSize) {
+            this.request = request;
+            this.responseSize = responseSize;
+        }
+    }
+
+    /**
+     * 一次批量扫描使用的过滤器、模板抽样、预算和进度
+     */
+    private static class BatchRun {
+        private final RequestFilter filter;
+        private final TemplateSampler sampler;
+        private final boolean differential;
+        private final AtomicInteger submitted = new AtomicInteger(0);
+        /** 只需要测试部分凭证的请求数 */
+        private final AtomicInteger partial = new AtomicInteger(0);
+        private final AtomicInteger completed = new AtomicInteger(0);
+        private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+        /** 检查点日志，未开启时为null */
+        private final ScanJournal journal;
+        /** 暂停开关和取消令牌，本轮的请求都经过它发送 */
+        private final ScanControl control;
+        private final GatedTransport gate;
+        private final RequestScanner scanner;
+        /** 本扫描目标在共用调度器中的队列 */
+        private final FairScheduler.Lane lane;
+
+        /** 请求预算，0表示不限 */
+        private final int budgetRequests;
+        /** 是否有时间预算 */
+        private final boolean timeLimited;
+        /** 时间预算截止时刻（System.nanoTime） */
+        private final long deadline;
+        private final AtomicInteger started = new AtomicInteger(0);
+        /** 因预算用完未检测的请求数 */
+        private final AtomicInteger skipped = new AtomicInteger(0);
+        private volatile boolean budgetExhausted = false;
+
+        private BatchRun(RequestFilter filter, TemplateSampler sampler, boolean differential, ScanConfig config,
+                         ScanJournal journal, ScanControl control, GatedTransport gate, RequestScanner scanner,
+                         FairScheduler.Lane lane) {
+            this.filter = filter;
+            this.sampler = sampler;
+            this.differential = differential;
+            this.journal = journal;
+            this.control = control;
+            this.gate = gate;
+            this.scanner = scanner;
+            this.lane = lane;
+            // 停止时取消全部任务，等待中的扫描线程立即返回
+            control.onCancel(() -> futures.forEach(future -> future.cancel(false)));
+            this.budgetRequests = config.getScanBudgetRequests();
+            this.timeLimited = config.getScanBudgetMinutes() > 0;
+            this.deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(config.getScanBudgetMinutes());
+        }
+
+        /**
+         * 开始检测一个请求前检查预算
+         *
+         * @return false表示预算已用完
+         */
+        private boolean tryStart() {
+            if (budgetExhausted) {
+                return false;
+            }
+            if ((timeLimited && System.nanoTime() - deadline >= 0)
+                    || (budgetRequests > 0 && started.incrementAndGet() > budgetRequests)) {
+                budgetExhausted = true;
+                return false;
+            }
+            return true;
+        }
     }
 
     /**
@@ -527,5 +1503,12 @@ public class ScanEngine {
          * 扫描完成
          */
         void onScanComplete();
+
+        /**
+         * 扫描摘要（差异重扫结束时报告跳过和重新检测的原因），在onScanComplete之后调用
+         * @param summary 摘要文本
+         */
+        default void onScanSummary(String summary) {
+        }
     }
 }
@@ -0,0 +1,462 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 扫描检查点日志（只追加）
+ * 批量扫描时记录提交的检测单元（请求 + 凭证列）、已完成的单元、获取到的基准响应和发现的结果；
+ * 插件崩溃、Burp重启或手动停止后，可以从日志恢复，只继续未完成的单元
+ *
+ * 写入方只把记录放进队列，由后台线程每500ms批量编码写盘，不阻塞扫描线程；
+ * 日志末尾写了一半的记录在恢复时忽略
+ *
+ * 记录格式：类型(1字节) + 长度(4字节) + 内容
+ *
+ * 日志中含有请求的认证信息，在支持POSIX权限的系统上文件只允许当前用户读写
+ */
+public class ScanJournal implements AutoCloseable {
+
+    private static final int MAGIC = 0x50534a31;  // "PSJ1"
+
+    private static final byte BEGIN = 1;
+    private static final byte UNIT = 2;
+    private static final byte BASELINE = 3;
+    private static final byte DONE = 4;
+    private static final byte RESULT = 5;
+    private static final byte TESTED = 6;
+
+    /** 超过该大小的基准响应不记录，恢复时重新获取 */
+    private static final int MAX_BASELINE_BYTES = 1024 * 1024;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+
+    private final Path file;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextUnit = new AtomicInteger(0);
+    private final ScheduledExecutorService flusher;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    private volatile IOException failure;
+
+    private ScanJournal(Path file, boolean differential, long[] columns) throws IOException {
+        createOwnerOnly(file);
+        this.file = file;
+        this.fileOut = new FileOutputStream(file.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        out.writeInt(MAGIC);
+        append(BEGIN, data -> {
+            data.writeBoolean(differential);
+            data.writeLong(System.currentTimeMillis());
+            BinaryCodec.writeColumns(data, columns);
+        });
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scan-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::drain, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 新建日志（覆盖已有文件）
+     *
+     * @param differential 是否为差异重扫
+     * @param columns      本次扫描配置的全部凭证列
+     */
+    public static ScanJournal create(Path file, boolean differential, long[] columns) throws IOException {
+        return new ScanJournal(file, differential, columns);
+    }
+
+    /**
+     * 新建只有当前用户可以读写的空文件（已有文件删除后重建，新建的上级目录也只有当前用户可以访问）
+     */
+    private static void createOwnerOnly(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            return;
+        }
+        if (parent != null && !Files.isDirectory(parent)) {
+            Files.createDirectories(parent, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+        // 覆盖已有文件时不沿用它的权限
+        Files.deleteIfExists(file);
+        Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    }
+
+    // ========== 写入（线程安全，只入队） ==========
+
+    /**
+     * 记录提交的检测单元
+     *
+     * @param columns 需要测试的凭证列，null表示全部
+     * @return 单元编号
+     */
+    public int unit(ScanRequest request, long[] columns, String sampleKey, int priority) {
+        int id = nextUnit.getAndIncrement();
+        queue.add(new Record(UNIT, data -> {
+            data.writeInt(id);
+            BinaryCodec.writeRequest(data, request);
+            BinaryCodec.writeColumns(data, columns);
+            BinaryCodec.writeString(data, sampleKey);
+            data.writeInt(priority);
+        }));
+        return id;
+    }
+
+    /**
+     * 记录单元的基准响应（过大的不记录）
+     */
+    public void baseline(int unit, ScanResponse response) {
+        if (response.body().length > MAX_BASELINE_BYTES) {
+            return;
+        }
+        queue.add(new Record(BASELINE, data -> {
+            data.writeInt(unit);
+            BinaryCodec.writeResponse(data, response);
+        }));
+    }
+
+    /**
+     * 记录单元结束
+     *
+     * @param tested true表示已测试，false表示未测试且已放回（如预算用完），恢复时都不再执行
+     */
+    public void done(int unit, boolean tested) {
+        queue.add(new Record(DONE, data -> {
+            data.writeInt(unit);
+            data.writeBoolean(tested);
+        }));
+    }
+
+    /**
+     * 记录已测试的端点凭证列（恢复后再次写入日志时，保留之前已完成的单元）
+     */
+    public void tested(long endpoint, long[] columns) {
+        queue.add(new Record(TESTED, data -> {
+            data.writeLong(endpoint);
+            BinaryCodec.writeColumns(data, columns);
+        }));
+    }
+
+    /**
+     * 记录发现的结果
+     */
+    public void result(ScanResult result) {
+        queue.add(new Record(RESULT, data -> BinaryCodec.writeResult(data, result)));
+    }
+
+    /**
+     * 把队列中的记录写盘（后台线程定时调用）
+     */
+    private synchronized void drain() {
+        if (failure != null) {
+            queue.clear();
+            return;
+        }
+        try {
+            Record record;
+            boolean wrote = false;
+            while ((record = queue.poll()) != null) {
+                append(record.type, record.payload);
+                wrote = true;
+            }
+            if (wrote) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            failure = e;  // 磁盘错误后不再写入，扫描继续
+        }
+    }
+
+    private void append(byte type, Payload payload) throws IOException {
+        buffer.reset();
+        DataOutputStream data = new DataOutputStream(buffer);
+        payload.write(data);
+        data.flush();
+        out.writeByte(type);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    /** 写入失败的原因，正常时为null */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 写完剩余记录并关闭，保留文件用于恢复
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            drain();
+            try {
+                out.flush();
+                fileOut.getFD().sync();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响已写入的内容
+            }
+        }
+    }
+
+    /**
+     * 关闭并删除日志（扫描正常结束后不再需要恢复）
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // 删除失败时下次新建日志会覆盖
+        }
+    }
+
+    // ========== 恢复 ==========
+
+    /**
+     * 读取日志
+     *
+     * @return 恢复信息，文件不存在或不是日志文件时返回null
+     */
+    public static Recovery load(Path file) throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            Recovery recovery = new Recovery();
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        break;
+                    }
+                    payload = in.readNBytes(length);
+                    if (payload.length < length) {
+                        break;  // 末尾写了一半的记录
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    recovery.apply((byte) type, new DataInputStream(new ByteArrayInputStream(payload)));
+                } catch (IOException | RuntimeException e) {
+                    // 单条记录损坏时跳过
+                }
+            }
+            return recovery;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 日志中的扫描状态
+     */
+    public static class Recovery {
+        private boolean differential;
+        private long startedAt;
+        private long[] columns = new long[0];
+        private final Map<Integer, Unit> units = new LinkedHashMap<>();
+        private final List<TestedUnit> tested = new ArrayList<>();
+        private final List<ScanResult> results = new ArrayList<>();
+
+        private void apply(byte type, DataInputStream data) throws IOException {
+            switch (type) {
+                case BEGIN -> {
+                    differential = data.readBoolean();
+                    startedAt = data.readLong();
+                    long[] read = BinaryCodec.readColumns(data);
+                    columns = read != null ? read : new long[0];
+                }
+                case UNIT -> {
+                    int id = data.readInt();
+                    ScanRequest request = BinaryCodec.readRequest(data);
+                    units.put(id, new Unit(request, BinaryCodec.readColumns(data), BinaryCodec.readString(data), data.readInt()));
+                }
+                case BASELINE -> {
+                    Unit unit = units.get(data.readInt());
+                    if (unit != null) {
+                        unit.baseline = BinaryCodec.readResponse(data);
+                    }
+                }
+                case DONE -> {
+                    Unit unit = units.remove(data.readInt());
+                    if (unit != null && data.readBoolean()) {
+                        tested.add(new TestedUnit(TestedEndpointIndex.endpointKey(unit.request),
+                                unit.columns != null ? unit.columns : columns));
+                    }
+                }
+                case TESTED -> tested.add(new TestedUnit(data.readLong(), BinaryCodec.readColumns(data)));
+                case RESULT -> results.add(BinaryCodec.readResult(data));
+                default -> {
+                    // 未知记录类型，忽略
+                }
+            }
+        }
+
+        public boolean isDifferential() {
+            return differential;
+        }
+
+        /** 原扫描开始时间（毫秒时间戳） */
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        /** 原扫描配置的全部凭证列 */
+        public long[] getColumns() {
+            return columns;
+        }
+
+        /** 未完成的单元（按提交顺序） */
+        public List<Unit> getOutstanding() {
+            return new ArrayList<>(units.values());
+        }
+
+        /** 已完成测试的端点凭证列 */
+        public List<TestedUnit> getTested() {
+            return Collections.unmodifiableList(tested);
+        }
+
+        public List<ScanResult> getResults() {
+            return Collections.unmodifiableList(results);
+        }
+    }
+
+    /**
+     * 未完成的检测单元
+     */
+    public static class Unit {
+        private final ScanRequest request;
+        private final long[] columns;
+        private final String sampleKey;
+        private final int priority;
+        private ScanResponse baseline;
+
+        private Unit(ScanRequest request, long[] columns, String sampleKey, int priority) {
+            this.request = request;
+            this.columns = columns;
+            this.sampleKey = sampleKey;
+            this.priority = priority;
+        }
+
+        public ScanRequest getRequest() {
+            return request;
+        }
+
+        /** 需要测试的凭证列，null表示全部 */
+        public long[] getColumns() {
+            return columns;
+        }
+
+        public String getSampleKey() {
+            return sampleKey;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /** 中断前已获取的基准响应，没有时为null */
+        public ScanResponse getBaseline() {
+            return baseline;
+        }
+    }
+
+    /**
+     * 已完成测试的端点凭证列
+     */
+    public static class TestedUnit {
+        private final long endpoint;
+        private final long[] columns;
+
+        private TestedUnit(long endpoint, long[] columns) {
+            this.endpoint = endpoint;
+            this.columns = columns != null ? columns : new long[0];
+        }
+
+        /** 端点哈希（见{@link TestedEndpointIndex#endpointKey}） */
+        public long getEndpoint() {
+            return endpoint;
+        }
+
+        public long[] getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * 待写入的记录，内容在后台线程编码
+     */
+    private static class Record {
+        private final byte type;
+        private final Payload payload;
+
+        private Record(byte type, Payload payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,18 @@
+package burp.privilege.scanner;
+
+/**
+ * 扫描日志接口
+ * 插件模式输出到Burp日志，独立运行模式输出到控制台
+ */
+public interface ScanLogger {
+
+    /**
+     * 输出普通日志
+     */
+    void info(String message);
+
+    /**
+     * 输出错误日志
+     */
+    void error(String message);
+}
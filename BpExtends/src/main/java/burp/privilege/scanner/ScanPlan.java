@@ -0,0 +1,340 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 扫描计划（预演结果）
+ * 经过完整的历史读取、过滤、模板抽样和凭证矩阵规划，但没有发送任何请求；
+ * 列出待检测的请求、各主机的请求数和预计耗时、成本最高的端点模板。
+ * 插件中可以原样执行（见{@link ScanEngine#executePlan}），执行时不再重新过滤；
+ * 从检查点日志恢复扫描时，未完成的单元也组成一个计划执行（见{@link ScanEngine#resumeFromJournal}）
+ */
+public class ScanPlan {
+
+    /** 摘要中列出的模板数 */
+    private static final int TOP_TEMPLATES = 10;
+
+    private final int threads;
+    private final long[] columns;
+    private final List<Item> items = new ArrayList<>();
+
+    /** 执行时需要的历史游标和抽样进度（独立运行模式生成的计划没有，不能执行；恢复的计划没有游标和抽样进度） */
+    final HistoryCursor.Scan cursorScan;
+    final TemplateSampler sampler;
+
+    /** 是否从检查点日志恢复（凭证列在中断前已领取，不再重新领取） */
+    final boolean resumed;
+    /** 中断前完成的端点和发现的结果，恢复时写入新的检查点日志 */
+    final List<ScanJournal.TestedUnit> resumedTested;
+    final List<ScanResult> resumedResults;
+
+    private int deferredCount;
+    private int unauthenticatedCount;
+    private List<HostCost> hostCosts = new ArrayList<>();
+    private long estimatedMillis;
+
+    /**
+     * @param threads 并发线程数（用于估算耗时）
+     * @param columns 规划时配置的全部凭证列
+     */
+    public ScanPlan(int threads, long[] columns) {
+        this(threads, columns, null, null);
+    }
+
+    ScanPlan(int threads, long[] columns, HistoryCursor.Scan cursorScan, TemplateSampler sampler) {
+        this.threads = Math.max(1, threads);
+        this.columns = columns;
+        this.cursorScan = cursorScan;
+        this.sampler = sampler;
+        this.resumed = false;
+        this.resumedTested = List.of();
+        this.resumedResults = List.of();
+    }
+
+    /**
+     * 从检查点日志恢复的计划
+     */
+    ScanPlan(int threads, ScanJournal.Recovery recovery) {
+        this.threads = Math.max(1, threads);
+        this.columns = recovery.getColumns();
+        this.cursorScan = null;
+        this.sampler = null;
+        this.resumed = true;
+        this.resumedTested = recovery.getTested();
+        this.resumedResults = recovery.getResults();
+    }
+
+    /**
+     * 加入一个待检测的请求
+     */
+    public synchronized void add(Item item) {
+        items.add(item);
+    }
+
+    /**
+     * 规划结束：按端点分数排序，并按各主机的历史延迟估算耗时
+     *
+     * @param deferredCount        同模板暂缓的请求数
+     * @param unauthenticatedCount 不带认证信息跳过的请求数
+     * @param latency              主机 -> 平均延迟（毫秒）
+     * @param known                是否有该主机的延迟记录
+     */
+    public synchronized void finish(int deferredCount, int unauthenticatedCount,
+                                    ToLongFunction<String> latency, Predicate<String> known) {
+        this.deferredCount = deferredCount;
+        this.unauthenticatedCount = unauthenticatedCount;
+        items.sort(Comparator.comparingInt(Item::getPriority).reversed());
+
+        Map<String, HostCost> byHost = new HashMap<>();
+        for (Item item : items) {
+            ScanRequest request = item.getRequest();
+            String key = request.host() + ":" + request.port();
+            HostCost cost = byHost.computeIfAbsent(key, k -> new HostCost(key,
+                    latency.applyAsLong(request.host()), known.test(request.host())));
+            cost.endpoints++;
+            cost.requests += item.getRequestCount();
+        }
+
+        long total = 0;
+        hostCosts = new ArrayList<>(byHost.values());
+        for (HostCost cost : hostCosts) {
+            total += cost.getEstimatedMillis();
+        }
+        hostCosts.sort(Comparator.comparingLong(HostCost::getRequests).reversed());
+        // 各线程同时发送，总耗时按线程数均摊（单个请求内的凭证测试依次发送）
+        estimatedMillis = total / threads;
+    }
+
+    /** 待检测的请求（按分数从高到低） */
+    public synchronized List<Item> getItems() {
+        return new ArrayList<>(items);
+    }
+
+    public synchronized int getEndpointCount() {
+        return items.size();
+    }
+
+    /** 预计发送的请求数（基准请求 + 凭证测试，不含重试和扩展模板） */
+    public synchronized long getRequestCount() {
+        long count = 0;
+        for (Item item : items) {
+            count += item.getRequestCount();
+        }
+        return count;
+    }
+
+    /** 只需要测试部分凭证的请求数 */
+    public synchronized int getPartialCount() {
+        int count = 0;
+        for (Item item : items) {
+            if (item.getColumns() != null && item.getColumns().length < columns.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized int getDeferredCount() {
+        return deferredCount;
+    }
+
+    public synchronized int getUnauthenticatedCount() {
+        return unauthenticatedCount;
+    }
+
+    /** 各主机的请求数和预计耗时（按请求数从多到少） */
+    public synchronized List<HostCost> getHostCosts() {
+        return new ArrayList<>(hostCosts);
+    }
+
+    /** 预计耗时（毫秒） */
+    public synchronized long getEstimatedMillis() {
+        return estimatedMillis;
+    }
+
+    /** 规划时配置的全部凭证列 */
+    public long[] getColumns() {
+        return columns;
+    }
+
+    /** 是否可以在插件中执行 */
+    public boolean isExecutable() {
+        return cursorScan != null || resumed;
+    }
+
+    /**
+     * 成本最高的端点模板（按预计请求数）
+     *
+     * @param limit 最多返回的数量
+     * @return 模板标识 -> 预计请求数
+     */
+    public synchronized List<Map.Entry<String, Long>> getTopTemplates(int limit) {
+        Map<String, Long> byTemplate = new HashMap<>();
+        for (Item item : items) {
+            byTemplate.merge(item.getTemplateKey(), (long) item.getRequestCount(), Long::sum);
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(byTemplate.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    /**
+     * 文本摘要
+     */
+    public synchronized String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("扫描计划（未发送任何请求）: 待检测 %d 个请求，预计发送 %d 个请求，预计耗时 %s（%d 线程）%n",
+                items.size(), getRequestCount(), formatDuration(estimatedMillis), threads));
+        sb.append(String.format("只测新增凭证 %d，同模板暂缓 %d，不带认证信息已跳过 %d%n",
+                getPartialCount(), deferredCount, unauthenticatedCount));
+
+        sb.append(String.format("%n按主机:%n"));
+        for (HostCost cost : hostCosts) {
+            sb.append(String.format("  %-40s 端点 %6d  请求 %7d  平均延迟 %5dms%s  预计 %s%n",
+                    cost.getHost(), cost.getEndpoints(), cost.getRequests(), cost.getLatencyMillis(),
+                    cost.isMeasured() ? "" : "(估)", formatDuration(cost.getEstimatedMillis() / threads)));
+        }
+
+        sb.append(String.format("%n成本最高的模板:%n"));
+        for (Map.Entry<String, Long> entry : getTopTemplates(TOP_TEMPLATES)) {
+            sb.append(String.format("  %7d  %s%n", entry.getValue(), entry.getKey()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 时长文本，如"3分20秒"
+     */
+    static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds < 60) {
+            return seconds + "秒";
+        }
+        if (seconds < 3600) {
+            return seconds / 60 + "分" + seconds % 60 + "秒";
+        }
+        return seconds / 3600 + "小时" + seconds % 3600 / 60 + "分";
+    }
+
+    /**
+     * 计划中的一个请求
+     */
+    public static class Item {
+        private final ScanRequest request;
+        private final long[] columns;
+        private final String sampleKey;
+        private final String templateKey;
+        private final int priority;
+        private final int requestCount;
+        private final ScanResponse baseline;
+
+        /**
+         * @param columns      需要测试的凭证列，null表示全部
+         * @param sampleKey    模板抽样标识
+         * @param templateKey  模板标识
+         * @param priority     端点分数
+         * @param requestCount 预计发送的请求数
+         */
+        public Item(ScanRequest request, long[] columns, String sampleKey, String templateKey,
+                    int priority, int requestCount) {
+            this(request, columns, sampleKey, templateKey, priority, requestCount, null);
+        }
+
+        /**
+         * @param baseline 已获取的基准响应（如中断前获取的），执行时不再发送基准请求，可以为null
+         */
+        public Item(ScanRequest request, long[] columns, String sampleKey, String templateKey,
+                    int priority, int requestCount, ScanResponse baseline) {
+            this.request = request;
+            this.columns = columns;
+            this.sampleKey = sampleKey;
+            this.templateKey = templateKey;
+            this.priority = priority;
+            this.requestCount = requestCount;
+            this.baseline = baseline;
+        }
+
+        public ScanRequest getRequest() {
+            return request;
+        }
+
+        public long[] getColumns() {
+            return columns;
+        }
+
+        public String getSampleKey() {
+            return sampleKey;
+        }
+
+        public String getTemplateKey() {
+            return templateKey;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getRequestCount() {
+            return requestCount;
+        }
+
+        /** 已获取的基准响应，没有时为null */
+        public ScanResponse getBaseline() {
+            return baseline;
+        }
+    }
+
+    /**
+     * 单个主机的成本
+     */
+    public static class HostCost {
+        private final String host;
+        private final long latencyMillis;
+        private final boolean measured;
+        private int endpoints;
+        private long requests;
+
+        private HostCost(String host, long latencyMillis, boolean measured) {
+            this.host = host;
+            this.latencyMillis = latencyMillis;
+            this.measured = measured;
+        }
+
+        /** host:port */
+        public String getHost() {
+            return host;
+        }
+
+        public int getEndpoints() {
+            return endpoints;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        /** 延迟是否来自历史记录（否则为估算值） */
+        public boolean isMeasured() {
+            return measured;
+        }
+
+        /** 单线程依次发送的耗时（毫秒） */
+        public long getEstimatedMillis() {
+            return requests * latencyMillis;
+        }
+    }
+}
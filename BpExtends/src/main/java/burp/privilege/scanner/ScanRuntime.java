@@ -0,0 +1,113 @@
+package burp.privilege.scanner;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 常驻的扫描运行环境，多个扫描目标共用
+ * 调度器（{@link FairScheduler}）和执行扫描会话的线程在首次使用时创建，之后跨扫描复用，
+ * 开始下一次扫描或实时扫描时不再创建和销毁线程；只在插件卸载时关闭
+ *
+ * 各扫描目标的批量扫描和实时扫描同时进行，按权重公平分享调度器的线程，并受全局和单主机并发限制。
+ * 所有线程都是守护线程。线程安全
+ */
+public class ScanRuntime implements AutoCloseable {
+
+    /** 线程空闲多久后退出（秒） */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /** 默认的全局线程数 */
+    public static final int DEFAULT_THREADS = 20;
+
+    private FairScheduler scheduler;
+    private ThreadPoolExecutor sessions;
+    private int threads = DEFAULT_THREADS;
+    private int hostLimit = 0;
+    private boolean closed = false;
+
+    /**
+     * 调度器（首次调用时创建工作线程）
+     */
+    public synchronized FairScheduler scheduler() {
+        checkOpen();
+        if (scheduler == null) {
+            scheduler = new FairScheduler(threads, hostLimit, daemon("scan-worker"));
+        }
+        return scheduler;
+    }
+
+    /**
+     * 设置全局线程数（所有扫描目标合计）
+     */
+    public synchronized void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        if (scheduler != null) {
+            scheduler.setThreads(this.threads);
+        }
+    }
+
+    public synchronized int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 设置每个主机同时检测的请求数（所有扫描目标合计）
+     *
+     * @param hostLimit 0表示不限
+     */
+    public synchronized void setHostLimit(int hostLimit) {
+        this.hostLimit = Math.max(0, hostLimit);
+        if (scheduler != null) {
+            scheduler.setHostLimit(this.hostLimit);
+        }
+    }
+
+    public synchronized int getHostLimit() {
+        return hostLimit;
+    }
+
+    /**
+     * 在会话线程中执行扫描会话（各扫描目标的会话同时执行，线程空闲一段时间后才退出）
+     */
+    public synchronized Future<?> submitSession(Runnable session) {
+        checkOpen();
+        if (sessions == null) {
+            sessions = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), daemon("scan-session"));
+        }
+        return sessions.submit(session);
+    }
+
+    /**
+     * 关闭所有线程（插件卸载时调用），正在执行的任务被中断
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        if (sessions != null) {
+            sessions.shutdownNow();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("扫描运行环境已关闭");
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package burp.privilege.scanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次批量扫描会话
+ * 描述要执行的扫描（普通扫描、差异重扫、执行计划、恢复中断的扫描、分发给工作进程的计划）及其暂停开关，
+ * 由{@link ScanEngine}提交给常驻的{@link ScanRuntime}执行
+ */
+public class ScanSession {
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    /**
+     * 会话类型
+     */
+    public enum Kind {
+        SCAN("越权扫描"),
+        DIFFERENTIAL("差异重扫"),
+        PLAN("扫描计划"),
+        RESUME("恢复的扫描"),
+        DISTRIBUTED("分布式扫描");
+
+        private final String displayName;
+
+        Kind(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final long id = NEXT_ID.getAndIncrement();
+    private final Kind kind;
+    private final ScanPlan plan;
+    private final boolean differential;
+    private final ScanControl control = new ScanControl();
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * @param plan         要执行的计划（执行计划、恢复中断的扫描、分布式扫描），其他类型为null
+     * @param differential 是否为差异重扫（恢复中断的差异重扫时也为true）
+     */
+    public ScanSession(Kind kind, ScanPlan plan, boolean differential) {
+        this.kind = kind;
+        this.plan = plan;
+        this.differential = differential;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public ScanPlan getPlan() {
+        return plan;
+    }
+
+    /** 暂停开关和取消令牌 */
+    public ScanControl getControl() {
+        return control;
+    }
+
+    /** 开始时间（毫秒时间戳） */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /** 是否为差异重扫（包括恢复的差异重扫） */
+    public boolean isDifferential() {
+        return differential;
+    }
+}
@@ -0,0 +1,54 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 扫描传输层
+ * 负责把扫描请求发送出去并取回响应，使扫描引擎不依赖具体的HTTP实现
+ *
+ * 实现：
+ * - {@link MontoyaTransport}：通过Burp的HTTP栈发送（插件模式）
+ * - {@link JdkHttpTransport}：通过JDK HttpClient发送（独立运行 / 性能测试）
+ */
+public interface ScanTransport extends AutoCloseable {
+
+    /**
+     * 同步发送请求
+     *
+     * @param request 扫描请求
+     * @return 响应
+     * @throws IOException 网络错误或无响应
+     */
+    ScanResponse send(ScanRequest request) throws IOException;
+
+    /**
+     * 异步发送请求
+     * 默认实现在给定线程池中执行同步发送，原生支持异步的实现可覆盖此方法
+     *
+     * @param request  扫描请求
+     * @param executor 执行同步发送的线程池
+     * @return 响应Future
+     */
+    default CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 释放传输层资源
+     */
+    @Override
+    default void close() {
+    }
+}
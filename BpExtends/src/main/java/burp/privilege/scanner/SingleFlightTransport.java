@@ -0,0 +1,204 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并相同请求的传输层装饰器
+ * 同一请求（方法、URL、请求头、请求体完全相同）同时由多个线程发送时只发出一次，所有线程共享同一个响应；
+ * 响应在短时间内（默认2秒）继续复用，覆盖重复的历史记录、重叠的模板和共享的基准请求
+ *
+ * 只合并GET、HEAD、OPTIONS请求，其他方法可能修改服务端状态，每次都实际发送
+ */
+public class SingleFlightTransport implements ScanTransport {
+
+    /** 默认响应复用时间 */
+    public static final long DEFAULT_TTL_MILLIS = 2000;
+
+    /** 超过该数量时清理已过期的条目 */
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    /** 两次清理的最小间隔（条目一直很多时不在每次发送时遍历） */
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ScanTransport delegate;
+    private final long ttlNanos;
+    private final Map<RequestKey, Flight> flights = new ConcurrentHashMap<>();
+
+    /** 下次允许清理的时间（System.nanoTime） */
+    private final AtomicLong nextSweepAt = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong sharedCount = new AtomicLong(0);
+
+    public SingleFlightTransport(ScanTransport delegate) {
+        this(delegate, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param delegate  实际发送请求的传输层
+     * @param ttlMillis 响应复用时间，0表示只合并同时进行的请求
+     */
+    public SingleFlightTransport(ScanTransport delegate, long ttlMillis) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    @Override
+    public ScanResponse send(ScanRequest request) throws IOException {
+        if (!SAFE_METHODS.contains(request.method())) {
+            sentCount.incrementAndGet();
+            return delegate.send(request);
+        }
+
+        RequestKey key = RequestKey.of(request);
+        Flight flight = new Flight();
+        Flight existing = join(key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            ScanResponse response = delegate.send(request);
+            land(key, flight, response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            fail(key, flight, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> sendAsync(ScanRequest request, Executor executor) {
+        if (!SAFE_METHODS.contains(request.method())) {
+            sentCount.incrementAndGet();
+            return delegate.sendAsync(request, executor);
+        }
+
+        RequestKey key = RequestKey.of(request);
+        Flight flight = new Flight();
+        Flight existing = join(key, flight);
+        if (existing != null) {
+            return existing.future.copy();  // 调用方取消时不影响其他共享者
+        }
+
+        delegate.sendAsync(request, executor).whenComplete((response, error) -> {
+            if (error == null) {
+                land(key, flight, response);
+            } else {
+                fail(key, flight, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        });
+        return flight.future.copy();
+    }
+
+    /**
+     * 登记请求
+     *
+     * @return 可以共享的进行中或未过期的请求；返回null表示由当前线程负责发送
+     */
+    private Flight join(RequestKey key, Flight flight) {
+        long now = System.nanoTime();
+        Flight current = flights.compute(key, (k, existing) ->
+                existing != null && !existing.isExpired(now) ? existing : flight);
+        if (current != flight) {
+            sharedCount.incrementAndGet();
+            return current;
+        }
+
+        sentCount.incrementAndGet();
+        if (flights.size() > SWEEP_THRESHOLD) {
+            sweep(now);
+        }
+        return null;
+    }
+
+    /**
+     * 清理已过期的条目，间隔内只由一个线程执行一次
+     */
+    private void sweep(long now) {
+        long next = nextSweepAt.get();
+        if (now - next < 0 || !nextSweepAt.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        flights.values().removeIf(f -> f.isExpired(now));
+    }
+
+    private void land(RequestKey key, Flight flight, ScanResponse response) {
+        flight.expiresAt = System.nanoTime() + ttlNanos;
+        flight.future.complete(response);
+        if (ttlNanos == 0) {
+            flights.remove(key, flight);
+        }
+    }
+
+    private void fail(RequestKey key, Flight flight, Throwable error) {
+        // 失败的请求不复用，下一个线程重新发送
+        flights.remove(key, flight);
+        flight.future.completeExceptionally(error);
+    }
+
+    private static ScanResponse await(Flight flight) throws IOException {
+        try {
+            return flight.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待相同请求的响应时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause != null ? cause.getMessage() : "请求失败", cause);
+        }
+    }
+
+    /** 实际发送的请求数（不含被合并的） */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /** 共享其他线程响应的请求数 */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    @Override
+    public void close() {
+        flights.clear();
+        delegate.close();
+    }
+
+    /**
+     * 一次实际发送
+     */
+    private static class Flight {
+        private final CompletableFuture<ScanResponse> future = new CompletableFuture<>();
+        /** 响应到达前为Long.MAX_VALUE（进行中的请求不会过期） */
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private boolean isExpired(long now) {
+            long expires = expiresAt;
+            return expires != Long.MAX_VALUE && now - expires >= 0;
+        }
+    }
+}
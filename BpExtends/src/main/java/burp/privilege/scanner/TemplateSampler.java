@@ -0,0 +1,157 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模板抽样
+ * 同一端点模板（见{@link EndpointTemplate}）只扫描配置数量的样本，其余请求暂缓；
+ * 开启"发现漏洞时扩展"后，样本发现漏洞时再取出该模板暂缓的请求继续扫描
+ *
+ * 线程安全
+ */
+public class TemplateSampler {
+
+    /** 每个模板最多暂缓的请求数，超出部分直接丢弃 */
+    private static final int MAX_DEFERRED_PER_TEMPLATE = 500;
+
+    private final ScanConfig config;
+    private final Map<String, TemplateState> templates = new ConcurrentHashMap<>();
+    private final AtomicInteger deferredCount = new AtomicInteger(0);
+
+    public TemplateSampler(ScanConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 判断请求是否立即扫描
+     *
+     * @param templateKey 模板标识
+     * @param request     请求
+     * @return true表示立即扫描，false表示暂缓
+     */
+    public boolean admit(String templateKey, ScanRequest request) {
+        int sampleSize = config.getTemplateSampleSize();
+        if (sampleSize <= 0) {
+            return true;  // 未开启模板合并
+        }
+
+        TemplateState state = templates.computeIfAbsent(templateKey, k -> new TemplateState());
+        synchronized (state) {
+            if (state.expanded || state.sampled < sampleSize) {
+                state.sampled++;
+                return true;
+            }
+            if (config.isExpandOnFinding() && state.deferred.size() < MAX_DEFERRED_PER_TEMPLATE) {
+                state.deferred.add(request);
+            }
+            deferredCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * 样本发现漏洞后扩展该模板：取出暂缓的请求，之后同模板的新请求不再抽样
+     *
+     * @return 需要补充扫描的请求，未开启扩展时为空
+     */
+    public List<ScanRequest> expand(String templateKey) {
+        if (!config.isExpandOnFinding()) {
+            return Collections.emptyList();
+        }
+
+        TemplateState state = templates.get(templateKey);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        synchronized (state) {
+            state.expanded = true;
+            if (state.deferred.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<ScanRequest> requests = state.deferred;
+            state.deferred = new ArrayList<>();
+            return requests;
+        }
+    }
+
+    /**
+     * 放回一个样本名额（已放行的样本未能扫描时调用）
+     */
+    public void release(String templateKey) {
+        TemplateState state = templates.get(templateKey);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.sampled > 0) {
+                state.sampled--;
+            }
+        }
+    }
+
+    /**
+     * 复制当前各模板的抽样进度（不含暂缓的请求），用于生成扫描计划而不影响本对象
+     */
+    public TemplateSampler fork() {
+        TemplateSampler copy = new TemplateSampler(config);
+        templates.forEach((key, state) -> {
+            synchronized (state) {
+                TemplateState forked = new TemplateState();
+                forked.sampled = state.sampled;
+                forked.expanded = state.expanded;
+                copy.templates.put(key, forked);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * 合并扫描计划的抽样结果：抽样进度取较大值，暂缓的请求追加到本对象，之后可以扩展
+     */
+    public void absorb(TemplateSampler plan) {
+        plan.templates.forEach((key, planned) -> {
+            TemplateState state = templates.computeIfAbsent(key, k -> new TemplateState());
+            synchronized (planned) {
+                synchronized (state) {
+                    state.sampled = Math.max(state.sampled, planned.sampled);
+                    state.expanded |= planned.expanded;
+                    for (ScanRequest request : planned.deferred) {
+                        if (state.deferred.size() >= MAX_DEFERRED_PER_TEMPLATE) {
+                            break;
+                        }
+                        state.deferred.add(request);
+                    }
+                }
+            }
+        });
+        deferredCount.addAndGet(plan.getDeferredCount());
+    }
+
+    /** 累计暂缓的请求数 */
+    public int getDeferredCount() {
+        return deferredCount.get();
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    public void clear() {
+        templates.clear();
+        deferredCount.set(0);
+    }
+
+    private static class TemplateState {
+        private int sampled = 0;
+        private boolean expanded = false;
+        private List<ScanRequest> deferred = new ArrayList<>();
+    }
+}
@@ -0,0 +1,373 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.AuthCredential;
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 已测试端点索引（端点 × 测试凭证完成矩阵）
+ * 每个"规范化端点 + 单个测试凭证"单元记录一个64位哈希，每条约8字节，未授权检测单独作为一列；
+ * 可序列化后保存到项目文件或本地文件，重启后跳过已覆盖的单元。
+ * 新增测试凭证时只有新的一列未完成，已覆盖的端点只需测试新凭证；删除凭证不影响其他列
+ *
+ * 查询先经过布隆过滤器（无锁，只用于快速排除未测试的端点），添加操作加锁，保证同一端点只有一个线程添加成功
+ */
+public class TestedEndpointIndex {
+
+    private static final int MAGIC = 0x50454932;  // "PEI2"
+
+    /** 未授权检测（移除认证信息）所在列 */
+    public static final long UNAUTHORIZED_COLUMN = 0x6e6f2d6175746821L;
+
+    /** 布隆过滤器每个元素占用的位数（约2%误判率） */
+    private static final int BLOOM_BITS_PER_ENTRY = 8;
+
+    private final Supplier<byte[]> loader;
+    private final boolean useBloom;
+
+    private LongHashSet set;
+    private volatile long[] bloom;
+    private volatile boolean loaded;
+    private boolean dirty;
+
+    /**
+     * 内存索引
+     */
+    public TestedEndpointIndex() {
+        this(null, true);
+    }
+
+    /**
+     * @param loader   首次使用时加载已保存的数据（返回null表示没有），可以为null
+     * @param useBloom 是否启用布隆过滤器
+     */
+    public TestedEndpointIndex(Supplier<byte[]> loader, boolean useBloom) {
+        this.loader = loader;
+        this.useBloom = useBloom;
+    }
+
+    /**
+     * 规范化端点哈希（方法 + URL，查询参数顺序无关）
+     */
+    public static long endpointKey(ScanRequest request) {
+        return TrafficCollector.endpointKey(request.method(), request.secure(),
+                request.host(), request.port(), request.path());
+    }
+
+    /**
+     * 测试凭证所在列（按凭证内容计算，名称不影响）
+     */
+    public static long columnKey(AuthCredential credential) {
+        long h = 17;
+        h = h * 31 + String.valueOf(credential.getCookie()).hashCode();
+        h = h * 31 + String.valueOf(credential.getAuthorizationHeader()).hashCode();
+        h = h * 31 + credential.getCustomHeaders().hashCode();
+        return ((long) LongHashSet.mix(h) << 32) ^ h;
+    }
+
+    /**
+     * 当前配置需要完成的列（每个测试凭证一列，内容相同的凭证只算一列；开启未授权检测时再加一列）
+     */
+    public static long[] columns(ScanConfig config) {
+        return CompiledConfig.of(config).getColumns().clone();
+    }
+
+    /**
+     * 给定测试凭证和未授权检测开关的全部列
+     */
+    static long[] columns(List<AuthCredential> credentials, boolean testUnauthorizedAccess) {
+        long[] columns = new long[credentials.size() + 1];
+        int count = 0;
+        for (AuthCredential credential : credentials) {
+            count = addColumn(columns, count, columnKey(credential));
+        }
+        if (testUnauthorizedAccess) {
+            count = addColumn(columns, count, UNAUTHORIZED_COLUMN);
+        }
+        return count == columns.length ? columns : Arrays.copyOf(columns, count);
+    }
+
+    private static int addColumn(long[] columns, int count, long column) {
+        for (int i = 0; i < count; i++) {
+            if (columns[i] == column) {
+                return count;
+            }
+        }
+        columns[count] = column;
+        return count + 1;
+    }
+
+    /**
+     * 列是否在给定的列中（columns为null表示全部）
+     */
+    public static boolean hasColumn(long[] columns, long column) {
+        if (columns == null) {
+            return true;
+        }
+        for (long c : columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 给定的列是否包含required中的每一列（columns为null表示全部）
+     */
+    public static boolean hasAllColumns(long[] columns, long[] required) {
+        for (long column : required) {
+            if (!hasColumn(columns, column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一组列的哈希（顺序无关）
+     */
+    public static long columnSetKey(long[] columns) {
+        long hash = 0;
+        for (long column : columns) {
+            hash += LongHashSet.mix(column) * 0x9e3779b97f4a7c15L;
+        }
+        return hash;
+    }
+
+    private static long cellKey(long endpoint, long column) {
+        return endpoint ^ Long.rotateLeft(column, 17) * 0x9e3779b97f4a7c15L;
+    }
+
+    /**
+     * 端点的所有列是否可能都已完成（快速判断，返回false时以claim的结果为准）
+     */
+    public boolean mightContainAll(long endpoint, long[] columns) {
+        for (long column : columns) {
+            if (!mightContain(cellKey(endpoint, column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 领取端点尚未完成的列并记录为已测试，多个线程同时领取同一端点时每列只分给一个线程
+     *
+     * @return 本次领取到的列，全部已完成时返回空数组
+     */
+    public synchronized long[] claim(long endpoint, long[] columns) {
+        long[] claimed = new long[columns.length];
+        int count = 0;
+        for (long column : columns) {
+            if (add(cellKey(endpoint, column))) {
+                claimed[count++] = column;
+            }
+        }
+        return count == columns.length ? claimed : Arrays.copyOf(claimed, count);
+    }
+
+    /**
+     * 端点尚未完成的列（只查询，不领取；用于生成扫描计划）
+     *
+     * @return 未完成的列，全部已完成时返回空数组
+     */
+    public synchronized long[] pending(long endpoint, long[] columns) {
+        ensureLoaded();
+        long[] pending = new long[columns.length];
+        int count = 0;
+        for (long column : columns) {
+            if (!set.contains(cellKey(endpoint, column))) {
+                pending[count++] = column;
+            }
+        }
+        return count == columns.length ? pending : Arrays.copyOf(pending, count);
+    }
+
+    /**
+     * 把端点的列记录为已测试
+     */
+    public synchronized void markTested(long endpoint, long[] columns) {
+        for (long column : columns) {
+            add(cellKey(endpoint, column));
+        }
+    }
+
+    /**
+     * 放回领取但未测试的列（如扫描预算用完时），之后的扫描重新领取
+     */
+    public synchronized void release(long endpoint, long[] columns) {
+        ensureLoaded();
+        for (long column : columns) {
+            if (set.remove(cellKey(endpoint, column))) {
+                dirty = true;  // 布隆过滤器不删除，多出的位只会让查询多检查一次集合
+            }
+        }
+    }
+
+    /**
+     * 是否可能已测试（快速判断，不加锁；返回true时以add的结果为准）
+     */
+    public boolean mightContain(long key) {
+        ensureLoaded();
+        long[] bits = bloom;
+        if (bits != null && !bloomContains(bits, key)) {
+            return false;
+        }
+        synchronized (this) {
+            return set.contains(key);
+        }
+    }
+
+    /**
+     * 记录为已测试
+     *
+     * @return true表示首次添加，false表示已存在
+     */
+    public synchronized boolean add(long key) {
+        ensureLoaded();
+        if (!set.add(key)) {
+            return false;
+        }
+        dirty = true;
+
+        long[] bits = bloom;
+        if (useBloom) {
+            if (bits == null || (long) set.size() * BLOOM_BITS_PER_ENTRY > bits.length * 64L) {
+                rebuildBloom();
+            } else {
+                bloomAdd(bits, key);
+            }
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return set.size();
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        set.clear();
+        bloom = null;
+        dirty = true;
+    }
+
+    /**
+     * 自上次保存后是否有变化
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 序列化（并清除变化标记）
+     */
+    public synchronized byte[] toBytes() {
+        ensureLoaded();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + set.size() * 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(set.size());
+            IOException[] error = new IOException[1];
+            set.forEach(value -> {
+                try {
+                    out.writeLong(value);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // 内存流不会出现IO异常
+        }
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            byte[] data = loader != null ? loader.get() : null;
+            set = read(data);
+            if (useBloom) {
+                rebuildBloom();
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * 反序列化，数据无效时返回空集合
+     */
+    private static LongHashSet read(byte[] data) {
+        if (data == null || data.length < 8) {
+            return new LongHashSet(0);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                return new LongHashSet(0);
+            }
+            int count = in.readInt();
+            if (count < 0 || count > (data.length - 8) / 8) {
+                return new LongHashSet(0);
+            }
+            LongHashSet set = new LongHashSet(count);
+            for (int i = 0; i < count; i++) {
+                set.add(in.readLong());
+            }
+            return set;
+        } catch (IOException e) {
+            return new LongHashSet(0);
+        }
+    }
+
+    private void rebuildBloom() {
+        // 按当前元素数的2倍预留，位数取2的幂
+        long wanted = Math.max(1024, (long) set.size() * 2 * BLOOM_BITS_PER_ENTRY);
+        int words = (int) Math.min(Long.highestOneBit(wanted * 2 - 1) / 64, 1 << 24);
+        long[] bits = new long[words];
+        set.forEach(value -> bloomAdd(bits, value));
+        bloom = bits;
+    }
+
+    private static void bloomAdd(long[] bits, long key) {
+        long mask = bits.length * 64L - 1;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        for (int i = 0; i < 4; i++) {
+            long bit = (h1 + (long) i * h2) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomContains(long[] bits, long key) {
+        long mask = bits.length * 64L - 1;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        for (int i = 0; i < 4; i++) {
+            long bit = (h1 + (long) i * h2) & mask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
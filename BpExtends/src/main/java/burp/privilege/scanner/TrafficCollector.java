@@ -0,0 +1,120 @@
+package burp.privilege.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 多来源流量合并
+ * 把Proxy历史、站点地图等来源的条目按规范化端点去重，同一端点只保留排名最高的一条，
+ * 排名相同时先加入的优先（按来源顺序依次加入时结果是确定的）
+ *
+ * 去重键是规范化端点的64位哈希，不保存URL字符串；线程安全
+ *
+ * @param <T> 条目类型
+ */
+public class TrafficCollector<T> {
+
+    private final Map<Long, Candidate<T>> entries = new LinkedHashMap<>();
+    private int duplicates = 0;
+
+    /**
+     * 加入一个条目
+     *
+     * @param endpointKey 规范化端点哈希（见{@link #endpointKey}）
+     * @param entry       条目
+     * @param rank        条目排名（见{@link #rank}），越大越优先
+     */
+    public synchronized void add(long endpointKey, T entry, int rank) {
+        Candidate<T> existing = entries.get(endpointKey);
+        if (existing == null) {
+            entries.put(endpointKey, new Candidate<>(entry, rank));
+            return;
+        }
+
+        duplicates++;
+        if (rank > existing.rank) {
+            entries.put(endpointKey, new Candidate<>(entry, rank));
+        }
+    }
+
+    /**
+     * 条目排名：通过过滤规则 > 携带认证信息 > 带有响应
+     */
+    public static int rank(boolean passesFilter, boolean hasAuth, boolean hasResponse) {
+        return (passesFilter ? 4 : 0) | (hasAuth ? 2 : 0) | (hasResponse ? 1 : 0);
+    }
+
+    /**
+     * 合并后的条目（按首次加入的顺序）
+     */
+    public synchronized List<T> entries() {
+        List<T> list = new ArrayList<>(entries.size());
+        for (Candidate<T> candidate : entries.values()) {
+            list.add(candidate.entry);
+        }
+        return list;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** 被合并掉的重复条目数 */
+    public synchronized int getDuplicateCount() {
+        return duplicates;
+    }
+
+    /**
+     * 规范化端点哈希
+     * 方法大写、主机小写、省略默认端口、查询参数排序后计算64位FNV-1a哈希
+     *
+     * @param path 路径（含查询参数）
+     */
+    public static long endpointKey(String method, boolean secure, String host, int port, String path) {
+        StringBuilder sb = new StringBuilder(path.length() + host.length() + 16);
+        sb.append(method.toUpperCase(Locale.ROOT)).append(' ')
+                .append(secure ? "https://" : "http://")
+                .append(host.toLowerCase(Locale.ROOT));
+        if (port != (secure ? 443 : 80)) {
+            sb.append(':').append(port);
+        }
+
+        int question = path.indexOf('?');
+        if (question < 0) {
+            sb.append(path);
+        } else {
+            sb.append(path, 0, question).append('?');
+            String[] params = path.substring(question + 1).split("&");
+            Arrays.sort(params);
+            sb.append(String.join("&", params));
+        }
+
+        return fnv1a64(sb);
+    }
+
+    private static long fnv1a64(CharSequence s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static class Candidate<T> {
+        private final T entry;
+        private final int rank;
+
+        private Candidate(T entry, int rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+}
@@ -1,63 +1,100 @@
 package burp.privilege.ui;
 
 import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.persistence.PersistedObject;
 import burp.privilege.model.ScanConfig;
 import burp.privilege.scanner.ScanEngine;
+import burp.privilege.scanner.ScanRuntime;
 import burp.privilege.ui.panel.ConfigPanel;
-import burp.privilege.ui.panel.ControlPanel;
 import burp.privilege.ui.panel.ResultPanel;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * 主Tab界面
- * 插件在Burp Suite中显示的主界面
+ * 插件在Burp Suite中显示的主界面：每个扫描目标一个标签页，各目标同时扫描时共用一个调度器，
+ * 按各自的调度权重分配线程，并受全局线程数和单主机并发数限制
  */
 public class MainTab extends JPanel {
 
-    private final MontoyaApi api;
-    private final ScanConfig config;
-    private final ScanEngine scanEngine;
+    /** 其他扫描目标的键列表在项目数据中的键（默认目标直接使用项目数据） */
+    private static final String TARGETS_KEY = "scanTargets";
+    /** 全局线程数和单主机并发数在项目数据中的键 */
+    private static final String GLOBAL_THREADS_KEY = "globalThreads";
+    private static final String HOST_LIMIT_KEY = "hostConcurrency";
 
-    private ConfigPanel configPanel;
-    private ResultPanel resultPanel;
-    private ControlPanel controlPanel;
+    private final MontoyaApi api;
+    private final PersistedObject extensionData;
+    /** 所有扫描目标共用的运行环境 */
+    private final ScanRuntime runtime = new ScanRuntime();
+    private final List<TargetTab> targets = new ArrayList<>();
 
     private JTabbedPane tabbedPane;
+    private JSpinner globalThreadSpinner;
+    private JSpinner hostLimitSpinner;
 
     public MainTab(MontoyaApi api) {
         this.api = api;
-        this.config = new ScanConfig();
-        this.scanEngine = new ScanEngine(api, config);
+        this.extensionData = api.persistence().extensionData();
+
+        Integer threads = extensionData.getInteger(GLOBAL_THREADS_KEY);
+        Integer hostLimit = extensionData.getInteger(HOST_LIMIT_KEY);
+        runtime.setThreads(threads != null ? threads : ScanRuntime.DEFAULT_THREADS);
+        runtime.setHostLimit(hostLimit != null ? hostLimit : 0);
 
         initUI();
+        loadTargets();
     }
 
     private void initUI() {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        // 创建控制面板
-        resultPanel = new ResultPanel(api);
-        controlPanel = new ControlPanel(scanEngine, resultPanel);
+        // 扫描目标管理和全局并发限制
+        JPanel targetBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        targetBar.setBorder(BorderFactory.createTitledBorder("扫描目标"));
 
-        // 创建配置面板
-        configPanel = new ConfigPanel(config);
-        controlPanel.setConfigPanel(configPanel);
+        JButton addButton = new JButton("新建目标");
+        addButton.setToolTipText("新建一个扫描目标，使用独立的配置、凭证和结果，可以与其他目标同时扫描");
+        JButton renameButton = new JButton("重命名");
+        JButton removeButton = new JButton("删除目标");
 
-        // 创建Tab面板
-        tabbedPane = new JTabbedPane();
+        globalThreadSpinner = new JSpinner(new SpinnerNumberModel(runtime.getThreads(), 1, 200, 1));
+        globalThreadSpinner.setToolTipText("所有扫描目标合计同时检测的请求数");
+        hostLimitSpinner = new JSpinner(new SpinnerNumberModel(runtime.getHostLimit(), 0, 100, 1));
+        hostLimitSpinner.setToolTipText("所有扫描目标合计，每个主机同时检测的请求数，0表示不限");
+
+        targetBar.add(addButton);
+        targetBar.add(renameButton);
+        targetBar.add(removeButton);
+        targetBar.add(new JSeparator(SwingConstants.VERTICAL));
+        targetBar.add(new JLabel("全局线程数:"));
+        targetBar.add(globalThreadSpinner);
+        targetBar.add(new JLabel("单主机并发(0=不限):"));
+        targetBar.add(hostLimitSpinner);
 
-        JPanel configWrapper = new JPanel(new BorderLayout());
-        configWrapper.add(configPanel, BorderLayout.NORTH);
-        configWrapper.add(new JPanel(), BorderLayout.CENTER);  // 占位
+        addButton.addActionListener(e -> addTarget());
+        renameButton.addActionListener(e -> renameTarget());
+        removeButton.addActionListener(e -> removeTarget());
+        // 运行中修改立即生效
+        globalThreadSpinner.addChangeListener(e -> {
+            int value = (Integer) globalThreadSpinner.getValue();
+            runtime.setThreads(value);
+            extensionData.setInteger(GLOBAL_THREADS_KEY, value);
+        });
+        hostLimitSpinner.addChangeListener(e -> {
+            int value = (Integer) hostLimitSpinner.getValue();
+            runtime.setHostLimit(value);
+            extensionData.setInteger(HOST_LIMIT_KEY, value);
+        });
 
-        tabbedPane.addTab("配置", configWrapper);
-        tabbedPane.addTab("结果", resultPanel);
+        tabbedPane = new JTabbedPane();
 
-        // 添加组件
-        add(controlPanel, BorderLayout.NORTH);
+        add(targetBar, BorderLayout.NORTH);
         add(tabbedPane, BorderLayout.CENTER);
 
         // 应用Burp主题
@@ -65,37 +102,155 @@ public class MainTab extends JPanel {
     }
 
     /**
-     * 获取配置面板
+     * 加载默认目标和项目文件中保存的其他扫描目标
+     */
+    private void loadTargets() {
+        addTargetTab(new ScanConfig(), extensionData, null, "默认目标");
+
+        String saved = extensionData.getString(TARGETS_KEY);
+        if (saved == null || saved.isEmpty()) {
+            return;
+        }
+        for (String key : saved.split(",")) {
+            PersistedObject data = extensionData.getChildObject(key);
+            if (data != null) {
+                addTargetTab(new ScanConfig(), data, key, key);
+            }
+        }
+    }
+
+    private TargetTab addTargetTab(ScanConfig config, PersistedObject data, String dataKey, String name) {
+        ScanEngine engine = new ScanEngine(api, config, runtime, data, name);
+        TargetTab target = new TargetTab(api, config, engine, dataKey);
+        targets.add(target);
+        tabbedPane.addTab(engine.getName(), target);
+        api.userInterface().applyThemeToComponent(target);
+        return target;
+    }
+
+    /**
+     * 新建扫描目标
+     */
+    private void addTarget() {
+        String name = JOptionPane.showInputDialog(this, "扫描目标名称:", "目标" + (targets.size() + 1));
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+
+        String key = "target-" + UUID.randomUUID();
+        extensionData.setChildObject(key, PersistedObject.persistedObject());
+        TargetTab target = addTargetTab(new ScanConfig(), extensionData.getChildObject(key), key, name.trim());
+        target.getScanEngine().setName(name.trim());
+        saveTargets();
+        tabbedPane.setSelectedComponent(target);
+    }
+
+    /**
+     * 重命名当前扫描目标
+     */
+    private void renameTarget() {
+        TargetTab target = getSelectedTarget();
+        String name = (String) JOptionPane.showInputDialog(this, "扫描目标名称:", "重命名",
+                JOptionPane.PLAIN_MESSAGE, null, null, target.getScanEngine().getName());
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+        target.getScanEngine().setName(name.trim());
+        tabbedPane.setTitleAt(tabbedPane.getSelectedIndex(), name.trim());
+    }
+
+    /**
+     * 删除当前扫描目标（停止其扫描，删除其已测试记录等项目数据；默认目标不能删除）
+     */
+    private void removeTarget() {
+        TargetTab target = getSelectedTarget();
+        if (target.getDataKey() == null) {
+            JOptionPane.showMessageDialog(this, "默认目标不能删除", "删除目标", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        int choice = JOptionPane.showConfirmDialog(this,
+                "删除扫描目标 \"" + target.getScanEngine().getName() + "\" 及其扫描结果和已测试记录？",
+                "删除目标", JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        target.dispose();
+        target.getScanEngine().shutdown();
+        target.getScanEngine().deleteJournal();
+        targets.remove(target);
+        tabbedPane.remove(target);
+        extensionData.deleteChildObject(target.getDataKey());
+        saveTargets();
+    }
+
+    private void saveTargets() {
+        List<String> keys = new ArrayList<>();
+        for (TargetTab target : targets) {
+            if (target.getDataKey() != null) {
+                keys.add(target.getDataKey());
+            }
+        }
+        extensionData.setString(TARGETS_KEY, String.join(",", keys));
+    }
+
+    /**
+     * 当前选中的扫描目标
+     */
+    public TargetTab getSelectedTarget() {
+        Component selected = tabbedPane.getSelectedComponent();
+        return selected instanceof TargetTab ? (TargetTab) selected : targets.get(0);
+    }
+
+    /**
+     * 所有扫描目标
+     */
+    public List<TargetTab> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * 关闭所有扫描目标并释放共用的线程（插件卸载时调用）
+     */
+    public void shutdown() {
+        for (TargetTab target : targets) {
+            target.getScanEngine().shutdown();
+        }
+        runtime.close();
+    }
+
+    /**
+     * 获取当前扫描目标的配置面板
      */
     public ConfigPanel getConfigPanel() {
-        return configPanel;
+        return getSelectedTarget().getConfigPanel();
     }
 
     /**
-     * 获取结果面板
+     * 获取当前扫描目标的结果面板
      */
     public ResultPanel getResultPanel() {
-        return resultPanel;
+        return getSelectedTarget().getResultPanel();
     }
 
     /**
-     * 获取扫描引擎
+     * 获取当前扫描目标的扫描引擎
      */
     public ScanEngine getScanEngine() {
-        return scanEngine;
+        return getSelectedTarget().getScanEngine();
     }
 
     /**
-     * 获取扫描配置
+     * 获取当前扫描目标的配置
      */
     public ScanConfig getConfig() {
-        return configPanel.getConfig();
+        return getConfigPanel().getConfig();
     }
 
     /**
-     * 设置扫描配置
+     * 设置当前扫描目标的配置
      */
     public void setConfig(ScanConfig config) {
-        configPanel.setConfig(config);
+        getConfigPanel().setConfig(config);
     }
 }
@@ -0,0 +1,89 @@
+package burp.privilege.ui;
+
+import burp.api.montoya.MontoyaApi;
+import burp.privilege.model.ScanConfig;
+import burp.privilege.scanner.ScanEngine;
+import burp.privilege.ui.panel.ConfigPanel;
+import burp.privilege.ui.panel.ControlPanel;
+import burp.privilege.ui.panel.ResultPanel;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * 一个扫描目标的界面
+ * 包含该目标的扫描控制、配置和结果，每个扫描目标有独立的配置、凭证和结果
+ */
+public class TargetTab extends JPanel {
+
+    private final MontoyaApi api;
+    private final ScanEngine scanEngine;
+    /** 在项目数据中的键，默认目标为null */
+    private final String dataKey;
+
+    private ConfigPanel configPanel;
+    private ResultPanel resultPanel;
+    private ControlPanel controlPanel;
+
+    /**
+     * @param dataKey 扫描目标数据在项目数据中的键，默认目标为null
+     */
+    public TargetTab(MontoyaApi api, ScanConfig config, ScanEngine scanEngine, String dataKey) {
+        this.api = api;
+        this.scanEngine = scanEngine;
+        this.dataKey = dataKey;
+
+        initUI(config);
+    }
+
+    private void initUI(ScanConfig config) {
+        setLayout(new BorderLayout(10, 10));
+
+        // 创建控制面板
+        resultPanel = new ResultPanel(api);
+        resultPanel.setResponseLookup(scanEngine::getCachedResponse);
+        controlPanel = new ControlPanel(scanEngine, resultPanel);
+
+        // 创建配置面板
+        configPanel = new ConfigPanel(config);
+        controlPanel.setConfigPanel(configPanel);
+
+        // 创建Tab面板
+        JTabbedPane tabbedPane = new JTabbedPane();
+
+        JPanel configWrapper = new JPanel(new BorderLayout());
+        configWrapper.add(configPanel, BorderLayout.NORTH);
+        configWrapper.add(new JPanel(), BorderLayout.CENTER);  // 占位
+
+        tabbedPane.addTab("配置", configWrapper);
+        tabbedPane.addTab("结果", resultPanel);
+
+        // 添加组件
+        add(controlPanel, BorderLayout.NORTH);
+        add(tabbedPane, BorderLayout.CENTER);
+    }
+
+    public ConfigPanel getConfigPanel() {
+        return configPanel;
+    }
+
+    public ResultPanel getResultPanel() {
+        return resultPanel;
+    }
+
+    public ScanEngine getScanEngine() {
+        return scanEngine;
+    }
+
+    /** 在项目数据中的键，默认目标为null */
+    public String getDataKey() {
+        return dataKey;
+    }
+
+    /**
+     * 删除扫描目标前调用，断开界面与扫描引擎的连接
+     */
+    public void dispose() {
+        controlPanel.dispose();
+    }
+}
@@ -2,11 +2,15 @@ package burp.privilege.ui.panel;
 
 import burp.privilege.model.AuthCredential;
 import burp.privilege.model.ScanConfig;
+import burp.privilege.scanner.PathMatcher;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * 配置面板
@@ -21,6 +25,10 @@ public class ConfigPanel extends JPanel {
     private DefaultListModel<String> domainListModel;
     private JList<String> domainList;
 
+    private JTextArea pathIncludeArea;
+    private JTextArea pathExcludeArea;
+    private String reportedPatternErrors = "";
+
     private JTextArea originalCookieDisplay;  // 原始Cookie显示区域（只读）
     private JTextField testCookieField;
     private DefaultListModel<String> testCredentialListModel;
@@ -30,8 +38,20 @@ public class ConfigPanel extends JPanel {
     private JLabel similarityLabel;
     private JSpinner threadSpinner;
     private JSpinner timeoutSpinner;
+    private JSpinner templateSampleSpinner;
+    private JCheckBox expandOnFindingCheckBox;
+    private JSpinner scanBudgetMinutesSpinner;
+    private JSpinner scanBudgetRequestsSpinner;
+    private JCheckBox useResponseCacheCheckBox;
+    private JCheckBox checkpointCheckBox;
+    private JSpinner responseCacheMbSpinner;
+    private JSpinner responseCacheTtlSpinner;
+    private JTextField hostCacheTtlField;
 
     private JCheckBox excludeStaticCheckBox;
+    private JCheckBox skipUnauthenticatedCheckBox;
+    private JCheckBox includeSiteMapCheckBox;
+    private JCheckBox useScopeOnlyCheckBox;
     private JCheckBox testUnauthorizedCheckBox;
 
     public ConfigPanel(ScanConfig config) {
@@ -52,6 +72,10 @@ public class ConfigPanel extends JPanel {
         mainPanel.add(createTargetConfigPanel());
         mainPanel.add(Box.createVerticalStrut(10));
 
+        // 路径过滤
+        mainPanel.add(createPathFilterPanel());
+        mainPanel.add(Box.createVerticalStrut(10));
+
         // 2. 认证配置
         mainPanel.add(createAuthConfigPanel());
         mainPanel.add(Box.createVerticalStrut(10));
@@ -100,6 +124,29 @@ public class ConfigPanel extends JPanel {
         return panel;
     }
 
+    /**
+     * 创建路径过滤面板
+     */
+    private JPanel createPathFilterPanel() {
+        JPanel panel = new JPanel(new GridLayout(1, 2, 10, 0));
+        panel.setBorder(BorderFactory.createTitledBorder("路径过滤（正则，每行一个，匹配路径和查询参数）"));
+
+        pathIncludeArea = new JTextArea(3, 30);
+        pathExcludeArea = new JTextArea(3, 30);
+
+        JPanel includePanel = new JPanel(new BorderLayout(5, 5));
+        includePanel.add(new JLabel("只扫描匹配的路径（留空表示全部）:"), BorderLayout.NORTH);
+        includePanel.add(new JScrollPane(pathIncludeArea), BorderLayout.CENTER);
+
+        JPanel excludePanel = new JPanel(new BorderLayout(5, 5));
+        excludePanel.add(new JLabel("排除匹配的路径（如 /logout.*）:"), BorderLayout.NORTH);
+        excludePanel.add(new JScrollPane(pathExcludeArea), BorderLayout.CENTER);
+
+        panel.add(includePanel);
+        panel.add(excludePanel);
+        return panel;
+    }
+
     /**
      * 创建认证配置面板
      */
@@ -195,13 +242,78 @@ public class ConfigPanel extends JPanel {
         timeoutSpinner = new JSpinner(new SpinnerNumberModel(config.getTimeout(), 1, 300, 1));
         optionsPanel.add(timeoutSpinner);
 
+        optionsPanel.add(Box.createHorizontalStrut(20));
+        optionsPanel.add(new JLabel("同模板抽样数:"));
+        templateSampleSpinner = new JSpinner(new SpinnerNumberModel(config.getTemplateSampleSize(), 0, 1000, 1));
+        templateSampleSpinner.setToolTipText("/api/orders/1001、/api/orders/1002 等同一模板的请求只扫描指定数量，0表示全部扫描");
+        optionsPanel.add(templateSampleSpinner);
+
+        expandOnFindingCheckBox = new JCheckBox("发现漏洞时扫描同模板其余请求", config.isExpandOnFinding());
+        optionsPanel.add(expandOnFindingCheckBox);
+
         panel.add(optionsPanel);
 
+        // 扫描预算
+        JPanel budgetPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        budgetPanel.add(new JLabel("扫描预算 时间(分钟):"));
+        scanBudgetMinutesSpinner = new JSpinner(new SpinnerNumberModel(config.getScanBudgetMinutes(), 0, 10080, 10));
+        budgetPanel.add(scanBudgetMinutesSpinner);
+
+        budgetPanel.add(Box.createHorizontalStrut(20));
+        budgetPanel.add(new JLabel("请求数:"));
+        scanBudgetRequestsSpinner = new JSpinner(new SpinnerNumberModel(config.getScanBudgetRequests(), 0, 10000000, 100));
+        budgetPanel.add(scanBudgetRequestsSpinner);
+
+        JLabel budgetHint = new JLabel("（0表示不限；高价值端点优先检测，用完后剩余请求留到下次扫描）");
+        budgetHint.setForeground(Color.GRAY);
+        budgetPanel.add(budgetHint);
+
+        budgetPanel.add(Box.createHorizontalStrut(20));
+        checkpointCheckBox = new JCheckBox("保存扫描检查点（中断后可恢复）", config.isCheckpointEnabled());
+        checkpointCheckBox.setToolTipText("批量扫描时在后台把已完成的请求、基准响应和结果追加写入用户目录下的日志文件");
+        budgetPanel.add(checkpointCheckBox);
+
+        panel.add(budgetPanel);
+
+        // 响应缓存
+        JPanel cachePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        useResponseCacheCheckBox = new JCheckBox("扫描时复用缓存的响应", config.isUseResponseCache());
+        useResponseCacheCheckBox.setToolTipText("GET、HEAD、OPTIONS请求在有效期内直接使用缓存；结果详情始终从缓存查看完整响应");
+        cachePanel.add(useResponseCacheCheckBox);
+
+        cachePanel.add(Box.createHorizontalStrut(20));
+        cachePanel.add(new JLabel("缓存上限(MB):"));
+        responseCacheMbSpinner = new JSpinner(new SpinnerNumberModel(config.getResponseCacheMb(), 1, 4096, 16));
+        cachePanel.add(responseCacheMbSpinner);
+
+        cachePanel.add(Box.createHorizontalStrut(20));
+        cachePanel.add(new JLabel("有效期(秒):"));
+        responseCacheTtlSpinner = new JSpinner(new SpinnerNumberModel(config.getResponseCacheTtlSeconds(), 0, 86400, 60));
+        cachePanel.add(responseCacheTtlSpinner);
+
+        cachePanel.add(Box.createHorizontalStrut(20));
+        cachePanel.add(new JLabel("按主机:"));
+        hostCacheTtlField = new JTextField(20);
+        hostCacheTtlField.setToolTipText("按主机设置有效期，如 api.example.com=30, cdn.example.com=3600，0表示不缓存");
+        cachePanel.add(hostCacheTtlField);
+
+        panel.add(cachePanel);
+
         // 过滤选项
         excludeStaticCheckBox = new JCheckBox("排除静态资源", config.isExcludeStaticResources());
         panel.add(Box.createVerticalStrut(5));
         panel.add(excludeStaticCheckBox);
 
+        skipUnauthenticatedCheckBox = new JCheckBox("跳过不带认证信息的请求（公开接口）", config.isSkipUnauthenticated());
+        skipUnauthenticatedCheckBox.setToolTipText("不带Cookie、Authorization等认证头的请求替换或移除凭证后不变，测试只会产生误报");
+        panel.add(skipUnauthenticatedCheckBox);
+
+        includeSiteMapCheckBox = new JCheckBox("同时扫描站点地图（Repeater、Intruder、爬虫等流量）", config.isIncludeSiteMap());
+        panel.add(includeSiteMapCheckBox);
+
+        useScopeOnlyCheckBox = new JCheckBox("仅扫描Burp范围（Target Scope）内的请求", config.isUseScopeOnly());
+        panel.add(useScopeOnlyCheckBox);
+
         return panel;
     }
 
@@ -218,7 +330,7 @@ public class ConfigPanel extends JPanel {
         int selectedIndex = domainList.getSelectedIndex();
         if (selectedIndex >= 0) {
             domainListModel.remove(selectedIndex);
-            config.getTargetDomains().remove(selectedIndex);
+            config.removeTargetDomain(selectedIndex);
         }
     }
 
@@ -240,10 +352,74 @@ public class ConfigPanel extends JPanel {
         int selectedIndex = testCredentialList.getSelectedIndex();
         if (selectedIndex >= 0) {
             testCredentialListModel.remove(selectedIndex);
-            config.getTestCredentials().remove(selectedIndex);
+            config.removeTestCredential(selectedIndex);
         }
     }
 
+    /**
+     * 文本框内容 -> 规则列表（忽略空行）
+     */
+    private static List<String> readLines(JTextArea area) {
+        List<String> lines = new ArrayList<>();
+        for (String line : area.getText().split("\\R")) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 检查路径正则，有无效规则时提示（同样的错误只提示一次）
+     */
+    private void reportInvalidPatterns(List<String> include, List<String> exclude) {
+        List<String> errors = new ArrayList<>(PathMatcher.compile(include).getErrors());
+        errors.addAll(PathMatcher.compile(exclude).getErrors());
+
+        String message = String.join("\n", errors);
+        if (message.equals(reportedPatternErrors)) {
+            return;
+        }
+        reportedPatternErrors = message;
+
+        if (!errors.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "以下路径正则无效，扫描时将被忽略：\n" + message,
+                    "路径过滤", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * 解析按主机的缓存有效期，格式 "主机=秒, 主机=秒"，无效的项忽略
+     */
+    private static Map<String, Integer> parseHostTtls(String text) {
+        Map<String, Integer> ttls = new LinkedHashMap<>();
+        for (String item : text.split("[,;\\s]+")) {
+            int eq = item.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            try {
+                ttls.put(item.substring(0, eq).trim().toLowerCase(Locale.ROOT),
+                        Math.max(0, Integer.parseInt(item.substring(eq + 1).trim())));
+            } catch (NumberFormatException e) {
+                // 忽略无效的项
+            }
+        }
+        return ttls;
+    }
+
+    private static String formatHostTtls(Map<String, Integer> ttls) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : ttls.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
     private void updateSimilarityLabel() {
         int value = similaritySlider.getValue();
         similarityLabel.setText("相似度阈值: " + value + "%");
@@ -253,16 +429,45 @@ public class ConfigPanel extends JPanel {
      * 保存配置
      */
     public void saveConfig() {
-        // 相似度
-        config.setSimilarityThreshold(similaritySlider.getValue());
-
-        // 并发和超时
-        config.setThreadCount((Integer) threadSpinner.getValue());
-        config.setTimeout((Integer) timeoutSpinner.getValue());
-
-        // 过滤选项
-        config.setExcludeStaticResources(excludeStaticCheckBox.isSelected());
-        config.setTestUnauthorizedAccess(testUnauthorizedCheckBox.isSelected());
+        List<String> include = readLines(pathIncludeArea);
+        List<String> exclude = readLines(pathExcludeArea);
+
+        // 一次提交全部修改，正在进行的扫描从下一个请求起使用新配置
+        config.edit(() -> {
+            // 路径过滤（设置新列表，过滤器据此重新编译）
+            if (!include.equals(config.getPathIncludePatterns())) {
+                config.setPathIncludePatterns(include);
+            }
+            if (!exclude.equals(config.getPathExcludePatterns())) {
+                config.setPathExcludePatterns(exclude);
+            }
+
+            // 相似度
+            config.setSimilarityThreshold(similaritySlider.getValue());
+
+            // 并发和超时
+            config.setThreadCount((Integer) threadSpinner.getValue());
+            config.setTimeout((Integer) timeoutSpinner.getValue());
+            config.setTemplateSampleSize((Integer) templateSampleSpinner.getValue());
+            config.setExpandOnFinding(expandOnFindingCheckBox.isSelected());
+            config.setScanBudgetMinutes((Integer) scanBudgetMinutesSpinner.getValue());
+            config.setScanBudgetRequests((Integer) scanBudgetRequestsSpinner.getValue());
+
+            // 响应缓存
+            config.setCheckpointEnabled(checkpointCheckBox.isSelected());
+            config.setUseResponseCache(useResponseCacheCheckBox.isSelected());
+            config.setResponseCacheMb((Integer) responseCacheMbSpinner.getValue());
+            config.setResponseCacheTtlSeconds((Integer) responseCacheTtlSpinner.getValue());
+            config.setHostCacheTtlSeconds(parseHostTtls(hostCacheTtlField.getText()));
+
+            // 过滤选项
+            config.setExcludeStaticResources(excludeStaticCheckBox.isSelected());
+            config.setSkipUnauthenticated(skipUnauthenticatedCheckBox.isSelected());
+            config.setIncludeSiteMap(includeSiteMapCheckBox.isSelected());
+            config.setUseScopeOnly(useScopeOnlyCheckBox.isSelected());
+            config.setTestUnauthorizedAccess(testUnauthorizedCheckBox.isSelected());
+        });
+        reportInvalidPatterns(include, exclude);
 
         // 原始Cookie不需要手动保存，会自动提取
     }
@@ -277,6 +482,10 @@ public class ConfigPanel extends JPanel {
             domainListModel.addElement(domain);
         }
 
+        // 路径过滤
+        pathIncludeArea.setText(String.join("\n", config.getPathIncludePatterns()));
+        pathExcludeArea.setText(String.join("\n", config.getPathExcludePatterns()));
+
         // 测试凭证
         testCredentialListModel.clear();
         for (AuthCredential credential : config.getTestCredentials()) {
@@ -291,9 +500,23 @@ public class ConfigPanel extends JPanel {
         // 并发和超时
         threadSpinner.setValue(config.getThreadCount());
         timeoutSpinner.setValue(config.getTimeout());
+        templateSampleSpinner.setValue(config.getTemplateSampleSize());
+        expandOnFindingCheckBox.setSelected(config.isExpandOnFinding());
+        scanBudgetMinutesSpinner.setValue(config.getScanBudgetMinutes());
+        scanBudgetRequestsSpinner.setValue(config.getScanBudgetRequests());
+
+        // 响应缓存
+        checkpointCheckBox.setSelected(config.isCheckpointEnabled());
+        useResponseCacheCheckBox.setSelected(config.isUseResponseCache());
+        responseCacheMbSpinner.setValue(config.getResponseCacheMb());
+        responseCacheTtlSpinner.setValue(config.getResponseCacheTtlSeconds());
+        hostCacheTtlField.setText(formatHostTtls(config.getHostCacheTtlSeconds()));
 
         // 过滤选项
         excludeStaticCheckBox.setSelected(config.isExcludeStaticResources());
+        skipUnauthenticatedCheckBox.setSelected(config.isSkipUnauthenticated());
+        includeSiteMapCheckBox.setSelected(config.isIncludeSiteMap());
+        useScopeOnlyCheckBox.setSelected(config.isUseScopeOnly());
         testUnauthorizedCheckBox.setSelected(config.isTestUnauthorizedAccess());
 
         // 显示原始Cookie（如果已提取）
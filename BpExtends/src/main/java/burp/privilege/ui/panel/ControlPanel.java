@@ -1,9 +1,14 @@
 package burp.privilege.ui.panel;
 
+import burp.privilege.model.ScanResult;
+import burp.privilege.scanner.ResultLog;
 import burp.privilege.scanner.ScanEngine;
+import burp.privilege.scanner.ScanPlan;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 控制面板
@@ -16,8 +21,26 @@ public class ControlPanel extends JPanel {
     private ConfigPanel configPanel;
 
     private JButton startButton;
+    private JButton rescanButton;
+    private JButton diffScanButton;
+    private JButton planButton;
+    private JButton resumeButton;
     private JButton pauseButton;
     private JButton stopButton;
+    private JLabel inFlightLabel;
+    private Timer inFlightTimer;
+    private JSpinner weightSpinner;
+    private JCheckBox liveCheckBox;
+    private JLabel liveStatusLabel;
+
+    /** 结果面板已显示到的日志和位置（只在事件线程访问） */
+    private ResultLog<ScanResult> shownLog;
+    private int shownCount;
+    /** 是否已安排把新结果刷新到结果面板（同一时刻只安排一次，新结果合并到同一批） */
+    private final AtomicBoolean resultDrainScheduled = new AtomicBoolean(false);
+    private Timer liveStatusTimer;
+    /** 扫描引擎进度监听器，删除扫描目标时移除 */
+    private ScanEngine.ScanProgressListener progressListener;
 
     public ControlPanel(ScanEngine scanEngine, ResultPanel resultPanel) {
         this.scanEngine = scanEngine;
@@ -32,24 +55,65 @@ public class ControlPanel extends JPanel {
         setBorder(BorderFactory.createTitledBorder("扫描控制"));
 
         startButton = new JButton("开始扫描");
+        rescanButton = new JButton("全量重扫");
+        rescanButton.setToolTipText("忽略上次扫描进度和已测试记录，重新扫描全部历史记录");
+        diffScanButton = new JButton("差异重扫");
+        diffScanButton.setToolTipText("重新获取全部端点的基准响应，只对变化的端点和上次发现漏洞的端点执行完整检测");
+        planButton = new JButton("扫描计划");
+        planButton.setToolTipText("预演一次扫描（不发送请求），查看各主机的请求数、预计耗时和成本最高的模板，确认后原样执行");
+        resumeButton = new JButton("恢复中断的扫描");
+        resumeButton.setToolTipText("从检查点继续上次停止或中断的批量扫描，只检测未完成的请求");
+        resumeButton.setEnabled(scanEngine.hasResumableScan());
         pauseButton = new JButton("暂停");
         stopButton = new JButton("停止");
 
         pauseButton.setEnabled(false);
         stopButton.setEnabled(false);
+        inFlightLabel = new JLabel();
+        weightSpinner = new JSpinner(new SpinnerNumberModel(scanEngine.getSchedulingWeight(), 1, 10, 1));
+        weightSpinner.setToolTipText("与其他扫描目标同时扫描时按权重分配线程（权重2得到的线程是权重1的两倍），扫描中修改立即生效");
+
+        liveCheckBox = new JCheckBox("实时扫描");
+        liveCheckBox.setToolTipText("监听Proxy新流量，通过过滤的请求立即检测");
+        liveStatusLabel = new JLabel();
 
         add(startButton);
+        add(rescanButton);
+        add(diffScanButton);
+        add(planButton);
+        add(resumeButton);
         add(pauseButton);
         add(stopButton);
+        add(inFlightLabel);
+        add(new JLabel("调度权重:"));
+        add(weightSpinner);
+        add(new JSeparator(SwingConstants.VERTICAL));
+        add(liveCheckBox);
+        add(liveStatusLabel);
     }
 
     private void setupListeners() {
         startButton.addActionListener(e -> startScan());
+        rescanButton.addActionListener(e -> {
+            scanEngine.clearResults();
+            startScan();
+        });
+        diffScanButton.addActionListener(e -> startDifferentialScan());
+        planButton.addActionListener(e -> planScan());
+        resumeButton.addActionListener(e -> resumeInterruptedScan());
         pauseButton.addActionListener(e -> pauseScan());
         stopButton.addActionListener(e -> stopScan());
+        liveCheckBox.addActionListener(e -> toggleLiveScan());
+        weightSpinner.addChangeListener(e -> scanEngine.setSchedulingWeight((Integer) weightSpinner.getValue()));
+
+        // 实时扫描时每秒刷新队列状态
+        liveStatusTimer = new Timer(1000, e -> liveStatusLabel.setText(scanEngine.getLiveQueueStatus()));
+
+        // 批量扫描时刷新正在等待响应的请求数，停止后直到全部返回
+        inFlightTimer = new Timer(250, e -> updateInFlight());
 
         // 监听扫描引擎进度
-        scanEngine.addProgressListener(new ScanEngine.ScanProgressListener() {
+        progressListener = new ScanEngine.ScanProgressListener() {
             @Override
             public void onProgress(int completed, int total) {
                 SwingUtilities.invokeLater(() -> {
@@ -58,10 +122,11 @@ public class ControlPanel extends JPanel {
             }
 
             @Override
-            public void onResultFound(burp.privilege.model.ScanResult result) {
-                SwingUtilities.invokeLater(() -> {
-                    resultPanel.addResult(result);
-                });
+            public void onResultFound(ScanResult result) {
+                // 结果很多时不为每个结果排一次界面任务，按游标成批读取
+                if (resultDrainScheduled.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(ControlPanel.this::drainResults);
+                }
             }
 
             @Override
@@ -71,13 +136,32 @@ public class ControlPanel extends JPanel {
                     updateButtonStates(false);
                 });
             }
-        });
+
+            @Override
+            public void onScanSummary(String summary) {
+                SwingUtilities.invokeLater(() -> resultPanel.setScanSummary(summary));
+            }
+        };
+        scanEngine.addProgressListener(progressListener);
+    }
+
+    /**
+     * 删除扫描目标时调用：不再接收扫描引擎的进度（关闭引擎时的结束通知不再刷新已删除的面板），停止刷新定时器
+     */
+    public void dispose() {
+        scanEngine.removeProgressListener(progressListener);
+        inFlightTimer.stop();
+        liveStatusTimer.stop();
     }
 
     private void startScan() {
         if (!scanEngine.isRunning()) {
-            // 开始新扫描
-            scanEngine.startScan();
+            // 开始新扫描（停止的扫描还在结束时不会开始）
+            applyConfig();
+            if (!scanEngine.startScan()) {
+                showNotStarted();
+                return;
+            }
             resultPanel.setScanning();
             updateButtonStates(true);
             // 扫描开始后更新原始Cookie显示
@@ -92,6 +176,105 @@ public class ControlPanel extends JPanel {
         }
     }
 
+    private void startDifferentialScan() {
+        if (scanEngine.isRunning()) {
+            return;
+        }
+        applyConfig();
+        if (!scanEngine.startDifferentialScan()) {
+            showNotStarted();
+            return;
+        }
+        resultPanel.setScanning();
+        updateButtonStates(true);
+    }
+
+    /**
+     * 扫描没有开始（上一次停止的扫描还在结束）时提示，界面保持未运行状态
+     */
+    private void showNotStarted() {
+        JOptionPane.showMessageDialog(this, "上一次扫描正在结束，请稍后再试", "扫描", JOptionPane.INFORMATION_MESSAGE);
+        updateButtonStates(false);
+    }
+
+    /**
+     * 在后台生成扫描计划，完成后显示计划并询问是否执行
+     */
+    private void planScan() {
+        if (scanEngine.isRunning()) {
+            return;
+        }
+        if (!scanEngine.canStart()) {
+            showNotStarted();
+            return;
+        }
+        applyConfig();
+        planButton.setEnabled(false);
+        planButton.setText("规划中...");
+
+        new SwingWorker<ScanPlan, Void>() {
+            @Override
+            protected ScanPlan doInBackground() {
+                return scanEngine.planScan();
+            }
+
+            @Override
+            protected void done() {
+                planButton.setText("扫描计划");
+                updateButtonStates(scanEngine.isRunning());
+                ScanPlan plan;
+                try {
+                    plan = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(ControlPanel.this, "生成扫描计划失败: " + cause.getMessage(),
+                            "扫描计划", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                showPlan(plan);
+            }
+        }.execute();
+    }
+
+    private void showPlan(ScanPlan plan) {
+        JTextArea textArea = new JTextArea(plan.getSummary(), 20, 100);
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        textArea.setCaretPosition(0);
+
+        Object[] options = {"执行此计划", "分发到工作进程", "关闭"};
+        int choice = JOptionPane.showOptionDialog(this, new JScrollPane(textArea), "扫描计划",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[2]);
+        if (choice < 0 || choice > 1 || scanEngine.isRunning() || plan.getEndpointCount() == 0) {
+            return;
+        }
+
+        // 分发时工作进程的启动命令输出到扩展日志
+        boolean started = choice == 1 ? scanEngine.executePlanDistributed(plan) : scanEngine.executePlan(plan);
+        if (!started) {
+            updateButtonStates(scanEngine.isRunning());
+            return;
+        }
+        resultPanel.setScanning();
+        updateButtonStates(true);
+        if (configPanel != null) {
+            SwingUtilities.invokeLater(() -> configPanel.updateOriginalCookieDisplay());
+        }
+    }
+
+    private void resumeInterruptedScan() {
+        if (scanEngine.isRunning()) {
+            return;
+        }
+        applyConfig();
+        if (scanEngine.resumeFromJournal()) {
+            resultPanel.setScanning();
+            updateButtonStates(true);
+        } else {
+            updateButtonStates(false);
+        }
+    }
+
     private void pauseScan() {
         scanEngine.pauseScan();
         startButton.setText("继续");
@@ -105,10 +288,63 @@ public class ControlPanel extends JPanel {
         startButton.setText("开始扫描");
     }
 
+    private void toggleLiveScan() {
+        if (liveCheckBox.isSelected()) {
+            applyConfig();
+            scanEngine.startLiveScan();
+            resultPanel.setLiveScanning();
+            liveStatusTimer.start();
+        } else {
+            scanEngine.stopLiveScan();
+            liveStatusTimer.stop();
+            liveStatusLabel.setText("");
+            resultPanel.setScanComplete();
+        }
+    }
+
+    /**
+     * 把结果日志中尚未显示的结果成批加入结果面板（事件线程）
+     */
+    private void drainResults() {
+        resultDrainScheduled.set(false);
+        ResultLog<ScanResult> log = scanEngine.getResultLog();
+        if (log != shownLog) {
+            // 扫描引擎清除了结果，新日志从头读取
+            shownLog = log;
+            shownCount = 0;
+        }
+        List<ScanResult> batch = log.since(shownCount);
+        if (!batch.isEmpty()) {
+            shownCount += batch.size();
+            resultPanel.addResults(batch);
+        }
+    }
+
+    private void updateInFlight() {
+        int inFlight = scanEngine.getInFlightCount();
+        if (scanEngine.isPaused()) {
+            inFlightLabel.setText("已暂停，等待响应 " + inFlight + " 个");
+        } else if (scanEngine.isRunning()) {
+            inFlightLabel.setText("发送中 " + inFlight + " 个请求 | " + scanEngine.getSchedulerStatus());
+        } else if (inFlight > 0) {
+            inFlightLabel.setText("正在结束，等待响应 " + inFlight + " 个");
+        } else {
+            inFlightLabel.setText("");
+            inFlightTimer.stop();
+        }
+    }
+
     private void updateButtonStates(boolean scanning) {
         startButton.setEnabled(!scanning || scanEngine.isPaused());
+        rescanButton.setEnabled(!scanning);
+        diffScanButton.setEnabled(!scanning);
+        planButton.setEnabled(!scanning);
+        resumeButton.setEnabled(!scanning && scanEngine.hasResumableScan());
         pauseButton.setEnabled(scanning && !scanEngine.isPaused());
         stopButton.setEnabled(scanning);
+        if (!inFlightTimer.isRunning()) {
+            inFlightTimer.start();
+        }
 
         if (!scanning) {
             startButton.setText("开始扫描");
@@ -117,6 +353,15 @@ public class ControlPanel extends JPanel {
         }
     }
 
+    /**
+     * 把配置面板上的修改写入配置
+     */
+    private void applyConfig() {
+        if (configPanel != null) {
+            configPanel.saveConfig();
+        }
+    }
+
     public void setConfigPanel(ConfigPanel configPanel) {
         this.configPanel = configPanel;
     }
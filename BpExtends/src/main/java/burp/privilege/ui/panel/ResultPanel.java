@@ -1,8 +1,10 @@
 package burp.privilege.ui.panel;
 
 import burp.api.montoya.MontoyaApi;
-import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
 import burp.privilege.model.ScanResult;
+import burp.privilege.scanner.MontoyaTransport;
 import burp.privilege.ui.table.ResultTableModel;
 
 import javax.swing.*;
@@ -10,6 +12,7 @@ import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * 结果面板
@@ -24,6 +27,9 @@ public class ResultPanel extends JPanel {
     private JLabel progressLabel;
     private JProgressBar progressBar;
 
+    /** 查找缓存的完整响应，没有时显示结果中保存的摘要 */
+    private Function<ScanRequest, ScanResponse> responseLookup = request -> null;
+
     public ResultPanel() {
         this.api = null;
         initUI();
@@ -38,6 +44,10 @@ public class ResultPanel extends JPanel {
         // 可以通过此方法设置API引用
     }
 
+    public void setResponseLookup(Function<ScanRequest, ScanResponse> responseLookup) {
+        this.responseLookup = responseLookup;
+    }
+
     private void initUI() {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -199,6 +209,13 @@ public class ResultPanel extends JPanel {
         progressLabel.setText("状态: 扫描完成");
     }
 
+    /**
+     * 显示扫描摘要（差异重扫跳过和重新检测的原因）
+     */
+    public void setScanSummary(String summary) {
+        progressLabel.setText("状态: 扫描完成 | " + summary);
+    }
+
     /**
      * 设置扫描中状态
      */
@@ -207,6 +224,14 @@ public class ResultPanel extends JPanel {
         progressLabel.setText("状态: 扫描中...");
     }
 
+    /**
+     * 设置实时扫描状态
+     */
+    public void setLiveScanning() {
+        progressBar.setVisible(true);
+        progressLabel.setText("状态: 实时扫描中，等待新流量...");
+    }
+
     /**
      * 查看详情
      */
@@ -250,12 +275,12 @@ public class ResultPanel extends JPanel {
         // 响应对比
         JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
 
-        JTextArea originalResponseArea = new JTextArea(result.getOriginalResponse());
+        JTextArea originalResponseArea = new JTextArea(responseText(result.getOriginalHttpRequest(), result.getOriginalResponse()));
         originalResponseArea.setEditable(false);
         JScrollPane originalScrollPane = new JScrollPane(originalResponseArea);
         originalScrollPane.setBorder(BorderFactory.createTitledBorder("原始响应"));
 
-        JTextArea testResponseArea = new JTextArea(result.getTestResponse());
+        JTextArea testResponseArea = new JTextArea(responseText(result.getTestHttpRequest(), result.getTestResponse()));
         testResponseArea.setEditable(false);
         JScrollPane testScrollPane = new JScrollPane(testResponseArea);
         testScrollPane.setBorder(BorderFactory.createTitledBorder("测试响应"));
@@ -276,6 +301,14 @@ public class ResultPanel extends JPanel {
         dialog.setVisible(true);
     }
 
+    /**
+     * 响应内容：优先使用缓存的完整响应，已被淘汰时使用结果中的摘要
+     */
+    private String responseText(ScanRequest request, String summary) {
+        ScanResponse response = request != null ? responseLookup.apply(request) : null;
+        return response != null ? response.bodyToString() : summary;
+    }
+
     /**
      * 导出结果
      */
@@ -317,7 +350,7 @@ public class ResultPanel extends JPanel {
                 options,
                 options[0]);
 
-        HttpRequest requestToSend = null;
+        ScanRequest requestToSend = null;
         if (choice == 0) {
             // 原始请求
             requestToSend = result.getOriginalHttpRequest();
@@ -328,7 +361,7 @@ public class ResultPanel extends JPanel {
 
         if (requestToSend != null) {
             try {
-                api.repeater().sendToRepeater(requestToSend);
+                api.repeater().sendToRepeater(MontoyaTransport.toHttpRequest(requestToSend));
                 api.logging().logToOutput("已发送请求到Repeater: " + result.getMethod() + " " + result.getUrl());
                 JOptionPane.showMessageDialog(this, "请求已发送到Repeater", "成功", JOptionPane.INFORMATION_MESSAGE);
             } catch (Exception e) {
@@ -64,4 +64,31 @@ public class HttpUtils {
         }
         return cookie.substring(0, 30) + "...";
     }
+
+    /**
+     * 从URL中提取主机名（不含端口），无法解析时返回null
+     */
+    public static String getHostFromUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+        String authority = url.substring(start, end);
+        int at = authority.lastIndexOf('@');
+        if (at >= 0) {
+            authority = authority.substring(at + 1);
+        }
+        if (authority.startsWith("[")) {
+            int close = authority.indexOf(']');
+            return close > 0 ? authority.substring(1, close) : null;
+        }
+        int colon = authority.indexOf(':');
+        String host = colon >= 0 ? authority.substring(0, colon) : authority;
+        return host.isEmpty() ? null : host;
+    }
 }
@@ -0,0 +1,137 @@
+package burp.privilege.headless;
+
+import burp.privilege.model.ScanConfig;
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.scanner.JdkHttpTransport;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 用本地模拟服务端跑通JdkHttpTransport和无界面扫描：
+ * /orders 对任何凭证返回相同内容（越权），/private 只对用户A返回内容
+ */
+class HeadlessScannerTest {
+
+    private static final String ORDERS = "{\"orders\":[{\"id\":1001,\"owner\":\"alice\",\"amount\":99.5,\"items\":[\"book\",\"pen\"]}]}";
+    private static final String PRIVATE = "{\"profile\":{\"name\":\"alice\",\"email\":\"alice@example.com\",\"phone\":\"13800000000\"}}";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private int port;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/orders", exchange -> respond(exchange, 200, ORDERS));
+        server.createContext("/private", exchange -> {
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            if ("sid=a".equals(cookie)) {
+                respond(exchange, 200, PRIVATE);
+            } else {
+                respond(exchange, 403, "{\"error\":\"forbidden\"}");
+            }
+        });
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("X-Method", exchange.getRequestMethod());
+            exchange.getResponseHeaders().add("X-Cookie", String.valueOf(exchange.getRequestHeaders().getFirst("Cookie")));
+            respond(exchange, 201, new String(body, StandardCharsets.UTF_8));
+        });
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    void transportRoundTrip() throws IOException {
+        try (JdkHttpTransport transport = new JdkHttpTransport(5, false)) {
+            ScanRequest request = new ScanRequest("POST", "127.0.0.1", port, false, "/echo?x=1",
+                    List.of(new ScanRequest.Header("Cookie", "sid=a"), new ScanRequest.Header("Content-Type", "text/plain")),
+                    "中文内容".getBytes(StandardCharsets.UTF_8));
+            ScanResponse response = transport.send(request);
+
+            assertEquals(201, response.statusCode());
+            assertEquals("POST", response.headerValue("X-Method"));
+            assertEquals("sid=a", response.headerValue("X-Cookie"));
+            assertEquals("中文内容", response.bodyToString());
+        }
+    }
+
+    @Test
+    void scanFindsOnlyTheSharedEndpoint() throws Exception {
+        Path har = dir.resolve("history.har");
+        Files.writeString(har, har(entry("/orders", ORDERS), entry("/private", PRIVATE)));
+        ScanConfig config = ScanConfigLoader.fromJson("{\"targetDomains\":[\"127.0.0.1\"],"
+                + "\"testCredentials\":[{\"name\":\"B\",\"cookie\":\"sid=b\"}],"
+                + "\"threadCount\":2,\"excludeStaticResources\":false}");
+        Path output = dir.resolve("results.jsonl");
+
+        HeadlessScanner scanner = new HeadlessScanner(config, 2, 1, null, false);
+        try (JsonlResultWriter writer = new JsonlResultWriter(output)) {
+            scanner.run(List.of(har), writer);
+        }
+
+        List<JsonObject> results = new ArrayList<>();
+        for (String line : Files.readAllLines(output)) {
+            results.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        assertFalse(results.isEmpty(), "没有发现结果");
+        for (JsonObject result : results) {
+            assertEquals("http://127.0.0.1:" + port + "/orders", result.get("url").getAsString());
+        }
+    }
+
+    private String entry(String path, String body) {
+        return "{\"request\":{\"method\":\"GET\",\"url\":\"http://127.0.0.1:" + port + path + "\",\"httpVersion\":\"HTTP/1.1\","
+                + "\"headers\":[{\"name\":\"Cookie\",\"value\":\"sid=a\"}]},"
+                + "\"response\":{\"status\":200,\"headers\":[{\"name\":\"Content-Type\",\"value\":\"application/json\"}],"
+                + "\"content\":{\"text\":\"" + Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8))
+                + "\",\"encoding\":\"base64\"}}}";
+    }
+
+    private static String har(String... entries) {
+        return "{\"log\":{\"entries\":[" + String.join(",", entries) + "]}}";
+    }
+}
@@ -0,0 +1,92 @@
+package burp.privilege.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CoalescingQueue：同键合并保留最新值、满时丢弃最旧的键、丢弃回调
+ */
+class CoalescingQueueTest {
+
+    @Test
+    void coalescesSameKeyKeepingPosition() throws InterruptedException {
+        List<String> discarded = new ArrayList<>();
+        CoalescingQueue<String> queue = new CoalescingQueue<>(10, discarded::add);
+        assertTrue(queue.offer("a", "a1"));
+        assertTrue(queue.offer("b", "b1"));
+        assertFalse(queue.offer("a", "a2"));
+
+        assertEquals(2, queue.size());
+        assertEquals(List.of("a1"), discarded);
+        assertEquals("a2", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals("b1", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.getAcceptedCount());
+        assertEquals(1, queue.getCoalescedCount());
+    }
+
+    @Test
+    void dropsOldestWhenFull() throws InterruptedException {
+        List<String> discarded = new ArrayList<>();
+        CoalescingQueue<String> queue = new CoalescingQueue<>(2, discarded::add);
+        queue.offer("a", "a");
+        queue.offer("b", "b");
+        assertTrue(queue.offer("c", "c"));
+
+        assertEquals(List.of("a"), discarded);
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals("b", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals("c", queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void takeRemovesSpecificKey() {
+        CoalescingQueue<String> queue = new CoalescingQueue<>(10);
+        queue.offer("a", "a");
+        queue.offer("b", "b");
+        assertEquals("b", queue.take("b"));
+        assertNull(queue.take("b"));
+        assertEquals(1, queue.size());
+        // 取走后同一个键重新算作新键
+        assertTrue(queue.offer("b", "b2"));
+    }
+
+    @Test
+    void clearAndCloseDiscard() {
+        List<String> discarded = new ArrayList<>();
+        CoalescingQueue<String> queue = new CoalescingQueue<>(10, discarded::add);
+        queue.offer("a", "a");
+        queue.clear();
+        assertEquals(List.of("a"), discarded);
+
+        queue.offer("b", "b");
+        queue.close();
+        assertFalse(queue.offer("c", "c"));
+        assertEquals(List.of("a", "b", "c"), discarded);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void pollWaitsForOffer() throws InterruptedException {
+        CoalescingQueue<String> queue = new CoalescingQueue<>(10);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.offer("a", "a");
+        });
+        producer.start();
+        assertEquals("a", queue.poll(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+}
@@ -0,0 +1,55 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EndpointTemplate：ID类路径片段归一为占位符，可读的名称保持原样
+ */
+class EndpointTemplateTest {
+
+    private static ScanRequest get(String path) {
+        return new ScanRequest("GET", "example.com", 443, true, path, List.of(), new byte[0]);
+    }
+
+    @Test
+    void keyNormalizesIdsAndSortsParameterNames() {
+        assertEquals("GET https://example.com/users/{num}/orders/{uuid}?a&b",
+                EndpointTemplate.key(get("/users/42/orders/123e4567-e89b-12d3-a456-426614174000?b=2&a=1")));
+        assertEquals(EndpointTemplate.key(get("/users/1?x=1")), EndpointTemplate.key(get("/users/999?x=2")));
+        assertEquals("GET https://example.com/", EndpointTemplate.key(get("/")));
+    }
+
+    @Test
+    void segmentPlaceholders() {
+        assertEquals("{num}", EndpointTemplate.segment("0042"));
+        assertEquals("{uuid}", EndpointTemplate.segment("123E4567-E89B-12D3-A456-426614174000"));
+        assertEquals("{hash}", EndpointTemplate.segment("d41d8cd98f00b204e9800998ecf8427e"));
+        assertEquals("{b64}", EndpointTemplate.segment("eyJhbGciOiJIUzI1NiJ9x"));
+        assertEquals("{b64}", EndpointTemplate.segment("aZ3kQ9pL2mX7vB4nR8tY1w"));
+    }
+
+    @Test
+    void readableSegmentsKeptAsIs() {
+        assertEquals("v2", EndpointTemplate.segment("v2"));
+        assertEquals("orders", EndpointTemplate.segment("orders"));
+        // 16位以上但没有数字的十六进制字符不当作哈希
+        assertEquals("deadbeefdeadbeef", EndpointTemplate.segment("deadbeefdeadbeef"));
+        assertEquals("getUserProfileSettingsV2", EndpointTemplate.segment("getUserProfileSettingsV2"));
+        assertEquals("order-history-2024-Summary", EndpointTemplate.segment("order-history-2024-Summary"));
+    }
+
+    @Test
+    void randomTokenHeuristic() {
+        assertTrue(EndpointTemplate.isRandomToken("aZ3kQ9pL2mX7vB4nR8tY1w"));
+        assertFalse(EndpointTemplate.isRandomToken("getUserProfileSettingsV2"));
+        assertFalse(EndpointTemplate.isRandomToken("alllowercase1234567890"));
+        assertFalse(EndpointTemplate.isRandomToken("report_Q3_final_Version2"));
+    }
+}
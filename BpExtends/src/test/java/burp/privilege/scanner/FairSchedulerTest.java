@@ -0,0 +1,182 @@
+package burp.privilege.scanner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FairScheduler：队列内按优先级、队列间按权重分配、主机并发上限、丢弃回调
+ */
+class FairSchedulerTest {
+
+    private FairScheduler scheduler;
+
+    private FairScheduler scheduler(int threads, int hostLimit) {
+        scheduler = new FairScheduler(threads, hostLimit, r -> {
+            Thread thread = new Thread(r, "fair-scheduler-test");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return scheduler;
+    }
+
+    @AfterEach
+    void close() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * 提交一个阻塞任务占住唯一的工作线程，返回放行用的门闩
+     */
+    private static CountDownLatch block(FairScheduler.Lane lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        lane.submit(() -> {
+            started.countDown();
+            await(gate);
+        }, Integer.MAX_VALUE, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void runsHigherPriorityFirstThenFifo() throws InterruptedException {
+        FairScheduler.Lane lane = scheduler(1, 0).lane("a", 1);
+        CountDownLatch gate = block(lane);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        lane.submit(() -> { order.add("low-1"); done.countDown(); }, 0, null);
+        lane.submit(() -> { order.add("high"); done.countDown(); }, 5, null);
+        lane.submit(() -> { order.add("low-2"); done.countDown(); }, 0, null);
+        lane.submit(() -> { order.add("mid"); done.countDown(); }, 3, null);
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("high", "mid", "low-1", "low-2"), order);
+    }
+
+    @Test
+    void splitsTurnsByWeight() throws InterruptedException {
+        FairScheduler scheduler = scheduler(1, 0);
+        FairScheduler.Lane gateLane = scheduler.lane("gate", 1);
+        FairScheduler.Lane light = scheduler.lane("light", 1);
+        FairScheduler.Lane heavy = scheduler.lane("heavy", 3);
+        CountDownLatch gate = block(gateLane);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(80);
+        for (int i = 0; i < 40; i++) {
+            light.submit(() -> { order.add("light"); done.countDown(); }, 0, null);
+            heavy.submit(() -> { order.add("heavy"); done.countDown(); }, 0, null);
+        }
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        List<String> first = order.subList(0, 20);
+        long heavyTurns = first.stream().filter("heavy"::equals).count();
+        assertTrue(heavyTurns >= 14 && heavyTurns <= 16, "前20个任务中heavy执行了 " + heavyTurns + " 个");
+    }
+
+    @Test
+    void limitsConcurrencyPerHost() throws InterruptedException {
+        FairScheduler.Lane lane = scheduler(4, 1).lane("a", 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(12);
+        for (int i = 0; i < 12; i++) {
+            lane.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            }, 0, "example.com:443");
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, peak.get());
+    }
+
+    @Test
+    void limitsConcurrencyPerLane() throws InterruptedException {
+        FairScheduler.Lane lane = scheduler(4, 0).lane("a", 1);
+        lane.setMaxRunning(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(12);
+        for (int i = 0; i < 12; i++) {
+            lane.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            }, 0, null);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(peak.get() <= 2, "同时执行 " + peak.get());
+    }
+
+    @Test
+    void discardCallbackRunsOnceInsteadOfTask() throws InterruptedException {
+        FairScheduler.Lane lane = scheduler(1, 0).lane("a", 1);
+        CountDownLatch gate = block(lane);
+
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger discarded = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            lane.submit(ran::incrementAndGet, discarded::incrementAndGet, 0, null);
+        }
+        lane.clear();
+        lane.clear();
+        assertEquals(5, discarded.get());
+
+        // 移除后提交的任务直接丢弃
+        lane.remove();
+        lane.submit(ran::incrementAndGet, discarded::incrementAndGet, 0, null);
+        assertEquals(6, discarded.get());
+
+        gate.countDown();
+        Thread.sleep(50);
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void pausedLaneWaits() throws InterruptedException {
+        FairScheduler.Lane lane = scheduler(2, 0).lane("a", 1);
+        lane.setPaused(true);
+        CountDownLatch done = new CountDownLatch(1);
+        lane.submit(done::countDown, 0, null);
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        lane.setPaused(false);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
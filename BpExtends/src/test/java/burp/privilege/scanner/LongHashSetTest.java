@@ -0,0 +1,117 @@
+package burp.privilege.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LongHashSet：增删查、元素0、后移删除后探测链仍然完整
+ */
+class LongHashSetTest {
+
+    @Test
+    void addContainsRemove() {
+        LongHashSet set = new LongHashSet(0);
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertFalse(set.contains(42));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void zeroIsStoredSeparately() {
+        LongHashSet set = new LongHashSet(0);
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void removeKeepsCollidingChainReachable() {
+        // 找出落在同一个槽位的元素（容量16不扩容），组成一条探测链后删除中间的元素
+        LongHashSet set = new LongHashSet(0);
+        int mask = set.capacity() - 1;
+        List<Long> chain = new ArrayList<>();
+        for (long value = 1; chain.size() < 6; value++) {
+            if ((LongHashSet.mix(value) & mask) == 3) {
+                chain.add(value);
+            }
+        }
+        chain.forEach(set::add);
+        assertEquals(16, set.capacity());
+
+        assertTrue(set.remove(chain.get(1)));
+        assertTrue(set.remove(chain.get(3)));
+        for (int i = 0; i < chain.size(); i++) {
+            assertEquals(i != 1 && i != 3, set.contains(chain.get(i)), "元素 " + i);
+        }
+        assertEquals(4, set.size());
+    }
+
+    @Test
+    void removeHandlesChainsWrappingAroundTheTable() {
+        LongHashSet set = new LongHashSet(0);
+        int mask = set.capacity() - 1;
+        List<Long> tail = new ArrayList<>();
+        List<Long> head = new ArrayList<>();
+        for (long value = 1; tail.size() < 3 || head.size() < 2; value++) {
+            int home = LongHashSet.mix(value) & mask;
+            if (home == mask && tail.size() < 3) {
+                tail.add(value);
+            } else if (home == 0 && head.size() < 2) {
+                head.add(value);
+            }
+        }
+        // 末尾槽位的链绕回表头，与表头本来的元素交错
+        tail.forEach(set::add);
+        head.forEach(set::add);
+
+        assertTrue(set.remove(tail.get(0)));
+        for (long value : tail.subList(1, tail.size())) {
+            assertTrue(set.contains(value));
+        }
+        for (long value : head) {
+            assertTrue(set.contains(value));
+        }
+    }
+
+    @Test
+    void matchesHashSetUnderRandomOperations() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet(0);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // 取值范围小，增删频繁命中已有元素
+            long value = random.nextInt(4096) - 16;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = -16; value < 4080; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+
+        Set<Long> visited = new HashSet<>();
+        set.forEach(visited::add);
+        assertEquals(expected, visited);
+    }
+}
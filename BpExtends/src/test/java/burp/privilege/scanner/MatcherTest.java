@@ -0,0 +1,125 @@
+package burp.privilege.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预编译的匹配器：域名树、关键词自动机、路径前缀树与合并正则
+ */
+class MatcherTest {
+
+    // ========== DomainMatcher ==========
+
+    @Test
+    void domainMatchesItselfAndSubdomains() {
+        DomainMatcher matcher = DomainMatcher.compile(List.of("Example.com"));
+        assertTrue(matcher.matches("example.com"));
+        assertTrue(matcher.matches("API.example.com"));
+        assertTrue(matcher.matches("a.b.example.com."));
+        assertFalse(matcher.matches("badexample.com"));
+        assertFalse(matcher.matches("example.com.evil.net"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    void wildcardDomainMatchesOnlySubdomains() {
+        DomainMatcher matcher = DomainMatcher.compile(List.of("*.example.com"));
+        assertFalse(matcher.matches("example.com"));
+        assertTrue(matcher.matches("api.example.com"));
+    }
+
+    @Test
+    void noDomainsMatchesEverything() {
+        assertTrue(DomainMatcher.compile(null).matches("anything.test"));
+        assertTrue(DomainMatcher.compile(Arrays.asList("", null)).matches("anything.test"));
+    }
+
+    // ========== KeywordMatcher ==========
+
+    @Test
+    void keywordsFoundThroughFailureLinks() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("he", "she", "his", "hers"));
+        assertTrue(matcher.containsAny("ushers"));
+        assertTrue(matcher.containsAny("xxHISxx"));
+        assertFalse(matcher.containsAny("hx sx"));
+    }
+
+    @Test
+    void keywordSuffixOfLongerPrefix() {
+        // "abcd"失败后要经失败转移找到"bce"
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("abcd", "bce"));
+        assertTrue(matcher.containsAny("xabce"));
+        assertFalse(matcher.containsAny("abc"));
+    }
+
+    @Test
+    void noKeywordsMatchesNothing() {
+        assertFalse(KeywordMatcher.compile(List.of()).containsAny("text"));
+        assertFalse(KeywordMatcher.compile(List.of("a")).containsAny(null));
+    }
+
+    // ========== PathMatcher ==========
+
+    @Test
+    void literalAndPrefixRulesUseTrie() {
+        PathMatcher matcher = PathMatcher.compile(List.of("/logout", "^/api/admin/.*$", "/a\\.b"));
+        assertTrue(matcher.matches("/logout"));
+        assertFalse(matcher.matches("/logout/now"));
+        assertTrue(matcher.matches("/api/admin/users"));
+        assertTrue(matcher.matches("/api/admin/"));
+        assertFalse(matcher.matches("/api/administrator"));
+        assertTrue(matcher.matches("/a.b"));
+        assertFalse(matcher.matches("/axb"));
+    }
+
+    @Test
+    void regexRulesMatchWholePath() {
+        PathMatcher matcher = PathMatcher.compile(List.of("/users/\\d+", "/v[0-9]+/.*\\.json"));
+        assertTrue(matcher.matches("/users/12"));
+        assertFalse(matcher.matches("/users/12/edit"));
+        assertTrue(matcher.matches("/v2/data/list.json"));
+        assertFalse(matcher.matches("/v2/data/list.xml"));
+    }
+
+    @Test
+    void backreferencesKeepTheirOwnGroups() {
+        // 与其他正则合并时分组重新编号，\1会指向别的分组
+        PathMatcher matcher = PathMatcher.compile(List.of("/(a)(b)/x", "/(x+)/\\1", "/(?<id>\\w+)/\\k<id>", "/(?<id>\\d+)"));
+        assertTrue(matcher.matches("/xx/xx"));
+        assertFalse(matcher.matches("/xx/x"));
+        assertTrue(matcher.matches("/ab/ab"));
+        assertFalse(matcher.matches("/ab/cd"));
+        assertTrue(matcher.matches("/42"));
+        assertTrue(matcher.matches("/ab/x"));
+    }
+
+    @Test
+    void detectsGroupReferences() {
+        assertTrue(PathMatcher.hasGroupReference("(a)\\1"));
+        assertTrue(PathMatcher.hasGroupReference("(?<n>a)"));
+        assertTrue(PathMatcher.hasGroupReference("(?<n>a)\\k<n>"));
+        assertFalse(PathMatcher.hasGroupReference("(?<=a)b"));
+        assertFalse(PathMatcher.hasGroupReference("(?<!a)b"));
+        assertFalse(PathMatcher.hasGroupReference("a\\\\1"));
+        assertFalse(PathMatcher.hasGroupReference("\\d+"));
+    }
+
+    @Test
+    void invalidPatternsAreReportedAndIgnored() {
+        PathMatcher matcher = PathMatcher.compile(List.of("/ok", "/bad(", " "));
+        assertEquals(1, matcher.getErrors().size());
+        assertTrue(matcher.getErrors().get(0).startsWith("/bad("));
+        assertTrue(matcher.matches("/ok"));
+        assertFalse(matcher.isEmpty());
+
+        PathMatcher onlyInvalid = PathMatcher.compile(List.of("/bad("));
+        assertTrue(onlyInvalid.isEmpty());
+        assertFalse(onlyInvalid.matches("/bad("));
+    }
+}
@@ -0,0 +1,108 @@
+package burp.privilege.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ResultLog：跨分段追加、按游标增量读取、快照固定长度、并发追加不丢不重
+ */
+class ResultLogTest {
+
+    @Test
+    void appendAcrossSegments() {
+        ResultLog<Integer> log = new ResultLog<>();
+        assertTrue(log.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, log.append(i));
+        }
+        assertEquals(1000, log.size());
+
+        List<Integer> snapshot = log.snapshot();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, snapshot.get(i));
+        }
+    }
+
+    @Test
+    void sinceReadsEachElementOnce() {
+        ResultLog<String> log = new ResultLog<>();
+        List<String> read = new ArrayList<>();
+        int cursor = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < round * 7; i++) {
+                log.append(round + "-" + i);
+            }
+            List<String> batch = log.since(cursor);
+            read.addAll(batch);
+            cursor += batch.size();
+        }
+        assertEquals(log.snapshot(), read);
+        assertTrue(log.since(cursor + 100).isEmpty());
+    }
+
+    @Test
+    void snapshotDoesNotGrow() {
+        ResultLog<Integer> log = new ResultLog<>();
+        log.append(1);
+        log.append(2);
+        List<Integer> snapshot = log.snapshot();
+        log.append(3);
+        assertEquals(List.of(1, 2), snapshot);
+        assertEquals(3, log.size());
+    }
+
+    @Test
+    void rejectsNull() {
+        assertThrows(NullPointerException.class, () -> new ResultLog<String>().append(null));
+    }
+
+    @Test
+    void concurrentAppendsAreAllVisible() throws InterruptedException {
+        ResultLog<Integer> log = new ResultLog<>();
+        int threads = 8;
+        int perThread = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    log.append(base + i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        // 写入过程中按游标读取，读到的都是连续的已写入元素
+        start.countDown();
+        Set<Integer> seen = new HashSet<>();
+        int cursor = 0;
+        while (cursor < threads * perThread) {
+            List<Integer> batch = log.since(cursor);
+            for (Integer value : batch) {
+                assertTrue(seen.add(value), "重复读取 " + value);
+            }
+            cursor += batch.size();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(threads * perThread, seen.size());
+        assertEquals(threads * perThread, log.size());
+    }
+}
@@ -0,0 +1,228 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import burp.privilege.model.ScanResult;
+import burp.privilege.model.VulnerabilityType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * BinaryCodec编解码往返，ScanJournal写入后恢复扫描状态
+ */
+class ScanJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static ScanRequest request(String path, String cookie) {
+        return new ScanRequest("POST", "example.com", 8443, true, path,
+                List.of(new ScanRequest.Header("Cookie", cookie), new ScanRequest.Header("X-Empty", "")),
+                "a=1&b=中文".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ScanResponse response(int status, String body) {
+        return new ScanResponse(status, List.of(new ScanRequest.Header("Content-Type", "text/plain")),
+                body.getBytes(StandardCharsets.UTF_8), 37);
+    }
+
+    private static void assertSameRequest(ScanRequest expected, ScanRequest actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.secure(), actual.secure());
+        assertEquals(expected.port(), actual.port());
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    // ========== BinaryCodec ==========
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static DataInputStream roundTrip(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.write(out);
+        out.flush();
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void codecRoundTripsPrimitivesAndNulls() throws IOException {
+        DataInputStream in = roundTrip(out -> {
+            BinaryCodec.writeString(out, "中文");
+            BinaryCodec.writeString(out, null);
+            BinaryCodec.writeString(out, "");
+            BinaryCodec.writeBytes(out, new byte[]{0, -1, 127});
+            BinaryCodec.writeColumns(out, new long[]{Long.MIN_VALUE, 0, 42});
+            BinaryCodec.writeColumns(out, null);
+            BinaryCodec.writeRequest(out, null);
+        });
+        assertEquals("中文", BinaryCodec.readString(in));
+        assertNull(BinaryCodec.readString(in));
+        assertEquals("", BinaryCodec.readString(in));
+        assertArrayEquals(new byte[]{0, -1, 127}, BinaryCodec.readBytes(in));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0, 42}, BinaryCodec.readColumns(in));
+        assertNull(BinaryCodec.readColumns(in));
+        assertNull(BinaryCodec.readRequest(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void codecRoundTripsRequestAndResponse() throws IOException {
+        ScanRequest request = request("/api/orders?id=1", "sid=a");
+        ScanResponse response = response(403, "拒绝");
+        DataInputStream in = roundTrip(out -> {
+            BinaryCodec.writeRequest(out, request);
+            BinaryCodec.writeResponse(out, response);
+        });
+
+        assertSameRequest(request, BinaryCodec.readRequest(in));
+        ScanResponse read = BinaryCodec.readResponse(in);
+        assertEquals(403, read.statusCode());
+        assertEquals("text/plain", read.headerValue("Content-Type"));
+        assertEquals("拒绝", read.bodyToString());
+        assertEquals(37, read.elapsedMillis());
+    }
+
+    @Test
+    void codecRoundTripsResult() throws IOException {
+        ScanResult result = new ScanResult(VulnerabilityType.PRIVILEGE_ESCALATION, "https://example.com:8443/api", "POST");
+        result.setRiskLevel(ScanResult.RiskLevel.HIGH);
+        result.setScanTime(LocalDateTime.of(2024, 5, 1, 12, 30, 15));
+        result.setConfirmed(true);
+        result.setSimilarity(0.97);
+        result.setOriginalStatusCode(200);
+        result.setTestStatusCode(200);
+        result.setTestCredentialName("B");
+        result.setNotes(null);
+        result.setOriginalHttpRequest(request("/api", "sid=a"));
+        result.setTestHttpRequest(request("/api", "sid=b"));
+
+        ScanResult read = BinaryCodec.readResult(roundTrip(out -> BinaryCodec.writeResult(out, result)));
+        assertEquals(VulnerabilityType.PRIVILEGE_ESCALATION, read.getVulnType());
+        assertEquals(ScanResult.RiskLevel.HIGH, read.getRiskLevel());
+        assertEquals(result.getScanTime(), read.getScanTime());
+        assertTrue(read.isConfirmed());
+        assertFalse(read.isFalsePositive());
+        assertEquals(result.getUrl(), read.getUrl());
+        assertEquals("POST", read.getMethod());
+        assertEquals(0.97, read.getSimilarity());
+        assertEquals(200, read.getTestStatusCode());
+        assertEquals("B", read.getTestCredentialName());
+        assertNull(read.getNotes());
+        assertSameRequest(result.getTestHttpRequest(), read.getTestHttpRequest());
+    }
+
+    // ========== ScanJournal ==========
+
+    @Test
+    void recoversOutstandingTestedAndResults() throws IOException {
+        Path file = dir.resolve("scan.journal");
+        ScanJournal journal = ScanJournal.create(file, true, new long[]{1, 2, 3});
+        int finished = journal.unit(request("/done", "sid=a"), new long[]{2}, "POST /done", 5);
+        int open = journal.unit(request("/open", "sid=a"), null, "POST /open", 9);
+        journal.baseline(open, response(200, "基线"));
+        journal.done(finished, true);
+        journal.tested(77L, new long[]{3});
+        ScanResult result = new ScanResult(VulnerabilityType.SUSPICIOUS, "https://example.com:8443/x", "GET");
+        journal.result(result);
+        journal.close();
+
+        ScanJournal.Recovery recovery = ScanJournal.load(file);
+        assertNotNull(recovery);
+        assertTrue(recovery.isDifferential());
+        assertArrayEquals(new long[]{1, 2, 3}, recovery.getColumns());
+
+        assertEquals(1, recovery.getOutstanding().size());
+        ScanJournal.Unit unit = recovery.getOutstanding().get(0);
+        assertSameRequest(request("/open", "sid=a"), unit.getRequest());
+        assertNull(unit.getColumns());
+        assertEquals("POST /open", unit.getSampleKey());
+        assertEquals(9, unit.getPriority());
+        assertEquals("基线", unit.getBaseline().bodyToString());
+
+        assertEquals(2, recovery.getTested().size());
+        assertEquals(TestedEndpointIndex.endpointKey(request("/done", "sid=a")), recovery.getTested().get(0).getEndpoint());
+        assertArrayEquals(new long[]{2}, recovery.getTested().get(0).getColumns());
+        assertEquals(77L, recovery.getTested().get(1).getEndpoint());
+        assertArrayEquals(new long[]{3}, recovery.getTested().get(1).getColumns());
+
+        assertEquals(1, recovery.getResults().size());
+        assertEquals("https://example.com:8443/x", recovery.getResults().get(0).getUrl());
+    }
+
+    @Test
+    void ignoresTornTail() throws IOException {
+        Path file = dir.resolve("scan.journal");
+        ScanJournal journal = ScanJournal.create(file, false, new long[]{1});
+        journal.unit(request("/a", "sid=a"), null, "a", 0);
+        journal.unit(request("/b", "sid=a"), null, "b", 0);
+        journal.close();
+
+        // 截掉最后一条记录的几个字节，模拟写到一半时进程退出
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        ScanJournal.Recovery recovery = ScanJournal.load(file);
+        assertNotNull(recovery);
+        assertFalse(recovery.isDifferential());
+        assertEquals(1, recovery.getOutstanding().size());
+        assertEquals("a", recovery.getOutstanding().get(0).getSampleKey());
+    }
+
+    @Test
+    void loadReturnsNullForMissingOrForeignFile() throws IOException {
+        assertNull(ScanJournal.load(dir.resolve("missing")));
+        Path foreign = dir.resolve("foreign");
+        Files.writeString(foreign, "not a journal");
+        assertNull(ScanJournal.load(foreign));
+    }
+
+    @Test
+    void deleteRemovesFile() throws IOException {
+        Path file = dir.resolve("scan.journal");
+        ScanJournal journal = ScanJournal.create(file, false, new long[0]);
+        journal.delete();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void fileIsOwnerOnly() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path file = dir.resolve("journals").resolve("scan.journal");
+        Files.createDirectories(dir.resolve("other"));
+        Path existing = dir.resolve("other").resolve("scan.journal");
+        Files.writeString(existing, "old");
+        Files.setPosixFilePermissions(existing, PosixFilePermissions.fromString("rw-r--r--"));
+
+        ScanJournal.create(file, false, new long[0]).close();
+        ScanJournal.create(existing, false, new long[0]).close();
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent())));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(existing)));
+    }
+}
@@ -0,0 +1,133 @@
+package burp.privilege.scanner;
+
+import burp.privilege.model.ScanRequest;
+import burp.privilege.model.ScanResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SingleFlightTransport：同时进行的相同安全请求只发送一次，失败不复用
+ */
+class SingleFlightTransportTest {
+
+    private static ScanRequest request(String method, String path) {
+        return new ScanRequest(method, "example.com", 443, true, path,
+                List.of(new ScanRequest.Header("Cookie", "sid=a")), new byte[0]);
+    }
+
+    /**
+     * 等待放行后才返回的传输层，记录实际发送次数
+     */
+    private static final class BlockingTransport implements ScanTransport {
+        final AtomicInteger sent = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean fail;
+
+        @Override
+        public ScanResponse send(ScanRequest request) throws IOException {
+            sent.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (fail) {
+                throw new IOException("连接被重置");
+            }
+            return new ScanResponse(200, List.of(), request.path().getBytes(), 1);
+        }
+    }
+
+    @Test
+    void concurrentIdenticalGetsShareOneResponse() throws Exception {
+        BlockingTransport delegate = new BlockingTransport();
+        SingleFlightTransport transport = new SingleFlightTransport(delegate, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ScanResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> transport.send(request("GET", "/a"))));
+            }
+            // 等所有线程都登记后再放行
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (transport.getSharedCount() + transport.getSentCount() < 8 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            delegate.release.countDown();
+
+            ScanResponse first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<ScanResponse> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, delegate.sent.get());
+            assertEquals(1, transport.getSentCount());
+            assertEquals(7, transport.getSharedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void unsafeMethodsAndDifferentRequestsAreNotMerged() throws IOException {
+        BlockingTransport delegate = new BlockingTransport();
+        delegate.release.countDown();
+        SingleFlightTransport transport = new SingleFlightTransport(delegate, 60_000);
+
+        transport.send(request("POST", "/a"));
+        transport.send(request("POST", "/a"));
+        transport.send(request("GET", "/a"));
+        transport.send(request("GET", "/b"));
+        assertEquals(4, delegate.sent.get());
+
+        // 有效期内复用已完成的响应
+        transport.send(request("GET", "/a"));
+        assertEquals(4, delegate.sent.get());
+        assertEquals(1, transport.getSharedCount());
+    }
+
+    @Test
+    void failuresAreNotReused() {
+        BlockingTransport delegate = new BlockingTransport();
+        delegate.release.countDown();
+        delegate.fail = true;
+        SingleFlightTransport transport = new SingleFlightTransport(delegate, 60_000);
+
+        assertThrows(IOException.class, () -> transport.send(request("GET", "/a")));
+        assertThrows(IOException.class, () -> transport.send(request("GET", "/a")));
+        assertEquals(2, delegate.sent.get());
+    }
+
+    @Test
+    void asyncSharesAndPropagatesResponse() throws Exception {
+        BlockingTransport delegate = new BlockingTransport();
+        SingleFlightTransport transport = new SingleFlightTransport(delegate, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<ScanResponse> first = transport.sendAsync(request("GET", "/a"), pool);
+            CompletableFuture<ScanResponse> second = transport.sendAsync(request("GET", "/a"), pool);
+            second.cancel(true);  // 一个共享者取消不影响其他共享者
+            delegate.release.countDown();
+
+            assertEquals("/a", first.get(5, TimeUnit.SECONDS).bodyToString());
+            assertTrue(second.isCancelled());
+            assertEquals(1, delegate.sent.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}